@@ -15,18 +15,16 @@
 package com.cloudera.exhibit.avro;
 
 import com.cloudera.exhibit.core.*;
-import com.cloudera.exhibit.core.simple.SimpleExhibit;
-import com.cloudera.exhibit.core.simple.SimpleObs;
 import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
-import com.cloudera.exhibit.core.vector.VectorBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericRecord;
 
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class AvroExhibit {
 
@@ -74,7 +72,7 @@ public class AvroExhibit {
         return getRecordElement(unwrappedField);
       }
     } else if (schema.getType() == Schema.Type.RECORD) {
-      if (schema.getFields().size() == 1) {
+      if (isWrapper(schema)) {
         Schema unwrappedField = AvroObsDescriptor.unwrap(schema.getFields().get(0).schema());
         return getRecordElement(unwrappedField);
       } else {
@@ -84,43 +82,107 @@ public class AvroExhibit {
     throw new UnsupportedOperationException("Not a record: " + schema);
   }
 
+  // A record whose only field is another record, as some writers generate for list elements. A record
+  // with a single primitive field (e.g., a projected frame) is not a wrapper.
+  static boolean isWrapper(Schema record) {
+    return record.getFields().size() == 1 && isRecordElement(record.getFields().get(0).schema());
+  }
+
   static GenericRecord getInnerRecord(GenericRecord record) {
-    if (record.getSchema().getType() == Schema.Type.RECORD) {
-      if (record.getSchema().getFields().size() == 1) {
-        return getInnerRecord((GenericRecord) record.get(0));
+    if (record.getSchema().getType() == Schema.Type.RECORD && isWrapper(record.getSchema())) {
+      Object inner = record.get(0);
+      if (inner instanceof GenericRecord) {
+        return getInnerRecord((GenericRecord) inner);
       }
     }
     return record;
   }
 
-  public static Exhibit create(GenericRecord record) {
-    Schema schema = record.getSchema();
-    ExhibitDescriptor desc = createDescriptor(schema);
-    List<Object> attrValues = Lists.newArrayListWithExpectedSize(desc.attributes().size());
-    for (int i = 0; i < desc.attributes().size(); i++) {
-      Object val = record.get(desc.attributes().get(i).name);
-      if (val != null && desc.attributes().get(i).type == FieldType.STRING) {
-        val = val.toString();
+  /**
+   * Returns a reader schema for records of the given schema that only reads the attributes, vectors,
+   * frames, and frame columns in the requested descriptor. Reading with it lets Avro skip over the rest
+   * of each record instead of materializing it. Frames whose elements share a record type read the
+   * union of the columns requested for each of them.
+   */
+  public static Schema projectSchema(Schema schema, ExhibitDescriptor requested) {
+    Map<String, Set<String>> columns = Maps.newHashMap();
+    for (Schema.Field f : schema.getFields()) {
+      ObsDescriptor od = requested.frames().get(f.name());
+      Schema unwrapped = AvroObsDescriptor.unwrap(f.schema());
+      if (od != null && unwrapped.getType() == Schema.Type.ARRAY && isRecordElement(unwrapped.getElementType())) {
+        String name = getRecordElement(unwrapped.getElementType()).getFullName();
+        Set<String> names = columns.get(name);
+        if (names == null) {
+          names = Sets.newHashSet();
+          columns.put(name, names);
+        }
+        for (ObsDescriptor.Field column : od) {
+          names.add(column.name);
+        }
       }
-      attrValues.add(val);
     }
-    Map<String, Frame> frames = Maps.newHashMap();
-    for (String frameName : desc.frames().keySet()) {
-      List<GenericRecord> recs = Lists.newArrayList();
-      List<GenericRecord> raw = (List<GenericRecord>) record.get(frameName);
-      if (raw != null) {
-        for (GenericRecord rawRec : raw) {
-          recs.add(getInnerRecord(rawRec));
-        }
+    Map<String, Schema> records = Maps.newHashMap();
+    List<Schema.Field> fields = Lists.newArrayList();
+    for (Schema.Field f : schema.getFields()) {
+      if (requested.attributes().indexOf(f.name()) >= 0 || requested.vectors().containsKey(f.name())) {
+        fields.add(copyField(f, f.schema()));
+      } else if (requested.frames().containsKey(f.name())) {
+        fields.add(copyField(f, projectFrame(f.schema(), columns, records)));
       }
-      frames.put(frameName, new AvroFrame((AvroObsDescriptor) desc.frames().get(frameName), recs));
     }
-    Map<String, Vec> vectors = Maps.newHashMap();
-    for (Map.Entry<String, FieldType> v : desc.vectors().entrySet()) {
-      List vals = Arrays.asList((Object[]) record.get(v.getKey()));
-      vectors.put(v.getKey(), VectorBuilder.build(v.getValue(), vals));
+    Schema projected = Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(),
+        schema.isError());
+    projected.setFields(fields);
+    return projected;
+  }
+
+  private static Schema projectFrame(Schema schema, Map<String, Set<String>> columns,
+                                     Map<String, Schema> records) {
+    switch (schema.getType()) {
+      case UNION:
+        List<Schema> branches = Lists.newArrayList();
+        for (Schema branch : schema.getTypes()) {
+          branches.add(projectFrame(branch, columns, records));
+        }
+        return Schema.createUnion(branches);
+      case ARRAY:
+        return Schema.createArray(projectFrame(schema.getElementType(), columns, records));
+      case RECORD:
+        Schema projected = records.get(schema.getFullName());
+        if (projected == null) {
+          projected = Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(),
+              schema.isError());
+          records.put(schema.getFullName(), projected);
+          List<Schema.Field> fields = Lists.newArrayList();
+          if (isWrapper(schema)) {
+            Schema.Field inner = schema.getFields().get(0);
+            fields.add(copyField(inner, projectFrame(inner.schema(), columns, records)));
+          } else {
+            Set<String> names = columns.get(schema.getFullName());
+            for (Schema.Field f : schema.getFields()) {
+              if (names == null || names.contains(f.name())) {
+                fields.add(copyField(f, f.schema()));
+              }
+            }
+          }
+          projected.setFields(fields);
+        }
+        return projected;
+      default:
+        return schema;
     }
-    return new SimpleExhibit(new SimpleObs(desc.attributes(), attrValues), frames, vectors);
+  }
+
+  private static Schema.Field copyField(Schema.Field f, Schema schema) {
+    Schema.Field copy = new Schema.Field(f.name(), schema, f.doc(), f.defaultValue(), f.order());
+    for (String alias : f.aliases()) {
+      copy.addAlias(alias);
+    }
+    return copy;
+  }
+
+  public static Exhibit create(GenericRecord record) {
+    return AvroExhibitFactory.forSchema(record.getSchema()).create(record);
   }
 
   private AvroExhibit() {}
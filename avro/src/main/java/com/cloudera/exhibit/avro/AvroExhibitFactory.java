@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.avro;
+
+import com.cloudera.exhibit.core.Exhibit;
+import com.cloudera.exhibit.core.ExhibitDescriptor;
+import com.cloudera.exhibit.core.FieldType;
+import com.cloudera.exhibit.core.Frame;
+import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.core.Vec;
+import com.cloudera.exhibit.core.simple.SimpleExhibit;
+import com.cloudera.exhibit.core.simple.SimpleObs;
+import com.cloudera.exhibit.core.vector.VectorBuilder;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.generic.GenericRecord;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates {@link Exhibit} instances from the {@link GenericRecord}s of a single Avro schema. The
+ * {@link ExhibitDescriptor} and the position of each attribute, frame, and vector in the record
+ * are worked out once, so creating an exhibit only needs to read the record's fields by position.
+ */
+public class AvroExhibitFactory {
+
+  // Looked up by schema identity first, since every record read from a file shares one instance,
+  // and then by the parsing fingerprint of the schema for equal schemas from different readers.
+  private static final Cache<Schema, AvroExhibitFactory> BY_SCHEMA = CacheBuilder.newBuilder()
+      .weakKeys()
+      .maximumSize(1024)
+      .build();
+  private static final Cache<Long, AvroExhibitFactory> BY_FINGERPRINT = CacheBuilder.newBuilder()
+      .maximumSize(1024)
+      .build();
+
+  private final ExhibitDescriptor descriptor;
+  private final int[] attrPositions;
+  private final boolean[] attrIsString;
+  private final String[] frameNames;
+  private final int[] framePositions;
+  private final AvroObsDescriptor[] frameDescriptors;
+  private final String[] vectorNames;
+  private final int[] vectorPositions;
+  private final FieldType[] vectorTypes;
+
+  public static AvroExhibitFactory forSchema(Schema schema) {
+    AvroExhibitFactory factory = BY_SCHEMA.getIfPresent(schema);
+    if (factory == null) {
+      long fp = SchemaNormalization.parsingFingerprint64(schema);
+      factory = BY_FINGERPRINT.getIfPresent(fp);
+      if (factory == null) {
+        factory = new AvroExhibitFactory(schema);
+        BY_FINGERPRINT.put(fp, factory);
+      }
+      BY_SCHEMA.put(schema, factory);
+    }
+    return factory;
+  }
+
+  public AvroExhibitFactory(Schema schema) {
+    ExhibitDescriptor desc = AvroExhibit.createDescriptor(schema);
+    this.descriptor = new ExhibitDescriptor(desc.attributes(),
+        Collections.unmodifiableMap(desc.frames()),
+        Collections.unmodifiableMap(desc.vectors()));
+
+    ObsDescriptor attrs = descriptor.attributes();
+    this.attrPositions = new int[attrs.size()];
+    this.attrIsString = new boolean[attrs.size()];
+    for (int i = 0; i < attrs.size(); i++) {
+      attrPositions[i] = schema.getField(attrs.get(i).name).pos();
+      attrIsString[i] = attrs.get(i).type == FieldType.STRING;
+    }
+
+    int numFrames = descriptor.frames().size();
+    this.frameNames = new String[numFrames];
+    this.framePositions = new int[numFrames];
+    this.frameDescriptors = new AvroObsDescriptor[numFrames];
+    int idx = 0;
+    for (Map.Entry<String, ObsDescriptor> e : descriptor.frames().entrySet()) {
+      frameNames[idx] = e.getKey();
+      framePositions[idx] = schema.getField(e.getKey()).pos();
+      frameDescriptors[idx] = (AvroObsDescriptor) e.getValue();
+      idx++;
+    }
+
+    int numVectors = descriptor.vectors().size();
+    this.vectorNames = new String[numVectors];
+    this.vectorPositions = new int[numVectors];
+    this.vectorTypes = new FieldType[numVectors];
+    idx = 0;
+    for (Map.Entry<String, FieldType> e : descriptor.vectors().entrySet()) {
+      vectorNames[idx] = e.getKey();
+      vectorPositions[idx] = schema.getField(e.getKey()).pos();
+      vectorTypes[idx] = e.getValue();
+      idx++;
+    }
+  }
+
+  public ExhibitDescriptor descriptor() {
+    return descriptor;
+  }
+
+  public Exhibit create(GenericRecord record) {
+    List<Object> attrValues = Lists.newArrayListWithExpectedSize(attrPositions.length);
+    for (int i = 0; i < attrPositions.length; i++) {
+      Object val = record.get(attrPositions[i]);
+      if (val != null && attrIsString[i]) {
+        val = val.toString();
+      }
+      attrValues.add(val);
+    }
+    Map<String, Frame> frames = Maps.newHashMapWithExpectedSize(frameNames.length);
+    for (int i = 0; i < frameNames.length; i++) {
+      List<GenericRecord> raw = (List<GenericRecord>) record.get(framePositions[i]);
+      List<GenericRecord> recs;
+      if (raw == null) {
+        recs = Collections.emptyList();
+      } else {
+        recs = Lists.newArrayListWithExpectedSize(raw.size());
+        for (GenericRecord rawRec : raw) {
+          recs.add(AvroExhibit.getInnerRecord(rawRec));
+        }
+      }
+      // Exhibit frames are usually scanned more than once, e.g. by multi-query SQL calculators
+      frames.put(frameNames[i], new AvroFrame(frameDescriptors[i], recs, true));
+    }
+    Map<String, Vec> vectors = Maps.newHashMapWithExpectedSize(vectorNames.length);
+    for (int i = 0; i < vectorNames.length; i++) {
+      Object raw = record.get(vectorPositions[i]);
+      List<Object> vals;
+      if (raw instanceof List) {
+        vals = (List<Object>) raw;
+      } else if (raw == null) {
+        vals = Collections.emptyList();
+      } else {
+        vals = Arrays.asList((Object[]) raw);
+      }
+      vectors.put(vectorNames[i], VectorBuilder.build(vectorTypes[i], vals));
+    }
+    return new SimpleExhibit(new SimpleObs(descriptor.attributes(), attrValues), frames, vectors);
+  }
+}
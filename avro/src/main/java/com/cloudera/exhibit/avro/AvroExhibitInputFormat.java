@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.avro;
+
+import com.cloudera.exhibit.core.Exhibit;
+import com.cloudera.exhibit.core.ExhibitDescriptor;
+import com.cloudera.exhibit.core.columnar.ExhibitCodec;
+import com.google.common.io.BaseEncoding;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.SeekableInput;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link FileInputFormat} for Avro data files that decodes each record straight into a columnar
+ * {@link Exhibit} with a {@link ColumnarDatumReader}. The exhibits are
+ * returned as the keys; the values are always null.
+ *
+ * <p>If a reader schema is set (see {@link #setReaderSchema}), the records of every file are
+ * resolved against it, so that all of the exhibits have the same layout even if the files were
+ * written with different schemas. Otherwise, each file is read with the layout of its own schema.
+ */
+public class AvroExhibitInputFormat extends FileInputFormat<ExhibitWritable, NullWritable> {
+
+  public static final String REQUESTED_DESCRIPTOR = "exhibit.avro.requested.descriptor";
+  public static final String READER_SCHEMA = "exhibit.avro.reader.schema";
+
+  /**
+   * Sets the schema that the records of every input file are resolved against, e.g. the one
+   * returned by {@link #readSchema(Path, Configuration)}.
+   */
+  public static void setReaderSchema(Configuration conf, Schema schema) {
+    conf.set(READER_SCHEMA, schema.toString());
+  }
+
+  public static Schema getReaderSchema(Configuration conf) {
+    String json = conf.get(READER_SCHEMA);
+    if (json == null || json.isEmpty()) {
+      return null;
+    }
+    return new Schema.Parser().parse(json);
+  }
+
+  /**
+   * Limits the fields that are decoded from each record to the ones named in the given descriptor.
+   */
+  public static void setRequestedDescriptor(Configuration conf, ExhibitDescriptor requested) {
+    conf.set(REQUESTED_DESCRIPTOR, encodeDescriptor(requested));
+  }
+
+  /**
+   * Returns the value of {@link #REQUESTED_DESCRIPTOR} for the given descriptor, e.g. for setting it
+   * on a single input of a job.
+   */
+  public static String encodeDescriptor(ExhibitDescriptor requested) {
+    return BaseEncoding.base64().encode(ExhibitCodec.of(requested).getDescriptorBytes());
+  }
+
+  public static ExhibitDescriptor getRequestedDescriptor(Configuration conf) {
+    String encoded = conf.get(REQUESTED_DESCRIPTOR);
+    if (encoded == null || encoded.isEmpty()) {
+      return null;
+    }
+    return ExhibitCodec.fromDescriptorBytes(BaseEncoding.base64().decode(encoded)).descriptor();
+  }
+
+  /**
+   * Returns the writer schema of the first data file at the given path, which may be a glob or a
+   * directory. The other files may have been written with other schemas, so this should be set as
+   * the reader schema (see {@link #setReaderSchema}) of a job that reads all of them.
+   */
+  public static Schema readSchema(Path path, Configuration conf) throws IOException {
+    FileSystem fs = path.getFileSystem(conf);
+    FileStatus[] statuses = fs.globStatus(path);
+    if (statuses == null || statuses.length == 0) {
+      throw new FileNotFoundException("No files found at: " + path);
+    }
+    for (FileStatus status : statuses) {
+      if (status.isDirectory()) {
+        for (FileStatus child : fs.listStatus(status.getPath())) {
+          String name = child.getPath().getName();
+          if (!child.isDirectory() && !name.startsWith("_") && !name.startsWith(".")) {
+            return readSchema(fs, child.getPath());
+          }
+        }
+      } else {
+        return readSchema(fs, status.getPath());
+      }
+    }
+    throw new FileNotFoundException("No data files found at: " + path);
+  }
+
+  private static Schema readSchema(FileSystem fs, Path file) throws IOException {
+    InputStream in = fs.open(file);
+    try {
+      DataFileStream<GenericRecord> stream = new DataFileStream<GenericRecord>(in,
+          new GenericDatumReader<GenericRecord>());
+      return stream.getSchema();
+    } finally {
+      in.close();
+    }
+  }
+
+  @Override
+  public RecordReader<ExhibitWritable, NullWritable> createRecordReader(InputSplit split,
+      TaskAttemptContext context) {
+    return new ExhibitRecordReader();
+  }
+
+  private static class ExhibitRecordReader extends RecordReader<ExhibitWritable, NullWritable> {
+    private DataFileReader<Exhibit> reader;
+    private long start;
+    private long end;
+    private ExhibitWritable current;
+
+    @Override
+    public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+      FileSplit fileSplit = (FileSplit) split;
+      Configuration conf = context.getConfiguration();
+      SeekableInput in = new FsSeekableInput(fileSplit.getPath(), conf);
+      Schema readerSchema = getReaderSchema(conf);
+      ExhibitDescriptor requested = getRequestedDescriptor(conf);
+      ColumnarDatumReader datumReader = readerSchema == null ? new ColumnarDatumReader(requested)
+          : new ColumnarDatumReader(readerSchema, requested);
+      this.reader = new DataFileReader<Exhibit>(in, datumReader);
+      reader.sync(fileSplit.getStart());
+      this.start = reader.tell();
+      this.end = fileSplit.getStart() + fileSplit.getLength();
+    }
+
+    @Override
+    public boolean nextKeyValue() throws IOException {
+      if (!reader.hasNext() || reader.pastSync(end)) {
+        current = null;
+        return false;
+      }
+      current = new ExhibitWritable(reader.next());
+      return true;
+    }
+
+    @Override
+    public ExhibitWritable getCurrentKey() {
+      return current;
+    }
+
+    @Override
+    public NullWritable getCurrentValue() {
+      return NullWritable.get();
+    }
+
+    @Override
+    public float getProgress() throws IOException {
+      if (end == start) {
+        return 0.0f;
+      }
+      return Math.min(1.0f, (reader.tell() - start) / (float) (end - start));
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (reader != null) {
+        reader.close();
+      }
+    }
+  }
+
+  /**
+   * A {@link SeekableInput} over a file in a Hadoop {@link FileSystem}.
+   */
+  private static class FsSeekableInput implements SeekableInput {
+    private final FSDataInputStream in;
+    private final long length;
+
+    FsSeekableInput(Path path, Configuration conf) throws IOException {
+      FileSystem fs = path.getFileSystem(conf);
+      this.length = fs.getFileStatus(path).getLen();
+      this.in = fs.open(path);
+    }
+
+    @Override
+    public void seek(long p) throws IOException {
+      in.seek(p);
+    }
+
+    @Override
+    public long tell() throws IOException {
+      return in.getPos();
+    }
+
+    @Override
+    public long length() {
+      return length;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      return in.read(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
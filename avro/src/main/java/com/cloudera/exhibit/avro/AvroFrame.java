@@ -46,12 +46,21 @@ public class AvroFrame extends Frame {
     this(new AvroObsDescriptor(records.get(0).getSchema()), records);
   }
 
-  public AvroFrame(final AvroObsDescriptor descriptor, List<? extends GenericRecord> records) {
+  public AvroFrame(AvroObsDescriptor descriptor, List<? extends GenericRecord> records) {
+    this(descriptor, records, false);
+  }
+
+  /**
+   * Creates a frame whose rows keep the decoded form of each string value that is read, if
+   * {@code cacheStrings} is true, so that repeated scans of the frame only decode them once.
+   */
+  public AvroFrame(final AvroObsDescriptor descriptor, List<? extends GenericRecord> records,
+                   final boolean cacheStrings) {
     this.descriptor = descriptor;
     this.records = ImmutableList.copyOf(Lists.transform(records, new Function<GenericRecord, AvroObs>() {
       @Override
       public AvroObs apply(GenericRecord genericRecord) {
-        return new AvroObs(descriptor, genericRecord);
+        return new AvroObs(descriptor, genericRecord, cacheStrings);
       }
     }));
   }
@@ -17,20 +17,45 @@ package com.cloudera.exhibit.avro;
 import com.cloudera.exhibit.core.FieldType;
 import com.cloudera.exhibit.core.Obs;
 import com.cloudera.exhibit.core.ObsDescriptor;
+import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericRecord;
 
 public class AvroObs extends Obs {
 
   private GenericRecord record;
   private ObsDescriptor descriptor;
+  // The position in the record of each field of the descriptor (or -1 if the record does not have
+  // it), or null if they are the same, as they are for an AvroObsDescriptor of the record's schema
+  private int[] positions;
+  private boolean cacheStrings;
+  // Decoded values of the STRING fields, filled in as they are read if cacheStrings is set
+  private String[] strings;
 
   public AvroObs(GenericRecord record) {
     this(new AvroObsDescriptor(record.getSchema()), record);
   }
 
   public AvroObs(ObsDescriptor descriptor, GenericRecord record) {
+    this(descriptor, record, false);
+  }
+
+  public AvroObs(ObsDescriptor descriptor, GenericRecord record, boolean cacheStrings) {
     this.descriptor = descriptor;
     this.record = record;
+    this.positions = positions(descriptor, record.getSchema());
+    this.cacheStrings = cacheStrings;
+  }
+
+  private static int[] positions(ObsDescriptor descriptor, Schema schema) {
+    if (descriptor instanceof AvroObsDescriptor && ((AvroObsDescriptor) descriptor).schema().equals(schema)) {
+      return null;
+    }
+    int[] positions = new int[descriptor.size()];
+    for (int i = 0; i < positions.length; i++) {
+      Schema.Field f = schema.getField(descriptor.get(i).name);
+      positions[i] = f == null ? -1 : f.pos();
+    }
+    return positions;
   }
 
   GenericRecord record() {
@@ -47,15 +72,67 @@ public class AvroObs extends Obs {
     return descriptor;
   }
 
+  private Object value(int index) {
+    if (positions == null) {
+      return record.get(index);
+    }
+    int pos = positions[index];
+    return pos < 0 ? null : record.get(pos);
+  }
+
   @Override
   public Object get(int index) {
-    ObsDescriptor.Field f = descriptor.get(index);
-    Object r = record.get(f.name);
-    if (f.type == FieldType.STRING) {
-      return r == null ? null : r.toString();
-    } else {
+    Object r = value(index);
+    if (r == null || type(index) != FieldType.STRING) {
       return r;
+    } else if (!cacheStrings) {
+      return r.toString();
+    }
+    if (strings == null) {
+      strings = new String[descriptor.size()];
     }
+    String str = strings[index];
+    if (str == null) {
+      str = r.toString();
+      strings[index] = str;
+    }
+    return str;
+  }
+
+  private FieldType type(int index) {
+    if (descriptor instanceof AvroObsDescriptor) {
+      return ((AvroObsDescriptor) descriptor).type(index);
+    }
+    return descriptor.get(index).type;
+  }
+
+  @Override
+  public boolean isNull(int index) {
+    return value(index) == null;
+  }
+
+  @Override
+  public double getDouble(int index) {
+    Number n = (Number) value(index);
+    return n == null ? 0.0 : n.doubleValue();
+  }
+
+  @Override
+  public long getLong(int index) {
+    Number n = (Number) value(index);
+    return n == null ? 0L : n.longValue();
+  }
+
+  @Override
+  public int getInt(int index) {
+    Number n = (Number) value(index);
+    return n == null ? 0 : n.intValue();
+  }
+
+  @Override
+  public boolean getBoolean(int index) {
+    Boolean b = (Boolean) value(index);
+    return b != null && b;
   }
 
 }
@@ -27,19 +27,39 @@ public class AvroObsDescriptor extends ObsDescriptor {
   private static Schema NULL = Schema.create(Schema.Type.NULL);
 
   private Schema schema;
+  // Field i of this descriptor is the field at position i of the schema
+  private transient Field[] fields;
+  private transient FieldType[] types;
 
   public AvroObsDescriptor(Schema schema) {
     this.schema = unwrap(schema);
+    init();
+  }
+
+  private void init() {
+    List<Schema.Field> schemaFields = schema.getFields();
+    this.fields = new Field[schemaFields.size()];
+    this.types = new FieldType[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      Schema.Field f = schemaFields.get(i);
+      types[i] = getFieldType(f.schema());
+      // Fields with unsupported types stay null here and fail in get(), as they always have
+      fields[i] = types[i] == null ? null : new Field(f.name(), types[i]);
+    }
   }
 
   Schema schema() {
     return schema;
   }
 
+  FieldType type(int index) {
+    return types[index];
+  }
+
   @Override
   public Field get(int index) {
-    Schema.Field f = schema.getFields().get(index);
-    return new Field(f.name(), getFieldType(f.schema()));
+    Field f = fields[index];
+    return f != null ? f : new Field(schema.getFields().get(index).name(), types[index]);
   }
 
   @Override
@@ -76,7 +96,6 @@ public class AvroObsDescriptor extends ObsDescriptor {
       case STRING:
         return FieldType.STRING;
       default:
-        System.err.println("Unknown schema type = " + s); // TODO: remove
         return null;
     }
   }
@@ -88,7 +107,7 @@ public class AvroObsDescriptor extends ObsDescriptor {
 
   @Override
   public int size() {
-    return schema.getFields().size();
+    return fields.length;
   }
 
   private void writeObject(java.io.ObjectOutputStream out) throws IOException {
@@ -97,5 +116,6 @@ public class AvroObsDescriptor extends ObsDescriptor {
 
   private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
     schema = (new Schema.Parser()).parse(in.readUTF());
+    init();
   }
 }
@@ -0,0 +1,606 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.avro;
+
+import com.cloudera.exhibit.core.Exhibit;
+import com.cloudera.exhibit.core.ExhibitDescriptor;
+import com.cloudera.exhibit.core.FieldType;
+import com.cloudera.exhibit.core.Frame;
+import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.core.Vec;
+import com.cloudera.exhibit.core.columnar.ColumnData;
+import com.cloudera.exhibit.core.columnar.ColumnarFrame;
+import com.cloudera.exhibit.core.simple.SimpleExhibit;
+import com.cloudera.exhibit.core.simple.SimpleObs;
+import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.util.Utf8;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DatumReader} that decodes Avro binary records straight into {@link Exhibit}s, without
+ * materializing any {@code GenericRecord}s along the way: each {@code array<record>} field is read
+ * into the columns of a {@link ColumnarFrame} and each {@code array<primitive>} field into a
+ * primitive {@link Vec}.
+ *
+ * <p>The writer schema is compiled into a plan once, in {@link #setSchema(Schema)}. If the reader
+ * was created with a requested {@link ExhibitDescriptor}, any attribute, frame, frame column, or
+ * vector that it does not name is skipped over in the input rather than decoded.
+ *
+ * <p>If the reader was created with a (reader) schema, every exhibit has the layout of that
+ * schema, whatever the writer schema: the fields of the writer are matched to it by name, so
+ * they may come in another order; fields that only the writer has are skipped; and fields that
+ * only the reader has are read as nulls, empty frames, or empty vectors. A field whose type
+ * differs between the two schemas is rejected when the writer schema is set.
+ */
+public class ColumnarDatumReader implements DatumReader<Exhibit> {
+
+  private static final int WRAPPER = -1;
+
+  private final ExhibitDescriptor requested;
+  // The plan of the reader schema, which sets the layout of every exhibit, or null to use the
+  // layout of each writer schema
+  private final Plan expected;
+  private Schema schema;
+  private Plan plan;
+
+  public ColumnarDatumReader() {
+    this((ExhibitDescriptor) null);
+  }
+
+  /**
+   * @param requested the attributes, frames (and their columns), and vectors to decode, or
+   * {@code null} to decode all of them
+   */
+  public ColumnarDatumReader(ExhibitDescriptor requested) {
+    this.requested = requested;
+    this.expected = null;
+  }
+
+  public ColumnarDatumReader(Schema schema) {
+    this(schema, null);
+  }
+
+  /**
+   * @param schema the reader schema, which is also used as the writer schema until
+   * {@link #setSchema(Schema)} is called with another one
+   * @param requested the attributes, frames (and their columns), and vectors to decode, or
+   * {@code null} to decode all of them
+   */
+  public ColumnarDatumReader(Schema schema, ExhibitDescriptor requested) {
+    this.requested = requested;
+    this.expected = new Plan(schema, requested, null);
+    this.schema = schema;
+    this.plan = expected;
+  }
+
+  /**
+   * Returns the descriptor of the exhibits that this reader creates from records of the current
+   * schema.
+   */
+  public ExhibitDescriptor descriptor() {
+    if (plan == null) {
+      throw new IllegalStateException("No schema has been set");
+    }
+    return plan.descriptor;
+  }
+
+  @Override
+  public void setSchema(Schema schema) {
+    if (schema != this.schema) {
+      if (expected == null) {
+        this.plan = new Plan(schema, requested, null);
+      } else if (schema.equals(expected.schema)) {
+        this.plan = expected;
+      } else {
+        this.plan = new Plan(schema, requested, expected);
+      }
+      this.schema = schema;
+    }
+  }
+
+  @Override
+  public Exhibit read(Exhibit reuse, Decoder in) throws IOException {
+    return plan.read(in);
+  }
+
+  private static boolean isRequestedAttribute(ExhibitDescriptor requested, String name) {
+    return requested == null || requested.attributes().indexOf(name) >= 0;
+  }
+
+  private static boolean isRequestedColumn(ObsDescriptor requested, String name) {
+    return requested == null || requested.indexOf(name) >= 0;
+  }
+
+  private static IllegalArgumentException incompatible(String name, String expected, Schema actual) {
+    return new IllegalArgumentException("Field " + name + " is " + expected
+        + " in the reader schema, but the writer schema has: " + actual);
+  }
+
+  private static ColumnData.Builder[] newColumns(FieldType[] types, int capacity) {
+    ColumnData.Builder[] columns = new ColumnData.Builder[types.length];
+    for (int i = 0; i < types.length; i++) {
+      columns[i] = ColumnData.builder(types[i], capacity);
+    }
+    return columns;
+  }
+
+  /**
+   * The compiled form of a writer schema: one {@link FieldReader} per top-level field, in order.
+   */
+  private static class Plan {
+    private final Schema schema;
+    private final ExhibitDescriptor descriptor;
+    private final FieldReader[] readers;
+    private final int numAttrs;
+    private final String[] frameNames;
+    private final String[] vectorNames;
+    // What the frames and vectors that are missing from the writer schema are read as
+    private final Frame[] emptyFrames;
+    private final Vec[] emptyVectors;
+
+    /**
+     * Compiles the given writer schema. If {@code expected} is not null, the plan reads into its
+     * layout, rather than into the one of the writer schema.
+     */
+    Plan(Schema schema, ExhibitDescriptor requested, Plan expected) {
+      this.schema = schema;
+      if (expected != null) {
+        this.descriptor = expected.descriptor;
+        this.numAttrs = expected.numAttrs;
+        this.frameNames = expected.frameNames;
+        this.vectorNames = expected.vectorNames;
+        this.emptyFrames = expected.emptyFrames;
+        this.emptyVectors = expected.emptyVectors;
+        this.readers = resolve(schema, expected);
+        return;
+      }
+      List<ObsDescriptor.Field> attrFields = Lists.newArrayList();
+      List<String> frames = Lists.newArrayList();
+      List<ObsDescriptor> frameDescs = Lists.newArrayList();
+      List<String> vectors = Lists.newArrayList();
+      List<FieldType> vectorTypes = Lists.newArrayList();
+      List<Schema.Field> fields = schema.getFields();
+      this.readers = new FieldReader[fields.size()];
+      for (int i = 0; i < readers.length; i++) {
+        Schema.Field f = fields.get(i);
+        Schema unwrapped = AvroObsDescriptor.unwrap(f.schema());
+        FieldReader reader = null;
+        if (unwrapped.getType() == Schema.Type.ARRAY) {
+          Schema elementType = unwrapped.getElementType();
+          if (AvroExhibit.isRecordElement(elementType)) {
+            if (requested == null || requested.frames().containsKey(f.name())) {
+              ObsDescriptor requestedColumns = requested == null ? null : requested.frames().get(f.name());
+              FrameReader fr = new FrameReader(f.schema(), frames.size(), requestedColumns, null);
+              frames.add(f.name());
+              frameDescs.add(fr.descriptor);
+              reader = fr;
+            }
+          } else {
+            FieldType ft = AvroObsDescriptor.getFieldType(elementType);
+            if (ft != null && (requested == null || requested.vectors().containsKey(f.name()))) {
+              reader = new VectorReader(f.schema(), vectors.size(), ft);
+              vectors.add(f.name());
+              vectorTypes.add(ft);
+            }
+          }
+        } else {
+          FieldType ft = AvroObsDescriptor.getFieldType(unwrapped);
+          if (ft != null && isRequestedAttribute(requested, f.name())) {
+            reader = new AttrReader(f.schema(), attrFields.size());
+            attrFields.add(new ObsDescriptor.Field(f.name(), ft));
+          }
+        }
+        readers[i] = reader == null ? new SkipReader(f.schema()) : reader;
+      }
+      this.numAttrs = attrFields.size();
+      this.frameNames = frames.toArray(new String[frames.size()]);
+      this.vectorNames = vectors.toArray(new String[vectors.size()]);
+      Map<String, ObsDescriptor> frameMap = Maps.newHashMap();
+      for (int i = 0; i < frameNames.length; i++) {
+        frameMap.put(frameNames[i], frameDescs.get(i));
+      }
+      Map<String, FieldType> vectorMap = Maps.newHashMap();
+      for (int i = 0; i < vectorNames.length; i++) {
+        vectorMap.put(vectorNames[i], vectorTypes.get(i));
+      }
+      this.descriptor = new ExhibitDescriptor(new SimpleObsDescriptor(attrFields),
+          Collections.unmodifiableMap(frameMap), Collections.unmodifiableMap(vectorMap));
+      this.emptyFrames = new Frame[frameNames.length];
+      for (int i = 0; i < emptyFrames.length; i++) {
+        emptyFrames[i] = ColumnarFrame.builder(frameDescs.get(i), 1).build();
+      }
+      this.emptyVectors = new Vec[vectorNames.length];
+      for (int i = 0; i < emptyVectors.length; i++) {
+        emptyVectors[i] = ColumnData.builder(vectorTypes.get(i), 1).build().toVector();
+      }
+    }
+
+    /**
+     * Returns the readers that read the fields of the given writer schema into the layout of the
+     * expected plan, matching them up by name.
+     */
+    private static FieldReader[] resolve(Schema schema, Plan expected) {
+      List<String> frames = Arrays.asList(expected.frameNames);
+      List<String> vectors = Arrays.asList(expected.vectorNames);
+      ExhibitDescriptor layout = expected.descriptor;
+      List<Schema.Field> fields = schema.getFields();
+      FieldReader[] readers = new FieldReader[fields.size()];
+      for (int i = 0; i < readers.length; i++) {
+        Schema.Field f = fields.get(i);
+        Schema unwrapped = AvroObsDescriptor.unwrap(f.schema());
+        FieldReader reader = null;
+        if (frames.contains(f.name())) {
+          if (unwrapped.getType() != Schema.Type.ARRAY
+              || !AvroExhibit.isRecordElement(unwrapped.getElementType())) {
+            throw incompatible(f.name(), "a frame", f.schema());
+          }
+          reader = new FrameReader(f.schema(), frames.indexOf(f.name()), null, layout.frames().get(f.name()));
+        } else if (vectors.contains(f.name())) {
+          FieldType ft = layout.vectors().get(f.name());
+          if (unwrapped.getType() != Schema.Type.ARRAY
+              || AvroObsDescriptor.getFieldType(unwrapped.getElementType()) != ft) {
+            throw incompatible(f.name(), "a vector of " + ft, f.schema());
+          }
+          reader = new VectorReader(f.schema(), vectors.indexOf(f.name()), ft);
+        } else if (layout.attributes().indexOf(f.name()) >= 0) {
+          int index = layout.attributes().indexOf(f.name());
+          FieldType ft = layout.attributes().get(index).type;
+          if (AvroObsDescriptor.getFieldType(unwrapped) != ft) {
+            throw incompatible(f.name(), ft.toString(), f.schema());
+          }
+          reader = new AttrReader(f.schema(), index);
+        }
+        readers[i] = reader == null ? new SkipReader(f.schema()) : reader;
+      }
+      return readers;
+    }
+
+    Exhibit read(Decoder in) throws IOException {
+      State state = new State(numAttrs, frameNames.length, vectorNames.length);
+      for (FieldReader reader : readers) {
+        reader.read(in, state);
+      }
+      Map<String, Frame> frames = Maps.newHashMapWithExpectedSize(frameNames.length);
+      for (int i = 0; i < frameNames.length; i++) {
+        frames.put(frameNames[i], state.frames[i] == null ? emptyFrames[i] : state.frames[i]);
+      }
+      Map<String, Vec> vectors = Maps.newHashMapWithExpectedSize(vectorNames.length);
+      for (int i = 0; i < vectorNames.length; i++) {
+        vectors.put(vectorNames[i], state.vectors[i] == null ? emptyVectors[i] : state.vectors[i]);
+      }
+      return new SimpleExhibit(SimpleObs.of(descriptor.attributes(), state.attrs), frames, vectors);
+    }
+  }
+
+  /**
+   * The values decoded from a single record.
+   */
+  private static class State {
+    final Object[] attrs;
+    final Frame[] frames;
+    final Vec[] vectors;
+    final Utf8 scratch = new Utf8();
+
+    State(int numAttrs, int numFrames, int numVectors) {
+      this.attrs = new Object[numAttrs];
+      this.frames = new Frame[numFrames];
+      this.vectors = new Vec[numVectors];
+    }
+  }
+
+  private interface FieldReader {
+    void read(Decoder in, State state) throws IOException;
+  }
+
+  private static class SkipReader implements FieldReader {
+    private final Schema schema;
+
+    SkipReader(Schema schema) {
+      this.schema = schema;
+    }
+
+    @Override
+    public void read(Decoder in, State state) throws IOException {
+      GenericDatumReader.skip(schema, in);
+    }
+  }
+
+  /**
+   * Reads a primitive value, or a union of a primitive with null, into a column or as an object.
+   */
+  private static class ValueReader {
+    private final Schema.Type type;
+    // The branch of the union that holds null, or -1 if the value is not a union
+    private final int nullBranch;
+
+    ValueReader(Schema schema) {
+      if (schema.getType() == Schema.Type.UNION) {
+        List<Schema> branches = schema.getTypes();
+        this.nullBranch = branches.get(0).getType() == Schema.Type.NULL ? 0 : 1;
+        this.type = branches.get(1 - nullBranch).getType();
+      } else {
+        this.nullBranch = -1;
+        this.type = schema.getType();
+      }
+    }
+
+    void append(Decoder in, ColumnData.Builder column, State state) throws IOException {
+      if (nullBranch >= 0 && in.readIndex() == nullBranch) {
+        column.appendNull();
+        return;
+      }
+      switch (type) {
+        case BOOLEAN:
+          column.appendBoolean(in.readBoolean());
+          break;
+        case INT:
+          column.appendInt(in.readInt());
+          break;
+        case LONG:
+          column.appendLong(in.readLong());
+          break;
+        case FLOAT:
+          column.appendDouble(in.readFloat());
+          break;
+        case DOUBLE:
+          column.appendDouble(in.readDouble());
+          break;
+        case STRING:
+          column.appendString(in.readString(state.scratch).toString());
+          break;
+        default:
+          throw new IllegalStateException("Unsupported type: " + type);
+      }
+    }
+
+    Object read(Decoder in, State state) throws IOException {
+      if (nullBranch >= 0 && in.readIndex() == nullBranch) {
+        return null;
+      }
+      switch (type) {
+        case BOOLEAN:
+          return in.readBoolean();
+        case INT:
+          return in.readInt();
+        case LONG:
+          return in.readLong();
+        case FLOAT:
+          return in.readFloat();
+        case DOUBLE:
+          return in.readDouble();
+        case STRING:
+          return in.readString(state.scratch).toString();
+        default:
+          throw new IllegalStateException("Unsupported type: " + type);
+      }
+    }
+  }
+
+  private static class AttrReader implements FieldReader {
+    private final ValueReader value;
+    private final int index;
+
+    AttrReader(Schema schema, int index) {
+      this.value = new ValueReader(schema);
+      this.index = index;
+    }
+
+    @Override
+    public void read(Decoder in, State state) throws IOException {
+      state.attrs[index] = value.read(in, state);
+    }
+  }
+
+  /**
+   * Base class for the readers of array fields, which may themselves be wrapped in a nullable union.
+   */
+  private abstract static class ArrayReader implements FieldReader {
+    private final int nullBranch;
+
+    ArrayReader(Schema schema) {
+      if (schema.getType() == Schema.Type.UNION) {
+        List<Schema> branches = schema.getTypes();
+        this.nullBranch = branches.get(0).getType() == Schema.Type.NULL ? 0 : 1;
+      } else {
+        this.nullBranch = -1;
+      }
+    }
+
+    @Override
+    public void read(Decoder in, State state) throws IOException {
+      if (nullBranch >= 0 && in.readIndex() == nullBranch) {
+        finish(state);
+        return;
+      }
+      for (long n = in.readArrayStart(); n != 0; n = in.arrayNext()) {
+        for (long i = 0; i < n; i++) {
+          readElement(in, state);
+        }
+      }
+      finish(state);
+    }
+
+    abstract void readElement(Decoder in, State state) throws IOException;
+
+    abstract void finish(State state);
+  }
+
+  private static class VectorReader extends ArrayReader {
+    private final int index;
+    private final FieldType type;
+    private final ValueReader element;
+    private ColumnData.Builder column;
+
+    VectorReader(Schema schema, int index, FieldType type) {
+      super(schema);
+      this.index = index;
+      this.type = type;
+      this.element = new ValueReader(AvroObsDescriptor.unwrap(schema).getElementType());
+    }
+
+    @Override
+    public void read(Decoder in, State state) throws IOException {
+      this.column = ColumnData.builder(type);
+      super.read(in, state);
+    }
+
+    @Override
+    void readElement(Decoder in, State state) throws IOException {
+      element.append(in, column, state);
+    }
+
+    @Override
+    void finish(State state) {
+      state.vectors[index] = column.build().toVector();
+      column = null;
+    }
+  }
+
+  private static class FrameReader extends ArrayReader {
+    private final int index;
+    private final ObsDescriptor descriptor;
+    // The single-field wrapper records (WRAPPER) and nullable unions (the branch that holds null)
+    // that enclose the record that holds the frame's columns
+    private final int[] wrappers;
+    // The column that each field of the record is read into, or -1 to skip the field
+    private final int[] columnIndices;
+    // The columns of the layout that the record does not have, which are filled with nulls
+    private final int[] missing;
+    private final ValueReader[] values;
+    private final Schema[] skips;
+    private final FieldType[] types;
+    private ColumnData.Builder[] columns;
+
+    /**
+     * Reads the requested columns of the record in the order of the record, or, if the layout is
+     * not null, the columns of the layout in the order of the layout.
+     */
+    FrameReader(Schema schema, int index, ObsDescriptor requested, ObsDescriptor layout) {
+      super(schema);
+      this.index = index;
+      List<Integer> path = Lists.newArrayList();
+      Schema record = AvroObsDescriptor.unwrap(schema).getElementType();
+      while (true) {
+        if (record.getType() == Schema.Type.UNION && AvroObsDescriptor.unwrap(record) != record) {
+          List<Schema> branches = record.getTypes();
+          int nullBranch = branches.get(0).getType() == Schema.Type.NULL ? 0 : 1;
+          path.add(nullBranch);
+          record = branches.get(1 - nullBranch);
+        } else if (record.getType() == Schema.Type.RECORD && AvroExhibit.isWrapper(record)) {
+          path.add(WRAPPER);
+          record = record.getFields().get(0).schema();
+        } else if (record.getType() == Schema.Type.RECORD) {
+          break;
+        } else {
+          throw new UnsupportedOperationException("Not a record: " + record);
+        }
+      }
+      this.wrappers = new int[path.size()];
+      for (int i = 0; i < wrappers.length; i++) {
+        wrappers[i] = path.get(i);
+      }
+
+      List<Schema.Field> fields = record.getFields();
+      List<ObsDescriptor.Field> columnFields = Lists.newArrayList();
+      this.columnIndices = new int[fields.size()];
+      this.values = new ValueReader[fields.size()];
+      this.skips = new Schema[fields.size()];
+      boolean[] present = new boolean[layout == null ? 0 : layout.size()];
+      for (int i = 0; i < fields.size(); i++) {
+        Schema.Field f = fields.get(i);
+        FieldType ft = AvroObsDescriptor.getFieldType(f.schema());
+        int column = -1;
+        if (layout != null) {
+          column = layout.indexOf(f.name());
+          if (column >= 0 && ft != layout.get(column).type) {
+            throw incompatible(f.name(), layout.get(column).type.toString(), f.schema());
+          }
+        } else if (ft != null && isRequestedColumn(requested, f.name())) {
+          column = columnFields.size();
+          columnFields.add(new ObsDescriptor.Field(f.name(), ft));
+        }
+        columnIndices[i] = column;
+        if (column >= 0) {
+          values[i] = new ValueReader(f.schema());
+          if (layout != null) {
+            present[column] = true;
+          }
+        } else {
+          skips[i] = f.schema();
+        }
+      }
+      List<Integer> absent = Lists.newArrayList();
+      for (int i = 0; i < present.length; i++) {
+        if (!present[i]) {
+          absent.add(i);
+        }
+      }
+      this.missing = Ints.toArray(absent);
+      this.descriptor = layout == null ? new SimpleObsDescriptor(columnFields) : layout;
+      this.types = new FieldType[descriptor.size()];
+      for (int i = 0; i < types.length; i++) {
+        types[i] = descriptor.get(i).type;
+      }
+    }
+
+    @Override
+    public void read(Decoder in, State state) throws IOException {
+      this.columns = newColumns(types, 16);
+      super.read(in, state);
+    }
+
+    @Override
+    void readElement(Decoder in, State state) throws IOException {
+      for (int w : wrappers) {
+        // Null elements are dropped, since there is no row to put them in
+        if (w != WRAPPER && in.readIndex() == w) {
+          return;
+        }
+      }
+      for (int i = 0; i < columnIndices.length; i++) {
+        if (columnIndices[i] < 0) {
+          GenericDatumReader.skip(skips[i], in);
+        } else {
+          values[i].append(in, columns[columnIndices[i]], state);
+        }
+      }
+      for (int c : missing) {
+        columns[c].appendNull();
+      }
+    }
+
+    @Override
+    void finish(State state) {
+      ColumnData[] built = new ColumnData[columns.length];
+      for (int i = 0; i < built.length; i++) {
+        built[i] = columns[i].build();
+      }
+      state.frames[index] = ColumnarFrame.of(descriptor, built);
+      columns = null;
+    }
+  }
+}
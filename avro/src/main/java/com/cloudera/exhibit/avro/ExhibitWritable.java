@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.avro;
+
+import com.cloudera.exhibit.core.Exhibit;
+import com.cloudera.exhibit.core.columnar.ExhibitCodec;
+import org.apache.hadoop.io.Writable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A {@link Writable} wrapper for an {@link Exhibit}, stored in the self-describing form written by
+ * {@link ExhibitCodec#writeExhibit(Exhibit, DataOutput)}.
+ */
+public class ExhibitWritable implements Writable {
+
+  private Exhibit exhibit;
+
+  public ExhibitWritable() {
+  }
+
+  public ExhibitWritable(Exhibit exhibit) {
+    this.exhibit = exhibit;
+  }
+
+  public Exhibit get() {
+    return exhibit;
+  }
+
+  public void set(Exhibit exhibit) {
+    this.exhibit = exhibit;
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    ExhibitCodec.writeExhibit(exhibit, out);
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    this.exhibit = ExhibitCodec.readExhibit(in);
+  }
+}
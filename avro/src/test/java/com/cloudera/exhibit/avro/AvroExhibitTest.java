@@ -17,12 +17,28 @@ package com.cloudera.exhibit.avro;
 import com.cloudera.exhibit.core.*;
 import com.cloudera.exhibit.core.ObsDescriptor.Field;
 import com.cloudera.exhibit.core.FieldType;
+import com.cloudera.exhibit.core.columnar.ColumnarFrame;
+import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
+import com.cloudera.exhibit.core.vector.DoubleVector;
 import com.cloudera.exhibit.core.vector.Vector;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import org.apache.avro.Schema;
 import org.apache.avro.SchemaBuilder;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
 import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 
 import java.util.List;
 import java.util.Map;
@@ -31,6 +47,8 @@ import org.junit.Test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertSame;
 
 public class AvroExhibitTest {
 
@@ -151,4 +169,244 @@ public class AvroExhibitTest {
     assertEquals(2.0, v.get(1));
     assertEquals(3.0, v.get(2));
   }
+
+  @Test
+  public void testExhibitFactory() {
+    AvroExhibitFactory factory = AvroExhibitFactory.forSchema(outer1);
+    assertSame(factory, AvroExhibitFactory.forSchema(outer1));
+    assertSame(factory, AvroExhibitFactory.forSchema(new Schema.Parser().parse(outer1.toString())));
+
+    GenericData.Record o1 = new GenericData.Record(outer1);
+    o1.put("id", 17);
+    o1.put("short", "jw");
+    Exhibit exhibit = factory.create(o1);
+    assertEquals(17, exhibit.attributes().get("id"));
+    assertEquals(0, exhibit.frames().get("ifoo").size());
+  }
+
+  @Test
+  public void testAvroExhibitListVector() {
+    Schema schema = SchemaBuilder.record("rec").fields()
+        .name("vec").type(Schema.createArray(Schema.create(Schema.Type.LONG))).noDefault()
+        .endRecord();
+    GenericData.Record o1 = new GenericData.Record(schema);
+    o1.put("vec", new GenericData.Array<Long>(schema.getField("vec").schema(), ImmutableList.of(1L, 2L)));
+    Vec v = AvroExhibit.create(o1).vectors().get("vec");
+    assertEquals(2, v.size());
+    assertEquals(2L, v.get(1));
+  }
+
+  @Test
+  public void testPositionalObs() {
+    AvroObsDescriptor desc = new AvroObsDescriptor(inner);
+    assertSame(desc.get(0), desc.get(0));
+    assertEquals(new Field("f3", FieldType.INTEGER), desc.get(2));
+
+    GenericData.Record in1 = new GenericData.Record(inner);
+    in1.put("f1", new org.apache.avro.util.Utf8("josh"));
+    in1.put("f3", 29);
+    AvroFrame frame = new AvroFrame(desc, ImmutableList.of(in1), true);
+    Obs obs = frame.get(0);
+    assertEquals("josh", obs.get(0));
+    assertSame(obs.get(0), obs.get("f1"));
+    assertNull(obs.get(1));
+    assertEquals(29, obs.get(2));
+  }
+
+  @Test
+  public void testObsWithOtherDescriptor() {
+    GenericData.Record in1 = new GenericData.Record(inner);
+    in1.put("f1", new org.apache.avro.util.Utf8("josh"));
+    in1.put("f3", 29);
+    ObsDescriptor od = SimpleObsDescriptor.builder()
+        .intField("f3")
+        .stringField("f1")
+        .longField("missing")
+        .build();
+    Obs obs = new AvroObs(od, in1);
+    assertEquals(29, obs.get(0));
+    assertEquals(29, obs.getInt(0));
+    assertEquals("josh", obs.get(1));
+    assertNull(obs.get(2));
+    assertTrue(obs.isNull(2));
+  }
+
+  @Test
+  public void testColumnarDatumReaderResolvesWriterSchemas() throws Exception {
+    Schema schema = columnarSchema();
+    // Same fields in another order, an added field at both levels, and no f2 or vec
+    Schema otherInner = SchemaBuilder.record("foo").fields()
+        .requiredInt("f3")
+        .optionalString("added")
+        .nullableString("f1", "")
+        .endRecord();
+    Schema other = SchemaBuilder.record("bar").fields()
+        .optionalString("short")
+        .optionalLong("added")
+        .name("ifoo").type(Schema.createArray(otherInner)).noDefault()
+        .requiredInt("id")
+        .endRecord();
+    GenericData.Record in1 = new GenericData.Record(otherInner);
+    in1.put("f3", 41);
+    in1.put("added", "x");
+    in1.put("f1", "kate");
+    GenericData.Record o1 = new GenericData.Record(other);
+    o1.put("short", "kw");
+    o1.put("added", 3L);
+    o1.put("ifoo", Lists.newArrayList(in1));
+    o1.put("id", 23);
+
+    File first = writeFile(schema, columnarRecord(schema));
+    File second = writeFile(other, o1);
+    List<Exhibit> exhibits = Lists.newArrayList();
+    for (File file : ImmutableList.of(first, second)) {
+      DataFileReader<Exhibit> reader = new DataFileReader<Exhibit>(file, new ColumnarDatumReader(schema));
+      try {
+        exhibits.add(reader.next());
+      } finally {
+        reader.close();
+      }
+    }
+    assertEquals(exhibits.get(0).descriptor().attributes(), exhibits.get(1).descriptor().attributes());
+    assertEquals(exhibits.get(0).descriptor().frames(), exhibits.get(1).descriptor().frames());
+    assertEquals(exhibits.get(0).descriptor().vectors(), exhibits.get(1).descriptor().vectors());
+
+    Exhibit e = exhibits.get(1);
+    assertEquals(23, e.attributes().get("id"));
+    assertEquals("kw", e.attributes().get("short"));
+    Frame f = e.frames().get("ifoo");
+    assertEquals(1, f.size());
+    assertEquals("kate", f.$("f1").get(0));
+    assertNull(f.$("f2").get(0));
+    assertEquals(41, f.$("f3").get(0));
+    assertEquals(0, e.vectors().get("vec").size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testColumnarDatumReaderRejectsChangedTypes() throws Exception {
+    Schema other = SchemaBuilder.record("bar").fields()
+        .requiredLong("id")
+        .endRecord();
+    new ColumnarDatumReader(columnarSchema()).setSchema(other);
+  }
+
+  private static File writeFile(Schema schema, GenericData.Record record) throws IOException {
+    File file = File.createTempFile("exhibit", ".avro");
+    file.deleteOnExit();
+    DataFileWriter<GenericData.Record> writer = new DataFileWriter<GenericData.Record>(
+        new GenericDatumWriter<GenericData.Record>(schema));
+    writer.create(schema, file);
+    writer.append(record);
+    writer.close();
+    return file;
+  }
+
+  private static byte[] toBytes(GenericData.Record record) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    BinaryEncoder enc = EncoderFactory.get().binaryEncoder(baos, null);
+    new GenericDatumWriter<GenericData.Record>(record.getSchema()).write(record, enc);
+    enc.flush();
+    return baos.toByteArray();
+  }
+
+  private GenericData.Record columnarRecord(Schema schema) {
+    GenericData.Record in1 = new GenericData.Record(inner);
+    in1.put("f1", null);
+    in1.put("f2", true);
+    in1.put("f3", 1729);
+    GenericData.Record in2 = new GenericData.Record(inner);
+    in2.put("f1", "josh");
+    in2.put("f3", 29);
+    GenericData.Record o1 = new GenericData.Record(schema);
+    o1.put("id", 17);
+    o1.put("ifoo", Lists.newArrayList(in1, null, in2));
+    o1.put("short", "jw");
+    o1.put("vec", ImmutableList.of(1.5, 2.5));
+    return o1;
+  }
+
+  private Schema columnarSchema() {
+    return SchemaBuilder.record("bar").fields()
+        .requiredInt("id")
+        .name("ifoo").type(createNullableType(Schema.createArray(createNullableType(inner)))).noDefault()
+        .optionalString("short")
+        .name("vec").type(Schema.createArray(Schema.create(Schema.Type.DOUBLE))).noDefault()
+        .endRecord();
+  }
+
+  @Test
+  public void testColumnarDatumReader() throws Exception {
+    Schema schema = columnarSchema();
+    ColumnarDatumReader reader = new ColumnarDatumReader(schema);
+    Exhibit exhibit = reader.read(null, DecoderFactory.get().binaryDecoder(toBytes(columnarRecord(schema)), null));
+    assertEquals(reader.descriptor().attributes(), exhibit.attributes().descriptor());
+    assertEquals(reader.descriptor().frames().get("ifoo"), exhibit.frames().get("ifoo").descriptor());
+    assertEquals(17, exhibit.attributes().get("id"));
+    assertEquals("jw", exhibit.attributes().get("short"));
+
+    Frame f = exhibit.frames().get("ifoo");
+    assertTrue(f instanceof ColumnarFrame);
+    assertEquals("Null elements are dropped", 2, f.size());
+    assertNull(f.$("f1").get(0));
+    assertEquals("josh", f.$("f1").get(1));
+    assertEquals(true, f.$("f2").get(0));
+    assertNull(f.$("f2").get(1));
+    assertEquals(1729, f.$("f3").get(0));
+    assertEquals(29, f.$("f3").get(1));
+
+    Vec v = exhibit.vectors().get("vec");
+    assertTrue(v instanceof DoubleVector);
+    assertEquals(2, v.size());
+    assertEquals(2.5, v.get(1));
+  }
+
+  @Test
+  public void testColumnarDatumReaderProjection() throws Exception {
+    Schema schema = columnarSchema();
+    ObsDescriptor f3 = SimpleObsDescriptor.builder().intField("f3").build();
+    ExhibitDescriptor requested = new ExhibitDescriptor(
+        SimpleObsDescriptor.builder().stringField("short").build(),
+        ImmutableMap.of("ifoo", f3),
+        ImmutableMap.<String, FieldType>of());
+    ColumnarDatumReader reader = new ColumnarDatumReader(schema, requested);
+    byte[] bytes = toBytes(columnarRecord(schema));
+    // Read the record twice from one decoder to check that the skipped fields were fully consumed
+    byte[] twice = new byte[2 * bytes.length];
+    System.arraycopy(bytes, 0, twice, 0, bytes.length);
+    System.arraycopy(bytes, 0, twice, bytes.length, bytes.length);
+    BinaryDecoder dec = DecoderFactory.get().binaryDecoder(twice, null);
+    for (int i = 0; i < 2; i++) {
+      Exhibit exhibit = reader.read(null, dec);
+      assertEquals(1, exhibit.attributes().size());
+      assertEquals("jw", exhibit.attributes().get("short"));
+      assertEquals(f3, exhibit.frames().get("ifoo").descriptor());
+      assertEquals(29, exhibit.frames().get("ifoo").$("f3").get(1));
+      assertTrue(exhibit.vectors().isEmpty());
+    }
+    assertTrue(dec.isEnd());
+  }
+
+  @Test
+  public void testProjectSchema() throws Exception {
+    Schema schema = columnarSchema();
+    ObsDescriptor f3 = SimpleObsDescriptor.builder().intField("f3").build();
+    ExhibitDescriptor requested = new ExhibitDescriptor(
+        SimpleObsDescriptor.builder().stringField("short").build(),
+        ImmutableMap.of("ifoo", f3),
+        ImmutableMap.<String, FieldType>of());
+    Schema projected = AvroExhibit.projectSchema(schema, requested);
+    ExhibitDescriptor desc = AvroExhibit.createDescriptor(projected);
+    assertEquals(requested.attributes(), desc.attributes());
+    assertEquals(f3, desc.frames().get("ifoo"));
+    assertTrue(desc.vectors().isEmpty());
+
+    GenericDatumReader<GenericData.Record> reader = new GenericDatumReader<GenericData.Record>(schema, projected);
+    GenericData.Record rec = reader.read(null,
+        DecoderFactory.get().binaryDecoder(toBytes(columnarRecord(schema)), null));
+    assertEquals(2, rec.getSchema().getFields().size());
+    assertEquals("jw", rec.get("short").toString());
+    GenericData.Record in1 = (GenericData.Record) ((List) rec.get("ifoo")).get(0);
+    assertEquals(1, in1.getSchema().getFields().size());
+    assertEquals(1729, in1.get("f3"));
+  }
 }
@@ -55,4 +55,29 @@ public class Column extends AbstractList<Object> implements Vec {
   public int size() {
     return frame.size();
   }
+
+  @Override
+  public boolean isNull(int i) {
+    return frame.isNull(i, index);
+  }
+
+  @Override
+  public double getDouble(int i) {
+    return frame.getDouble(i, index);
+  }
+
+  @Override
+  public long getLong(int i) {
+    return frame.getLong(i, index);
+  }
+
+  @Override
+  public int getInt(int i) {
+    return frame.getInt(i, index);
+  }
+
+  @Override
+  public boolean getBoolean(int i) {
+    return frame.getBoolean(i, index);
+  }
 }
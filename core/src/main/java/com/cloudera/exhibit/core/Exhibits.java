@@ -17,6 +17,7 @@ package com.cloudera.exhibit.core;
 import com.cloudera.exhibit.core.simple.SimpleExhibit;
 import com.cloudera.exhibit.core.simple.SimpleFrame;
 import com.cloudera.exhibit.core.simple.SimpleObs;
+import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
 import com.cloudera.exhibit.core.vector.Vector;
 import com.cloudera.exhibit.core.vector.VectorBuilder;
 import com.google.common.base.Function;
@@ -28,6 +29,9 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -63,6 +67,164 @@ public class Exhibits {
     return names;
   }
 
+  /**
+   * Returns the parts of the given descriptor that a {@link Calculator} or {@link Functor} reads:
+   * what it reports if it is {@link ReferenceAware}, and the whole descriptor otherwise.
+   */
+  public static ExhibitDescriptor references(Object computation, ExhibitDescriptor descriptor) {
+    if (computation instanceof ReferenceAware) {
+      return ((ReferenceAware) computation).references(descriptor);
+    }
+    return descriptor;
+  }
+
+  /**
+   * Returns a cursor over the results of the given calculator for the exhibit: one that streams them
+   * if it is a {@link StreamingCalculator}, and one over the results of {@code apply} otherwise. The
+   * cursor should be closed in a finally block.
+   */
+  public static ObsCursor stream(Calculator calculator, Exhibit exhibit) {
+    if (calculator instanceof StreamingCalculator) {
+      return ((StreamingCalculator) calculator).stream(exhibit);
+    }
+    final Iterator<Obs> iter = calculator.apply(exhibit).iterator();
+    return new ObsCursor() {
+      @Override
+      public boolean hasNext() {
+        return iter.hasNext();
+      }
+
+      @Override
+      public Obs next() {
+        return iter.next();
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+
+  /**
+   * Returns the union of the parts of the given descriptor that are read by any of the given
+   * {@link Calculator}s or {@link Functor}s.
+   */
+  public static ExhibitDescriptor references(ExhibitDescriptor descriptor, Iterable<?> computations) {
+    List<ExhibitDescriptor> refs = Lists.newArrayList();
+    for (Object c : computations) {
+      refs.add(references(c, descriptor));
+    }
+    return union(descriptor, refs);
+  }
+
+  /**
+   * Returns the subset of the given descriptor that covers all of the given references. Attributes
+   * and frame columns keep the order they have in the descriptor.
+   */
+  public static ExhibitDescriptor union(ExhibitDescriptor descriptor, Iterable<ExhibitDescriptor> references) {
+    Set<String> attrs = Sets.newHashSet();
+    Map<String, Set<String>> frames = Maps.newHashMap();
+    Set<String> vectors = Sets.newHashSet();
+    for (ExhibitDescriptor ref : references) {
+      for (ObsDescriptor.Field f : ref.attributes()) {
+        attrs.add(f.name);
+      }
+      for (Map.Entry<String, ObsDescriptor> e : ref.frames().entrySet()) {
+        Set<String> columns = frames.get(e.getKey());
+        if (columns == null) {
+          columns = Sets.newHashSet();
+          frames.put(e.getKey(), columns);
+        }
+        for (ObsDescriptor.Field f : e.getValue()) {
+          columns.add(f.name);
+        }
+      }
+      vectors.addAll(ref.vectors().keySet());
+    }
+    return project(descriptor, attrs, frames, vectors);
+  }
+
+  /**
+   * Returns the subset of the given descriptor that is named in {@code names}: attributes, vectors,
+   * frames (with all of their columns), or single frame columns written as {@code frame.column}.
+   * Names that are not in the descriptor are ignored.
+   */
+  public static ExhibitDescriptor project(ExhibitDescriptor descriptor, Collection<String> names) {
+    Set<String> attrs = Sets.newHashSet();
+    Map<String, Set<String>> frames = Maps.newHashMap();
+    Set<String> vectors = Sets.newHashSet();
+    for (String name : names) {
+      if (descriptor.frames().containsKey(name)) {
+        frames.put(name, null);
+      } else if (descriptor.vectors().containsKey(name)) {
+        vectors.add(name);
+      } else if (descriptor.attributes().indexOf(name) >= 0) {
+        attrs.add(name);
+      } else {
+        int dot = name.indexOf('.');
+        String frame = dot > 0 ? name.substring(0, dot) : null;
+        if (frame != null && descriptor.frames().containsKey(frame)) {
+          Set<String> columns = frames.get(frame);
+          if (columns == null) {
+            if (frames.containsKey(frame)) {
+              continue; // already reads the whole frame
+            }
+            columns = Sets.newHashSet();
+            frames.put(frame, columns);
+          }
+          columns.add(name.substring(dot + 1));
+        }
+      }
+    }
+    return project(descriptor, attrs, frames, vectors);
+  }
+
+  public static ExhibitDescriptor project(ExhibitDescriptor descriptor, String... names) {
+    return project(descriptor, Arrays.asList(names));
+  }
+
+  // A null column set in frames means all of that frame's columns. Every frame that is kept keeps at
+  // least one column, so that the row counts of frames are not lost (e.g., for SELECT COUNT(*)).
+  private static ExhibitDescriptor project(ExhibitDescriptor descriptor, Set<String> attrs,
+      Map<String, Set<String>> frames, Set<String> vectors) {
+    Map<String, ObsDescriptor> frameDescs = Maps.newHashMap();
+    for (Map.Entry<String, ObsDescriptor> e : descriptor.frames().entrySet()) {
+      if (frames.containsKey(e.getKey())) {
+        Set<String> columns = frames.get(e.getKey());
+        ObsDescriptor od = e.getValue();
+        if (columns != null) {
+          od = select(od, columns);
+          if (od.size() == 0 && e.getValue().size() > 0) {
+            od = select(e.getValue(), Sets.newHashSet(e.getValue().get(0).name));
+          }
+        }
+        frameDescs.put(e.getKey(), od);
+      }
+    }
+    Map<String, FieldType> vectorTypes = Maps.newHashMap();
+    for (Map.Entry<String, FieldType> e : descriptor.vectors().entrySet()) {
+      if (vectors.contains(e.getKey())) {
+        vectorTypes.put(e.getKey(), e.getValue());
+      }
+    }
+    return new ExhibitDescriptor(select(descriptor.attributes(), attrs), frameDescs, vectorTypes);
+  }
+
+  private static ObsDescriptor select(ObsDescriptor od, Set<String> names) {
+    List<ObsDescriptor.Field> fields = Lists.newArrayList();
+    for (ObsDescriptor.Field f : od) {
+      if (names.contains(f.name)) {
+        fields.add(f);
+      }
+    }
+    return fields.size() == od.size() ? od : new SimpleObsDescriptor(fields);
+  }
+
   public static Exhibit defaultValues(
       ExhibitDescriptor descriptor, FieldType ft, Object value, Object... args) {
     Map<FieldType, Object> defaults = Maps.newHashMap(DV);
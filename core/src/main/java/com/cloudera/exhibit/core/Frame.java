@@ -21,6 +21,26 @@ public abstract class Frame implements Iterable<Obs>, Serializable {
   public abstract int size();
   public abstract Obs get(int rowIndex);
 
+  public boolean isNull(int rowIndex, int columnIndex) {
+    return get(rowIndex).isNull(columnIndex);
+  }
+
+  public double getDouble(int rowIndex, int columnIndex) {
+    return get(rowIndex).getDouble(columnIndex);
+  }
+
+  public long getLong(int rowIndex, int columnIndex) {
+    return get(rowIndex).getLong(columnIndex);
+  }
+
+  public int getInt(int rowIndex, int columnIndex) {
+    return get(rowIndex).getInt(columnIndex);
+  }
+
+  public boolean getBoolean(int rowIndex, int columnIndex) {
+    return get(rowIndex).getBoolean(columnIndex);
+  }
+
   public Column $(int columnIndex) {
     return Column.create(this, columnIndex);
   }
@@ -32,6 +32,33 @@ public abstract class Obs implements Iterable<Object>, Serializable {
     return clazz.cast(get(name));
   }
 
+  // Typed accessors: subclasses that store primitive values should override these
+  // to avoid boxing. Null values are reported via isNull and read as zero/false.
+
+  public boolean isNull(int index) {
+    return get(index) == null;
+  }
+
+  public double getDouble(int index) {
+    Object v = get(index);
+    return v == null ? 0.0 : ((Number) v).doubleValue();
+  }
+
+  public long getLong(int index) {
+    Object v = get(index);
+    return v == null ? 0L : ((Number) v).longValue();
+  }
+
+  public int getInt(int index) {
+    Object v = get(index);
+    return v == null ? 0 : ((Number) v).intValue();
+  }
+
+  public boolean getBoolean(int index) {
+    Object v = get(index);
+    return v != null && (Boolean) v;
+  }
+
   public Iterator<Object> iterator() {
     return new Iterator<Object>() {
       int offset = 0;
@@ -70,6 +97,24 @@ public abstract class Obs implements Iterable<Object>, Serializable {
     }
   };
 
+  /**
+   * Two observations are considered equal if they share a descriptor and contain
+   * equal values, regardless of how those values are stored.
+   */
+  protected static boolean valuesEqual(Obs obs, Obs other) {
+    if (!obs.descriptor().equals(other.descriptor())) {
+      return false;
+    }
+    for (int i = 0; i < obs.descriptor().size(); i++) {
+      Object v = obs.get(i);
+      Object ov = other.get(i);
+      if (v == null ? ov != null : !v.equals(ov)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder("[");
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * An iterator over the results of a {@link Calculator} that may hold on to resources, like an open
+ * cursor over a query result, until it is closed. It closes itself once it is exhausted, and
+ * closing it more than once has no effect.
+ */
+public interface ObsCursor extends Iterator<Obs>, Closeable {
+  @Override
+  void close();
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core;
+
+/**
+ * Implemented by {@link Calculator}s and {@link Functor}s that can report which parts of an
+ * exhibit they read, so that the readers of exhibits can skip decoding everything else. See
+ * {@link Exhibits#references(Object, ExhibitDescriptor)}.
+ */
+public interface ReferenceAware {
+  /**
+   * Returns the subset of the given descriptor (attributes, frames and the columns of each frame
+   * that are used, and vectors) that this computation may read. It must not leave out anything
+   * that the computation could reference, but it may include more than it needs to.
+   */
+  ExhibitDescriptor references(ExhibitDescriptor descriptor);
+}
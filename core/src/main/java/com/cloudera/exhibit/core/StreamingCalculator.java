@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core;
+
+/**
+ * Implemented by {@link Calculator}s that can hand back their results one row at a time as they
+ * are computed, instead of materializing all of them first, so that callers that only forward each
+ * row can work in memory proportional to a row rather than to the result. See
+ * {@link Exhibits#stream(Calculator, Exhibit)}.
+ */
+public interface StreamingCalculator extends Calculator {
+  /**
+   * Returns a cursor over the results of this calculator for the given exhibit. The cursor must be
+   * closed (or exhausted) before the calculator is applied to another exhibit; the calculator may
+   * close it itself when that happens, or when it is cleaned up.
+   */
+  ObsCursor stream(Exhibit exhibit);
+}
@@ -26,4 +26,17 @@ public interface Vec extends Iterable<Object>, Serializable {
   Object get(int index);
 
   int size();
+
+  // Typed accessors that do not box the underlying value. Null values are
+  // reported via isNull and read as zero/false.
+
+  boolean isNull(int index);
+
+  double getDouble(int index);
+
+  long getLong(int index);
+
+  int getInt(int index);
+
+  boolean getBoolean(int index);
 }
@@ -17,10 +17,12 @@ package com.cloudera.exhibit.core.calculators;
 import com.cloudera.exhibit.core.Calculator;
 import com.cloudera.exhibit.core.Exhibit;
 import com.cloudera.exhibit.core.ExhibitDescriptor;
+import com.cloudera.exhibit.core.Exhibits;
 import com.cloudera.exhibit.core.Obs;
 import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.core.ReferenceAware;
 
-public class LookupCalculator implements Calculator {
+public class LookupCalculator implements Calculator, ReferenceAware {
 
   private final String frame;
 
@@ -33,6 +35,11 @@ public class LookupCalculator implements Calculator {
     return descriptor.frames().get(frame);
   }
 
+  @Override
+  public ExhibitDescriptor references(ExhibitDescriptor descriptor) {
+    return Exhibits.project(descriptor, frame);
+  }
+
   @Override
   public void cleanup() {
   }
@@ -17,8 +17,10 @@ package com.cloudera.exhibit.core.calculators;
 import com.cloudera.exhibit.core.Calculator;
 import com.cloudera.exhibit.core.Exhibit;
 import com.cloudera.exhibit.core.ExhibitDescriptor;
+import com.cloudera.exhibit.core.Exhibits;
 import com.cloudera.exhibit.core.Obs;
 import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.core.ReferenceAware;
 import com.cloudera.exhibit.core.simple.SimpleObs;
 import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
 import com.google.common.base.Function;
@@ -34,7 +36,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-public class PivotCalculator implements Calculator {
+public class PivotCalculator implements Calculator, ReferenceAware {
 
   public static class Key implements Serializable {
     String name;
@@ -82,6 +84,11 @@ public class PivotCalculator implements Calculator {
     return new SimpleObsDescriptor(idFields);
   }
 
+  @Override
+  public ExhibitDescriptor references(ExhibitDescriptor descriptor) {
+    return Exhibits.references(fc, descriptor);
+  }
+
   @Override
   public void cleanup() {
     fc.cleanup();
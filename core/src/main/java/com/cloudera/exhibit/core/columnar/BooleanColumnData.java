@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core.columnar;
+
+import com.cloudera.exhibit.core.FieldType;
+import com.cloudera.exhibit.core.vector.BooleanVector;
+import com.cloudera.exhibit.core.vector.Vector;
+
+/**
+ * Column storage for BOOLEAN fields.
+ */
+public class BooleanColumnData extends ColumnData {
+
+  private boolean[] values;
+
+  BooleanColumnData(int capacity) {
+    super(FieldType.BOOLEAN);
+    this.values = new boolean[capacity];
+  }
+
+  public boolean[] getData() {
+    return values;
+  }
+
+  @Override
+  public boolean getBoolean(int row) {
+    return values[row];
+  }
+
+  @Override
+  public Object get(int row) {
+    return nulls.get(row) ? null : (Object) values[row];
+  }
+
+  void append(boolean value) {
+    ensureCapacity(size + 1);
+    values[size++] = value;
+  }
+
+  @Override
+  public Vector toVector() {
+    trim();
+    return new BooleanVector(values, nulls);
+  }
+
+  @Override
+  ColumnData gather(int[] rows, int count) {
+    BooleanColumnData out = new BooleanColumnData(count);
+    for (int i = 0; i < count; i++) {
+      out.values[i] = values[rows[i]];
+    }
+    return gatherNulls(out, rows, count);
+  }
+
+  @Override
+  protected void set(int row, Object value) {
+    values[row] = (Boolean) getType().cast(value);
+  }
+
+  @Override
+  protected void ensureCapacity(int capacity) {
+    if (capacity > values.length) {
+      values = resize(values, grow(values.length, capacity));
+    }
+  }
+
+  @Override
+  protected void trim() {
+    values = resize(values, size);
+  }
+}
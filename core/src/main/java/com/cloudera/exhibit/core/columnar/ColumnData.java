@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core.columnar;
+
+import com.cloudera.exhibit.core.FieldType;
+import com.cloudera.exhibit.core.vector.FloatVector;
+import com.cloudera.exhibit.core.vector.GenericVector;
+import com.cloudera.exhibit.core.vector.ShortVector;
+import com.cloudera.exhibit.core.vector.Vector;
+import com.google.common.collect.Lists;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The storage for a single column of a {@link ColumnarFrame}: a primitive (or dictionary-encoded)
+ * array of values along with a bitmap that marks which of the rows are null.
+ */
+public abstract class ColumnData implements Serializable {
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private final FieldType type;
+  protected final BitSet nulls;
+  protected int size;
+
+  public static Builder builder(FieldType type) {
+    return builder(type, DEFAULT_CAPACITY);
+  }
+
+  public static Builder builder(FieldType type, int capacity) {
+    return new Builder(create(type, capacity));
+  }
+
+  static ColumnData create(FieldType type, int capacity) {
+    capacity = Math.max(capacity, 1);
+    switch (type) {
+      case FLOAT:
+      case DOUBLE:
+        return new DoubleColumnData(type, capacity);
+      case LONG:
+        return new LongColumnData(capacity);
+      case SHORT:
+      case INTEGER:
+        return new IntColumnData(type, capacity);
+      case BOOLEAN:
+        return new BooleanColumnData(capacity);
+      case STRING:
+        return new StringColumnData(capacity);
+      default:
+        return new ObjectColumnData(type, capacity);
+    }
+  }
+
+  protected ColumnData(FieldType type) {
+    this.type = type;
+    this.nulls = new BitSet();
+  }
+
+  public FieldType getType() {
+    return type;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isNull(int row) {
+    return nulls.get(row);
+  }
+
+  public boolean hasNulls() {
+    return !nulls.isEmpty();
+  }
+
+  /**
+   * Returns the bitmap of null rows for this column; a set bit means the row is null.
+   */
+  public BitSet getNulls() {
+    return nulls;
+  }
+
+  public abstract Object get(int row);
+
+  public double getDouble(int row) {
+    Object v = get(row);
+    return v == null ? 0.0 : ((Number) v).doubleValue();
+  }
+
+  public long getLong(int row) {
+    Object v = get(row);
+    return v == null ? 0L : ((Number) v).longValue();
+  }
+
+  public int getInt(int row) {
+    Object v = get(row);
+    return v == null ? 0 : ((Number) v).intValue();
+  }
+
+  public boolean getBoolean(int row) {
+    Object v = get(row);
+    return v != null && (Boolean) v;
+  }
+
+  /**
+   * Returns a new column that contains the values of the given rows of this column, in order.
+   */
+  ColumnData gather(int[] rows, int count) {
+    ColumnData out = create(type, count);
+    for (int i = 0; i < count; i++) {
+      out.append(get(rows[i]));
+    }
+    out.trim();
+    return out;
+  }
+
+  <T extends ColumnData> T gatherNulls(T out, int[] rows, int count) {
+    if (hasNulls()) {
+      for (int i = 0; i < count; i++) {
+        if (nulls.get(rows[i])) {
+          out.nulls.set(i);
+        }
+      }
+    }
+    out.size = count;
+    return out;
+  }
+
+  /**
+   * Appends a value, which is cast to the type of this column, or a null.
+   */
+  void append(Object value) {
+    ensureCapacity(size + 1);
+    if (value == null) {
+      nulls.set(size);
+    } else {
+      set(size, value);
+    }
+    size++;
+  }
+
+  void appendNull() {
+    ensureCapacity(size + 1);
+    nulls.set(size);
+    size++;
+  }
+
+  /**
+   * Returns a {@link Vector} with the same type and values as this column; the primitive types
+   * share this column's (trimmed) arrays where they can.
+   */
+  public Vector toVector() {
+    trim();
+    switch (type) {
+      case SHORT:
+        short[] s = new short[size];
+        for (int i = 0; i < size; i++) {
+          s[i] = (short) getInt(i);
+        }
+        return new ShortVector(s, nulls);
+      case FLOAT:
+        float[] f = new float[size];
+        for (int i = 0; i < size; i++) {
+          f[i] = (float) getDouble(i);
+        }
+        return new FloatVector(f, nulls);
+      default:
+        List<Object> values = Lists.newArrayListWithExpectedSize(size);
+        for (int i = 0; i < size; i++) {
+          values.add(get(i));
+        }
+        return new GenericVector(type, values);
+    }
+  }
+
+  protected abstract void set(int row, Object value);
+
+  protected abstract void ensureCapacity(int capacity);
+
+  protected abstract void trim();
+
+  static int grow(int current, int required) {
+    int next = current + (current >> 1) + 1;
+    return next < required ? required : next;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append(get(i));
+    }
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Fills a new column one value at a time, e.g. from a decoder or a result set. The typed append
+   * methods must match the type of the column: {@code appendDouble} for DOUBLE and FLOAT,
+   * {@code appendInt} for INTEGER and SHORT, and so on. Once {@link #build()} has been called the
+   * column can no longer be changed.
+   */
+  public static final class Builder {
+    private ColumnData data;
+
+    Builder(ColumnData data) {
+      this.data = data;
+    }
+
+    public FieldType getType() {
+      return data().getType();
+    }
+
+    public int size() {
+      return data().size();
+    }
+
+    public Builder append(Object value) {
+      data().append(value);
+      return this;
+    }
+
+    public Builder appendNull() {
+      data().appendNull();
+      return this;
+    }
+
+    public Builder appendDouble(double value) {
+      ((DoubleColumnData) data()).append(value);
+      return this;
+    }
+
+    public Builder appendLong(long value) {
+      ((LongColumnData) data()).append(value);
+      return this;
+    }
+
+    public Builder appendInt(int value) {
+      ((IntColumnData) data()).append(value);
+      return this;
+    }
+
+    public Builder appendBoolean(boolean value) {
+      ((BooleanColumnData) data()).append(value);
+      return this;
+    }
+
+    public Builder appendString(String value) {
+      ((StringColumnData) data()).append(value);
+      return this;
+    }
+
+    public ColumnData build() {
+      ColumnData built = data();
+      built.trim();
+      data = null;
+      return built;
+    }
+
+    private ColumnData data() {
+      if (data == null) {
+        throw new IllegalStateException("The column has already been built");
+      }
+      return data;
+    }
+  }
+
+  static double[] resize(double[] values, int capacity) {
+    return values.length == capacity ? values : Arrays.copyOf(values, capacity);
+  }
+
+  static long[] resize(long[] values, int capacity) {
+    return values.length == capacity ? values : Arrays.copyOf(values, capacity);
+  }
+
+  static int[] resize(int[] values, int capacity) {
+    return values.length == capacity ? values : Arrays.copyOf(values, capacity);
+  }
+
+  static boolean[] resize(boolean[] values, int capacity) {
+    return values.length == capacity ? values : Arrays.copyOf(values, capacity);
+  }
+
+  static Object[] resize(Object[] values, int capacity) {
+    return values.length == capacity ? values : Arrays.copyOf(values, capacity);
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core.columnar;
+
+import com.cloudera.exhibit.core.Column;
+
+/**
+ * A {@link Column} that reads directly from the backing {@link ColumnData} of a
+ * {@link ColumnarFrame} instead of going through the frame's rows.
+ */
+public class ColumnarColumn extends Column {
+
+  private final ColumnData data;
+
+  ColumnarColumn(ColumnarFrame frame, int index, ColumnData data) {
+    super(frame, index);
+    this.data = data;
+  }
+
+  public ColumnData getData() {
+    return data;
+  }
+
+  @Override
+  public Object get(int i) {
+    return data.get(i);
+  }
+
+  @Override
+  public int size() {
+    return data.size();
+  }
+
+  @Override
+  public boolean isNull(int i) {
+    return data.isNull(i);
+  }
+
+  @Override
+  public double getDouble(int i) {
+    return data.getDouble(i);
+  }
+
+  @Override
+  public long getLong(int i) {
+    return data.getLong(i);
+  }
+
+  @Override
+  public int getInt(int i) {
+    return data.getInt(i);
+  }
+
+  @Override
+  public boolean getBoolean(int i) {
+    return data.getBoolean(i);
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core.columnar;
+
+import com.cloudera.exhibit.core.Column;
+import com.cloudera.exhibit.core.FieldType;
+import com.cloudera.exhibit.core.Frame;
+import com.cloudera.exhibit.core.Obs;
+import com.cloudera.exhibit.core.ObsDescriptor;
+import com.google.common.base.Preconditions;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link Frame} that stores each of its columns as a primitive array (see {@link ColumnData}),
+ * so that column-oriented access via {@link #$(int)} does not need to visit each row.
+ */
+public class ColumnarFrame extends Frame {
+
+  private final ObsDescriptor descriptor;
+  private final ColumnData[] columns;
+  private final int size;
+
+  public static Builder builder(ObsDescriptor descriptor) {
+    return new Builder(descriptor);
+  }
+
+  public static Builder builder(ObsDescriptor descriptor, int expectedSize) {
+    return new Builder(descriptor, expectedSize);
+  }
+
+  public static ColumnarFrame of(ObsDescriptor descriptor, Iterable<? extends Obs> obs) {
+    return builder(descriptor).addAll(obs).build();
+  }
+
+  /**
+   * Creates a frame directly from its columns, e.g. ones that were filled by a decoder via
+   * {@link ColumnData#builder(FieldType)}. The columns must all be the same size.
+   */
+  public static ColumnarFrame of(ObsDescriptor descriptor, ColumnData... columns) {
+    Preconditions.checkArgument(descriptor.size() == columns.length,
+        "Descriptor has %s fields but there are %s columns", descriptor.size(), columns.length);
+    int size = columns.length == 0 ? 0 : columns[0].size();
+    for (int i = 0; i < columns.length; i++) {
+      Preconditions.checkArgument(columns[i].size() == size,
+          "Column %s has %s rows, expected %s", i, columns[i].size(), size);
+      columns[i].trim();
+    }
+    return new ColumnarFrame(descriptor, columns, size);
+  }
+
+  public static ColumnarFrame copyOf(Frame frame) {
+    if (frame instanceof ColumnarFrame) {
+      return (ColumnarFrame) frame;
+    }
+    return builder(frame.descriptor(), frame.size()).addAll(frame).build();
+  }
+
+  ColumnarFrame(ObsDescriptor descriptor, ColumnData[] columns, int size) {
+    this.descriptor = descriptor;
+    this.columns = columns;
+    this.size = size;
+  }
+
+  @Override
+  public ObsDescriptor descriptor() {
+    return descriptor;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  public ColumnData column(int columnIndex) {
+    return columns[columnIndex];
+  }
+
+  public ColumnData column(String columnName) {
+    int index = descriptor.indexOf(columnName);
+    if (index < 0) {
+      throw new IllegalArgumentException("Unknown column: " + columnName);
+    }
+    return columns[index];
+  }
+
+  /**
+   * Returns a new frame made up of the first {@code count} rows named in {@code rows}, in
+   * that order; e.g., the selection vector from a filter or the permutation from a sort.
+   */
+  public ColumnarFrame select(int[] rows, int count) {
+    ColumnData[] selected = new ColumnData[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      selected[i] = columns[i].gather(rows, count);
+    }
+    return new ColumnarFrame(descriptor, selected, count);
+  }
+
+  @Override
+  public Obs get(int rowIndex) {
+    if (rowIndex < 0 || rowIndex >= size) {
+      throw new IndexOutOfBoundsException("Row " + rowIndex + " of frame with size " + size);
+    }
+    return new ColumnarObs(this, rowIndex);
+  }
+
+  @Override
+  public boolean isNull(int rowIndex, int columnIndex) {
+    return columns[columnIndex].isNull(rowIndex);
+  }
+
+  @Override
+  public double getDouble(int rowIndex, int columnIndex) {
+    return columns[columnIndex].getDouble(rowIndex);
+  }
+
+  @Override
+  public long getLong(int rowIndex, int columnIndex) {
+    return columns[columnIndex].getLong(rowIndex);
+  }
+
+  @Override
+  public int getInt(int rowIndex, int columnIndex) {
+    return columns[columnIndex].getInt(rowIndex);
+  }
+
+  @Override
+  public boolean getBoolean(int rowIndex, int columnIndex) {
+    return columns[columnIndex].getBoolean(rowIndex);
+  }
+
+  @Override
+  public Column $(int columnIndex) {
+    return new ColumnarColumn(this, columnIndex, columns[columnIndex]);
+  }
+
+  @Override
+  public Column $(String columnName) {
+    int index = descriptor.indexOf(columnName);
+    if (index < 0) {
+      throw new IllegalArgumentException("Unknown column: " + columnName);
+    }
+    return $(index);
+  }
+
+  @Override
+  public Iterator<Obs> iterator() {
+    return new Iterator<Obs>() {
+      private int offset = 0;
+
+      @Override
+      public boolean hasNext() {
+        return offset < size;
+      }
+
+      @Override
+      public Obs next() {
+        if (offset >= size) {
+          throw new NoSuchElementException();
+        }
+        return new ColumnarObs(ColumnarFrame.this, offset++);
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(get(i));
+    }
+    return sb.append(']').toString();
+  }
+
+  public static class Builder {
+    private final ObsDescriptor descriptor;
+    private final ColumnData[] columns;
+    private int size;
+
+    Builder(ObsDescriptor descriptor) {
+      this(descriptor, 16);
+    }
+
+    Builder(ObsDescriptor descriptor, int expectedSize) {
+      this.descriptor = Preconditions.checkNotNull(descriptor);
+      this.columns = new ColumnData[descriptor.size()];
+      for (int i = 0; i < columns.length; i++) {
+        columns[i] = ColumnData.create(descriptor.get(i).type, expectedSize);
+      }
+    }
+
+    public Builder add(Obs obs) {
+      for (int i = 0; i < columns.length; i++) {
+        columns[i].append(obs.get(i));
+      }
+      size++;
+      return this;
+    }
+
+    public Builder addRow(Object[] values) {
+      Preconditions.checkArgument(values.length == columns.length,
+          "Expected %s values, found %s", columns.length, values.length);
+      for (int i = 0; i < columns.length; i++) {
+        columns[i].append(values[i]);
+      }
+      size++;
+      return this;
+    }
+
+    public Builder addAll(Iterable<? extends Obs> obs) {
+      for (Obs o : obs) {
+        add(o);
+      }
+      return this;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public ColumnarFrame build() {
+      for (ColumnData cd : columns) {
+        cd.trim();
+      }
+      return new ColumnarFrame(descriptor, columns, size);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core.columnar;
+
+import com.cloudera.exhibit.core.Obs;
+import com.cloudera.exhibit.core.ObsDescriptor;
+
+/**
+ * A view of a single row of a {@link ColumnarFrame}.
+ */
+public class ColumnarObs extends Obs {
+
+  private final ColumnarFrame frame;
+  private final int row;
+
+  ColumnarObs(ColumnarFrame frame, int row) {
+    this.frame = frame;
+    this.row = row;
+  }
+
+  @Override
+  public ObsDescriptor descriptor() {
+    return frame.descriptor();
+  }
+
+  @Override
+  public Object get(int index) {
+    return frame.column(index).get(row);
+  }
+
+  @Override
+  public boolean isNull(int index) {
+    return frame.column(index).isNull(row);
+  }
+
+  @Override
+  public double getDouble(int index) {
+    return frame.column(index).getDouble(row);
+  }
+
+  @Override
+  public long getLong(int index) {
+    return frame.column(index).getLong(row);
+  }
+
+  @Override
+  public int getInt(int index) {
+    return frame.column(index).getInt(row);
+  }
+
+  @Override
+  public boolean getBoolean(int index) {
+    return frame.column(index).getBoolean(row);
+  }
+
+  @Override
+  public int hashCode() {
+    int hc = 1;
+    for (int i = 0; i < descriptor().size(); i++) {
+      Object v = get(i);
+      hc = 31 * hc + (v == null ? 0 : v.hashCode());
+    }
+    return descriptor().hashCode() + 17 * hc;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other == null || !(other instanceof Obs)) {
+      return false;
+    }
+    return Obs.valuesEqual(this, (Obs) other);
+  }
+}
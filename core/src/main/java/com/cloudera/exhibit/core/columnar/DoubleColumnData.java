@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core.columnar;
+
+import com.cloudera.exhibit.core.FieldType;
+import com.cloudera.exhibit.core.vector.DoubleVector;
+import com.cloudera.exhibit.core.vector.Vector;
+
+/**
+ * Column storage for DOUBLE and FLOAT fields. FLOAT values are widened to doubles for storage
+ * and narrowed back to {@code Float} when they are read as objects.
+ */
+public class DoubleColumnData extends ColumnData {
+
+  private double[] values;
+
+  DoubleColumnData(FieldType type, int capacity) {
+    super(type);
+    this.values = new double[capacity];
+  }
+
+  public double[] getData() {
+    return values;
+  }
+
+  @Override
+  public double getDouble(int row) {
+    return values[row];
+  }
+
+  @Override
+  public long getLong(int row) {
+    return (long) values[row];
+  }
+
+  @Override
+  public int getInt(int row) {
+    return (int) values[row];
+  }
+
+  @Override
+  public Object get(int row) {
+    if (nulls.get(row)) {
+      return null;
+    }
+    return getType() == FieldType.FLOAT ? (Object) (float) values[row] : (Object) values[row];
+  }
+
+  void append(double value) {
+    ensureCapacity(size + 1);
+    values[size++] = value;
+  }
+
+  @Override
+  public Vector toVector() {
+    if (getType() == FieldType.DOUBLE) {
+      trim();
+      return new DoubleVector(values, nulls);
+    }
+    return super.toVector();
+  }
+
+  @Override
+  ColumnData gather(int[] rows, int count) {
+    DoubleColumnData out = new DoubleColumnData(getType(), count);
+    for (int i = 0; i < count; i++) {
+      out.values[i] = values[rows[i]];
+    }
+    return gatherNulls(out, rows, count);
+  }
+
+  @Override
+  protected void set(int row, Object value) {
+    if (value instanceof Number) {
+      values[row] = ((Number) value).doubleValue();
+    } else {
+      values[row] = ((Number) getType().cast(value)).doubleValue();
+    }
+  }
+
+  @Override
+  protected void ensureCapacity(int capacity) {
+    if (capacity > values.length) {
+      values = resize(values, grow(values.length, capacity));
+    }
+  }
+
+  @Override
+  protected void trim() {
+    values = resize(values, size);
+  }
+}
@@ -0,0 +1,820 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core.columnar;
+
+import com.cloudera.exhibit.core.Exhibit;
+import com.cloudera.exhibit.core.ExhibitDescriptor;
+import com.cloudera.exhibit.core.FieldType;
+import com.cloudera.exhibit.core.Frame;
+import com.cloudera.exhibit.core.Obs;
+import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.core.Vec;
+import com.cloudera.exhibit.core.lazy.LazyExhibit;
+import com.cloudera.exhibit.core.simple.SimpleObs;
+import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary encoding for the {@link Exhibit} instances that share an
+ * {@link ExhibitDescriptor}. The descriptor is written once, up front (or identified by its
+ * fingerprint), and each exhibit is then written column by column: one null bitmap and one
+ * tightly packed run of values per column of each frame and per vector. Decoding fills the
+ * arrays of a {@link ColumnarFrame} directly, without creating an object per value. The body of
+ * each frame and vector is prefixed with its length, so that {@link #decodeLazy} can skip over
+ * it and only decode it when it is first used.
+ *
+ * <p>Use {@link #encode}/{@link #decode} when both sides already agree on the descriptor,
+ * and {@link #writeExhibit}/{@link #readExhibit} when each record has to describe itself.
+ */
+public class ExhibitCodec implements Serializable {
+
+  // Leading byte of the output of encode: the exhibit either has the codec's layout or its own
+  private static final int SAME_DESCRIPTOR = 0;
+  private static final int INLINE_DESCRIPTOR = 1;
+
+  // Codecs that have been seen in this JVM, so a descriptor is only ever parsed once
+  private static final Cache<Long, ExhibitCodec> BY_FINGERPRINT = CacheBuilder.newBuilder()
+      .maximumSize(1024)
+      .build();
+
+  private final ExhibitDescriptor descriptor;
+  private final byte[] descriptorBytes;
+  private final long fingerprint;
+  private transient ExhibitDescriptor lastMatched;
+
+  public static ExhibitCodec of(ExhibitDescriptor descriptor) {
+    byte[] bytes = toBytes(descriptor);
+    long fp = fingerprint(bytes);
+    ExhibitCodec codec = BY_FINGERPRINT.getIfPresent(fp);
+    if (codec == null) {
+      codec = new ExhibitCodec(descriptor, bytes, fp);
+      BY_FINGERPRINT.put(fp, codec);
+    }
+    return codec;
+  }
+
+  public static ExhibitCodec fromDescriptorBytes(byte[] descriptorBytes) {
+    long fp = fingerprint(descriptorBytes);
+    ExhibitCodec codec = BY_FINGERPRINT.getIfPresent(fp);
+    if (codec == null) {
+      try {
+        ExhibitDescriptor descriptor = readDescriptor(
+            new DataInputStream(new ByteArrayInputStream(descriptorBytes)));
+        codec = new ExhibitCodec(descriptor, descriptorBytes, fp);
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Invalid exhibit descriptor bytes", e);
+      }
+      BY_FINGERPRINT.put(fp, codec);
+    }
+    return codec;
+  }
+
+  private ExhibitCodec(ExhibitDescriptor descriptor, byte[] descriptorBytes, long fingerprint) {
+    this.descriptor = descriptor;
+    this.descriptorBytes = descriptorBytes;
+    this.fingerprint = fingerprint;
+  }
+
+  public ExhibitDescriptor descriptor() {
+    return descriptor;
+  }
+
+  public byte[] getDescriptorBytes() {
+    return descriptorBytes;
+  }
+
+  public long fingerprint() {
+    return fingerprint;
+  }
+
+  public byte[] encode(Exhibit exhibit) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try {
+      write(exhibit, new DataOutputStream(baos));
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not encode exhibit", e);
+    }
+    return baos.toByteArray();
+  }
+
+  public Exhibit decode(byte[] bytes) {
+    return decode(bytes, 0, bytes.length);
+  }
+
+  public Exhibit decode(byte[] bytes, int offset, int length) {
+    try {
+      return read(new DataInputStream(new ByteArrayInputStream(bytes, offset, length)));
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Could not decode exhibit", e);
+    }
+  }
+
+  /**
+   * Decodes the attributes of an exhibit written by {@link #encode} (or {@link #write}), and returns
+   * it as a {@link LazyExhibit} whose frames and vectors are decoded from the given bytes as they are
+   * used. The bytes must not be modified while the exhibit is in use.
+   */
+  public LazyExhibit decodeLazy(byte[] bytes, int offset, int length) {
+    try {
+      Input in = new Input(bytes, offset, length);
+      DataInputStream din = new DataInputStream(in);
+      if (din.readByte() == SAME_DESCRIPTOR) {
+        return readLazyBody(in, din);
+      }
+      return readCodec(din).readLazyBody(in, din);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Could not decode exhibit", e);
+    }
+  }
+
+  /**
+   * Writes the exhibit, which is expected to have this codec's layout. An exhibit with any
+   * other layout is still written, but carries its own descriptor along with it.
+   */
+  public void write(Exhibit exhibit, DataOutput out) throws IOException {
+    if (matches(exhibit.descriptor())) {
+      out.writeByte(SAME_DESCRIPTOR);
+      writeBody(exhibit, out);
+    } else {
+      out.writeByte(INLINE_DESCRIPTOR);
+      writeExhibit(exhibit, out);
+    }
+  }
+
+  public Exhibit read(DataInput in) throws IOException {
+    int flag = in.readByte();
+    return flag == SAME_DESCRIPTOR ? readBody(in) : readExhibit(in);
+  }
+
+  /**
+   * Writes a self-describing exhibit: the fingerprint and encoded form of its descriptor
+   * followed by its body.
+   */
+  public static void writeExhibit(Exhibit exhibit, DataOutput out) throws IOException {
+    ExhibitCodec codec = of(exhibit.descriptor());
+    out.writeLong(codec.fingerprint);
+    writeVarInt(out, codec.descriptorBytes.length);
+    out.write(codec.descriptorBytes);
+    codec.writeBody(exhibit, out);
+  }
+
+  /**
+   * Reads an exhibit written by {@link #writeExhibit}; the descriptor is only parsed the first
+   * time that its fingerprint is seen.
+   */
+  public static Exhibit readExhibit(DataInput in) throws IOException {
+    return readCodec(in).readBody(in);
+  }
+
+  private static ExhibitCodec readCodec(DataInput in) throws IOException {
+    long fp = in.readLong();
+    int length = readVarInt(in);
+    ExhibitCodec codec = BY_FINGERPRINT.getIfPresent(fp);
+    if (codec == null) {
+      byte[] bytes = new byte[length];
+      in.readFully(bytes);
+      codec = fromDescriptorBytes(bytes);
+    } else {
+      while (length > 0) {
+        int skipped = in.skipBytes(length);
+        if (skipped <= 0) {
+          throw new EOFException();
+        }
+        length -= skipped;
+      }
+    }
+    return codec;
+  }
+
+  private boolean matches(ExhibitDescriptor other) {
+    if (other == descriptor || other == lastMatched) {
+      return true;
+    }
+    if (sameFields(descriptor.attributes(), other.attributes())
+        && sameFrames(descriptor.frames(), other.frames())
+        && descriptor.vectors().equals(other.vectors())) {
+      lastMatched = other;
+      return true;
+    }
+    return false;
+  }
+
+  // Compares the frames by their fields, since the descriptors of e.g. Avro frames are not equal
+  // to the SimpleObsDescriptors that this codec decodes
+  private static boolean sameFrames(Map<String, ObsDescriptor> frames, Map<String, ObsDescriptor> other) {
+    if (frames.size() != other.size()) {
+      return false;
+    }
+    for (Map.Entry<String, ObsDescriptor> e : frames.entrySet()) {
+      ObsDescriptor od = other.get(e.getKey());
+      if (od == null || !sameFields(e.getValue(), od)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean sameFields(ObsDescriptor od, ObsDescriptor other) {
+    if (od.size() != other.size()) {
+      return false;
+    }
+    for (int i = 0; i < od.size(); i++) {
+      if (!od.get(i).equals(other.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void writeBody(Exhibit exhibit, DataOutput out) throws IOException {
+    ObsDescriptor attrDesc = descriptor.attributes();
+    Obs attrs = exhibit.attributes();
+    for (int i = 0; i < attrDesc.size(); i++) {
+      Object value = attrs.get(i);
+      if (value == null) {
+        out.writeBoolean(false);
+      } else {
+        out.writeBoolean(true);
+        writeValue(out, attrDesc.get(i).type, value);
+      }
+    }
+    Scratch scratch = new Scratch();
+    DataOutputStream scratchOut = new DataOutputStream(scratch);
+    Map<String, Frame> frames = exhibit.frames();
+    for (Map.Entry<String, ObsDescriptor> e : descriptor.frames().entrySet()) {
+      Frame frame = frames.get(e.getKey());
+      int rows = frame == null ? 0 : frame.size();
+      writeVarInt(out, rows);
+      if (rows > 0) {
+        scratch.reset();
+        ObsDescriptor od = e.getValue();
+        for (int i = 0; i < od.size(); i++) {
+          writeColumn(scratchOut, od.get(i).type, frame.$(i), rows);
+        }
+        scratch.writeLengthPrefixed(out);
+      }
+    }
+    Map<String, Vec> vectors = exhibit.vectors();
+    for (Map.Entry<String, FieldType> e : descriptor.vectors().entrySet()) {
+      Vec vec = vectors.get(e.getKey());
+      int size = vec == null ? 0 : vec.size();
+      writeVarInt(out, size);
+      if (size > 0) {
+        scratch.reset();
+        writeColumn(scratchOut, e.getValue(), vec, size);
+        scratch.writeLengthPrefixed(out);
+      }
+    }
+  }
+
+  private Exhibit readBody(DataInput in) throws IOException {
+    ObsDescriptor attrDesc = descriptor.attributes();
+    List<Object> attrs = Lists.newArrayListWithExpectedSize(attrDesc.size());
+    for (int i = 0; i < attrDesc.size(); i++) {
+      attrs.add(in.readBoolean() ? readValue(in, attrDesc.get(i).type) : null);
+    }
+    Map<String, Frame> frames = Maps.newHashMap();
+    for (Map.Entry<String, ObsDescriptor> e : descriptor.frames().entrySet()) {
+      int rows = readVarInt(in);
+      if (rows > 0) {
+        readVarInt(in); // length
+      }
+      frames.put(e.getKey(), readFrame(in, e.getValue(), rows));
+    }
+    Map<String, Vec> vectors = Maps.newHashMap();
+    for (Map.Entry<String, FieldType> e : descriptor.vectors().entrySet()) {
+      int size = readVarInt(in);
+      if (size > 0) {
+        readVarInt(in); // length
+      }
+      vectors.put(e.getKey(), readColumn(in, e.getValue(), size).toVector());
+    }
+    return new DecodedExhibit(descriptor, new SimpleObs(attrDesc, attrs), frames, vectors);
+  }
+
+  private LazyExhibit readLazyBody(Input in, DataInputStream din) throws IOException {
+    ObsDescriptor attrDesc = descriptor.attributes();
+    List<Object> attrs = Lists.newArrayListWithExpectedSize(attrDesc.size());
+    for (int i = 0; i < attrDesc.size(); i++) {
+      attrs.add(din.readBoolean() ? readValue(din, attrDesc.get(i).type) : null);
+    }
+    Map<String, FrameLoader> frames = Maps.newHashMapWithExpectedSize(descriptor.frames().size());
+    for (Map.Entry<String, ObsDescriptor> e : descriptor.frames().entrySet()) {
+      int rows = readVarInt(din);
+      int length = rows > 0 ? readVarInt(din) : 0;
+      frames.put(e.getKey(), new FrameLoader(e.getValue(), rows, in.skipSlice(length)));
+    }
+    Map<String, VectorLoader> vectors = Maps.newHashMapWithExpectedSize(descriptor.vectors().size());
+    for (Map.Entry<String, FieldType> e : descriptor.vectors().entrySet()) {
+      int size = readVarInt(din);
+      int length = size > 0 ? readVarInt(din) : 0;
+      vectors.put(e.getKey(), new VectorLoader(e.getValue(), size, in.skipSlice(length)));
+    }
+    return new LazyExhibit(descriptor, new SimpleObs(attrDesc, attrs), frames, vectors);
+  }
+
+  private static ColumnarFrame readFrame(DataInput in, ObsDescriptor od, int rows) throws IOException {
+    ColumnData[] columns = new ColumnData[od.size()];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = readColumn(in, od.get(i).type, rows);
+    }
+    return new ColumnarFrame(od, columns, rows);
+  }
+
+  private static void writeColumn(DataOutput out, FieldType type, Vec vec, int rows)
+      throws IOException {
+    BitSet nulls = new BitSet(rows);
+    for (int i = 0; i < rows; i++) {
+      if (vec.isNull(i)) {
+        nulls.set(i);
+      }
+    }
+    writeBits(out, nulls, rows);
+    switch (type) {
+      case BOOLEAN:
+        BitSet bits = new BitSet(rows);
+        for (int i = nulls.nextClearBit(0); i < rows; i = nulls.nextClearBit(i + 1)) {
+          if (vec.getBoolean(i)) {
+            bits.set(i);
+          }
+        }
+        writeBits(out, bits, rows);
+        break;
+      case SHORT:
+      case INTEGER:
+        for (int i = nulls.nextClearBit(0); i < rows; i = nulls.nextClearBit(i + 1)) {
+          writeVarInt(out, zigzag(vec.getInt(i)));
+        }
+        break;
+      case LONG:
+        for (int i = nulls.nextClearBit(0); i < rows; i = nulls.nextClearBit(i + 1)) {
+          writeVarLong(out, zigzag(vec.getLong(i)));
+        }
+        break;
+      case FLOAT:
+        for (int i = nulls.nextClearBit(0); i < rows; i = nulls.nextClearBit(i + 1)) {
+          out.writeFloat((float) vec.getDouble(i));
+        }
+        break;
+      case DOUBLE:
+        for (int i = nulls.nextClearBit(0); i < rows; i = nulls.nextClearBit(i + 1)) {
+          out.writeDouble(vec.getDouble(i));
+        }
+        break;
+      case STRING:
+        writeStrings(out, vec, nulls, rows);
+        break;
+      default:
+        for (int i = nulls.nextClearBit(0); i < rows; i = nulls.nextClearBit(i + 1)) {
+          writeValue(out, type, vec.get(i));
+        }
+    }
+  }
+
+  // Strings are written as a dictionary of the distinct values followed by a code for each row
+  private static void writeStrings(DataOutput out, Vec vec, BitSet nulls, int rows)
+      throws IOException {
+    ColumnData data = vec instanceof ColumnarColumn ? ((ColumnarColumn) vec).getData() : null;
+    List<String> dictionary;
+    int[] codes;
+    if (data instanceof StringColumnData) {
+      dictionary = ((StringColumnData) data).getDictionary();
+      codes = ((StringColumnData) data).getCodes();
+    } else {
+      dictionary = Lists.newArrayList();
+      codes = new int[rows];
+      Map<String, Integer> lookup = Maps.newHashMap();
+      for (int i = nulls.nextClearBit(0); i < rows; i = nulls.nextClearBit(i + 1)) {
+        String str = vec.get(i).toString();
+        Integer code = lookup.get(str);
+        if (code == null) {
+          code = dictionary.size();
+          dictionary.add(str);
+          lookup.put(str, code);
+        }
+        codes[i] = code;
+      }
+    }
+    writeVarInt(out, dictionary.size());
+    for (String str : dictionary) {
+      writeString(out, str);
+    }
+    for (int i = nulls.nextClearBit(0); i < rows; i = nulls.nextClearBit(i + 1)) {
+      writeVarInt(out, codes[i]);
+    }
+  }
+
+  private static ColumnData readColumn(DataInput in, FieldType type, int rows) throws IOException {
+    ColumnData cd = ColumnData.create(type, rows);
+    if (rows > 0) {
+      BitSet nulls = cd.nulls;
+      readBits(in, nulls, rows);
+      switch (type) {
+        case BOOLEAN:
+          boolean[] b = ((BooleanColumnData) cd).getData();
+          BitSet bits = new BitSet(rows);
+          readBits(in, bits, rows);
+          for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            b[i] = true;
+          }
+          break;
+        case SHORT:
+        case INTEGER:
+          int[] n = ((IntColumnData) cd).getData();
+          for (int i = nulls.nextClearBit(0); i < rows; i = nulls.nextClearBit(i + 1)) {
+            n[i] = unzigzag(readVarInt(in));
+          }
+          break;
+        case LONG:
+          long[] l = ((LongColumnData) cd).getData();
+          for (int i = nulls.nextClearBit(0); i < rows; i = nulls.nextClearBit(i + 1)) {
+            l[i] = unzigzag(readVarLong(in));
+          }
+          break;
+        case FLOAT:
+        case DOUBLE:
+          double[] d = ((DoubleColumnData) cd).getData();
+          boolean isFloat = type == FieldType.FLOAT;
+          for (int i = nulls.nextClearBit(0); i < rows; i = nulls.nextClearBit(i + 1)) {
+            d[i] = isFloat ? in.readFloat() : in.readDouble();
+          }
+          break;
+        case STRING:
+          StringColumnData s = (StringColumnData) cd;
+          int dictSize = readVarInt(in);
+          for (int i = 0; i < dictSize; i++) {
+            s.getDictionary().add(readString(in));
+          }
+          int[] codes = s.getCodes();
+          for (int i = nulls.nextClearBit(0); i < rows; i = nulls.nextClearBit(i + 1)) {
+            codes[i] = readVarInt(in);
+          }
+          break;
+        default:
+          for (int i = nulls.nextClearBit(0); i < rows; i = nulls.nextClearBit(i + 1)) {
+            cd.set(i, readValue(in, type));
+          }
+      }
+    }
+    cd.size = rows;
+    cd.trim();
+    return cd;
+  }
+
+  private static void writeValue(DataOutput out, FieldType type, Object value) throws IOException {
+    switch (type) {
+      case BOOLEAN:
+        out.writeBoolean((Boolean) type.cast(value));
+        break;
+      case SHORT:
+      case INTEGER:
+        writeVarInt(out, zigzag(((Number) value).intValue()));
+        break;
+      case LONG:
+        writeVarLong(out, zigzag(((Number) value).longValue()));
+        break;
+      case FLOAT:
+        out.writeFloat(((Number) value).floatValue());
+        break;
+      case DOUBLE:
+        out.writeDouble(((Number) value).doubleValue());
+        break;
+      case DATE:
+      case TIME:
+        writeVarLong(out, zigzag(((Date) type.cast(value)).getTime()));
+        break;
+      case TIMESTAMP:
+        Timestamp ts = (Timestamp) type.cast(value);
+        writeVarLong(out, zigzag(ts.getTime()));
+        writeVarInt(out, ts.getNanos());
+        break;
+      case DECIMAL:
+        writeString(out, type.cast(value).toString());
+        break;
+      default:
+        writeString(out, value.toString());
+    }
+  }
+
+  private static Object readValue(DataInput in, FieldType type) throws IOException {
+    switch (type) {
+      case BOOLEAN:
+        return in.readBoolean();
+      case SHORT:
+        return (short) unzigzag(readVarInt(in));
+      case INTEGER:
+        return unzigzag(readVarInt(in));
+      case LONG:
+        return unzigzag(readVarLong(in));
+      case FLOAT:
+        return in.readFloat();
+      case DOUBLE:
+        return in.readDouble();
+      case DATE:
+      case TIME:
+        return type.cast(unzigzag(readVarLong(in)));
+      case TIMESTAMP:
+        Timestamp ts = new Timestamp(unzigzag(readVarLong(in)));
+        ts.setNanos(readVarInt(in));
+        return ts;
+      case DECIMAL:
+        return new BigDecimal(readString(in));
+      default:
+        return readString(in);
+    }
+  }
+
+  static byte[] toBytes(ExhibitDescriptor descriptor) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try {
+      DataOutputStream out = new DataOutputStream(baos);
+      writeObsDescriptor(out, descriptor.attributes());
+      writeVarInt(out, descriptor.frames().size());
+      for (Map.Entry<String, ObsDescriptor> e : descriptor.frames().entrySet()) {
+        writeString(out, e.getKey());
+        writeObsDescriptor(out, e.getValue());
+      }
+      writeVarInt(out, descriptor.vectors().size());
+      for (Map.Entry<String, FieldType> e : descriptor.vectors().entrySet()) {
+        writeString(out, e.getKey());
+        out.writeByte(e.getValue().ordinal());
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not encode exhibit descriptor", e);
+    }
+    return baos.toByteArray();
+  }
+
+  static ExhibitDescriptor readDescriptor(DataInput in) throws IOException {
+    ObsDescriptor attributes = readObsDescriptor(in);
+    int numFrames = readVarInt(in);
+    Map<String, ObsDescriptor> frames = Maps.newLinkedHashMap();
+    for (int i = 0; i < numFrames; i++) {
+      String name = readString(in);
+      frames.put(name, readObsDescriptor(in));
+    }
+    int numVectors = readVarInt(in);
+    Map<String, FieldType> vectors = Maps.newLinkedHashMap();
+    for (int i = 0; i < numVectors; i++) {
+      String name = readString(in);
+      vectors.put(name, FieldType.values()[in.readByte()]);
+    }
+    return new ExhibitDescriptor(attributes, frames, vectors);
+  }
+
+  private static void writeObsDescriptor(DataOutput out, ObsDescriptor od) throws IOException {
+    writeVarInt(out, od.size());
+    for (int i = 0; i < od.size(); i++) {
+      ObsDescriptor.Field f = od.get(i);
+      writeString(out, f.name);
+      out.writeByte(f.type.ordinal());
+    }
+  }
+
+  private static ObsDescriptor readObsDescriptor(DataInput in) throws IOException {
+    int size = readVarInt(in);
+    List<ObsDescriptor.Field> fields = Lists.newArrayListWithExpectedSize(size);
+    for (int i = 0; i < size; i++) {
+      String name = readString(in);
+      fields.add(new ObsDescriptor.Field(name, FieldType.values()[in.readByte()]));
+    }
+    return new SimpleObsDescriptor(fields);
+  }
+
+  private static long fingerprint(byte[] descriptorBytes) {
+    return Hashing.murmur3_128().hashBytes(descriptorBytes).asLong();
+  }
+
+  private static void writeBits(DataOutput out, BitSet bits, int size) throws IOException {
+    if (bits.isEmpty()) {
+      out.writeBoolean(false);
+      return;
+    }
+    out.writeBoolean(true);
+    for (int i = 0; i < size; i += 8) {
+      int b = 0;
+      for (int j = 0; j < 8 && i + j < size; j++) {
+        if (bits.get(i + j)) {
+          b |= 1 << j;
+        }
+      }
+      out.writeByte(b);
+    }
+  }
+
+  private static void readBits(DataInput in, BitSet bits, int size) throws IOException {
+    if (!in.readBoolean()) {
+      return;
+    }
+    for (int i = 0; i < size; i += 8) {
+      int b = in.readUnsignedByte();
+      for (int j = 0; b != 0; j++, b >>>= 1) {
+        if ((b & 1) != 0) {
+          bits.set(i + j);
+        }
+      }
+    }
+  }
+
+  private static void writeString(DataOutput out, String str) throws IOException {
+    byte[] bytes = str.getBytes(Charsets.UTF_8);
+    writeVarInt(out, bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInput in) throws IOException {
+    byte[] bytes = new byte[readVarInt(in)];
+    in.readFully(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  private static int zigzag(int v) {
+    return (v << 1) ^ (v >> 31);
+  }
+
+  private static int unzigzag(int v) {
+    return (v >>> 1) ^ -(v & 1);
+  }
+
+  private static long zigzag(long v) {
+    return (v << 1) ^ (v >> 63);
+  }
+
+  private static long unzigzag(long v) {
+    return (v >>> 1) ^ -(v & 1);
+  }
+
+  private static void writeVarInt(DataOutput out, int v) throws IOException {
+    while ((v & ~0x7F) != 0) {
+      out.writeByte((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    out.writeByte(v);
+  }
+
+  private static int readVarInt(DataInput in) throws IOException {
+    int v = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      v |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return v;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  private static void writeVarLong(DataOutput out, long v) throws IOException {
+    while ((v & ~0x7FL) != 0) {
+      out.writeByte((int) ((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    out.writeByte((int) v);
+  }
+
+  private static long readVarLong(DataInput in) throws IOException {
+    long v = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.readUnsignedByte();
+      v |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return v;
+      }
+    }
+    throw new IOException("Malformed varlong");
+  }
+
+  // A ByteArrayOutputStream that can be copied to a DataOutput without copying its buffer first
+  private static class Scratch extends ByteArrayOutputStream {
+    void writeLengthPrefixed(DataOutput out) throws IOException {
+      writeVarInt(out, count);
+      out.write(buf, 0, count);
+    }
+  }
+
+  // A ByteArrayInputStream that can hand out slices of its buffer in place of reading them
+  private static class Input extends ByteArrayInputStream {
+    Input(byte[] bytes, int offset, int length) {
+      super(bytes, offset, length);
+    }
+
+    DataInputStream skipSlice(int length) throws IOException {
+      if (length > count - pos) {
+        throw new EOFException();
+      }
+      DataInputStream slice = new DataInputStream(new ByteArrayInputStream(buf, pos, length));
+      pos += length;
+      return slice;
+    }
+  }
+
+  private static class FrameLoader implements LazyExhibit.Loader<Frame> {
+    private final ObsDescriptor od;
+    private final int rows;
+    private final DataInputStream in;
+
+    FrameLoader(ObsDescriptor od, int rows, DataInputStream in) {
+      this.od = od;
+      this.rows = rows;
+      this.in = in;
+    }
+
+    @Override
+    public Frame load() {
+      try {
+        return readFrame(in, od, rows);
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Could not decode exhibit frame", e);
+      }
+    }
+  }
+
+  private static class VectorLoader implements LazyExhibit.Loader<Vec> {
+    private final FieldType type;
+    private final int size;
+    private final DataInputStream in;
+
+    VectorLoader(FieldType type, int size, DataInputStream in) {
+      this.type = type;
+      this.size = size;
+      this.in = in;
+    }
+
+    @Override
+    public Vec load() {
+      try {
+        return readColumn(in, type, size).toVector();
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Could not decode exhibit vector", e);
+      }
+    }
+  }
+
+  private static class DecodedExhibit implements Exhibit {
+    private final ExhibitDescriptor descriptor;
+    private final Obs attributes;
+    private final Map<String, Frame> frames;
+    private final Map<String, Vec> vectors;
+
+    DecodedExhibit(ExhibitDescriptor descriptor, Obs attributes, Map<String, Frame> frames,
+                   Map<String, Vec> vectors) {
+      this.descriptor = descriptor;
+      this.attributes = attributes;
+      this.frames = frames;
+      this.vectors = vectors;
+    }
+
+    @Override
+    public ExhibitDescriptor descriptor() {
+      return descriptor;
+    }
+
+    @Override
+    public Obs attributes() {
+      return attributes;
+    }
+
+    @Override
+    public Map<String, Frame> frames() {
+      return frames;
+    }
+
+    @Override
+    public Map<String, Vec> vectors() {
+      return vectors;
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core.columnar;
+
+import com.cloudera.exhibit.core.FieldType;
+
+/**
+ * Column storage for the field types that do not have a primitive representation
+ * (e.g., DATE, TIMESTAMP, and DECIMAL).
+ */
+public class ObjectColumnData extends ColumnData {
+
+  private Object[] values;
+
+  ObjectColumnData(FieldType type, int capacity) {
+    super(type);
+    this.values = new Object[capacity];
+  }
+
+  @Override
+  public Object get(int row) {
+    return values[row];
+  }
+
+  @Override
+  protected void set(int row, Object value) {
+    values[row] = getType().cast(value);
+  }
+
+  @Override
+  protected void ensureCapacity(int capacity) {
+    if (capacity > values.length) {
+      values = resize(values, grow(values.length, capacity));
+    }
+  }
+
+  @Override
+  protected void trim() {
+    values = resize(values, size);
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core.columnar;
+
+import com.cloudera.exhibit.core.FieldType;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary-encoded column storage for STRING fields: each row holds an int code that
+ * indexes into the list of distinct values seen in the column.
+ */
+public class StringColumnData extends ColumnData {
+
+  private int[] codes;
+  private final List<String> dictionary;
+  private transient Map<String, Integer> lookup;
+
+  StringColumnData(int capacity) {
+    super(FieldType.STRING);
+    this.codes = new int[capacity];
+    this.dictionary = Lists.newArrayList();
+    this.lookup = Maps.newHashMap();
+  }
+
+  private StringColumnData(int[] codes, List<String> dictionary) {
+    super(FieldType.STRING);
+    this.codes = codes;
+    this.dictionary = dictionary;
+  }
+
+  public int[] getCodes() {
+    return codes;
+  }
+
+  public List<String> getDictionary() {
+    return dictionary;
+  }
+
+  @Override
+  public Object get(int row) {
+    return nulls.get(row) ? null : dictionary.get(codes[row]);
+  }
+
+  void append(String value) {
+    if (value == null) {
+      appendNull();
+    } else {
+      ensureCapacity(size + 1);
+      set(size, value);
+      size++;
+    }
+  }
+
+  @Override
+  ColumnData gather(int[] rows, int count) {
+    int[] out = new int[count];
+    for (int i = 0; i < count; i++) {
+      out[i] = codes[rows[i]];
+    }
+    // The gathered column shares the (already complete) dictionary of this one
+    return gatherNulls(new StringColumnData(out, dictionary), rows, count);
+  }
+
+  @Override
+  protected void set(int row, Object value) {
+    String str = value.toString();
+    if (lookup == null) {
+      // Dropped by trim() and serialization, so rebuild it from the dictionary
+      lookup = Maps.newHashMapWithExpectedSize(dictionary.size());
+      for (int i = 0; i < dictionary.size(); i++) {
+        lookup.put(dictionary.get(i), i);
+      }
+    }
+    Integer code = lookup.get(str);
+    if (code == null) {
+      code = dictionary.size();
+      dictionary.add(str);
+      lookup.put(str, code);
+    }
+    codes[row] = code;
+  }
+
+  @Override
+  protected void ensureCapacity(int capacity) {
+    if (capacity > codes.length) {
+      codes = resize(codes, grow(codes.length, capacity));
+    }
+  }
+
+  @Override
+  protected void trim() {
+    codes = resize(codes, size);
+    lookup = null;
+  }
+}
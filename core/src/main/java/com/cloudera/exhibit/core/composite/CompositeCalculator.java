@@ -17,8 +17,10 @@ package com.cloudera.exhibit.core.composite;
 import com.cloudera.exhibit.core.Calculator;
 import com.cloudera.exhibit.core.Exhibit;
 import com.cloudera.exhibit.core.ExhibitDescriptor;
+import com.cloudera.exhibit.core.Exhibits;
 import com.cloudera.exhibit.core.Obs;
 import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.core.ReferenceAware;
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 
@@ -26,7 +28,7 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
-public class CompositeCalculator implements Calculator {
+public class CompositeCalculator implements Calculator, ReferenceAware {
 
   private List<Calculator> calculators;
 
@@ -47,6 +49,11 @@ public class CompositeCalculator implements Calculator {
     return new CompositeObsDescriptor(ret);
   }
 
+  @Override
+  public ExhibitDescriptor references(ExhibitDescriptor descriptor) {
+    return Exhibits.references(descriptor, calculators);
+  }
+
   @Override
   public void cleanup() {
     for (Calculator c : calculators) {
@@ -20,9 +20,15 @@ import com.cloudera.exhibit.core.Frame;
 import com.cloudera.exhibit.core.Obs;
 import com.cloudera.exhibit.core.Vec;
 import com.cloudera.exhibit.core.vector.Vector;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
 public class UpdatableExhibit implements Exhibit {
 
@@ -73,19 +79,63 @@ public class UpdatableExhibit implements Exhibit {
     return base.attributes();
   }
 
+  // Views rather than copies, so that looking up one frame does not force the lazily decoded
+  // frames of the base exhibit to be loaded.
   @Override
   public Map<String, Frame> frames() {
-    Map<String, Frame> union = Maps.newHashMap();
-    union.putAll(base.frames());
-    union.putAll(frames);
-    return union;
+    return new UnionMap<Frame>(base.frames(), frames);
   }
 
   @Override
   public Map<String, Vec> vectors() {
-    Map<String, Vec> union = Maps.newHashMap();
-    union.putAll(base.vectors());
-    union.putAll(vectors);
-    return union;
+    return new UnionMap<Vec>(base.vectors(), vectors);
+  }
+
+  private static class UnionMap<V> extends AbstractMap<String, V> {
+    private final Map<String, V> base;
+    private final Map<String, V> added;
+
+    UnionMap(Map<String, V> base, Map<String, V> added) {
+      this.base = base;
+      this.added = added;
+    }
+
+    @Override
+    public V get(Object key) {
+      return added.containsKey(key) ? added.get(key) : base.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return added.containsKey(key) || base.containsKey(key);
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+      return new AbstractSet<Entry<String, V>>() {
+        @Override
+        public Iterator<Entry<String, V>> iterator() {
+          Iterator<Entry<String, V>> fromBase = Iterators.filter(base.entrySet().iterator(),
+              new Predicate<Entry<String, V>>() {
+                @Override
+                public boolean apply(Entry<String, V> e) {
+                  return !added.containsKey(e.getKey());
+                }
+              });
+          return Iterators.unmodifiableIterator(Iterators.concat(fromBase, added.entrySet().iterator()));
+        }
+
+        @Override
+        public int size() {
+          int size = added.size();
+          for (String key : base.keySet()) {
+            if (!added.containsKey(key)) {
+              size++;
+            }
+          }
+          return size;
+        }
+      };
+    }
   }
 }
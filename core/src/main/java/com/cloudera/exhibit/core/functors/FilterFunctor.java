@@ -16,10 +16,12 @@ package com.cloudera.exhibit.core.functors;
 
 import com.cloudera.exhibit.core.Exhibit;
 import com.cloudera.exhibit.core.ExhibitDescriptor;
+import com.cloudera.exhibit.core.Exhibits;
 import com.cloudera.exhibit.core.FieldType;
 import com.cloudera.exhibit.core.Frame;
 import com.cloudera.exhibit.core.Functor;
 import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.core.ReferenceAware;
 import com.cloudera.exhibit.core.Vec;
 import com.cloudera.exhibit.core.simple.SimpleExhibit;
 import com.cloudera.exhibit.core.simple.SimpleObs;
@@ -33,7 +35,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-public class FilterFunctor implements Functor, Serializable {
+public class FilterFunctor implements Functor, ReferenceAware, Serializable {
 
   private final Set<String> keep;
   private transient ExhibitDescriptor descriptor;
@@ -67,6 +69,11 @@ public class FilterFunctor implements Functor, Serializable {
     return descriptor;
   }
 
+  @Override
+  public ExhibitDescriptor references(ExhibitDescriptor descriptor) {
+    return Exhibits.project(descriptor, keep);
+  }
+
   @Override
   public void cleanup() {
     // No-op
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core.lazy;
+
+import com.cloudera.exhibit.core.Exhibit;
+import com.cloudera.exhibit.core.ExhibitDescriptor;
+import com.cloudera.exhibit.core.Frame;
+import com.cloudera.exhibit.core.Obs;
+import com.cloudera.exhibit.core.Vec;
+import com.cloudera.exhibit.core.simple.SimpleExhibit;
+import com.google.common.collect.Maps;
+
+import java.io.ObjectStreamException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An {@link Exhibit} whose frames and vectors are only decoded when they are first looked up
+ * in its {@link #frames()} or {@link #vectors()} maps, and then kept for later lookups. The
+ * descriptor and attributes are available up front, so a calculation only pays for decoding
+ * the frames and vectors that it actually reads.
+ *
+ * <p>Iterating over the keys of the maps does not decode anything; iterating over their values
+ * or entry values does. Like the other exhibits, instances are not safe for use by multiple
+ * threads at once.
+ */
+public class LazyExhibit implements Exhibit {
+
+  /**
+   * Decodes one frame or vector of a {@code LazyExhibit}, usually from a slice of the raw bytes
+   * of a record.
+   */
+  public interface Loader<T> {
+    T load();
+  }
+
+  private final ExhibitDescriptor descriptor;
+  private final Obs attributes;
+  private final LazyMap<Frame> frames;
+  private final LazyMap<Vec> vectors;
+
+  public LazyExhibit(ExhibitDescriptor descriptor, Obs attributes,
+                     Map<String, ? extends Loader<? extends Frame>> frames,
+                     Map<String, ? extends Loader<? extends Vec>> vectors) {
+    this.descriptor = descriptor;
+    this.attributes = attributes;
+    this.frames = new LazyMap<Frame>(frames);
+    this.vectors = new LazyMap<Vec>(vectors);
+  }
+
+  @Override
+  public ExhibitDescriptor descriptor() {
+    return descriptor;
+  }
+
+  @Override
+  public Obs attributes() {
+    return attributes;
+  }
+
+  @Override
+  public Map<String, Frame> frames() {
+    return frames;
+  }
+
+  @Override
+  public Map<String, Vec> vectors() {
+    return vectors;
+  }
+
+  /**
+   * Returns true if the frame or vector with the given name has already been decoded.
+   */
+  public boolean isLoaded(String name) {
+    return frames.loaded.containsKey(name) || vectors.loaded.containsKey(name);
+  }
+
+  // The loaders are not serializable, so everything is decoded before this exhibit is written
+  private Object writeReplace() throws ObjectStreamException {
+    return new SimpleExhibit(attributes, Maps.newHashMap(frames), Maps.<String, Vec>newHashMap(vectors));
+  }
+
+  private static class LazyMap<V> extends AbstractMap<String, V> {
+    private final Map<String, ? extends Loader<? extends V>> loaders;
+    private final Map<String, V> loaded;
+
+    LazyMap(Map<String, ? extends Loader<? extends V>> loaders) {
+      this.loaders = loaders;
+      this.loaded = Maps.newHashMapWithExpectedSize(loaders.size());
+    }
+
+    @Override
+    public V get(Object key) {
+      V value = loaded.get(key);
+      if (value == null) {
+        Loader<? extends V> loader = loaders.get(key);
+        if (loader != null) {
+          value = loader.load();
+          loaded.put((String) key, value);
+        }
+      }
+      return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return loaders.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+      return loaders.size();
+    }
+
+    @Override
+    public Set<String> keySet() {
+      return Collections.unmodifiableSet(loaders.keySet());
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+      return new AbstractSet<Entry<String, V>>() {
+        @Override
+        public Iterator<Entry<String, V>> iterator() {
+          final Iterator<String> keys = loaders.keySet().iterator();
+          return new Iterator<Entry<String, V>>() {
+            @Override
+            public boolean hasNext() {
+              return keys.hasNext();
+            }
+
+            @Override
+            public Entry<String, V> next() {
+              return new LazyEntry(keys.next());
+            }
+
+            @Override
+            public void remove() {
+              throw new UnsupportedOperationException();
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return loaders.size();
+        }
+      };
+    }
+
+    private class LazyEntry implements Entry<String, V> {
+      private final String key;
+
+      LazyEntry(String key) {
+        this.key = key;
+      }
+
+      @Override
+      public String getKey() {
+        return key;
+      }
+
+      @Override
+      public V getValue() {
+        return get(key);
+      }
+
+      @Override
+      public V setValue(V value) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public boolean equals(Object o) {
+        if (!(o instanceof Entry)) {
+          return false;
+        }
+        Entry<?, ?> other = (Entry<?, ?>) o;
+        return key.equals(other.getKey()) && getValue().equals(other.getValue());
+      }
+
+      @Override
+      public int hashCode() {
+        return key.hashCode() ^ getValue().hashCode();
+      }
+    }
+  }
+}
@@ -57,10 +57,13 @@ public class SimpleObs extends Obs {
 
   @Override
   public boolean equals(Object other) {
-    if (other == null || !(other instanceof SimpleObs)) {
+    if (other == null || !(other instanceof Obs)) {
       return false;
     }
-    SimpleObs obs = (SimpleObs) other;
-    return descriptor.equals(obs.descriptor) && values.equals(obs.values);
+    if (other instanceof SimpleObs) {
+      SimpleObs obs = (SimpleObs) other;
+      return descriptor.equals(obs.descriptor) && values.equals(obs.values);
+    }
+    return valuesEqual(this, (Obs) other);
   }
 }
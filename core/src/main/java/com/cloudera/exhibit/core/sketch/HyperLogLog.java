@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core.sketch;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * A HyperLogLog sketch for estimating the number of distinct values in a stream, as described in
+ * Flajolet et al., "HyperLogLog: the analysis of a near-optimal cardinality estimation algorithm"
+ * (2007), with linear counting for small cardinalities. With {@code 2^p} registers the relative
+ * standard error of the estimate is about {@code 1.04 / sqrt(2^p)}, e.g., 1.6% for the default
+ * precision of 12. Sketches with the same precision can be merged.
+ */
+public class HyperLogLog implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final int DEFAULT_PRECISION = 12;
+
+  private static final HashFunction HASH = Hashing.murmur3_128();
+
+  private final int p;
+  private final byte[] registers;
+
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  public HyperLogLog(int p) {
+    this(p, new byte[1 << p]);
+  }
+
+  private HyperLogLog(int p, byte[] registers) {
+    Preconditions.checkArgument(p >= 4 && p <= 18, "Precision must be between 4 and 18: %s", p);
+    this.p = p;
+    this.registers = registers;
+  }
+
+  /**
+   * Returns a sketch with a copy of the given registers, e.g., as returned by {@link #registers()}.
+   */
+  public static HyperLogLog fromRegisters(byte[] registers) {
+    int p = Integer.numberOfTrailingZeros(registers.length);
+    Preconditions.checkArgument(registers.length == 1 << p, "Not a power of two: %s", registers.length);
+    return new HyperLogLog(p, registers.clone());
+  }
+
+  public int precision() {
+    return p;
+  }
+
+  /**
+   * Returns a copy of the registers of this sketch.
+   */
+  public byte[] registers() {
+    return registers.clone();
+  }
+
+  /**
+   * Adds a value to the sketch. Numbers are hashed by value, so that, e.g., an integer and a long
+   * with the same value are counted once; other values are hashed by their string form. Nulls are
+   * ignored.
+   */
+  public HyperLogLog add(Object value) {
+    if (value != null) {
+      addHash(hash(value));
+    }
+    return this;
+  }
+
+  public HyperLogLog addHash(long hash) {
+    int index = (int) (hash >>> (64 - p));
+    // The rank of the first set bit in the remaining bits, with a sentinel bit so it is bounded
+    long w = (hash << p) | (1L << (p - 1));
+    byte rank = (byte) (Long.numberOfLeadingZeros(w) + 1);
+    if (rank > registers[index]) {
+      registers[index] = rank;
+    }
+    return this;
+  }
+
+  /**
+   * Returns the hash that {@link #add} uses for a value, so that callers can store hashes and add
+   * them later with {@link #addHash}.
+   */
+  public static long hash(Object value) {
+    if (value instanceof Long || value instanceof Integer || value instanceof Short) {
+      return HASH.hashLong(((Number) value).longValue()).asLong();
+    } else if (value instanceof Double || value instanceof Float) {
+      double d = ((Number) value).doubleValue();
+      if (d == Math.rint(d) && !Double.isInfinite(d)) {
+        return HASH.hashLong((long) d).asLong();
+      }
+      return HASH.hashLong(Double.doubleToLongBits(d)).asLong();
+    }
+    return HASH.hashString(value.toString(), Charsets.UTF_8).asLong();
+  }
+
+  /**
+   * Folds the registers of another sketch with the same precision into this one.
+   */
+  public HyperLogLog merge(HyperLogLog other) {
+    Preconditions.checkArgument(p == other.p, "Cannot merge sketches of precision %s and %s", p, other.p);
+    for (int i = 0; i < registers.length; i++) {
+      if (other.registers[i] > registers[i]) {
+        registers[i] = other.registers[i];
+      }
+    }
+    return this;
+  }
+
+  public long estimate() {
+    int m = registers.length;
+    double sum = 0.0;
+    int zeros = 0;
+    for (byte r : registers) {
+      sum += 1.0 / (1L << r);
+      if (r == 0) {
+        zeros++;
+      }
+    }
+    double estimate = alpha(m) * m * m / sum;
+    if (estimate <= 2.5 * m && zeros > 0) {
+      estimate = m * Math.log((double) m / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  // The encoding used by Sketches: the precision, then the registers
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(p);
+    out.write(registers);
+  }
+
+  static HyperLogLog read(DataInputStream in) throws IOException {
+    int p = in.readByte();
+    Preconditions.checkArgument(p >= 4 && p <= 18, "Precision must be between 4 and 18: %s", p);
+    byte[] registers = new byte[1 << p];
+    in.readFully(registers);
+    return new HyperLogLog(p, registers);
+  }
+
+  private static double alpha(int m) {
+    switch (m) {
+      case 16:
+        return 0.673;
+      case 32:
+        return 0.697;
+      case 64:
+        return 0.709;
+      default:
+        return 0.7213 / (1.0 + 1.079 / m);
+    }
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core.sketch;
+
+import com.google.common.base.Preconditions;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A mergeable sketch of a stream of numbers for estimating its quantiles, in the style of the KLL
+ * sketch (Karnin, Lang and Liberty, "Optimal Quantile Approximation in Streams", 2016). Values are
+ * kept in levels of at most {@code k} items; when a level fills up, it is sorted and every other
+ * item (starting at a random offset) is promoted to the next level, where each item stands for
+ * twice as many values. The rank error of the estimates is roughly {@code log2(n / k) / k}.
+ */
+public class QuantileSketch implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final int DEFAULT_K = 200;
+
+  private final int k;
+  private double[][] levels;
+  private int[] sizes;
+  private long count;
+  private final Random random = new Random(1729L);
+
+  public QuantileSketch() {
+    this(DEFAULT_K);
+  }
+
+  public QuantileSketch(int k) {
+    Preconditions.checkArgument(k >= 8, "Level capacity must be at least 8: %s", k);
+    this.k = k;
+    this.levels = new double[][] { new double[k] };
+    this.sizes = new int[1];
+  }
+
+  public long count() {
+    return count;
+  }
+
+  public QuantileSketch add(double value) {
+    if (Double.isNaN(value)) {
+      return this;
+    }
+    append(0, value);
+    count++;
+    compact();
+    return this;
+  }
+
+  /**
+   * Folds the values of another sketch into this one, level by level.
+   */
+  public QuantileSketch merge(QuantileSketch other) {
+    for (int h = 0; h < other.levels.length; h++) {
+      for (int i = 0; i < other.sizes[h]; i++) {
+        append(h, other.levels[h][i]);
+      }
+    }
+    count += other.count;
+    compact();
+    return this;
+  }
+
+  /**
+   * Returns an estimate of the value at the given quantile (between 0 and 1) of the values added
+   * so far, or NaN if there are none.
+   */
+  public double quantile(double q) {
+    Preconditions.checkArgument(q >= 0.0 && q <= 1.0, "Quantile must be between 0 and 1: %s", q);
+    if (count == 0) {
+      return Double.NaN;
+    }
+    // Walk the sorted levels in value order, weighting each item of level h by 2^h
+    double[][] sorted = new double[levels.length][];
+    long total = 0;
+    for (int h = 0; h < levels.length; h++) {
+      sorted[h] = Arrays.copyOf(levels[h], sizes[h]);
+      Arrays.sort(sorted[h]);
+      total += ((long) sizes[h]) << h;
+    }
+    int[] heads = new int[levels.length];
+    double target = q * total;
+    long cumulative = 0;
+    double last = Double.NaN;
+    while (true) {
+      int min = -1;
+      for (int h = 0; h < sorted.length; h++) {
+        if (heads[h] < sorted[h].length && (min < 0 || sorted[h][heads[h]] < sorted[min][heads[min]])) {
+          min = h;
+        }
+      }
+      if (min < 0) {
+        return last;
+      }
+      last = sorted[min][heads[min]++];
+      cumulative += 1L << min;
+      if (cumulative >= target) {
+        return last;
+      }
+    }
+  }
+
+  // The encoding used by Sketches: k, the count, and the items of each level
+  void write(DataOutputStream out) throws IOException {
+    out.writeInt(k);
+    out.writeLong(count);
+    out.writeInt(levels.length);
+    for (int h = 0; h < levels.length; h++) {
+      out.writeInt(sizes[h]);
+      for (int i = 0; i < sizes[h]; i++) {
+        out.writeDouble(levels[h][i]);
+      }
+    }
+  }
+
+  static QuantileSketch read(DataInputStream in) throws IOException {
+    int k = in.readInt();
+    Preconditions.checkArgument(k <= 1 << 20, "Invalid level capacity: %s", k);
+    QuantileSketch qs = new QuantileSketch(k);
+    qs.count = in.readLong();
+    int height = in.readInt();
+    Preconditions.checkArgument(height > 0 && height <= 64, "Invalid number of levels: %s", height);
+    qs.levels = new double[height][];
+    qs.sizes = new int[height];
+    for (int h = 0; h < height; h++) {
+      int size = in.readInt();
+      Sketches.checkLength(size, 8, in);
+      qs.levels[h] = new double[Math.max(size, qs.k)];
+      for (int i = 0; i < size; i++) {
+        qs.levels[h][i] = in.readDouble();
+      }
+      qs.sizes[h] = size;
+    }
+    return qs;
+  }
+
+  private void append(int level, double value) {
+    if (level >= levels.length) {
+      levels = Arrays.copyOf(levels, level + 1);
+      sizes = Arrays.copyOf(sizes, level + 1);
+      for (int h = 0; h < levels.length; h++) {
+        if (levels[h] == null) {
+          levels[h] = new double[k];
+        }
+      }
+    }
+    if (sizes[level] == levels[level].length) {
+      levels[level] = Arrays.copyOf(levels[level], 2 * levels[level].length);
+    }
+    levels[level][sizes[level]++] = value;
+  }
+
+  private void compact() {
+    for (int h = 0; h < levels.length; h++) {
+      if (sizes[h] >= k) {
+        double[] level = levels[h];
+        int size = sizes[h];
+        Arrays.sort(level, 0, size);
+        // An odd item out stays behind at this level
+        int keep = size % 2;
+        for (int i = keep + random.nextInt(2); i < size; i += 2) {
+          append(h + 1, level[i]);
+        }
+        sizes[h] = keep;
+      }
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core.sketch;
+
+import com.google.common.io.BaseEncoding;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Converts sketches to and from strings, so that they can be returned as the values of a frame
+ * (which has no binary type) and merged later on, e.g., across the rows of a table. Each sketch is
+ * written in a compact binary form of its own, behind a byte that names its type and a version
+ * byte, and then base64-encoded; reading a string only ever creates the sketch it names.
+ */
+public final class Sketches {
+
+  private static final byte HYPER_LOG_LOG = 1;
+  private static final byte QUANTILE_SKETCH = 2;
+  private static final byte SPACE_SAVING = 3;
+
+  private static final byte VERSION = 1;
+
+  private Sketches() {
+  }
+
+  public static String toString(HyperLogLog sketch) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try {
+      DataOutputStream out = header(baos, HYPER_LOG_LOG);
+      sketch.write(out);
+      out.close();
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not encode sketch", e);
+    }
+    return BaseEncoding.base64().encode(baos.toByteArray());
+  }
+
+  public static String toString(QuantileSketch sketch) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try {
+      DataOutputStream out = header(baos, QUANTILE_SKETCH);
+      sketch.write(out);
+      out.close();
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not encode sketch", e);
+    }
+    return BaseEncoding.base64().encode(baos.toByteArray());
+  }
+
+  /**
+   * Encodes a SpaceSaving sketch, whose values must be strings, booleans, or numbers of the
+   * standard types.
+   */
+  public static String toString(SpaceSaving sketch) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try {
+      DataOutputStream out = header(baos, SPACE_SAVING);
+      sketch.write(out);
+      out.close();
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not encode sketch", e);
+    }
+    return BaseEncoding.base64().encode(baos.toByteArray());
+  }
+
+  public static <T> T fromString(String encoded, Class<T> clazz) {
+    byte type;
+    if (clazz == HyperLogLog.class) {
+      type = HYPER_LOG_LOG;
+    } else if (clazz == QuantileSketch.class) {
+      type = QUANTILE_SKETCH;
+    } else if (clazz == SpaceSaving.class) {
+      type = SPACE_SAVING;
+    } else {
+      throw new IllegalArgumentException("Not a sketch class: " + clazz);
+    }
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(BaseEncoding.base64().decode(encoded)));
+      if (in.readByte() != type || in.readByte() != VERSION) {
+        throw new IllegalArgumentException("Not an encoded " + clazz.getSimpleName() + ": " + encoded);
+      }
+      Object sketch;
+      if (type == HYPER_LOG_LOG) {
+        sketch = HyperLogLog.read(in);
+      } else if (type == QUANTILE_SKETCH) {
+        sketch = QuantileSketch.read(in);
+      } else {
+        sketch = SpaceSaving.read(in);
+      }
+      if (in.available() > 0) {
+        throw new IllegalArgumentException("Trailing bytes after an encoded sketch: " + encoded);
+      }
+      return clazz.cast(sketch);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Not an encoded sketch: " + encoded, e);
+    }
+  }
+
+  // Checks that the stream holds at least n items of the given size, before an array is made for them
+  static void checkLength(int n, int bytesEach, DataInputStream in) throws IOException {
+    if (n < 0 || (long) n * bytesEach > in.available()) {
+      throw new IllegalArgumentException("Invalid length in encoded sketch: " + n);
+    }
+  }
+
+  private static DataOutputStream header(ByteArrayOutputStream baos, byte type) throws IOException {
+    DataOutputStream out = new DataOutputStream(baos);
+    out.writeByte(type);
+    out.writeByte(VERSION);
+    return out;
+  }
+}
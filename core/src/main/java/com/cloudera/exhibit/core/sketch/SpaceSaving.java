@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core.sketch;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The SpaceSaving sketch of Metwally, Agrawal and El Abbadi ("Efficient Computation of Frequent
+ * and Top-k Elements in Data Streams", 2005) for finding the most frequent values in a stream. It
+ * keeps counters for at most {@code capacity} values; a new value takes over the counter with the
+ * smallest count, so the count of each tracked value overestimates its true count by at most that
+ * smallest count. The counters are kept in a min-heap, so that finding the smallest one does not
+ * take a scan of all of them.
+ *
+ * <p>Merging follows Agarwal et al. ("Mergeable Summaries", 2012): a value that only one of the
+ * sketches tracks may have been seen by the other as often as the other's smallest count (or never,
+ * if the other is not full), so it is credited with that count before the largest counters are kept.
+ */
+public class SpaceSaving implements Serializable {
+
+  private static final long serialVersionUID = 2L;
+
+  public static final int DEFAULT_CAPACITY = 100;
+
+  private static final Comparator<Map.Entry<Object, Long>> BY_COUNT = new Comparator<Map.Entry<Object, Long>>() {
+    @Override
+    public int compare(Map.Entry<Object, Long> a, Map.Entry<Object, Long> b) {
+      return b.getValue().compareTo(a.getValue());
+    }
+  };
+
+  private final int capacity;
+  // A binary min-heap of the tracked values and their counts, with the smallest count at 0
+  private final Object[] values;
+  private final long[] counts;
+  private int size;
+  // The position of each tracked value in the heap
+  private final Map<Object, Integer> positions;
+
+  public SpaceSaving() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public SpaceSaving(int capacity) {
+    Preconditions.checkArgument(capacity > 0, "Capacity must be positive: %s", capacity);
+    this.capacity = capacity;
+    this.values = new Object[capacity];
+    this.counts = new long[capacity];
+    this.positions = Maps.newHashMapWithExpectedSize(capacity);
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public SpaceSaving add(Object value) {
+    return add(value, 1L);
+  }
+
+  public SpaceSaving add(Object value, long count) {
+    if (value == null) {
+      return this;
+    }
+    Integer pos = positions.get(value);
+    if (pos != null) {
+      counts[pos] += count;
+      fix(pos);
+    } else if (size < capacity) {
+      values[size] = value;
+      counts[size] = count;
+      positions.put(value, size);
+      fix(size++);
+    } else {
+      positions.remove(values[0]);
+      values[0] = value;
+      counts[0] += count;
+      positions.put(value, 0);
+      fix(0);
+    }
+    return this;
+  }
+
+  public SpaceSaving merge(SpaceSaving other) {
+    long thisMin = min();
+    long otherMin = other.min();
+    Map<Object, Long> merged = Maps.newHashMapWithExpectedSize(size + other.size);
+    for (int i = 0; i < size; i++) {
+      Integer pos = other.positions.get(values[i]);
+      merged.put(values[i], counts[i] + (pos == null ? otherMin : other.counts[pos]));
+    }
+    for (int i = 0; i < other.size; i++) {
+      if (!positions.containsKey(other.values[i])) {
+        merged.put(other.values[i], other.counts[i] + thisMin);
+      }
+    }
+    List<Map.Entry<Object, Long>> top = sorted(merged);
+    Arrays.fill(values, 0, size, null);
+    positions.clear();
+    size = 0;
+    for (Map.Entry<Object, Long> e : top.subList(0, Math.min(capacity, top.size()))) {
+      add(e.getKey(), e.getValue());
+    }
+    return this;
+  }
+
+  /**
+   * Returns the (at most) {@code k} values with the largest counts, largest first.
+   */
+  public List<Object> top(int k) {
+    List<Object> ret = Lists.newArrayList();
+    for (Map.Entry<Object, Long> e : sorted()) {
+      if (ret.size() == k) {
+        break;
+      }
+      ret.add(e.getKey());
+    }
+    return ret;
+  }
+
+  /**
+   * Returns the estimated count of the given value, which is 0 if it is not tracked.
+   */
+  public long count(Object value) {
+    Integer pos = positions.get(value);
+    return pos == null ? 0L : counts[pos];
+  }
+
+  // The most times that a value this sketch does not track may have been seen
+  private long min() {
+    return size < capacity ? 0L : counts[0];
+  }
+
+  // Moves the counter at i up or down the heap to where its count now belongs
+  private void fix(int i) {
+    while (i > 0 && counts[(i - 1) / 2] > counts[i]) {
+      swap(i, (i - 1) / 2);
+      i = (i - 1) / 2;
+    }
+    while (true) {
+      int smallest = i;
+      int left = 2 * i + 1;
+      int right = left + 1;
+      if (left < size && counts[left] < counts[smallest]) {
+        smallest = left;
+      }
+      if (right < size && counts[right] < counts[smallest]) {
+        smallest = right;
+      }
+      if (smallest == i) {
+        return;
+      }
+      swap(i, smallest);
+      i = smallest;
+    }
+  }
+
+  private void swap(int i, int j) {
+    Object v = values[i];
+    values[i] = values[j];
+    values[j] = v;
+    long c = counts[i];
+    counts[i] = counts[j];
+    counts[j] = c;
+    positions.put(values[i], i);
+    positions.put(values[j], j);
+  }
+
+  // The encoding used by Sketches: the capacity, then each tracked value (as a type tag and the
+  // value) and its count. Only strings, booleans, and the standard numeric types can be encoded.
+  void write(DataOutputStream out) throws IOException {
+    out.writeInt(capacity);
+    out.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      writeValue(values[i], out);
+      out.writeLong(counts[i]);
+    }
+  }
+
+  static SpaceSaving read(DataInputStream in) throws IOException {
+    SpaceSaving ss = new SpaceSaving(in.readInt());
+    int size = in.readInt();
+    Preconditions.checkArgument(size >= 0 && size <= ss.capacity, "Invalid number of counters: %s", size);
+    for (int i = 0; i < size; i++) {
+      Object value = readValue(in);
+      ss.add(value, in.readLong());
+    }
+    return ss;
+  }
+
+  private static void writeValue(Object value, DataOutputStream out) throws IOException {
+    if (value instanceof String) {
+      out.writeByte('S');
+      writeString((String) value, out);
+    } else if (value instanceof Boolean) {
+      out.writeByte('Z');
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof Short) {
+      out.writeByte('H');
+      out.writeShort((Short) value);
+    } else if (value instanceof Integer) {
+      out.writeByte('I');
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte('J');
+      out.writeLong((Long) value);
+    } else if (value instanceof Float) {
+      out.writeByte('F');
+      out.writeFloat((Float) value);
+    } else if (value instanceof Double) {
+      out.writeByte('D');
+      out.writeDouble((Double) value);
+    } else if (value instanceof BigDecimal) {
+      out.writeByte('N');
+      writeString(value.toString(), out);
+    } else {
+      throw new IllegalArgumentException("Cannot encode a value of " + value.getClass() + " in a sketch");
+    }
+  }
+
+  private static Object readValue(DataInputStream in) throws IOException {
+    byte tag = in.readByte();
+    switch (tag) {
+      case 'S':
+        return readString(in);
+      case 'Z':
+        return in.readBoolean();
+      case 'H':
+        return in.readShort();
+      case 'I':
+        return in.readInt();
+      case 'J':
+        return in.readLong();
+      case 'F':
+        return in.readFloat();
+      case 'D':
+        return in.readDouble();
+      case 'N':
+        return new BigDecimal(readString(in));
+      default:
+        throw new IllegalArgumentException("Unknown value type in sketch: " + tag);
+    }
+  }
+
+  private static void writeString(String value, DataOutputStream out) throws IOException {
+    byte[] bytes = value.getBytes(Charsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    Sketches.checkLength(length, 1, in);
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  private List<Map.Entry<Object, Long>> sorted() {
+    List<Map.Entry<Object, Long>> entries = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      entries.add(Maps.immutableEntry(values[i], counts[i]));
+    }
+    Collections.sort(entries, BY_COUNT);
+    return entries;
+  }
+
+  private static List<Map.Entry<Object, Long>> sorted(Map<Object, Long> counts) {
+    List<Map.Entry<Object, Long>> entries = Lists.newArrayList(counts.entrySet());
+    Collections.sort(entries, BY_COUNT);
+    return entries;
+  }
+}
@@ -1,16 +1,14 @@
 package com.cloudera.exhibit.core.vector;
 
 import com.cloudera.exhibit.core.FieldType;
-import com.google.common.primitives.Booleans;
 
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 
-public class BooleanVector extends Vector {
+public class BooleanVector extends PrimitiveVector {
 
   private boolean [] values;
-  private int size;
 
   protected BooleanVector(){
     this(Collections.emptyList());
@@ -18,21 +16,26 @@ public class BooleanVector extends Vector {
 
   // Construct which avoids the copy of data
   public BooleanVector(final boolean[] arr) {
-    super(FieldType.BOOLEAN);
-    size = arr.length;
+    this(arr, null);
+  }
+
+  // Construct which avoids the copy of data; the set bits of nulls mark the null entries
+  public BooleanVector(final boolean[] arr, final BitSet nulls) {
+    super(FieldType.BOOLEAN, arr.length, nulls);
     values = arr;
   }
 
   protected BooleanVector(List<Object> values) {
-    super(FieldType.BOOLEAN);
-    this.size = values.size();
+    super(FieldType.BOOLEAN, values.size(), nullsOf(values));
     this.values = new boolean[this.size];
     int idx = 0;
     for(Object o: values) {
-      if(!(o instanceof Boolean)){
-        throw new IllegalArgumentException("Received non-boolean value" + o.toString() );
+      if (o != null) {
+        if(!(o instanceof Boolean)){
+          throw new IllegalArgumentException("Received non-boolean value" + o.toString() );
+        }
+        this.values[idx] = (Boolean)o;
       }
-      this.values[idx] = (Boolean)o;
       idx++;
     }
   }
@@ -43,16 +46,11 @@ public class BooleanVector extends Vector {
 
   @Override
   public Boolean get(int index) {
-    return values[index];
+    return isNull(index) ? null : values[index];
   }
 
   @Override
-  public int size() {
-    return size;
-  }
-
-  @Override
-  public Iterator<Object> iterator() {
-    return ((List)Booleans.asList(values)).iterator();
+  public boolean getBoolean(int index) {
+    return values[index];
   }
 }
@@ -1,16 +1,14 @@
 package com.cloudera.exhibit.core.vector;
 
 import com.cloudera.exhibit.core.FieldType;
-import com.google.common.primitives.Doubles;
 
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 
-public class DoubleVector extends Vector {
+public class DoubleVector extends PrimitiveVector {
 
   private double [] values;
-  private int size;
 
   protected DoubleVector(){
     this(Collections.emptyList());
@@ -18,21 +16,28 @@ public class DoubleVector extends Vector {
 
   // Construct which avoids the copy of data
   public DoubleVector(final double[] arr) {
-    super(FieldType.DOUBLE);
-    size = arr.length;
-    values = arr;
+    this(arr, null);
+  }
+
+  // Construct which avoids the copy of data; the set bits of nulls mark the null entries. The
+  // caller's array is shared, not written to: if a null entry holds a non-zero value, the vector
+  // keeps a copy with its null entries zeroed instead.
+  public DoubleVector(final double[] arr, final BitSet nulls) {
+    super(FieldType.DOUBLE, arr.length, nulls);
+    values = zeroNulls(arr, getNulls());
   }
 
   protected DoubleVector(List<Object> values) {
-    super(FieldType.DOUBLE);
-    this.size = values.size();
+    super(FieldType.DOUBLE, values.size(), nullsOf(values));
     this.values = new double[this.size];
     int idx = 0;
     for(Object o: values) {
-      if(!(o instanceof Number)){
-        throw new IllegalArgumentException("Received non-double value" + o.toString() );
+      if (o != null) {
+        if(!(o instanceof Number)){
+          throw new IllegalArgumentException("Received non-double value" + o.toString() );
+        }
+        this.values[idx] = ((Number)o).doubleValue();
       }
-      this.values[idx] = ((Number)o).doubleValue();
       idx++;
     }
   }
@@ -43,16 +48,36 @@ public class DoubleVector extends Vector {
 
   @Override
   public Double get(int index) {
+    return isNull(index) ? null : values[index];
+  }
+
+  @Override
+  public double getDouble(int index) {
     return values[index];
   }
 
   @Override
-  public int size() {
-    return size;
+  public long getLong(int index) {
+    return (long) values[index];
   }
 
   @Override
-  public Iterator<Object> iterator() {
-    return ((List)Doubles.asList(values)).iterator();
+  public int getInt(int index) {
+    return (int) values[index];
+  }
+
+  private static double[] zeroNulls(double[] arr, BitSet nulls) {
+    double[] out = arr;
+    if (nulls != null) {
+      for (int i = nulls.nextSetBit(0); i >= 0 && i < arr.length; i = nulls.nextSetBit(i + 1)) {
+        if (out[i] != 0) {
+          if (out == arr) {
+            out = arr.clone();
+          }
+          out[i] = 0.0;
+        }
+      }
+    }
+    return out;
   }
 }
@@ -1,16 +1,14 @@
 package com.cloudera.exhibit.core.vector;
 
 import com.cloudera.exhibit.core.FieldType;
-import com.google.common.primitives.Floats;
 
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 
-public class FloatVector extends Vector {
+public class FloatVector extends PrimitiveVector {
 
   private float [] values;
-  private int size;
 
   protected FloatVector(){
     this(Collections.emptyList());
@@ -18,37 +16,68 @@ public class FloatVector extends Vector {
 
   // Construct which avoids the copy of data
   public FloatVector(final float[] arr) {
-    super(FieldType.FLOAT);
-    size = arr.length;
-    values = arr;
+    this(arr, null);
+  }
+
+  // Construct which avoids the copy of data; the set bits of nulls mark the null entries. The
+  // caller's array is shared, not written to: if a null entry holds a non-zero value, the vector
+  // keeps a copy with its null entries zeroed instead.
+  public FloatVector(final float[] arr, final BitSet nulls) {
+    super(FieldType.FLOAT, arr.length, nulls);
+    values = zeroNulls(arr, getNulls());
   }
 
   protected FloatVector(List<Object> values) {
-    super(FieldType.FLOAT);
-    this.size = values.size();
+    super(FieldType.FLOAT, values.size(), nullsOf(values));
     this.values = new float[this.size];
     int idx = 0;
     for(Object o: values) {
-      if(!(o instanceof Float)){
-        throw new IllegalArgumentException("Received non-float value" + o.toString() );
+      if (o != null) {
+        if(!(o instanceof Number)){
+          throw new IllegalArgumentException("Received non-float value" + o.toString() );
+        }
+        this.values[idx] = ((Number)o).floatValue();
       }
-      this.values[idx] = (Float)o;
       idx++;
     }
   }
 
+  public float[] getData() {
+    return values;
+  }
+
   @Override
   public Float get(int index) {
+    return isNull(index) ? null : values[index];
+  }
+
+  @Override
+  public double getDouble(int index) {
     return values[index];
   }
 
   @Override
-  public int size() {
-    return size;
+  public long getLong(int index) {
+    return (long) values[index];
   }
 
   @Override
-  public Iterator<Object> iterator() {
-    return ((List)Floats.asList(values)).iterator();
+  public int getInt(int index) {
+    return (int) values[index];
+  }
+
+  private static float[] zeroNulls(float[] arr, BitSet nulls) {
+    float[] out = arr;
+    if (nulls != null) {
+      for (int i = nulls.nextSetBit(0); i >= 0 && i < arr.length; i = nulls.nextSetBit(i + 1)) {
+        if (out[i] != 0) {
+          if (out == arr) {
+            out = arr.clone();
+          }
+          out[i] = 0.0f;
+        }
+      }
+    }
+    return out;
   }
 }
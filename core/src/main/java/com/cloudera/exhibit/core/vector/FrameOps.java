@@ -0,0 +1,79 @@
+package com.cloudera.exhibit.core.vector;
+
+import com.cloudera.exhibit.core.Frame;
+import com.cloudera.exhibit.core.columnar.ColumnarFrame;
+
+/**
+ * The {@link VectorOps} kernels applied to the columns of a {@link Frame}. A
+ * {@link ColumnarFrame} is processed directly over its column arrays; other frames go through
+ * their typed, per-cell accessors.
+ */
+public final class FrameOps {
+
+  private FrameOps() {
+  }
+
+  public static double sum(Frame frame, int column) {
+    return VectorOps.sum(frame.$(column));
+  }
+
+  public static double mean(Frame frame, int column) {
+    return VectorOps.mean(frame.$(column));
+  }
+
+  public static double min(Frame frame, int column) {
+    return VectorOps.min(frame.$(column));
+  }
+
+  public static double max(Frame frame, int column) {
+    return VectorOps.max(frame.$(column));
+  }
+
+  public static int countNonNull(Frame frame, int column) {
+    return VectorOps.countNonNull(frame.$(column));
+  }
+
+  /**
+   * Returns the indices of the rows whose value in the given column satisfies {@code v op value}.
+   */
+  public static int[] filter(Frame frame, int column, VectorOps.Comparison op, double value) {
+    return VectorOps.filter(frame.$(column), op, value);
+  }
+
+  /**
+   * Returns a frame made up of the rows at the first {@code count} indices of {@code rows}.
+   */
+  public static ColumnarFrame gather(Frame frame, int[] rows, int count) {
+    if (frame instanceof ColumnarFrame) {
+      return ((ColumnarFrame) frame).select(rows, count);
+    }
+    ColumnarFrame.Builder b = ColumnarFrame.builder(frame.descriptor(), count);
+    for (int i = 0; i < count; i++) {
+      b.add(frame.get(rows[i]));
+    }
+    return b.build();
+  }
+
+  /**
+   * Returns the hash of the values of the given key columns for each row of the frame.
+   */
+  public static int[] hash(Frame frame, int... columns) {
+    int[] hashes = new int[frame.size()];
+    for (int column : columns) {
+      VectorOps.hash(frame.$(column), hashes);
+    }
+    return hashes;
+  }
+
+  public static int[] sortPermutation(Frame frame, int column) {
+    return VectorOps.sortPermutation(frame.$(column));
+  }
+
+  /**
+   * Returns a copy of the frame with its rows sorted (stably) by the given column, nulls last.
+   */
+  public static ColumnarFrame sort(Frame frame, int column) {
+    int[] perm = sortPermutation(frame, column);
+    return gather(frame, perm, perm.length);
+  }
+}
@@ -1,16 +1,14 @@
 package com.cloudera.exhibit.core.vector;
 
 import com.cloudera.exhibit.core.FieldType;
-import com.google.common.primitives.Ints;
 
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 
-public class IntVector extends Vector {
+public class IntVector extends PrimitiveVector {
 
   private int [] values;
-  private int size;
 
   protected IntVector(){
     this(Collections.emptyList());
@@ -18,21 +16,28 @@ public class IntVector extends Vector {
 
   // Construct which avoids the copy of data
   public IntVector(final int[] arr) {
-    super(FieldType.INTEGER);
-    size = arr.length;
-    values = arr;
+    this(arr, null);
+  }
+
+  // Construct which avoids the copy of data; the set bits of nulls mark the null entries. The
+  // caller's array is shared, not written to: if a null entry holds a non-zero value, the vector
+  // keeps a copy with its null entries zeroed instead.
+  public IntVector(final int[] arr, final BitSet nulls) {
+    super(FieldType.INTEGER, arr.length, nulls);
+    values = zeroNulls(arr, getNulls());
   }
 
   protected IntVector(List<Object> values) {
-    super(FieldType.INTEGER);
-    this.size = values.size();
+    super(FieldType.INTEGER, values.size(), nullsOf(values));
     this.values = new int[this.size];
     int idx = 0;
     for(Object o: values) {
-      if(!(o instanceof Integer)){
-        throw new IllegalArgumentException("Received non-int value" + o.toString() );
+      if (o != null) {
+        if(!(o instanceof Number)){
+          throw new IllegalArgumentException("Received non-int value" + o.toString() );
+        }
+        this.values[idx] = ((Number)o).intValue();
       }
-      this.values[idx] = (Integer)o;
       idx++;
     }
   }
@@ -43,16 +48,36 @@ public class IntVector extends Vector {
 
   @Override
   public Integer get(int index) {
+    return isNull(index) ? null : values[index];
+  }
+
+  @Override
+  public double getDouble(int index) {
     return values[index];
   }
 
   @Override
-  public int size() {
-    return size;
+  public long getLong(int index) {
+    return values[index];
   }
 
   @Override
-  public Iterator<Object> iterator() {
-    return ((List)Ints.asList(values)).iterator();
+  public int getInt(int index) {
+    return values[index];
+  }
+
+  private static int[] zeroNulls(int[] arr, BitSet nulls) {
+    int[] out = arr;
+    if (nulls != null) {
+      for (int i = nulls.nextSetBit(0); i >= 0 && i < arr.length; i = nulls.nextSetBit(i + 1)) {
+        if (out[i] != 0) {
+          if (out == arr) {
+            out = arr.clone();
+          }
+          out[i] = 0;
+        }
+      }
+    }
+    return out;
   }
 }
@@ -1,16 +1,14 @@
 package com.cloudera.exhibit.core.vector;
 
 import com.cloudera.exhibit.core.FieldType;
-import com.google.common.primitives.Longs;
 
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 
-public class LongVector extends Vector {
+public class LongVector extends PrimitiveVector {
 
   private long [] values;
-  private int size;
 
   protected LongVector(){
     this(Collections.emptyList());
@@ -18,37 +16,68 @@ public class LongVector extends Vector {
 
   // Construct which avoids the copy of data
   public LongVector(final long[] arr) {
-    super(FieldType.LONG);
-    size = arr.length;
-    values = arr;
+    this(arr, null);
+  }
+
+  // Construct which avoids the copy of data; the set bits of nulls mark the null entries. The
+  // caller's array is shared, not written to: if a null entry holds a non-zero value, the vector
+  // keeps a copy with its null entries zeroed instead.
+  public LongVector(final long[] arr, final BitSet nulls) {
+    super(FieldType.LONG, arr.length, nulls);
+    values = zeroNulls(arr, getNulls());
   }
 
   protected LongVector(List<Object> values) {
-    super(FieldType.LONG);
-    this.size = values.size();
+    super(FieldType.LONG, values.size(), nullsOf(values));
     this.values = new long[this.size];
     int idx = 0;
     for(Object o: values) {
-      if(!(o instanceof Long)){
-        throw new IllegalArgumentException("Received non-long value" + o.toString() );
+      if (o != null) {
+        if(!(o instanceof Number)){
+          throw new IllegalArgumentException("Received non-long value" + o.toString() );
+        }
+        this.values[idx] = ((Number)o).longValue();
       }
-      this.values[idx] = (Long)o;
       idx++;
     }
   }
 
+  public long[] getData() {
+    return values;
+  }
+
   @Override
   public Long get(int index) {
+    return isNull(index) ? null : values[index];
+  }
+
+  @Override
+  public double getDouble(int index) {
     return values[index];
   }
 
   @Override
-  public int size() {
-    return size;
+  public long getLong(int index) {
+    return values[index];
   }
 
   @Override
-  public Iterator<Object> iterator() {
-    return ((List)Longs.asList(values)).iterator();
+  public int getInt(int index) {
+    return (int) values[index];
+  }
+
+  private static long[] zeroNulls(long[] arr, BitSet nulls) {
+    long[] out = arr;
+    if (nulls != null) {
+      for (int i = nulls.nextSetBit(0); i >= 0 && i < arr.length; i = nulls.nextSetBit(i + 1)) {
+        if (out[i] != 0) {
+          if (out == arr) {
+            out = arr.clone();
+          }
+          out[i] = 0L;
+        }
+      }
+    }
+    return out;
   }
 }
@@ -0,0 +1,85 @@
+package com.cloudera.exhibit.core.vector;
+
+import com.cloudera.exhibit.core.FieldType;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Base class for the vectors that are backed by a primitive array. Null entries are
+ * tracked in a bitmap (a set bit marks a null) and hold a zero value in the array.
+ */
+public abstract class PrimitiveVector extends Vector {
+
+  protected final int size;
+  private final BitSet nulls;
+
+  protected PrimitiveVector(FieldType type, int size, BitSet nulls) {
+    super(type);
+    this.size = size;
+    this.nulls = nulls == null || nulls.isEmpty() ? null : nulls;
+  }
+
+  static BitSet nullsOf(List<Object> values) {
+    BitSet nulls = null;
+    int idx = 0;
+    for (Object o : values) {
+      if (o == null) {
+        if (nulls == null) {
+          nulls = new BitSet(values.size());
+        }
+        nulls.set(idx);
+      }
+      idx++;
+    }
+    return nulls;
+  }
+
+  public boolean hasNulls() {
+    return nulls != null;
+  }
+
+  /**
+   * Returns the bitmap of null entries in this vector, or null if the vector has no nulls.
+   */
+  public BitSet getNulls() {
+    return nulls;
+  }
+
+  @Override
+  public boolean isNull(int index) {
+    return nulls != null && nulls.get(index);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Iterator<Object> iterator() {
+    return new Iterator<Object>() {
+      private int offset = 0;
+
+      @Override
+      public boolean hasNext() {
+        return offset < size;
+      }
+
+      @Override
+      public Object next() {
+        if (offset >= size) {
+          throw new NoSuchElementException();
+        }
+        return get(offset++);
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+}
@@ -1,16 +1,14 @@
 package com.cloudera.exhibit.core.vector;
 
 import com.cloudera.exhibit.core.FieldType;
-import com.google.common.primitives.Shorts;
 
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 
-public class ShortVector extends Vector {
+public class ShortVector extends PrimitiveVector {
 
   private short [] values;
-  private int size;
 
   protected ShortVector(){
     this(Collections.emptyList());
@@ -18,37 +16,68 @@ public class ShortVector extends Vector {
 
   // Construct which avoids the copy of data
   public ShortVector(final short[] arr) {
-    super(FieldType.SHORT);
-    size = arr.length;
-    values = arr;
+    this(arr, null);
+  }
+
+  // Construct which avoids the copy of data; the set bits of nulls mark the null entries. The
+  // caller's array is shared, not written to: if a null entry holds a non-zero value, the vector
+  // keeps a copy with its null entries zeroed instead.
+  public ShortVector(final short[] arr, final BitSet nulls) {
+    super(FieldType.SHORT, arr.length, nulls);
+    values = zeroNulls(arr, getNulls());
   }
 
   protected ShortVector(List<Object> values) {
-    super(FieldType.SHORT);
-    this.size = values.size();
+    super(FieldType.SHORT, values.size(), nullsOf(values));
     this.values = new short[this.size];
     int idx = 0;
     for(Object o: values) {
-      if(!(o instanceof Short)){
-        throw new IllegalArgumentException("Received non-short value" + o.toString() + " class: " + o.getClass().getCanonicalName());
+      if (o != null) {
+        if(!(o instanceof Number)){
+          throw new IllegalArgumentException("Received non-short value" + o.toString() );
+        }
+        this.values[idx] = ((Number)o).shortValue();
       }
-      this.values[idx] = (Short)o;
       idx++;
     }
   }
 
+  public short[] getData() {
+    return values;
+  }
+
   @Override
   public Short get(int index) {
+    return isNull(index) ? null : values[index];
+  }
+
+  @Override
+  public double getDouble(int index) {
     return values[index];
   }
 
   @Override
-  public int size() {
-    return size;
+  public long getLong(int index) {
+    return values[index];
   }
 
   @Override
-  public Iterator<Object> iterator() {
-    return ((List)Shorts.asList(values)).iterator();
+  public int getInt(int index) {
+    return values[index];
+  }
+
+  private static short[] zeroNulls(short[] arr, BitSet nulls) {
+    short[] out = arr;
+    if (nulls != null) {
+      for (int i = nulls.nextSetBit(0); i >= 0 && i < arr.length; i = nulls.nextSetBit(i + 1)) {
+        if (out[i] != 0) {
+          if (out == arr) {
+            out = arr.clone();
+          }
+          out[i] = (short) 0;
+        }
+      }
+    }
+    return out;
   }
 }
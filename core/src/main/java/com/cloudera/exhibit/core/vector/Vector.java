@@ -22,4 +22,33 @@ public abstract class Vector implements Vec {
   public FieldType getType(){
     return this.type;
   }
+
+  @Override
+  public boolean isNull(int index) {
+    return get(index) == null;
+  }
+
+  @Override
+  public double getDouble(int index) {
+    Object v = get(index);
+    return v == null ? 0.0 : ((Number) v).doubleValue();
+  }
+
+  @Override
+  public long getLong(int index) {
+    Object v = get(index);
+    return v == null ? 0L : ((Number) v).longValue();
+  }
+
+  @Override
+  public int getInt(int index) {
+    Object v = get(index);
+    return v == null ? 0 : ((Number) v).intValue();
+  }
+
+  @Override
+  public boolean getBoolean(int index) {
+    Object v = get(index);
+    return v != null && (Boolean) v;
+  }
 }
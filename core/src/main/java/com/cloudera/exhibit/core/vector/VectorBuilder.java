@@ -9,12 +9,15 @@ public class VectorBuilder {
   public static Vector build(FieldType type, List<Object> values) {
     switch(type) {
       case LONG:
+        return new LongVector(values);
       case FLOAT:
+        return new FloatVector(values);
       case DOUBLE:
         return new DoubleVector(values);
       case BOOLEAN:
         return new BooleanVector(values);
       case SHORT:
+        return new ShortVector(values);
       case INTEGER:
         return new IntVector(values);
       case STRING:
@@ -36,8 +39,7 @@ public class VectorBuilder {
   }
 
   public static Vector shorts(List<Object> values) {
-    return new IntVector(values);
-    // return new ShortVector(values);
+    return new ShortVector(values);
   }
 
   public static Vector ints(List<Object> values) {
@@ -45,12 +47,10 @@ public class VectorBuilder {
   }
 
   public static Vector longs(List<Object> values) {
-    return new DoubleVector(values);
-    // return new LongVector(values);
+    return new LongVector(values);
   }
 
   public static Vector floats(List<Object> values) {
-    return new DoubleVector(values);
-    // return new FloatVector(values);
+    return new FloatVector(values);
   }
 }
@@ -0,0 +1,863 @@
+package com.cloudera.exhibit.core.vector;
+
+import com.cloudera.exhibit.core.FieldType;
+import com.cloudera.exhibit.core.Vec;
+import com.cloudera.exhibit.core.columnar.ColumnData;
+import com.cloudera.exhibit.core.columnar.ColumnarColumn;
+import com.cloudera.exhibit.core.columnar.DoubleColumnData;
+import com.cloudera.exhibit.core.columnar.IntColumnData;
+import com.cloudera.exhibit.core.columnar.LongColumnData;
+import com.cloudera.exhibit.core.columnar.StringColumnData;
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Kernels that run directly over the primitive arrays that back {@link DoubleVector},
+ * {@link IntVector}, {@link LongVector} and the columns of a
+ * {@link com.cloudera.exhibit.core.columnar.ColumnarFrame}. Every other {@link Vec} goes through
+ * its typed accessors, so the results do not depend on how a vector is stored.
+ *
+ * <p>Nulls are skipped by the aggregates, never pass a filter, sort after every other value,
+ * and hash to zero. The aggregates of a vector with no non-null values are {@code NaN}.
+ */
+public final class VectorOps {
+
+  public enum Comparison { LT, LE, GT, GE, EQ, NE }
+
+  private VectorOps() {
+  }
+
+  // The null entries of a primitive array always hold zero (the vector constructors and the
+  // column builders see to it), so sums and hashes can ignore the bitmap.
+
+  public static double sum(double[] values, int size) {
+    double sum = 0.0;
+    for (int i = 0; i < size; i++) {
+      sum += values[i];
+    }
+    return sum;
+  }
+
+  public static long sum(long[] values, int size) {
+    long sum = 0L;
+    for (int i = 0; i < size; i++) {
+      sum += values[i];
+    }
+    return sum;
+  }
+
+  public static long sum(int[] values, int size) {
+    long sum = 0L;
+    for (int i = 0; i < size; i++) {
+      sum += values[i];
+    }
+    return sum;
+  }
+
+  public static double min(double[] values, BitSet nulls, int size) {
+    if (nulls == null) {
+      if (size == 0) {
+        return Double.NaN;
+      }
+      double min = values[0];
+      for (int i = 1; i < size; i++) {
+        min = Math.min(min, values[i]);
+      }
+      return min;
+    }
+    int i = nulls.nextClearBit(0);
+    if (i >= size) {
+      return Double.NaN;
+    }
+    double min = values[i];
+    for (i = nulls.nextClearBit(i + 1); i < size; i = nulls.nextClearBit(i + 1)) {
+      min = Math.min(min, values[i]);
+    }
+    return min;
+  }
+
+  public static double max(double[] values, BitSet nulls, int size) {
+    if (nulls == null) {
+      if (size == 0) {
+        return Double.NaN;
+      }
+      double max = values[0];
+      for (int i = 1; i < size; i++) {
+        max = Math.max(max, values[i]);
+      }
+      return max;
+    }
+    int i = nulls.nextClearBit(0);
+    if (i >= size) {
+      return Double.NaN;
+    }
+    double max = values[i];
+    for (i = nulls.nextClearBit(i + 1); i < size; i = nulls.nextClearBit(i + 1)) {
+      max = Math.max(max, values[i]);
+    }
+    return max;
+  }
+
+  /**
+   * Returns the smallest non-null value, or {@code Long.MAX_VALUE} if there are none.
+   */
+  public static long min(long[] values, BitSet nulls, int size) {
+    long min = Long.MAX_VALUE;
+    if (nulls == null) {
+      for (int i = 0; i < size; i++) {
+        min = Math.min(min, values[i]);
+      }
+    } else {
+      for (int i = nulls.nextClearBit(0); i < size; i = nulls.nextClearBit(i + 1)) {
+        min = Math.min(min, values[i]);
+      }
+    }
+    return min;
+  }
+
+  /**
+   * Returns the largest non-null value, or {@code Long.MIN_VALUE} if there are none.
+   */
+  public static long max(long[] values, BitSet nulls, int size) {
+    long max = Long.MIN_VALUE;
+    if (nulls == null) {
+      for (int i = 0; i < size; i++) {
+        max = Math.max(max, values[i]);
+      }
+    } else {
+      for (int i = nulls.nextClearBit(0); i < size; i = nulls.nextClearBit(i + 1)) {
+        max = Math.max(max, values[i]);
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Returns the smallest non-null value, or {@code Integer.MAX_VALUE} if there are none.
+   */
+  public static int min(int[] values, BitSet nulls, int size) {
+    int min = Integer.MAX_VALUE;
+    if (nulls == null) {
+      for (int i = 0; i < size; i++) {
+        min = Math.min(min, values[i]);
+      }
+    } else {
+      for (int i = nulls.nextClearBit(0); i < size; i = nulls.nextClearBit(i + 1)) {
+        min = Math.min(min, values[i]);
+      }
+    }
+    return min;
+  }
+
+  /**
+   * Returns the largest non-null value, or {@code Integer.MIN_VALUE} if there are none.
+   */
+  public static int max(int[] values, BitSet nulls, int size) {
+    int max = Integer.MIN_VALUE;
+    if (nulls == null) {
+      for (int i = 0; i < size; i++) {
+        max = Math.max(max, values[i]);
+      }
+    } else {
+      for (int i = nulls.nextClearBit(0); i < size; i = nulls.nextClearBit(i + 1)) {
+        max = Math.max(max, values[i]);
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Writes the indices of the non-null entries that satisfy {@code values[i] op value} into
+   * {@code sel}, which must have room for {@code size} entries, and returns how many were written.
+   */
+  public static int filter(double[] values, BitSet nulls, int size, Comparison op, double value,
+                           int[] sel) {
+    double lo = Double.NEGATIVE_INFINITY;
+    double hi = Double.POSITIVE_INFINITY;
+    switch (op) {
+      case LT:
+        if (value == Double.NEGATIVE_INFINITY) {
+          return 0;
+        }
+        hi = Math.nextAfter(value, Double.NEGATIVE_INFINITY);
+        break;
+      case LE:
+        hi = value;
+        break;
+      case GT:
+        if (value == Double.POSITIVE_INFINITY) {
+          return 0;
+        }
+        lo = Math.nextUp(value);
+        break;
+      case GE:
+        lo = value;
+        break;
+      case EQ:
+      case NE:
+        lo = hi = value;
+        break;
+    }
+    int n = 0;
+    if (op == Comparison.NE) {
+      for (int i = 0; i < size; i++) {
+        double v = values[i];
+        sel[n] = i;
+        n += (v >= lo & v <= hi) ? 0 : 1;
+      }
+    } else {
+      for (int i = 0; i < size; i++) {
+        double v = values[i];
+        sel[n] = i;
+        n += (v >= lo & v <= hi) ? 1 : 0;
+      }
+    }
+    return dropNulls(nulls, sel, n);
+  }
+
+  /**
+   * Writes the indices of the non-null entries that satisfy {@code values[i] op value} into
+   * {@code sel}, which must have room for {@code size} entries, and returns how many were written.
+   */
+  public static int filter(long[] values, BitSet nulls, int size, Comparison op, long value,
+                           int[] sel) {
+    long lo = Long.MIN_VALUE;
+    long hi = Long.MAX_VALUE;
+    if (!longBounds(op, value)) {
+      return 0;
+    }
+    switch (op) {
+      case LT: hi = value - 1; break;
+      case LE: hi = value; break;
+      case GT: lo = value + 1; break;
+      case GE: lo = value; break;
+      default: lo = hi = value;
+    }
+    int n = 0;
+    if (op == Comparison.NE) {
+      for (int i = 0; i < size; i++) {
+        long v = values[i];
+        sel[n] = i;
+        n += (v >= lo & v <= hi) ? 0 : 1;
+      }
+    } else {
+      for (int i = 0; i < size; i++) {
+        long v = values[i];
+        sel[n] = i;
+        n += (v >= lo & v <= hi) ? 1 : 0;
+      }
+    }
+    return dropNulls(nulls, sel, n);
+  }
+
+  /**
+   * Writes the indices of the non-null entries that satisfy {@code values[i] op value} into
+   * {@code sel}, which must have room for {@code size} entries, and returns how many were written.
+   */
+  public static int filter(int[] values, BitSet nulls, int size, Comparison op, long value,
+                           int[] sel) {
+    long lo = Long.MIN_VALUE;
+    long hi = Long.MAX_VALUE;
+    if (!longBounds(op, value)) {
+      return 0;
+    }
+    switch (op) {
+      case LT: hi = value - 1; break;
+      case LE: hi = value; break;
+      case GT: lo = value + 1; break;
+      case GE: lo = value; break;
+      default: lo = hi = value;
+    }
+    int n = 0;
+    if (op == Comparison.NE) {
+      for (int i = 0; i < size; i++) {
+        long v = values[i];
+        sel[n] = i;
+        n += (v >= lo & v <= hi) ? 0 : 1;
+      }
+    } else {
+      for (int i = 0; i < size; i++) {
+        long v = values[i];
+        sel[n] = i;
+        n += (v >= lo & v <= hi) ? 1 : 0;
+      }
+    }
+    return dropNulls(nulls, sel, n);
+  }
+
+  // False if no long can satisfy the comparison
+  private static boolean longBounds(Comparison op, long value) {
+    return !(op == Comparison.LT && value == Long.MIN_VALUE)
+        && !(op == Comparison.GT && value == Long.MAX_VALUE);
+  }
+
+  private static int dropNulls(BitSet nulls, int[] sel, int n) {
+    if (nulls == null || nulls.isEmpty()) {
+      return n;
+    }
+    int m = 0;
+    for (int i = 0; i < n; i++) {
+      int row = sel[i];
+      sel[m] = row;
+      m += nulls.get(row) ? 0 : 1;
+    }
+    return m;
+  }
+
+  public static double[] gather(double[] values, int[] sel, int count) {
+    double[] out = new double[count];
+    for (int i = 0; i < count; i++) {
+      out[i] = values[sel[i]];
+    }
+    return out;
+  }
+
+  public static long[] gather(long[] values, int[] sel, int count) {
+    long[] out = new long[count];
+    for (int i = 0; i < count; i++) {
+      out[i] = values[sel[i]];
+    }
+    return out;
+  }
+
+  public static int[] gather(int[] values, int[] sel, int count) {
+    int[] out = new int[count];
+    for (int i = 0; i < count; i++) {
+      out[i] = values[sel[i]];
+    }
+    return out;
+  }
+
+  public static BitSet gather(BitSet nulls, int[] sel, int count) {
+    if (nulls == null || nulls.isEmpty()) {
+      return null;
+    }
+    BitSet out = new BitSet(count);
+    for (int i = 0; i < count; i++) {
+      if (nulls.get(sel[i])) {
+        out.set(i);
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Hashes a single value. Integral values hash the same regardless of their width, and
+   * floating point values hash the same as {@code Double.equals} would compare them.
+   */
+  public static int hash(long value) {
+    // The finalization step of MurmurHash3
+    long h = value;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
+  public static int hash(double value) {
+    return hash(Double.doubleToLongBits(value));
+  }
+
+  /**
+   * Combines the hashes of the first {@code size} values into {@code hashes}, so that calling
+   * this for each of the columns of a key in turn leaves the hash of each row's key.
+   */
+  public static void hash(double[] values, BitSet nulls, int size, int[] hashes) {
+    for (int i = 0; i < size; i++) {
+      hashes[i] = 31 * hashes[i] + hash(values[i]);
+    }
+    fixNullHashes(nulls, hash(0.0), size, hashes);
+  }
+
+  public static void hash(long[] values, BitSet nulls, int size, int[] hashes) {
+    for (int i = 0; i < size; i++) {
+      hashes[i] = 31 * hashes[i] + hash(values[i]);
+    }
+    fixNullHashes(nulls, hash(0L), size, hashes);
+  }
+
+  public static void hash(int[] values, BitSet nulls, int size, int[] hashes) {
+    for (int i = 0; i < size; i++) {
+      hashes[i] = 31 * hashes[i] + hash((long) values[i]);
+    }
+    fixNullHashes(nulls, hash(0L), size, hashes);
+  }
+
+  // Null entries hold a zero, so back out the hash of zero from their rows
+  private static void fixNullHashes(BitSet nulls, int zeroHash, int size, int[] hashes) {
+    if (nulls != null) {
+      for (int i = nulls.nextSetBit(0); i >= 0 && i < size; i = nulls.nextSetBit(i + 1)) {
+        hashes[i] -= zeroHash;
+      }
+    }
+  }
+
+  /**
+   * Returns the stable permutation of {@code [0, size)} that sorts the entries of
+   * {@code values} in ascending order (as {@link Double#compare} orders them), with nulls last.
+   */
+  public static int[] sortPermutation(double[] values, BitSet nulls, int size) {
+    int[] perm = new int[size];
+    int n = nonNulls(nulls, size, perm);
+    mergeSort(values, perm, new int[n], 0, n);
+    return perm;
+  }
+
+  /**
+   * Returns the stable permutation of {@code [0, size)} that sorts the entries of
+   * {@code values} in ascending order, with nulls last.
+   */
+  public static int[] sortPermutation(long[] values, BitSet nulls, int size) {
+    int[] perm = new int[size];
+    int n = nonNulls(nulls, size, perm);
+    mergeSort(values, perm, new int[n], 0, n);
+    return perm;
+  }
+
+  public static int[] sortPermutation(int[] values, BitSet nulls, int size) {
+    long[] widened = new long[size];
+    for (int i = 0; i < size; i++) {
+      widened[i] = values[i];
+    }
+    return sortPermutation(widened, nulls, size);
+  }
+
+  // Fills perm with the non-null indices followed by the null ones; returns the non-null count
+  private static int nonNulls(BitSet nulls, int size, int[] perm) {
+    if (nulls == null || nulls.isEmpty()) {
+      for (int i = 0; i < size; i++) {
+        perm[i] = i;
+      }
+      return size;
+    }
+    int n = 0;
+    for (int i = 0; i < size; i++) {
+      perm[n] = i;
+      n += nulls.get(i) ? 0 : 1;
+    }
+    int tail = n;
+    for (int i = nulls.nextSetBit(0); i >= 0 && i < size; i = nulls.nextSetBit(i + 1)) {
+      perm[tail++] = i;
+    }
+    return n;
+  }
+
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  private static void mergeSort(double[] keys, int[] perm, int[] aux, int from, int to) {
+    if (to - from <= INSERTION_SORT_THRESHOLD) {
+      for (int i = from + 1; i < to; i++) {
+        int p = perm[i];
+        int j = i - 1;
+        while (j >= from && Double.compare(keys[perm[j]], keys[p]) > 0) {
+          perm[j + 1] = perm[j];
+          j--;
+        }
+        perm[j + 1] = p;
+      }
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    mergeSort(keys, perm, aux, from, mid);
+    mergeSort(keys, perm, aux, mid, to);
+    if (Double.compare(keys[perm[mid - 1]], keys[perm[mid]]) <= 0) {
+      return;
+    }
+    System.arraycopy(perm, from, aux, from, to - from);
+    int i = from, j = mid;
+    for (int k = from; k < to; k++) {
+      if (j >= to || (i < mid && Double.compare(keys[aux[i]], keys[aux[j]]) <= 0)) {
+        perm[k] = aux[i++];
+      } else {
+        perm[k] = aux[j++];
+      }
+    }
+  }
+
+  private static void mergeSort(long[] keys, int[] perm, int[] aux, int from, int to) {
+    if (to - from <= INSERTION_SORT_THRESHOLD) {
+      for (int i = from + 1; i < to; i++) {
+        int p = perm[i];
+        int j = i - 1;
+        while (j >= from && keys[perm[j]] > keys[p]) {
+          perm[j + 1] = perm[j];
+          j--;
+        }
+        perm[j + 1] = p;
+      }
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    mergeSort(keys, perm, aux, from, mid);
+    mergeSort(keys, perm, aux, mid, to);
+    if (keys[perm[mid - 1]] <= keys[perm[mid]]) {
+      return;
+    }
+    System.arraycopy(perm, from, aux, from, to - from);
+    int i = from, j = mid;
+    for (int k = from; k < to; k++) {
+      if (j >= to || (i < mid && keys[aux[i]] <= keys[aux[j]])) {
+        perm[k] = aux[i++];
+      } else {
+        perm[k] = aux[j++];
+      }
+    }
+  }
+
+  // Vec-level entry points: use the backing array when there is one.
+
+  public static double sum(Vec vec) {
+    int size = vec.size();
+    double[] d = doubles(vec);
+    if (d != null) {
+      return sum(d, size);
+    }
+    long[] l = longs(vec);
+    if (l != null) {
+      return sum(l, size);
+    }
+    int[] n = ints(vec);
+    if (n != null) {
+      return sum(n, size);
+    }
+    double sum = 0.0;
+    for (int i = 0; i < size; i++) {
+      if (!vec.isNull(i)) {
+        sum += vec.getDouble(i);
+      }
+    }
+    return sum;
+  }
+
+  public static int countNonNull(Vec vec) {
+    if (vec instanceof PrimitiveVector) {
+      BitSet nulls = ((PrimitiveVector) vec).getNulls();
+      return vec.size() - (nulls == null ? 0 : nulls.cardinality());
+    } else if (vec instanceof ColumnarColumn) {
+      return vec.size() - ((ColumnarColumn) vec).getData().getNulls().cardinality();
+    }
+    int count = 0;
+    for (int i = 0; i < vec.size(); i++) {
+      if (!vec.isNull(i)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  public static double mean(Vec vec) {
+    int count = countNonNull(vec);
+    return count == 0 ? Double.NaN : sum(vec) / count;
+  }
+
+  public static double min(Vec vec) {
+    int size = vec.size();
+    double[] d = doubles(vec);
+    if (d != null) {
+      return min(d, nulls(vec), size);
+    }
+    if (countNonNull(vec) == 0) {
+      return Double.NaN;
+    }
+    long[] l = longs(vec);
+    if (l != null) {
+      return min(l, nulls(vec), size);
+    }
+    int[] n = ints(vec);
+    if (n != null) {
+      return min(n, nulls(vec), size);
+    }
+    double min = Double.NaN;
+    boolean first = true;
+    for (int i = 0; i < size; i++) {
+      if (!vec.isNull(i)) {
+        double v = vec.getDouble(i);
+        min = first ? v : Math.min(min, v);
+        first = false;
+      }
+    }
+    return min;
+  }
+
+  public static double max(Vec vec) {
+    int size = vec.size();
+    double[] d = doubles(vec);
+    if (d != null) {
+      return max(d, nulls(vec), size);
+    }
+    if (countNonNull(vec) == 0) {
+      return Double.NaN;
+    }
+    long[] l = longs(vec);
+    if (l != null) {
+      return max(l, nulls(vec), size);
+    }
+    int[] n = ints(vec);
+    if (n != null) {
+      return max(n, nulls(vec), size);
+    }
+    double max = Double.NaN;
+    boolean first = true;
+    for (int i = 0; i < size; i++) {
+      if (!vec.isNull(i)) {
+        double v = vec.getDouble(i);
+        max = first ? v : Math.max(max, v);
+        first = false;
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Returns the indices of the non-null entries of the vector that satisfy {@code v op value}.
+   */
+  public static int[] filter(Vec vec, Comparison op, double value) {
+    int[] sel = new int[vec.size()];
+    int n = filter(vec, op, value, sel);
+    return n == sel.length ? sel : Arrays.copyOf(sel, n);
+  }
+
+  /**
+   * Writes the indices of the non-null entries of the vector that satisfy {@code v op value}
+   * into {@code sel}, which must have room for {@code vec.size()} entries, and returns how many
+   * were written.
+   */
+  public static int filter(Vec vec, Comparison op, double value, int[] sel) {
+    int size = vec.size();
+    double[] d = doubles(vec);
+    if (d != null) {
+      return filter(d, nulls(vec), size, op, value, sel);
+    }
+    // Integral data is only compared as integers when that is exact
+    boolean integral = value == Math.rint(value) && Math.abs(value) < 0x1p63;
+    long[] l = longs(vec);
+    if (l != null && integral) {
+      return filter(l, nulls(vec), size, op, (long) value, sel);
+    }
+    int[] in = ints(vec);
+    if (in != null && integral) {
+      return filter(in, nulls(vec), size, op, (long) value, sel);
+    }
+    int n = 0;
+    for (int i = 0; i < size; i++) {
+      if (!vec.isNull(i) && test(vec.getDouble(i), op, value)) {
+        sel[n++] = i;
+      }
+    }
+    return n;
+  }
+
+  private static boolean test(double v, Comparison op, double value) {
+    switch (op) {
+      case LT: return v < value;
+      case LE: return v <= value;
+      case GT: return v > value;
+      case GE: return v >= value;
+      case EQ: return v == value;
+      default: return v != value;
+    }
+  }
+
+  /**
+   * Returns a new vector of the same type that holds the entries at the first {@code count}
+   * indices of {@code sel}, in order.
+   */
+  public static Vector gather(Vec vec, int[] sel, int count) {
+    FieldType type = vec.getType();
+    double[] d = doubles(vec);
+    if (d != null && type == FieldType.DOUBLE) {
+      return new DoubleVector(gather(d, sel, count), gather(nulls(vec), sel, count));
+    }
+    long[] l = longs(vec);
+    if (l != null) {
+      return new LongVector(gather(l, sel, count), gather(nulls(vec), sel, count));
+    }
+    int[] n = ints(vec);
+    if (n != null && type == FieldType.INTEGER) {
+      return new IntVector(gather(n, sel, count), gather(nulls(vec), sel, count));
+    }
+    List<Object> values = Lists.newArrayListWithExpectedSize(count);
+    for (int i = 0; i < count; i++) {
+      values.add(vec.get(sel[i]));
+    }
+    return VectorBuilder.build(type, values);
+  }
+
+  public static int[] hash(Vec vec) {
+    int[] hashes = new int[vec.size()];
+    hash(vec, hashes);
+    return hashes;
+  }
+
+  /**
+   * Combines the hash of each entry of the vector into {@code hashes}; see
+   * {@link #hash(long[], BitSet, int, int[])}.
+   */
+  public static void hash(Vec vec, int[] hashes) {
+    int size = vec.size();
+    double[] d = doubles(vec);
+    if (d != null) {
+      hash(d, nulls(vec), size, hashes);
+      return;
+    }
+    long[] l = longs(vec);
+    if (l != null) {
+      hash(l, nulls(vec), size, hashes);
+      return;
+    }
+    int[] n = ints(vec);
+    if (n != null) {
+      hash(n, nulls(vec), size, hashes);
+      return;
+    }
+    ColumnData data = vec instanceof ColumnarColumn ? ((ColumnarColumn) vec).getData() : null;
+    if (data instanceof StringColumnData) {
+      // Hash each distinct value once, then look the codes up
+      List<String> dictionary = ((StringColumnData) data).getDictionary();
+      int[] dictHashes = new int[dictionary.size()];
+      for (int i = 0; i < dictHashes.length; i++) {
+        dictHashes[i] = dictionary.get(i).hashCode();
+      }
+      int[] codes = ((StringColumnData) data).getCodes();
+      for (int i = 0; i < size; i++) {
+        hashes[i] = 31 * hashes[i] + (data.isNull(i) ? 0 : dictHashes[codes[i]]);
+      }
+      return;
+    }
+    for (int i = 0; i < size; i++) {
+      hashes[i] = 31 * hashes[i] + (vec.isNull(i) ? 0 : hashValue(vec, i));
+    }
+  }
+
+  private static int hashValue(Vec vec, int i) {
+    switch (vec.getType()) {
+      case SHORT:
+      case INTEGER:
+      case LONG:
+        return hash(vec.getLong(i));
+      case FLOAT:
+      case DOUBLE:
+        return hash(vec.getDouble(i));
+      case BOOLEAN:
+        return hash(vec.getBoolean(i) ? 1L : 0L);
+      default:
+        return vec.get(i).hashCode();
+    }
+  }
+
+  /**
+   * Returns the stable permutation of the indices of the vector that sorts its entries in
+   * ascending order, with nulls last.
+   */
+  public static int[] sortPermutation(final Vec vec) {
+    int size = vec.size();
+    double[] d = doubles(vec);
+    if (d != null) {
+      return sortPermutation(d, nulls(vec), size);
+    }
+    long[] l = longs(vec);
+    if (l != null) {
+      return sortPermutation(l, nulls(vec), size);
+    }
+    int[] n = ints(vec);
+    if (n != null) {
+      return sortPermutation(n, nulls(vec), size);
+    }
+    BitSet nulls = new BitSet(size);
+    for (int i = 0; i < size; i++) {
+      if (vec.isNull(i)) {
+        nulls.set(i);
+      }
+    }
+    switch (vec.getType()) {
+      case SHORT:
+      case INTEGER:
+      case LONG:
+        long[] lkeys = new long[size];
+        for (int i = 0; i < size; i++) {
+          lkeys[i] = vec.getLong(i);
+        }
+        return sortPermutation(lkeys, nulls, size);
+      case FLOAT:
+      case DOUBLE:
+        double[] dkeys = new double[size];
+        for (int i = 0; i < size; i++) {
+          dkeys[i] = vec.getDouble(i);
+        }
+        return sortPermutation(dkeys, nulls, size);
+      default:
+        Integer[] boxed = new Integer[size];
+        for (int i = 0; i < size; i++) {
+          boxed[i] = i;
+        }
+        Arrays.sort(boxed, new Comparator<Integer>() {
+          @Override
+          public int compare(Integer a, Integer b) {
+            Object va = vec.get(a);
+            Object vb = vec.get(b);
+            if (va == null || vb == null) {
+              return va == null ? (vb == null ? 0 : 1) : -1;
+            }
+            return ((Comparable) va).compareTo(vb);
+          }
+        });
+        int[] perm = new int[size];
+        for (int i = 0; i < size; i++) {
+          perm[i] = boxed[i];
+        }
+        return perm;
+    }
+  }
+
+  private static double[] doubles(Vec vec) {
+    if (vec instanceof DoubleVector) {
+      return ((DoubleVector) vec).getData();
+    } else if (vec instanceof ColumnarColumn) {
+      ColumnData data = ((ColumnarColumn) vec).getData();
+      if (data instanceof DoubleColumnData) {
+        return ((DoubleColumnData) data).getData();
+      }
+    }
+    return null;
+  }
+
+  private static long[] longs(Vec vec) {
+    if (vec instanceof LongVector) {
+      return ((LongVector) vec).getData();
+    } else if (vec instanceof ColumnarColumn) {
+      ColumnData data = ((ColumnarColumn) vec).getData();
+      if (data instanceof LongColumnData) {
+        return ((LongColumnData) data).getData();
+      }
+    }
+    return null;
+  }
+
+  private static int[] ints(Vec vec) {
+    if (vec instanceof IntVector) {
+      return ((IntVector) vec).getData();
+    } else if (vec instanceof ColumnarColumn) {
+      ColumnData data = ((ColumnarColumn) vec).getData();
+      if (data instanceof IntColumnData) {
+        return ((IntColumnData) data).getData();
+      }
+    }
+    return null;
+  }
+
+  private static BitSet nulls(Vec vec) {
+    if (vec instanceof PrimitiveVector) {
+      return ((PrimitiveVector) vec).getNulls();
+    } else if (vec instanceof ColumnarColumn) {
+      ColumnData data = ((ColumnarColumn) vec).getData();
+      return data.hasNulls() ? data.getNulls() : null;
+    }
+    return null;
+  }
+}
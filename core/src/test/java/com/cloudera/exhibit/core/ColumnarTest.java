@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core;
+
+import com.cloudera.exhibit.core.columnar.ColumnData;
+import com.cloudera.exhibit.core.columnar.ColumnarColumn;
+import com.cloudera.exhibit.core.columnar.ColumnarFrame;
+import com.cloudera.exhibit.core.columnar.DoubleColumnData;
+import com.cloudera.exhibit.core.columnar.StringColumnData;
+import com.cloudera.exhibit.core.simple.SimpleFrame;
+import com.cloudera.exhibit.core.simple.SimpleObs;
+import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
+import com.cloudera.exhibit.core.vector.DoubleVector;
+import com.cloudera.exhibit.core.vector.FloatVector;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ColumnarTest {
+
+  public static final ObsDescriptor DESC = SimpleObsDescriptor.builder()
+      .doubleField("d")
+      .stringField("s")
+      .intField("i")
+      .floatField("f")
+      .build();
+
+  private static Frame simpleFrame() {
+    return SimpleFrame.of(
+        SimpleObs.of(DESC, 1.0, "a", 17, 1.5f),
+        SimpleObs.of(DESC, null, "b", null, null),
+        SimpleObs.of(DESC, 3.0, "a", 29, 2.5f));
+  }
+
+  @Test
+  public void testCopyOf() throws Exception {
+    Frame frame = simpleFrame();
+    ColumnarFrame cf = ColumnarFrame.copyOf(frame);
+    assertEquals(3, cf.size());
+    assertEquals(DESC, cf.descriptor());
+    for (int i = 0; i < frame.size(); i++) {
+      assertEquals(frame.get(i), cf.get(i));
+      assertEquals(cf.get(i), frame.get(i));
+    }
+    assertEquals(2.5f, cf.get(2).get("f"));
+    assertNull(cf.get(1).get("i"));
+  }
+
+  @Test
+  public void testColumns() throws Exception {
+    ColumnarFrame cf = ColumnarFrame.copyOf(simpleFrame());
+    Column d = cf.$("d");
+    assertTrue(d instanceof ColumnarColumn);
+    assertEquals(3, d.size());
+    assertEquals(FieldType.DOUBLE, d.getType());
+    assertNull(d.get(1));
+    assertArrayEquals(new double[] { 1.0, 0.0, 3.0 }, ((DoubleColumnData) cf.column("d")).getData(), 0.0);
+    assertTrue(cf.column("d").isNull(1));
+
+    StringColumnData s = (StringColumnData) cf.column("s");
+    assertEquals(2, s.getDictionary().size());
+    assertArrayEquals(new int[] { 0, 1, 0 }, s.getCodes());
+    assertEquals("a", cf.$("s").get(2));
+  }
+
+  @Test
+  public void testAppend() throws Exception {
+    ColumnData.Builder d = ColumnData.builder(FieldType.DOUBLE, 1);
+    ColumnData.Builder s = ColumnData.builder(FieldType.STRING, 1);
+    ColumnData.Builder i = ColumnData.builder(FieldType.INTEGER, 1);
+    ColumnData.Builder f = ColumnData.builder(FieldType.FLOAT, 1);
+    d.appendDouble(1.0);
+    s.appendString("a");
+    i.appendInt(17);
+    f.appendDouble(1.5f);
+    d.appendNull();
+    s.appendString("b");
+    i.append(null);
+    f.appendNull();
+    d.appendDouble(3.0);
+    s.appendString("a");
+    i.appendInt(29);
+    f.appendDouble(2.5f);
+    ColumnarFrame cf = ColumnarFrame.of(DESC, d.build(), s.build(), i.build(), f.build());
+    Frame frame = simpleFrame();
+    assertEquals(frame.size(), cf.size());
+    for (int r = 0; r < frame.size(); r++) {
+      assertEquals(frame.get(r), cf.get(r));
+    }
+    assertEquals(2, ((StringColumnData) cf.column("s")).getDictionary().size());
+
+    assertTrue(cf.column("d").toVector() instanceof DoubleVector);
+    assertTrue(cf.column("f").toVector() instanceof FloatVector);
+    assertEquals(2.5f, cf.column("f").toVector().get(2));
+    assertNull(cf.column("d").toVector().get(1));
+  }
+
+  @Test
+  public void testBuiltColumnsAreFinal() throws Exception {
+    ColumnData.Builder s = ColumnData.builder(FieldType.STRING);
+    s.appendString("a");
+    s.build();
+    try {
+      s.appendString("b");
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownColumn() throws Exception {
+    ColumnarFrame.copyOf(simpleFrame()).$("missing");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRaggedColumns() throws Exception {
+    ColumnData d = ColumnData.builder(FieldType.DOUBLE).appendDouble(1.0).build();
+    ColumnarFrame.of(SimpleObsDescriptor.builder().doubleField("a").doubleField("b").build(),
+        d, ColumnData.builder(FieldType.DOUBLE).build());
+  }
+}
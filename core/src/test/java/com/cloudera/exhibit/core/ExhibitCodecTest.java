@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core;
+
+import com.cloudera.exhibit.core.columnar.ColumnarFrame;
+import com.cloudera.exhibit.core.columnar.ExhibitCodec;
+import com.cloudera.exhibit.core.composite.UpdatableExhibit;
+import com.cloudera.exhibit.core.lazy.LazyExhibit;
+import com.cloudera.exhibit.core.simple.SimpleExhibit;
+import com.cloudera.exhibit.core.simple.SimpleFrame;
+import com.cloudera.exhibit.core.simple.SimpleObs;
+import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
+import com.cloudera.exhibit.core.vector.DoubleVector;
+import com.cloudera.exhibit.core.vector.Vector;
+import com.cloudera.exhibit.core.vector.VectorBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.sql.Timestamp;
+import java.util.BitSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ExhibitCodecTest {
+
+  private static final ObsDescriptor ATTRS = SimpleObsDescriptor.builder()
+      .longField("id")
+      .stringField("name")
+      .timestampField("ts")
+      .build();
+
+  private static final ObsDescriptor FRAME = SimpleObsDescriptor.builder()
+      .doubleField("d")
+      .stringField("s")
+      .intField("i")
+      .floatField("f")
+      .booleanField("b")
+      .longField("l")
+      .build();
+
+  private static Exhibit exhibit() {
+    Timestamp ts = new Timestamp(1430000000123L);
+    ts.setNanos(123456789);
+    Frame frame = SimpleFrame.of(
+        SimpleObs.of(FRAME, 1.0, "a", 17, 1.5f, true, -3L),
+        SimpleObs.of(FRAME, null, null, null, null, null, null),
+        SimpleObs.of(FRAME, -3.25, "b", -29, 2.5f, false, Long.MAX_VALUE),
+        SimpleObs.of(FRAME, 4.0, "a", 0, -0.5f, true, 0L));
+    BitSet nulls = new BitSet();
+    nulls.set(1);
+    Map<String, Frame> frames = ImmutableMap.of("f1", frame, "empty", (Frame) new SimpleFrame(FRAME));
+    Map<String, Vec> vectors = ImmutableMap.<String, Vec>of(
+        "v1", new DoubleVector(new double[] { 1.0, 0.0, 2.0 }, nulls),
+        "v2", VectorBuilder.build(FieldType.STRING, Lists.<Object>newArrayList("x", null, "y")));
+    return new SimpleExhibit(SimpleObs.of(ATTRS, 12L, "exhibit", ts), frames, vectors);
+  }
+
+  private static void assertSameContents(Exhibit expected, Exhibit actual) {
+    assertEquals(expected.attributes(), actual.attributes());
+    for (Map.Entry<String, Frame> e : expected.frames().entrySet()) {
+      Frame frame = actual.frames().get(e.getKey());
+      assertTrue(frame instanceof ColumnarFrame);
+      assertEquals(e.getValue().size(), frame.size());
+      for (int i = 0; i < frame.size(); i++) {
+        assertEquals(e.getValue().get(i), frame.get(i));
+      }
+    }
+    for (Map.Entry<String, Vec> e : expected.vectors().entrySet()) {
+      Vec vec = actual.vectors().get(e.getKey());
+      assertEquals(e.getValue().getType(), vec.getType());
+      assertEquals(e.getValue().size(), vec.size());
+      for (int i = 0; i < vec.size(); i++) {
+        assertEquals(e.getValue().get(i), vec.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    Exhibit e = exhibit();
+    ExhibitCodec codec = ExhibitCodec.of(e.descriptor());
+    Exhibit decoded = codec.decode(codec.encode(e));
+    assertSameContents(e, decoded);
+    assertSame(codec.descriptor(), decoded.descriptor());
+    assertNull(decoded.frames().get("f1").get(1).get("s"));
+  }
+
+  @Test
+  public void testSelfDescribing() throws Exception {
+    Exhibit e = exhibit();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ExhibitCodec.writeExhibit(e, new DataOutputStream(baos));
+    Exhibit decoded = ExhibitCodec.readExhibit(new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+    assertSameContents(e, decoded);
+  }
+
+  @Test
+  public void testOtherLayout() throws Exception {
+    Exhibit e = exhibit();
+    ExhibitCodec codec = ExhibitCodec.of(e.descriptor());
+    UpdatableExhibit other = new UpdatableExhibit(e);
+    other.add("extra", (Vector) VectorBuilder.build(FieldType.INTEGER, Lists.<Object>newArrayList(1, 2, null)));
+    Exhibit decoded = codec.decode(codec.encode(other));
+    assertSameContents(other, decoded);
+    assertEquals(3, decoded.vectors().get("extra").size());
+  }
+
+  @Test
+  public void testSameFieldsInOtherDescriptorClasses() throws Exception {
+    Exhibit e = exhibit();
+    ExhibitCodec codec = ExhibitCodec.of(e.descriptor());
+    ObsDescriptor foreign = new ObsDescriptor() {
+      @Override
+      public Field get(int i) {
+        return FRAME.get(i);
+      }
+
+      @Override
+      public int indexOf(String name) {
+        return FRAME.indexOf(name);
+      }
+
+      @Override
+      public int size() {
+        return FRAME.size();
+      }
+    };
+    Map<String, Frame> frames = ImmutableMap.of(
+        "f1", e.frames().get("f1"), "empty", (Frame) new SimpleFrame(foreign));
+    Exhibit other = new SimpleExhibit(e.attributes(), frames, e.vectors());
+    // Written with the codec's own layout, so without a copy of the descriptor
+    assertEquals(codec.encode(e).length, codec.encode(other).length);
+    assertSameContents(other, codec.decode(codec.encode(other)));
+  }
+
+  @Test
+  public void testLazyDecode() throws Exception {
+    Exhibit e = exhibit();
+    ExhibitCodec codec = ExhibitCodec.of(e.descriptor());
+    byte[] bytes = codec.encode(e);
+    LazyExhibit lazy = codec.decodeLazy(bytes, 0, bytes.length);
+    assertEquals(e.attributes(), lazy.attributes());
+    assertEquals(e.frames().keySet(), lazy.frames().keySet());
+    assertFalse(lazy.isLoaded("f1"));
+
+    UpdatableExhibit updated = new UpdatableExhibit(lazy);
+    Frame f1 = updated.frames().get("f1");
+    assertEquals(4, f1.size());
+    assertTrue(lazy.isLoaded("f1"));
+    assertFalse(lazy.isLoaded("empty"));
+    assertFalse(lazy.isLoaded("v1"));
+    assertSame(f1, lazy.frames().get("f1"));
+
+    assertSameContents(e, lazy);
+    assertTrue(lazy.isLoaded("v2"));
+
+    // The inline layout is decoded lazily too
+    UpdatableExhibit other = new UpdatableExhibit(e);
+    other.add("extra", (Vector) VectorBuilder.build(FieldType.INTEGER, Lists.<Object>newArrayList(1, 2, null)));
+    bytes = codec.encode(other);
+    lazy = codec.decodeLazy(bytes, 0, bytes.length);
+    assertFalse(lazy.isLoaded("extra"));
+    assertSameContents(other, lazy);
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core;
+
+import com.cloudera.exhibit.core.calculators.LookupCalculator;
+import com.cloudera.exhibit.core.composite.CompositeCalculator;
+import com.cloudera.exhibit.core.functors.FilterFunctor;
+import com.cloudera.exhibit.core.simple.SimpleExhibit;
+import com.cloudera.exhibit.core.simple.SimpleFrame;
+import com.cloudera.exhibit.core.simple.SimpleObs;
+import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ExhibitsTest {
+
+  private static final ObsDescriptor ATTRS = SimpleObsDescriptor.builder()
+      .intField("id")
+      .stringField("name")
+      .build();
+
+  private static final ObsDescriptor F1 = SimpleObsDescriptor.builder()
+      .doubleField("a")
+      .stringField("b")
+      .longField("c")
+      .build();
+
+  private static final ObsDescriptor F2 = SimpleObsDescriptor.builder()
+      .intField("x")
+      .build();
+
+  private static final ExhibitDescriptor DESC = new ExhibitDescriptor(ATTRS,
+      ImmutableMap.of("f1", F1, "f2", F2),
+      ImmutableMap.of("v", FieldType.DOUBLE));
+
+  @Test
+  public void testProjectNames() throws Exception {
+    ExhibitDescriptor ed = Exhibits.project(DESC, "name", "f1.c", "f1.a", "v", "temp1");
+    assertEquals(SimpleObsDescriptor.builder().stringField("name").build(), ed.attributes());
+    assertEquals(1, ed.frames().size());
+    assertEquals(SimpleObsDescriptor.builder().doubleField("a").longField("c").build(), ed.frames().get("f1"));
+    assertEquals(ImmutableMap.of("v", FieldType.DOUBLE), ed.vectors());
+
+    ed = Exhibits.project(DESC, "f1.b", "f1", "f2");
+    assertSame(F1, ed.frames().get("f1"));
+    assertSame(F2, ed.frames().get("f2"));
+    assertEquals(0, ed.attributes().size());
+    assertTrue(ed.vectors().isEmpty());
+  }
+
+  @Test
+  public void testProjectKeepsOneColumn() throws Exception {
+    ExhibitDescriptor ref = new ExhibitDescriptor(ObsDescriptor.EMPTY,
+        ImmutableMap.of("f1", ObsDescriptor.EMPTY),
+        ImmutableMap.<String, FieldType>of());
+    ExhibitDescriptor ed = Exhibits.union(DESC, ImmutableList.of(ref));
+    assertEquals(1, ed.frames().get("f1").size());
+    assertEquals("a", ed.frames().get("f1").get(0).name);
+  }
+
+  @Test
+  public void testReferences() throws Exception {
+    ExhibitDescriptor ed = Exhibits.references(new LookupCalculator("f2"), DESC);
+    assertEquals(ImmutableList.of("f2"), ImmutableList.copyOf(ed.frames().keySet()));
+
+    ed = Exhibits.references(DESC, ImmutableList.of(
+        new LookupCalculator("f2"),
+        new FilterFunctor(ImmutableList.of("id", "v"))));
+    assertEquals(2, ed.frames().size() + ed.vectors().size());
+    assertEquals(ATTRS.get(0), ed.attributes().get(0));
+
+    ed = Exhibits.references(CompositeCalculator.of(new LookupCalculator("f1")), DESC);
+    assertSame(F1, ed.frames().get("f1"));
+
+    // Anything that does not report its references reads the whole exhibit
+    assertSame(DESC, Exhibits.references(new Object(), DESC));
+  }
+
+  @Test
+  public void testStreamNonStreamingCalculator() throws Exception {
+    final Frame frame = SimpleFrame.of(SimpleObs.of(F2, 1), SimpleObs.of(F2, 2));
+    Calculator calc = new Calculator() {
+      @Override
+      public ObsDescriptor initialize(ExhibitDescriptor descriptor) {
+        return F2;
+      }
+
+      @Override
+      public void cleanup() {
+      }
+
+      @Override
+      public Iterable<Obs> apply(Exhibit exhibit) {
+        return frame;
+      }
+    };
+    ObsCursor cursor = Exhibits.stream(calc, SimpleExhibit.of("f2", frame));
+    try {
+      assertTrue(cursor.hasNext());
+      assertEquals(1, cursor.next().get(0));
+      assertEquals(2, cursor.next().get(0));
+      assertFalse(cursor.hasNext());
+    } finally {
+      cursor.close();
+    }
+  }
+}
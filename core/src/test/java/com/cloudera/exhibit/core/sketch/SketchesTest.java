@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.core.sketch;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SketchesTest {
+
+  @Test
+  public void testHyperLogLog() throws Exception {
+    HyperLogLog a = new HyperLogLog();
+    HyperLogLog b = new HyperLogLog();
+    for (int i = 0; i < 20000; i++) {
+      a.add(i);
+      b.add((long) (i + 10000));
+      a.add(i);
+    }
+    assertEquals(20000.0, a.estimate(), 20000 * 0.05);
+    assertEquals(30000.0, a.merge(b).estimate(), 30000 * 0.05);
+
+    HyperLogLog small = new HyperLogLog().add("a").add("b").add("a").add(null);
+    assertEquals(2L, small.estimate());
+    assertEquals(2L, Sketches.fromString(Sketches.toString(small), HyperLogLog.class).estimate());
+    assertEquals(2L, HyperLogLog.fromRegisters(small.registers()).estimate());
+    assertEquals(2L, new HyperLogLog().addHash(HyperLogLog.hash("a")).add("b").estimate());
+  }
+
+  @Test
+  public void testQuantileSketch() throws Exception {
+    QuantileSketch a = new QuantileSketch();
+    QuantileSketch b = new QuantileSketch();
+    for (int i = 0; i < 50000; i++) {
+      a.add(i);
+      b.add(50000 + i);
+    }
+    assertEquals(25000.0, a.quantile(0.5), 50000 * 0.02);
+    assertEquals(0.0, a.quantile(0.0), 50000 * 0.02);
+    a.merge(b);
+    assertEquals(100000L, a.count());
+    assertEquals(50000.0, a.quantile(0.5), 100000 * 0.02);
+    assertEquals(90000.0, a.quantile(0.9), 100000 * 0.02);
+
+    QuantileSketch copy = Sketches.fromString(Sketches.toString(a), QuantileSketch.class);
+    assertEquals(a.quantile(0.25), copy.quantile(0.25), 0.0);
+    assertTrue(Double.isNaN(new QuantileSketch().quantile(0.5)));
+  }
+
+  @Test
+  public void testSpaceSaving() throws Exception {
+    SpaceSaving a = new SpaceSaving(10);
+    SpaceSaving b = new SpaceSaving(10);
+    for (int i = 0; i < 1000; i++) {
+      a.add(i % 100);
+      if (i % 3 == 0) {
+        a.add("x");
+        b.add("y");
+      }
+      b.add("y");
+    }
+    assertEquals("x", a.top(1).get(0));
+    assertEquals(ImmutableList.<Object>of("y", "x"), a.merge(b).top(2));
+    assertTrue(a.count("y") >= 1334L);
+    SpaceSaving copy = Sketches.fromString(Sketches.toString(a), SpaceSaving.class);
+    assertEquals(a.top(3), copy.top(3));
+    assertEquals(a.count("y"), copy.count("y"));
+
+    SpaceSaving mixed = new SpaceSaving(10).add(17L).add(17L).add(2.5).add(true).add(new BigDecimal("1.50"));
+    SpaceSaving mixedCopy = Sketches.fromString(Sketches.toString(mixed), SpaceSaving.class);
+    assertEquals(2L, mixedCopy.count(17L));
+    assertEquals(1L, mixedCopy.count(2.5));
+    assertEquals(1L, mixedCopy.count(true));
+    assertEquals(1L, mixedCopy.count(new BigDecimal("1.50")));
+  }
+
+  @Test
+  public void testSpaceSavingEvictsTheSmallestCounter() throws Exception {
+    SpaceSaving ss = new SpaceSaving(3).add("x", 5L).add("y", 2L).add("z", 7L);
+    ss.add("w");
+    assertEquals(0L, ss.count("y"));
+    assertEquals(3L, ss.count("w"));
+    ss.add("v");
+    assertEquals(0L, ss.count("w"));
+    assertEquals(4L, ss.count("v"));
+    assertEquals(ImmutableList.<Object>of("z", "x", "v"), ss.top(3));
+  }
+
+  @Test
+  public void testSpaceSavingMerge() throws Exception {
+    SpaceSaving a = new SpaceSaving(2).add("a", 5L).add("b", 3L);
+    SpaceSaving b = new SpaceSaving(2).add("c", 4L).add("d", 1L);
+    // Each value that a sketch misses is credited with that sketch's smallest count
+    a.merge(b);
+    assertEquals(7L, a.count("c"));
+    assertEquals(6L, a.count("a"));
+    assertEquals(ImmutableList.<Object>of("c", "a"), a.top(2));
+    // A sketch that is not full has seen nothing that it does not track
+    SpaceSaving partial = new SpaceSaving(5).add("c", 2L);
+    assertEquals(9L, a.merge(partial).count("c"));
+    assertEquals(6L, a.count("a"));
+  }
+
+  @Test
+  public void testDecodingChecksTheType() throws Exception {
+    String hll = Sketches.toString(new HyperLogLog().add("a"));
+    try {
+      Sketches.fromString(hll, QuantileSketch.class);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      Sketches.fromString(hll.substring(0, 40), HyperLogLog.class);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      Sketches.fromString(BaseEncoding.base64().encode(new byte[] { 2, 1, 0, 0, 0, 8, 0, 0, 0, 0, 0, 0, 0, 1,
+          0, 0, 0, 1, 127, 0, 0, 0 }), QuantileSketch.class);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package com.cloudera.exhibit.core.vector;
+
+import com.cloudera.exhibit.core.Frame;
+import com.cloudera.exhibit.core.Obs;
+import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.core.columnar.ColumnarFrame;
+import com.cloudera.exhibit.core.simple.SimpleFrame;
+import com.cloudera.exhibit.core.simple.SimpleObs;
+import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link VectorOps} kernels against the boxed, element-at-a-time paths that the
+ * calculators use today. It is not run as part of the build; run its {@code main} method with
+ * the core test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VectorOpsBenchmark {
+
+  private static final ObsDescriptor DESC = SimpleObsDescriptor.builder()
+      .doubleField("d")
+      .longField("l")
+      .build();
+
+  @Param({ "1000", "100000" })
+  public int size;
+
+  private Frame simple;
+  private ColumnarFrame columnar;
+  private Vector boxed;
+  private DoubleVector doubles;
+
+  @Setup
+  public void setup() {
+    Random r = new Random(1729L);
+    List<Obs> rows = Lists.newArrayListWithExpectedSize(size);
+    List<Object> values = Lists.newArrayListWithExpectedSize(size);
+    double[] data = new double[size];
+    for (int i = 0; i < size; i++) {
+      double d = r.nextGaussian();
+      rows.add(SimpleObs.of(DESC, d, r.nextLong()));
+      values.add(d);
+      data[i] = d;
+    }
+    simple = new SimpleFrame(rows);
+    columnar = ColumnarFrame.copyOf(simple);
+    boxed = new GenericVector(DESC.get(0).type, values);
+    doubles = new DoubleVector(data);
+  }
+
+  @Benchmark
+  public double sumBoxed() {
+    double sum = 0.0;
+    for (Obs obs : simple) {
+      Double d = (Double) obs.get(0);
+      if (d != null) {
+        sum += d;
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double sumGenericVector() {
+    return VectorOps.sum(boxed);
+  }
+
+  @Benchmark
+  public double sumDoubleVector() {
+    return VectorOps.sum(doubles);
+  }
+
+  @Benchmark
+  public double sumColumnar() {
+    return FrameOps.sum(columnar, 0);
+  }
+
+  @Benchmark
+  public int filterBoxed() {
+    int n = 0;
+    for (Obs obs : simple) {
+      Double d = (Double) obs.get(0);
+      if (d != null && d > 0.5) {
+        n++;
+      }
+    }
+    return n;
+  }
+
+  @Benchmark
+  public int[] filterColumnar() {
+    return FrameOps.filter(columnar, 0, VectorOps.Comparison.GT, 0.5);
+  }
+
+  @Benchmark
+  public int hashBoxed() {
+    int h = 0;
+    for (Obs obs : simple) {
+      h += 31 * obs.get(0).hashCode() + obs.get(1).hashCode();
+    }
+    return h;
+  }
+
+  @Benchmark
+  public int[] hashColumnar() {
+    return FrameOps.hash(columnar, 0, 1);
+  }
+
+  @Benchmark
+  public Integer[] sortBoxed() {
+    Integer[] perm = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      perm[i] = i;
+    }
+    Arrays.sort(perm, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return ((Double) simple.get(a).get(0)).compareTo((Double) simple.get(b).get(0));
+      }
+    });
+    return perm;
+  }
+
+  @Benchmark
+  public int[] sortColumnar() {
+    return FrameOps.sortPermutation(columnar, 0);
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(VectorOpsBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,140 @@
+package com.cloudera.exhibit.core.vector;
+
+import com.cloudera.exhibit.core.Frame;
+import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.core.columnar.ColumnarFrame;
+import com.cloudera.exhibit.core.simple.SimpleFrame;
+import com.cloudera.exhibit.core.simple.SimpleObs;
+import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class VectorOpsTest extends TestCase {
+
+  private static final ObsDescriptor DESC = SimpleObsDescriptor.builder()
+      .doubleField("d")
+      .longField("l")
+      .intField("i")
+      .stringField("s")
+      .build();
+
+  private static Frame simpleFrame() {
+    return SimpleFrame.of(
+        SimpleObs.of(DESC, 3.0, 30L, 3, "c"),
+        SimpleObs.of(DESC, null, null, null, null),
+        SimpleObs.of(DESC, -1.5, -10L, -1, "a"),
+        SimpleObs.of(DESC, 3.0, 20L, 2, "b"),
+        SimpleObs.of(DESC, 0.0, 0L, 0, "a"));
+  }
+
+  private static DoubleVector doublesWithNull() {
+    BitSet nulls = new BitSet();
+    nulls.set(1);
+    return new DoubleVector(new double[] { 3.0, 0.0, -1.5, 3.0, 0.0 }, nulls);
+  }
+
+  public void testAggregates() throws Exception {
+    DoubleVector dv = doublesWithNull();
+    assertEquals(4.5, VectorOps.sum(dv), 0.0);
+    assertEquals(4, VectorOps.countNonNull(dv));
+    assertEquals(1.125, VectorOps.mean(dv), 0.0);
+    assertEquals(-1.5, VectorOps.min(dv), 0.0);
+    assertEquals(3.0, VectorOps.max(dv), 0.0);
+
+    LongVector lv = new LongVector(new long[] { 5L, -7L, 2L });
+    assertEquals(0.0, VectorOps.sum(lv), 0.0);
+    assertEquals(-7.0, VectorOps.min(lv), 0.0);
+    assertEquals(5.0, VectorOps.max(lv), 0.0);
+
+    BitSet all = new BitSet();
+    all.set(0, 2);
+    IntVector empty = new IntVector(new int[] { 0, 0 }, all);
+    assertEquals(0, VectorOps.countNonNull(empty));
+    assertTrue(Double.isNaN(VectorOps.mean(empty)));
+    assertTrue(Double.isNaN(VectorOps.min(empty)));
+  }
+
+  public void testNullsAreZeroed() throws Exception {
+    BitSet nulls = new BitSet();
+    nulls.set(1);
+    double[] doubles = new double[] { 1.0, 7.0, 2.0 };
+    DoubleVector dv = new DoubleVector(doubles, nulls);
+    assertEquals(3.0, VectorOps.sum(dv), 0.0);
+    assertEquals(0.0, dv.getData()[1], 0.0);
+    assertEquals(7.0, doubles[1], 0.0);
+
+    LongVector lv = new LongVector(new long[] { 1L, 7L }, nulls);
+    assertEquals(1.0, VectorOps.sum(lv), 0.0);
+    int[] hashes = VectorOps.hash(lv);
+    assertEquals(0, hashes[1]);
+
+    int[] ints = new int[] { 1, 7 };
+    IntVector iv = new IntVector(ints, nulls);
+    assertEquals(1.0, VectorOps.sum(iv), 0.0);
+    assertEquals(0, VectorOps.hash(iv)[1]);
+    assertEquals(7, ints[1]);
+  }
+
+  public void testFilter() throws Exception {
+    DoubleVector dv = doublesWithNull();
+    assertTrue(Arrays.equals(new int[] { 0, 3 }, VectorOps.filter(dv, VectorOps.Comparison.GT, 0.0)));
+    assertTrue(Arrays.equals(new int[] { 2, 4 }, VectorOps.filter(dv, VectorOps.Comparison.LE, 0.0)));
+    assertTrue(Arrays.equals(new int[] { 4 }, VectorOps.filter(dv, VectorOps.Comparison.EQ, 0.0)));
+    assertTrue(Arrays.equals(new int[] { 0, 2, 3 }, VectorOps.filter(dv, VectorOps.Comparison.NE, 0.0)));
+
+    LongVector lv = new LongVector(new long[] { 5L, -7L, 2L });
+    assertTrue(Arrays.equals(new int[] { 0, 2 }, VectorOps.filter(lv, VectorOps.Comparison.GE, 2.0)));
+    assertTrue(Arrays.equals(new int[] { 0 }, VectorOps.filter(lv, VectorOps.Comparison.GT, 2.5)));
+    assertEquals(0, VectorOps.filter(lv, VectorOps.Comparison.LT, -7.0).length);
+  }
+
+  public void testGatherAndSort() throws Exception {
+    DoubleVector dv = doublesWithNull();
+    int[] perm = VectorOps.sortPermutation(dv);
+    assertTrue(Arrays.equals(new int[] { 2, 4, 0, 3, 1 }, perm));
+
+    Vector sorted = VectorOps.gather(dv, perm, perm.length);
+    assertTrue(sorted instanceof DoubleVector);
+    assertEquals(-1.5, sorted.get(0));
+    assertEquals(3.0, sorted.get(3));
+    assertNull(sorted.get(4));
+  }
+
+  public void testHash() throws Exception {
+    int[] ints = VectorOps.hash(new IntVector(new int[] { 1, 2 }));
+    int[] longs = VectorOps.hash(new LongVector(new long[] { 1L, 2L }));
+    assertTrue(Arrays.equals(ints, longs));
+    assertFalse(ints[0] == ints[1]);
+
+    int[] nulls = VectorOps.hash(doublesWithNull());
+    assertEquals(0, nulls[1]);
+  }
+
+  public void testColumnarMatchesBoxed() throws Exception {
+    Frame simple = simpleFrame();
+    Frame columnar = ColumnarFrame.copyOf(simple);
+    for (int c = 0; c < 3; c++) {
+      assertEquals(FrameOps.sum(simple, c), FrameOps.sum(columnar, c), 0.0);
+      assertEquals(FrameOps.mean(simple, c), FrameOps.mean(columnar, c), 0.0);
+      assertEquals(FrameOps.min(simple, c), FrameOps.min(columnar, c), 0.0);
+      assertEquals(FrameOps.max(simple, c), FrameOps.max(columnar, c), 0.0);
+      assertEquals(FrameOps.countNonNull(simple, c), FrameOps.countNonNull(columnar, c));
+      assertTrue(Arrays.equals(FrameOps.filter(simple, c, VectorOps.Comparison.GE, 0.0),
+          FrameOps.filter(columnar, c, VectorOps.Comparison.GE, 0.0)));
+      assertTrue(Arrays.equals(FrameOps.sortPermutation(simple, c), FrameOps.sortPermutation(columnar, c)));
+    }
+    assertTrue(Arrays.equals(FrameOps.hash(simple, 0, 1, 2, 3), FrameOps.hash(columnar, 0, 1, 2, 3)));
+    assertTrue(Arrays.equals(new int[] { 2, 4, 3, 0, 1 }, FrameOps.sortPermutation(columnar, 3)));
+
+    Frame sortedSimple = FrameOps.sort(simple, 1);
+    Frame sortedColumnar = FrameOps.sort(columnar, 1);
+    assertEquals(simple.size(), sortedColumnar.size());
+    for (int i = 0; i < simple.size(); i++) {
+      assertEquals(sortedSimple.get(i), sortedColumnar.get(i));
+    }
+    assertEquals("a", sortedColumnar.get(0).get("s"));
+    assertNull(sortedColumnar.get(4).get("l"));
+  }
+}
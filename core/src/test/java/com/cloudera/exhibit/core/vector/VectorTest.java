@@ -2,9 +2,12 @@ package com.cloudera.exhibit.core.vector;
 
 import com.cloudera.exhibit.core.FieldType;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.primitives.Doubles;
 import junit.framework.TestCase;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 
@@ -60,4 +63,49 @@ public class VectorTest extends TestCase {
     Iterator<Object> vIt = vector.iterator();
     assertEquals("A", vIt.next());
   }
-}
\ No newline at end of file
+
+  public void testTypeFaithfulVectors() throws Exception {
+    List longs = ImmutableList.of(9007199254740993L, 2L);
+    Vector lv = VectorBuilder.build(FieldType.LONG, longs);
+    assertTrue(lv instanceof LongVector);
+    assertEquals(9007199254740993L, lv.get(0));
+    assertEquals(9007199254740993L, ((LongVector) lv).getData()[0]);
+
+    Vector fv = VectorBuilder.build(FieldType.FLOAT, ImmutableList.<Object>of(1.5f));
+    assertTrue(fv instanceof FloatVector);
+    assertEquals(1.5f, fv.get(0));
+
+    Vector sv = VectorBuilder.build(FieldType.SHORT, ImmutableList.<Object>of((short) 3));
+    assertTrue(sv instanceof ShortVector);
+    assertEquals((short) 3, sv.get(0));
+  }
+
+  public void testNulls() throws Exception {
+    List values = Arrays.asList(1.0, null, 3.0);
+    DoubleVector dv = (DoubleVector) VectorBuilder.doubles(values);
+    assertEquals(3, dv.size());
+    assertTrue(dv.hasNulls());
+    assertTrue(dv.isNull(1));
+    assertNull(dv.get(1));
+    assertEquals(0.0, dv.getDouble(1), 0.0);
+    assertEquals(values, Lists.newArrayList(dv));
+  }
+
+  public void testNullsLeaveCallerArrays() throws Exception {
+    BitSet nulls = new BitSet();
+    nulls.set(1);
+    long[] longs = new long[] { 1L, 7L };
+    LongVector lv = new LongVector(longs, nulls);
+    assertEquals(7L, longs[1]);
+    assertEquals(0L, lv.getData()[1]);
+
+    short[] shorts = new short[] { 1, 0 };
+    ShortVector sv = new ShortVector(shorts, nulls);
+    assertSame(shorts, sv.getData());
+
+    float[] floats = new float[] { 1.0f, 7.0f };
+    FloatVector fv = new FloatVector(floats, nulls);
+    assertEquals(7.0f, floats[1], 0.0f);
+    assertNull(fv.get(1));
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.etl;
+
+import java.util.Arrays;
+
+/**
+ * A grouping key held as the Avro binary encoding of its key record, which is much cheaper to build,
+ * hash, and compare than a {@link org.apache.avro.generic.GenericData.Record}. The keys that a
+ * {@link KeyCodec} returns are reused for the next row; {@link #copy()} one to keep it.
+ */
+public final class BinaryKey {
+
+  private byte[] bytes;
+  private int length;
+  private int hash;
+
+  BinaryKey() {
+  }
+
+  private BinaryKey(byte[] bytes, int length, int hash) {
+    this.bytes = bytes;
+    this.length = length;
+    this.hash = hash;
+  }
+
+  void set(byte[] bytes, int length) {
+    this.bytes = bytes;
+    this.length = length;
+    int h = 1;
+    for (int i = 0; i < length; i++) {
+      h = 31 * h + bytes[i];
+    }
+    this.hash = h;
+  }
+
+  public BinaryKey copy() {
+    return new BinaryKey(Arrays.copyOf(bytes, length), length, hash);
+  }
+
+  public byte[] bytes() {
+    return bytes;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof BinaryKey)) {
+      return false;
+    }
+    BinaryKey other = (BinaryKey) o;
+    if (hash != other.hash || length != other.length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (bytes[i] != other.bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.etl;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.io.BinaryData;
+import org.apache.avro.mapred.AvroJob;
+import org.apache.avro.mapred.AvroWrapper;
+import org.apache.avro.mapred.Pair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.io.RawComparator;
+
+import java.util.List;
+
+/**
+ * Groups the {@code <ExhibitKey, aggIdx>} shuffle keys of {@link ExhibitTool} by their ExhibitKey,
+ * working on the serialized keys. An ExhibitKey starts with the hash of its grouping key that was
+ * computed at map time (see {@link SchemaUtil#unionKeySchema}), so two keys with different hashes are
+ * told apart from their first bytes. Otherwise, the encoded ExhibitKeys are found by skipping over
+ * their fields and compared byte-for-byte, which is the same as comparing the decoded keys.
+ */
+public class ExhibitKeyComparator<T> extends Configured implements RawComparator<AvroWrapper<T>> {
+
+  private Schema schema;
+
+  public ExhibitKeyComparator() {
+  }
+
+  ExhibitKeyComparator(Schema exhibitKeySchema) {
+    this.schema = exhibitKeySchema;
+  }
+
+  @Override
+  public void setConf(Configuration conf) {
+    super.setConf(conf);
+    if (conf != null) {
+      Schema mapOutputSchema = AvroJob.getMapOutputSchema(conf);
+      this.schema = Pair.getKeySchema(mapOutputSchema).getFields().get(0).schema();
+    }
+  }
+
+  @Override
+  public int compare(AvroWrapper<T> x, AvroWrapper<T> y) {
+    return GenericData.get().compare(
+        ((IndexedRecord) x.datum()).get(0), ((IndexedRecord) y.datum()).get(0), schema);
+  }
+
+  @Override
+  public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+    int h1 = readInt(b1, s1);
+    int h2 = readInt(b2, s2);
+    if (h1 != h2) {
+      return h1 < h2 ? -1 : 1;
+    }
+    int e1 = skip(schema, b1, s1);
+    int e2 = skip(schema, b2, s2);
+    if (e1 - s1 == e2 - s2) {
+      int i = s1, j = s2;
+      while (i < e1 && b1[i] == b2[j]) {
+        i++;
+        j++;
+      }
+      if (i == e1) {
+        return 0;
+      }
+    }
+    // Different keys with the same hash, which are rare enough to compare the slow way
+    return BinaryData.compare(b1, s1, e1 - s1, b2, s2, e2 - s2, schema);
+  }
+
+  // Reads the zig-zag varint at the given position
+  private static int readInt(byte[] b, int pos) {
+    int n = 0;
+    int shift = 0;
+    int c;
+    do {
+      c = b[pos++] & 0xff;
+      n |= (c & 0x7f) << shift;
+      shift += 7;
+    } while ((c & 0x80) != 0);
+    return (n >>> 1) ^ -(n & 1);
+  }
+
+  // Returns the position after the varint at the given position
+  private static int skipVarint(byte[] b, int pos) {
+    while ((b[pos++] & 0x80) != 0) {
+    }
+    return pos;
+  }
+
+  // Returns the position after the Avro datum of the given schema that starts at the given position
+  static int skip(Schema s, byte[] b, int pos) {
+    switch (s.getType()) {
+      case NULL:
+        return pos;
+      case BOOLEAN:
+        return pos + 1;
+      case INT:
+      case LONG:
+      case ENUM:
+        return skipVarint(b, pos);
+      case FLOAT:
+        return pos + 4;
+      case DOUBLE:
+        return pos + 8;
+      case STRING:
+      case BYTES:
+        int len = readInt(b, pos);
+        return skipVarint(b, pos) + len;
+      case FIXED:
+        return pos + s.getFixedSize();
+      case UNION:
+        int branch = readInt(b, pos);
+        return skip(s.getTypes().get(branch), b, skipVarint(b, pos));
+      case RECORD:
+        List<Schema.Field> fields = s.getFields();
+        for (int i = 0; i < fields.size(); i++) {
+          pos = skip(fields.get(i).schema(), b, pos);
+        }
+        return pos;
+      default:
+        throw new UnsupportedOperationException("Unsupported key type: " + s);
+    }
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.etl;
+
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.mapred.AvroWrapper;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+/**
+ * Partitions the {@code <ExhibitKey, aggIdx>} shuffle keys of {@link ExhibitTool} by the hash of the
+ * grouping key that is stored in the ExhibitKey at map time, instead of hashing the key record.
+ */
+public class ExhibitKeyPartitioner extends Partitioner<Object, Object> {
+  @Override
+  public int getPartition(Object key, Object value, int numPartitions) {
+    IndexedRecord record;
+    if (key instanceof AvroWrapper) {
+      record = (IndexedRecord) ((AvroWrapper) key).datum();
+    } else if (key instanceof IndexedRecord) {
+      record = (IndexedRecord) key;
+    } else {
+      throw new UnsupportedOperationException("Unknown avro key type: " + key);
+    }
+    int hash = (Integer) ((IndexedRecord) record.get(0)).get(0);
+    return (hash & Integer.MAX_VALUE) % numPartitions;
+  }
+}
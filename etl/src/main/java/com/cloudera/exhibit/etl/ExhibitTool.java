@@ -19,6 +19,7 @@ import com.cloudera.exhibit.core.Calculator;
 import com.cloudera.exhibit.core.Exhibit;
 import com.cloudera.exhibit.core.ExhibitDescriptor;
 import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.etl.config.AggConfig;
 import com.cloudera.exhibit.etl.config.BuildConfig;
 import com.cloudera.exhibit.etl.config.ComputeConfig;
 import com.cloudera.exhibit.etl.config.ConfigHelper;
@@ -49,7 +50,6 @@ import org.apache.crunch.impl.dist.DistributedPipeline;
 import org.apache.crunch.impl.mr.MRPipeline;
 import org.apache.crunch.io.To;
 import org.apache.crunch.io.parquet.AvroParquetFileTarget;
-import org.apache.crunch.lib.join.JoinUtils;
 import org.apache.crunch.types.PTableType;
 import org.apache.crunch.types.PType;
 import org.apache.crunch.types.avro.AvroType;
@@ -99,12 +99,32 @@ public class ExhibitTool extends Configured implements Tool {
   int compute(String ymlFile) throws Exception {
     ComputeConfig config = ConfigHelper.parseComputeConfig(ymlFile);
     Pipeline p = new MRPipeline(ExhibitTool.class, "ComputeSupernova", getConf());
-    PCollection<GenericData.Record> input = ConfigHelper.getPCollection(p, config.uri, config.path);
     // Step one: generate additional tempTables, if any.
-    RecordToExhibit rte = new RecordToExhibit(config.getReadables(p), config.tempTables);
-    ExhibitDescriptor descriptor = rte.getDescriptor(input.getPType());
-
-    PCollection<Exhibit> exhibits = rte.apply(input);
+    RecordToExhibit rte = new RecordToExhibit(config.getReadables(p), config.getReadableSchemas(), config.tempTables);
+    // Only read the parts of the input that the temp and output tables refer to.
+    Schema schema = ConfigHelper.getAvroSchema(getConf(), config.uri, config.path);
+    List<Calculator> outputCalcs = Lists.newArrayList();
+    List<String> outputAttrs = Lists.newArrayList();
+    for (OutputConfig output : config.outputTables) {
+      if (output.collect != null) {
+        outputCalcs.add(output.collect.getCalculator());
+      }
+      for (AggConfig agg : output.aggregates) {
+        outputCalcs.add(agg.getCalculator());
+      }
+      outputAttrs.addAll(output.attrs);
+    }
+    ExhibitDescriptor requested = rte.getReferences(AvroExhibit.createDescriptor(schema), outputCalcs, outputAttrs);
+    ExhibitDescriptor descriptor;
+    PCollection<Exhibit> exhibits;
+    if (config.columnar) {
+      descriptor = rte.getColumnarDescriptor(schema, requested);
+      exhibits = rte.applyColumnar(ConfigHelper.getExhibits(p, config.uri, config.path, requested), schema, requested);
+    } else {
+      PCollection<GenericData.Record> input = ConfigHelper.getPCollection(p, config.uri, config.path, requested);
+      descriptor = rte.getDescriptor(input.getPType());
+      exhibits = rte.apply(input);
+    }
 
     // Step two: determine the key and value schemas from the outputTables.
     List<OutputGen> outputAggs = Lists.newArrayList();
@@ -118,6 +138,7 @@ public class ExhibitTool extends Configured implements Tool {
         // map-side output
         Calculator c = output.collect.getCalculator();
         ObsDescriptor od = c.initialize(descriptor);
+        c.cleanup();
         List<Schema.Field> mapsideFields = Lists.newArrayList();
         for (ObsDescriptor.Field f : od) {
           mapsideFields.add(new Schema.Field(f.name, AvroExhibit.getSchema(f.type), "", null));
@@ -181,8 +202,8 @@ public class ExhibitTool extends Configured implements Tool {
 
       GroupingOptions opts = GroupingOptions.builder()
               .numReducers(config.parallelism)
-              .partitionerClass(JoinUtils.AvroIndexedRecordPartitioner.class)
-              .groupingComparatorClass(JoinUtils.AvroPairGroupingComparator.class)
+              .partitionerClass(ExhibitKeyPartitioner.class)
+              .groupingComparatorClass(ExhibitKeyComparator.class)
               .build();
       Schema outputUnionSchema = unionValueSchema("ExOutputUnion", outputSchemas);
       PType<GenericData.Record> outputUnion = Avros.generics(outputUnionSchema);
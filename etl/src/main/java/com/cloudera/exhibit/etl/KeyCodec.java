@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.etl;
+
+import com.cloudera.exhibit.core.Obs;
+import com.cloudera.exhibit.core.ObsDescriptor;
+import com.google.common.base.Charsets;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.io.BinaryData;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.util.Utf8;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes the grouping keys of the rows of an aggregate as {@link BinaryKey}s, in the Avro binary
+ * format of the output's key record, so that a record only has to be built (by {@link #decode}) when
+ * a key's aggregate is emitted. The key starts with the attributes of the current exhibit, which
+ * are encoded once per exhibit by {@link #setAttributes}, followed by the key columns of each row.
+ * The positions of the attributes and columns are looked up once per {@link ObsDescriptor}.
+ */
+public class KeyCodec {
+
+  private final Schema schema;
+  private final String[] attrs;
+  private final String[] columns;
+  private final Schema.Type[] types;
+  private final int[] valueBranches;
+  private final int[] nullBranches;
+  private final GenericDatumReader<GenericData.Record> reader;
+  private final BinaryKey key = new BinaryKey();
+
+  private byte[] buf = new byte[64];
+  private int prefixLength;
+  private ObsDescriptor lastDescriptor;
+  private int[] columnIndices;
+  private BinaryDecoder decoder;
+
+  /**
+   * Creates a codec for the given key schema, whose fields are the given attributes followed by
+   * the fields for the given key columns of the rows. Like the key schema built by
+   * {@link OutputGen}, the columns are looked up by their lowercased names.
+   */
+  public KeyCodec(Schema schema, List<String> attrs, List<String> columns) {
+    this.schema = schema;
+    this.attrs = attrs.toArray(new String[attrs.size()]);
+    this.columns = new String[columns.size()];
+    for (int i = 0; i < this.columns.length; i++) {
+      this.columns[i] = columns.get(i).toLowerCase();
+    }
+    List<Schema.Field> fields = schema.getFields();
+    if (fields.size() != this.attrs.length + this.columns.length) {
+      throw new IllegalArgumentException("Key schema does not match attrs " + attrs + " and keys " + columns);
+    }
+    this.types = new Schema.Type[fields.size()];
+    this.valueBranches = new int[fields.size()];
+    this.nullBranches = new int[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      Schema s = fields.get(i).schema();
+      valueBranches[i] = -1;
+      nullBranches[i] = -1;
+      if (s.getType() == Schema.Type.UNION) {
+        List<Schema> branches = s.getTypes();
+        for (int j = 0; j < branches.size(); j++) {
+          if (branches.get(j).getType() == Schema.Type.NULL) {
+            nullBranches[i] = j;
+          } else {
+            valueBranches[i] = j;
+          }
+        }
+      }
+      types[i] = SchemaUtil.unwrapNull(s).getType();
+    }
+    this.reader = new GenericDatumReader<GenericData.Record>(schema);
+  }
+
+  public void setAttributes(Obs attributes) {
+    ObsDescriptor od = attributes.descriptor();
+    int pos = 0;
+    for (int i = 0; i < attrs.length; i++) {
+      pos = write(i, attributes, indexOf(od, attrs[i]), pos);
+    }
+    this.prefixLength = pos;
+  }
+
+  /**
+   * Returns the key of the given row and the current attributes. The returned key is overwritten
+   * by the next call.
+   */
+  public BinaryKey encode(Obs obs) {
+    ObsDescriptor od = obs.descriptor();
+    if (od != lastDescriptor) {
+      this.columnIndices = new int[columns.length];
+      for (int i = 0; i < columns.length; i++) {
+        columnIndices[i] = indexOf(od, columns[i]);
+      }
+      this.lastDescriptor = od;
+    }
+    int pos = prefixLength;
+    for (int i = 0; i < columns.length; i++) {
+      pos = write(attrs.length + i, obs, columnIndices[i], pos);
+    }
+    key.set(buf, pos);
+    return key;
+  }
+
+  public GenericData.Record decode(BinaryKey binaryKey) {
+    this.decoder = DecoderFactory.get().binaryDecoder(binaryKey.bytes(), 0, binaryKey.length(), decoder);
+    try {
+      return reader.read(null, decoder);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not decode key for schema: " + schema, e);
+    }
+  }
+
+  private static int indexOf(ObsDescriptor od, String name) {
+    int index = od.indexOf(name);
+    if (index < 0) {
+      throw new IllegalArgumentException("Could not find key: " + name + " in obs: " + od);
+    }
+    return index;
+  }
+
+  // Writes the value at the given index of the obs as the given field of the key, returning the
+  // position after it
+  private int write(int field, Obs obs, int index, int pos) {
+    ensureCapacity(pos + 16);
+    if (obs.isNull(index)) {
+      if (nullBranches[field] < 0) {
+        throw new IllegalArgumentException("Null value for non-null key field: " + schema.getFields().get(field));
+      }
+      return pos + BinaryData.encodeInt(nullBranches[field], buf, pos);
+    }
+    if (valueBranches[field] >= 0) {
+      pos += BinaryData.encodeInt(valueBranches[field], buf, pos);
+    }
+    switch (types[field]) {
+      case BOOLEAN:
+        return pos + BinaryData.encodeBoolean(obs.getBoolean(index), buf, pos);
+      case INT:
+        return pos + BinaryData.encodeInt(obs.getInt(index), buf, pos);
+      case LONG:
+        return pos + BinaryData.encodeLong(obs.getLong(index), buf, pos);
+      case FLOAT:
+        return pos + BinaryData.encodeFloat((float) obs.getDouble(index), buf, pos);
+      case DOUBLE:
+        return pos + BinaryData.encodeDouble(obs.getDouble(index), buf, pos);
+      case STRING:
+        return writeString(obs.get(index), pos);
+      default:
+        throw new UnsupportedOperationException("Unsupported key field type: " + types[field]);
+    }
+  }
+
+  private int writeString(Object value, int pos) {
+    byte[] bytes;
+    int length;
+    if (value instanceof Utf8) {
+      bytes = ((Utf8) value).getBytes();
+      length = ((Utf8) value).getByteLength();
+    } else {
+      bytes = value.toString().getBytes(Charsets.UTF_8);
+      length = bytes.length;
+    }
+    pos += BinaryData.encodeInt(length, buf, pos);
+    ensureCapacity(pos + length);
+    System.arraycopy(bytes, 0, buf, pos, length);
+    return pos + length;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (buf.length < capacity) {
+      buf = Arrays.copyOf(buf, Math.max(capacity, 2 * buf.length));
+    }
+  }
+}
@@ -162,6 +162,7 @@ public class OutputGen {
     private final boolean debug;
     private transient Schema key;
     private transient List<TblCache> tblCaches;
+    private transient List<KeyCodec> codecs;
     private transient List<Calculator> calcs;
     private boolean initialized = false;
 
@@ -178,6 +179,7 @@ public class OutputGen {
       this.key = SchemaUtil.getOrParse(key, keyJson);
       this.calcs = Lists.newArrayList();
       this.tblCaches = Lists.newArrayList();
+      this.codecs = Lists.newArrayList();
       this.initialized = false;
     }
 
@@ -189,8 +191,9 @@ public class OutputGen {
           Calculator c = ac.getCalculator();
           c.initialize(exhibit.descriptor());
           calcs.add(c);
-          TblCache tc = new TblCache(ac, i, emitter, providers.get(i));
-          tblCaches.add(tc);
+          KeyCodec codec = new KeyCodec(key, config.attrs, getKeys(ac, config));
+          codecs.add(codec);
+          tblCaches.add(new TblCache(ac, i, emitter, providers.get(i), codec));
         }
         initialized = true;
       }
@@ -199,19 +202,12 @@ public class OutputGen {
         increment("ExhibitPerf", "Records_" + outputId);
       }
       for (int i = 0; i < calcs.size(); i++) {
-        AggConfig ac = config.aggregates.get(i);
         long start = System.currentTimeMillis();
+        KeyCodec codec = codecs.get(i);
+        TblCache cache = tblCaches.get(i);
+        codec.setAttributes(exhibit.attributes());
         for (Obs obs : calcs.get(i).apply(exhibit)) {
-          List<String> keys = getKeys(ac, config);
-          GenericData.Record keyRec = new GenericData.Record(key);
-          // Copy attributes
-          for (String attr : config.attrs) {
-            keyRec.put(attr, exhibit.attributes().get(attr));
-          }
-          for (int j = 0; j < keys.size(); j++) {
-            keyRec.put(config.keys.get(j), obs.get(keys.get(j)));
-          }
-          tblCaches.get(i).update(keyRec, obs);
+          cache.update(codec.encode(obs), obs);
         }
         if (debug) {
           increment("ExhibitPerf", "Time_" + outputId + "_" + i, System.currentTimeMillis() - start);
@@ -221,10 +217,20 @@ public class OutputGen {
 
     @Override
     public void cleanup(Emitter<Pair<GenericData.Record, Pair<Integer, GenericData.Record>>> emitter) {
-      for (TblCache tc : tblCaches) {
+      for (int i = 0; i < tblCaches.size(); i++) {
+        TblCache tc = tblCaches.get(i);
         tc.flush();
+        String suffix = "_" + outputId + "_" + i;
+        increment("ExhibitTblCache", "Hits" + suffix, tc.hits());
+        increment("ExhibitTblCache", "Misses" + suffix, tc.misses());
+        increment("ExhibitTblCache", "Evictions" + suffix, tc.evictions());
       }
       tblCaches.clear();
+      codecs.clear();
+      for (Calculator c : calcs) {
+        c.cleanup();
+      }
+      calcs.clear();
     }
   }
 }
@@ -15,16 +15,21 @@
 package com.cloudera.exhibit.etl;
 
 import com.cloudera.exhibit.avro.AvroExhibit;
+import com.cloudera.exhibit.avro.AvroExhibitFactory;
 import com.cloudera.exhibit.avro.AvroFrame;
+import com.cloudera.exhibit.avro.AvroObsDescriptor;
+import com.cloudera.exhibit.avro.ColumnarDatumReader;
 import com.cloudera.exhibit.core.Calculator;
 import com.cloudera.exhibit.core.Exhibit;
 import com.cloudera.exhibit.core.ExhibitDescriptor;
+import com.cloudera.exhibit.core.Exhibits;
 import com.cloudera.exhibit.core.Frame;
 import com.cloudera.exhibit.core.Obs;
 import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.core.columnar.ColumnarFrame;
+import com.cloudera.exhibit.core.columnar.ExhibitCodec;
 import com.cloudera.exhibit.core.composite.UpdatableExhibit;
 import com.cloudera.exhibit.core.composite.UpdatableExhibitDescriptor;
-import com.cloudera.exhibit.core.simple.SimpleFrame;
 import com.cloudera.exhibit.etl.config.FrameConfig;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -32,6 +37,7 @@ import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.crunch.CrunchRuntimeException;
+import org.apache.crunch.Emitter;
 import org.apache.crunch.MapFn;
 import org.apache.crunch.PCollection;
 import org.apache.crunch.ReadableData;
@@ -41,6 +47,8 @@ import org.apache.crunch.types.avro.Avros;
 import org.apache.hadoop.conf.Configuration;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -53,59 +61,249 @@ import java.util.Map;
 public class RecordToExhibit  {
 
   private Map<String, ReadableData<GenericData.Record>> readables;
+  // The JSON form of the schema of each of the readables, since Schemas are not serializable
+  private Map<String, String> readableSchemas;
   private List<FrameConfig> metrics;
 
-  public RecordToExhibit(Map<String, ReadableData<GenericData.Record>> readables, List<FrameConfig> metrics) {
+  public RecordToExhibit(Map<String, ReadableData<GenericData.Record>> readables,
+                         Map<String, Schema> readableSchemas, List<FrameConfig> metrics) {
     this.readables = readables;
+    this.readableSchemas = Maps.newHashMap();
+    for (Map.Entry<String, Schema> e : readableSchemas.entrySet()) {
+      this.readableSchemas.put(e.getKey(), e.getValue().toString());
+    }
     this.metrics = metrics;
   }
 
   public ExhibitDescriptor getDescriptor(PType<GenericData.Record> ptype) {
     Schema schema = ((AvroType) ptype).getSchema();
-    return getDescriptor(schema, metrics);
+    return getDescriptor(schema, parseDescriptors(readableSchemas), metrics);
+  }
+
+  /**
+   * Returns the descriptor of the exhibits created by {@link #applyColumnar(PCollection, Schema)}
+   * for input records with the given schema.
+   */
+  public ExhibitDescriptor getColumnarDescriptor(Schema schema) {
+    return getColumnarDescriptor(schema, null);
+  }
+
+  /**
+   * Returns the descriptor of the exhibits created by {@link #applyColumnar(PCollection, Schema, ExhibitDescriptor)}
+   * for input records with the given schema that were read with the given requested descriptor.
+   */
+  public ExhibitDescriptor getColumnarDescriptor(Schema schema, ExhibitDescriptor requested) {
+    return getDescriptor(new ColumnarDatumReader(schema, requested).descriptor(),
+        parseDescriptors(readableSchemas), metrics);
+  }
+
+  /**
+   * Returns the parts of the base descriptor of the input that are read by the temp tables or by
+   * any of the given output calculators, along with the named attributes.
+   */
+  public ExhibitDescriptor getReferences(ExhibitDescriptor base, List<Calculator> outputs,
+                                         Collection<String> attrs) {
+    ExhibitDescriptor descriptor = getDescriptor(base, parseDescriptors(readableSchemas), metrics);
+    List<ExhibitDescriptor> refs = Lists.newArrayList();
+    for (FrameConfig mc : metrics) {
+      refs.add(Exhibits.references(mc.getCalculator(), descriptor));
+    }
+    for (Calculator c : outputs) {
+      refs.add(Exhibits.references(c, descriptor));
+    }
+    refs.add(Exhibits.project(base, attrs));
+    return Exhibits.union(base, refs);
+  }
+
+  private static Map<String, AvroObsDescriptor> parseDescriptors(Map<String, String> readableSchemas) {
+    Map<String, AvroObsDescriptor> descriptors = Maps.newHashMap();
+    for (Map.Entry<String, String> e : readableSchemas.entrySet()) {
+      descriptors.put(e.getKey(), new AvroObsDescriptor(new Schema.Parser().parse(e.getValue())));
+    }
+    return descriptors;
   }
 
-  private static UpdatableExhibitDescriptor getDescriptor(Schema schema, List<FrameConfig> metrics) {
-    UpdatableExhibitDescriptor descriptor = new UpdatableExhibitDescriptor(
-            AvroExhibit.createDescriptor(schema));
+  private static UpdatableExhibitDescriptor getDescriptor(Schema schema, Map<String, AvroObsDescriptor> readables,
+                                                          List<FrameConfig> metrics) {
+    return getDescriptor(AvroExhibit.createDescriptor(schema), readables, metrics);
+  }
+
+  /**
+   * Returns the layout of the exhibits that are computed from inputs with the given base layout:
+   * the base, the in-memory frames of the readables, and the temp tables, in the order that
+   * {@link TempTablesFn} adds them.
+   */
+  private static UpdatableExhibitDescriptor getDescriptor(ExhibitDescriptor base,
+                                                          Map<String, AvroObsDescriptor> readables,
+                                                          List<FrameConfig> metrics) {
+    UpdatableExhibitDescriptor descriptor = new UpdatableExhibitDescriptor(base);
+    for (Map.Entry<String, AvroObsDescriptor> e : readables.entrySet()) {
+      descriptor.add(e.getKey(), e.getValue());
+    }
     for (int i = 0; i < metrics.size(); i++) {
       Calculator c = metrics.get(i).getCalculator();
       ObsDescriptor od = c.initialize(descriptor);
+      c.cleanup();
       descriptor.add(metrics.get(i).name, od);
     }
     return descriptor;
   }
 
-  private static class NoOpMapFn<S, T> extends MapFn<S, T> {
+  /**
+   * Returns a {@link PType} for exhibits with the given layout that stores each of them in the
+   * binary form written by an {@link ExhibitCodec}.
+   */
+  public static PType<Exhibit> exhibits(ExhibitDescriptor descriptor) {
+    byte[] descriptorBytes = ExhibitCodec.of(descriptor).getDescriptorBytes();
+    return Avros.derivedImmutable(Exhibit.class,
+            new DecodeFn(descriptorBytes),
+            new EncodeFn(descriptorBytes),
+            Avros.bytes());
+  }
+
+  private static class DecodeFn extends MapFn<ByteBuffer, Exhibit> {
+    private final byte[] descriptorBytes;
+    private transient ExhibitCodec codec;
+
+    DecodeFn(byte[] descriptorBytes) {
+      this.descriptorBytes = descriptorBytes;
+    }
+
     @Override
-    public T map(S s) {
-      return (T) s;
+    public void initialize() {
+      this.codec = ExhibitCodec.fromDescriptorBytes(descriptorBytes);
+    }
+
+    @Override
+    public Exhibit map(ByteBuffer buf) {
+      if (codec == null) {
+        initialize();
+      }
+      // The buffer may be reused for the next record, so the lazily decoded frames get their own copy
+      byte[] bytes = new byte[buf.remaining()];
+      buf.duplicate().get(bytes);
+      return codec.decodeLazy(bytes, 0, bytes.length);
+    }
+  }
+
+  private static class EncodeFn extends MapFn<Exhibit, ByteBuffer> {
+    private final byte[] descriptorBytes;
+    private transient ExhibitCodec codec;
+
+    EncodeFn(byte[] descriptorBytes) {
+      this.descriptorBytes = descriptorBytes;
+    }
+
+    @Override
+    public void initialize() {
+      this.codec = ExhibitCodec.fromDescriptorBytes(descriptorBytes);
+    }
+
+    @Override
+    public ByteBuffer map(Exhibit exhibit) {
+      if (codec == null) {
+        initialize();
+      }
+      return ByteBuffer.wrap(codec.encode(exhibit));
     }
   }
 
   public PCollection<Exhibit> apply(PCollection<GenericData.Record> records) {
     Schema s = ((AvroType) records.getPType()).getSchema();
-    //TODO: real serialization scheme for Exhibits
-    return records.parallelDo("recordToExhibit", new RecordToExhibitFn(s, readables, metrics),
-            Avros.derivedImmutable(Exhibit.class,
-                    new NoOpMapFn<GenericData.Record, Exhibit>(),
-                    new NoOpMapFn<Exhibit, GenericData.Record>(),
-                    Avros.generics(s)));
+    return records.parallelDo("recordToExhibit", new RecordToExhibitFn(s, readables, readableSchemas, metrics),
+            exhibits(getDescriptor(s, parseDescriptors(readableSchemas), metrics)));
+  }
+
+  /**
+   * Computes the temp tables for exhibits that were decoded from the input by a
+   * {@link ColumnarDatumReader}, e.g. the ones from {@code ConfigHelper.getExhibits}.
+   */
+  public PCollection<Exhibit> applyColumnar(PCollection<Exhibit> exhibits, Schema s) {
+    return applyColumnar(exhibits, s, null);
   }
 
-  static class RecordToExhibitFn extends MapFn<GenericData.Record, Exhibit> {
+  /**
+   * Like {@link #applyColumnar(PCollection, Schema)}, for exhibits that were read with the given
+   * requested descriptor.
+   */
+  public PCollection<Exhibit> applyColumnar(PCollection<Exhibit> exhibits, Schema s, ExhibitDescriptor requested) {
+    return exhibits.parallelDo("columnarExhibit", new ColumnarExhibitFn(s, requested, readables, readableSchemas, metrics),
+            exhibits(getColumnarDescriptor(s, requested)));
+  }
+
+  static class RecordToExhibitFn extends TempTablesFn<GenericData.Record> {
+
+    private transient AvroExhibitFactory exhibitFactory;
+
+    public RecordToExhibitFn(Schema schema, Map<String, ReadableData<GenericData.Record>> readables,
+                             Map<String, String> readableSchemas, List<FrameConfig> metrics) {
+      super(schema, readables, readableSchemas, metrics);
+    }
+
+    @Override
+    protected UpdatableExhibitDescriptor createDescriptor(Schema schema) {
+      return getDescriptor(schema, readableDescriptors, metrics);
+    }
+
+    @Override
+    public void initialize() {
+      super.initialize();
+      this.exhibitFactory = AvroExhibitFactory.forSchema(schema);
+    }
+
+    @Override
+    protected Exhibit toExhibit(GenericData.Record genericRecord) {
+      return exhibitFactory.create(genericRecord);
+    }
+  }
+
+  static class ColumnarExhibitFn extends TempTablesFn<Exhibit> {
+
+    // The codec bytes of the requested descriptor, which may contain descriptors that are not serializable
+    private final byte[] requestedBytes;
+
+    public ColumnarExhibitFn(Schema schema, ExhibitDescriptor requested,
+                             Map<String, ReadableData<GenericData.Record>> readables,
+                             Map<String, String> readableSchemas, List<FrameConfig> metrics) {
+      super(schema, readables, readableSchemas, metrics);
+      this.requestedBytes = requested == null ? null : ExhibitCodec.of(requested).getDescriptorBytes();
+    }
+
+    @Override
+    protected UpdatableExhibitDescriptor createDescriptor(Schema schema) {
+      ExhibitDescriptor requested = null;
+      if (requestedBytes != null) {
+        requested = ExhibitCodec.fromDescriptorBytes(requestedBytes).descriptor();
+      }
+      return getDescriptor(new ColumnarDatumReader(schema, requested).descriptor(), readableDescriptors, metrics);
+    }
+
+    @Override
+    protected Exhibit toExhibit(Exhibit exhibit) {
+      return exhibit;
+    }
+  }
+
+  /**
+   * Adds the in-memory frames and computes the temp tables for each exhibit created from an input.
+   */
+  abstract static class TempTablesFn<S> extends MapFn<S, Exhibit> {
 
     private final String schemaJson;
     private final Map<String, ReadableData<GenericData.Record>> readables;
-    private final List<FrameConfig> metrics;
-    private transient Schema schema;
+    private final Map<String, String> readableSchemas;
+    protected final List<FrameConfig> metrics;
+    protected transient Schema schema;
+    protected transient Map<String, AvroObsDescriptor> readableDescriptors;
     private transient List<Calculator> calcs;
     private transient UpdatableExhibitDescriptor descriptor;
     private transient Map<String, Frame> readFrames;
 
-    public RecordToExhibitFn(Schema schema, Map<String, ReadableData<GenericData.Record>> readables, List<FrameConfig> metrics) {
+    protected TempTablesFn(Schema schema, Map<String, ReadableData<GenericData.Record>> readables,
+                           Map<String, String> readableSchemas, List<FrameConfig> metrics) {
       this.schemaJson = schema.toString();
       this.readables = readables;
+      this.readableSchemas = readableSchemas;
       this.metrics = metrics;
     }
 
@@ -119,7 +317,11 @@ public class RecordToExhibit  {
     @Override
     public void initialize() {
       this.schema = SchemaUtil.getOrParse(this.schema, schemaJson);
-      this.descriptor = getDescriptor(schema, metrics);
+      if (readableDescriptors == null) {
+        readableDescriptors = parseDescriptors(readableSchemas);
+      }
+      this.descriptor = createDescriptor(schema);
+      cleanupCalculators();
       this.calcs = Lists.newArrayList();
       for (FrameConfig mc : metrics) {
         Calculator c = mc.getCalculator();
@@ -132,8 +334,7 @@ public class RecordToExhibit  {
           ReadableData<GenericData.Record> rd = e.getValue();
           try {
             List<GenericData.Record> records = Lists.newArrayList(rd.read(getContext()));
-            //TODO: allow empty frames
-            readFrames.put(e.getKey(), new AvroFrame(records));
+            readFrames.put(e.getKey(), new AvroFrame(readableDescriptors.get(e.getKey()), records));
           } catch (IOException e1) {
             throw new CrunchRuntimeException(e1);
           }
@@ -142,8 +343,26 @@ public class RecordToExhibit  {
     }
 
     @Override
-    public Exhibit map(GenericData.Record genericRecord) {
-      UpdatableExhibit ue = new UpdatableExhibit(AvroExhibit.create(genericRecord));
+    public void cleanup(Emitter<Exhibit> emitter) {
+      cleanupCalculators();
+    }
+
+    private void cleanupCalculators() {
+      if (calcs != null) {
+        for (Calculator c : calcs) {
+          c.cleanup();
+        }
+        calcs = null;
+      }
+    }
+
+    protected abstract UpdatableExhibitDescriptor createDescriptor(Schema schema);
+
+    protected abstract Exhibit toExhibit(S input);
+
+    @Override
+    public Exhibit map(S input) {
+      UpdatableExhibit ue = new UpdatableExhibit(toExhibit(input));
       ue.addAllFrames(readFrames);
       for (int i = 0; i < calcs.size(); i++) {
         String name = metrics.get(i).name;
@@ -151,7 +370,7 @@ public class RecordToExhibit  {
         if (res instanceof Frame) {
           ue.add(name, (Frame) res);
         } else {
-          Frame f = new SimpleFrame(descriptor.frames().get(name), Lists.newArrayList(res));
+          Frame f = ColumnarFrame.of(descriptor.frames().get(name), res);
           ue.add(name, f);
         }
       }
@@ -42,12 +42,18 @@ public class SchemaUtil {
     return s;
   }
 
+  /**
+   * Returns the schema of the shuffle keys for the given key schemas: the hash of the key (which comes
+   * first, so that {@link ExhibitKeyComparator} and {@link ExhibitKeyPartitioner} can read it cheaply),
+   * the index of its schema, and the key itself.
+   */
   public static Schema unionKeySchema(String name, List<Schema> schemas) {
     Schema wrapper = Schema.createRecord(name, "exhibit", "", false);
     Schema unionSchema = Schema.createUnion(schemas);
+    Schema.Field hash = new Schema.Field("hash", Schema.create(Schema.Type.INT), "", null);
     Schema.Field idx = new Schema.Field("index", Schema.create(Schema.Type.INT), "", null);
     Schema.Field key = new Schema.Field("key", unionSchema, "", null);
-    wrapper.setFields(Lists.newArrayList(idx, key));
+    wrapper.setFields(Lists.newArrayList(hash, idx, key));
     return wrapper;
   }
 
@@ -29,7 +29,8 @@ import java.util.Map;
 
 public class AggConfig implements Serializable {
 
-  // The type of aggregation that will be performed on the computed records (SUM, PERCENTILE, SUM_TOP, TOP)
+  // The type of aggregation that will be performed on the computed records (SUM, PERCENTILE, SUM_TOP,
+  // TOP_LIST, RATIO, COUNT_DISTINCT)
   public TblType type = TblType.SUM;
 
   // Table-specific options (e.g., which fields to sort on for the TOP tbl)
@@ -47,7 +48,11 @@ public class AggConfig implements Serializable {
   public Map<String, String> values = Maps.newHashMap();
 
   // The maximum number of keys whose aggregate values should be cached in memory.
-  public long cacheSize = 5000;
+  public long cacheSize = 100000;
+
+  // The largest fraction of the maximum heap of a task that the cached aggregate values may use; the
+  // least recently updated keys are emitted early when the cache grows beyond it.
+  public double cacheHeapFraction = 0.25;
 
   public Calculator getCalculator() {
     if (frame == null) {
@@ -59,7 +64,9 @@ public class AggConfig implements Serializable {
   public ObsDescriptor getFrameDescriptor(ExhibitDescriptor ed) {
     if (frame != null) {
       Calculator c = frame.getCalculator();
-      return c.initialize(ed);
+      ObsDescriptor od = c.initialize(ed);
+      c.cleanup();
+      return od;
     }
     throw new IllegalStateException("Invalid AggConfig: no frame specified");
   }
@@ -49,6 +49,10 @@ public class ComputeConfig {
   // An optional path argument to an Avro file that can be used to bypass Kite URIs (hopefully deprecated soon.)
   public String path = "";
 
+  // Decode the input Avro records straight into columnar frames, without creating a GenericData.Record
+  // for each of them first. Only supported for Avro inputs.
+  public boolean columnar = false;
+
   // The number of reducers to use for performing aggregations. The rule of thumb is ~ 1 reducer per 1GB of
   // output data.
   public int parallelism = -1;
@@ -92,4 +96,15 @@ public class ComputeConfig {
     }
     return ret;
   }
+
+  /**
+   * Returns the schema of each of the memory tables, keyed by the name of its frame.
+   */
+  public Map<String, Schema> getReadableSchemas() {
+    Map<String, Schema> ret = Maps.newHashMap();
+    for (ReadableConfig rc : memoryTables) {
+      ret.put(rc.name, Datasets.load(rc.uri).getDescriptor().getSchema());
+    }
+    return ret;
+  }
 }
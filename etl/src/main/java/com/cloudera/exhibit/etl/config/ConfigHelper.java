@@ -14,16 +14,27 @@
  */
 package com.cloudera.exhibit.etl.config;
 
+import com.cloudera.exhibit.avro.AvroExhibit;
+import com.cloudera.exhibit.avro.AvroExhibitInputFormat;
+import com.cloudera.exhibit.avro.ExhibitWritable;
+import com.cloudera.exhibit.core.Exhibit;
+import com.cloudera.exhibit.core.ExhibitDescriptor;
 import com.esotericsoftware.yamlbeans.YamlReader;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
+import org.apache.crunch.CrunchRuntimeException;
+import org.apache.crunch.MapFn;
 import org.apache.crunch.PCollection;
 import org.apache.crunch.Pipeline;
 import org.apache.crunch.Source;
+import org.apache.crunch.io.FormatBundle;
 import org.apache.crunch.io.From;
 import org.apache.crunch.io.parquet.AvroParquetFileSource;
 import org.apache.crunch.types.avro.AvroType;
+import org.apache.crunch.types.PType;
 import org.apache.crunch.types.avro.Avros;
+import org.apache.crunch.types.writable.Writables;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.kitesdk.data.Dataset;
 import org.kitesdk.data.Datasets;
@@ -31,8 +42,13 @@ import org.kitesdk.data.Format;
 import org.kitesdk.data.Formats;
 
 import java.io.FileReader;
+import java.io.IOException;
 
 public class ConfigHelper {
+
+  // The reader schema that parquet-avro uses to skip the unread columns of a Parquet file
+  private static final String PARQUET_AVRO_PROJECTION = "parquet.avro.projection";
+
   public static ComputeConfig parseComputeConfig(String configFile) throws Exception {
     YamlReader reader = new YamlReader(new FileReader(configFile));
     setupComputeReader(reader);
@@ -51,22 +67,116 @@ public class ConfigHelper {
       // NOTE: this is for backwards compatibility, think about removing this
       return p.read(From.avroFile(pathStr));
     }
+    return getPCollection(p, uri, pathStr, null);
+  }
+
+  /**
+   * Reads only the parts of each input record that are in the requested descriptor (or all of
+   * them, if it is null), using a reader schema from {@link AvroExhibit#projectSchema(Schema, ExhibitDescriptor)}.
+   */
+  public static PCollection<GenericData.Record> getPCollection(Pipeline p, String uri, String pathStr,
+                                                               ExhibitDescriptor requested) {
+    if (pathStr != null && !pathStr.isEmpty()) {
+      if (requested == null) {
+        return getPCollection(p, uri, pathStr);
+      }
+      try {
+        Schema schema = AvroExhibitInputFormat.readSchema(new Path(pathStr), p.getConfiguration());
+        return p.read(From.avroFile(new Path(pathStr), Avros.generics(AvroExhibit.projectSchema(schema, requested))));
+      } catch (IOException e) {
+        throw new CrunchRuntimeException(e);
+      }
+    }
     Dataset ds = Datasets.load(uri);
     Path path = new Path(ds.getDescriptor().getLocation());
     Format fmt = ds.getDescriptor().getFormat();
     Schema schema = ds.getDescriptor().getSchema();
+    if (requested != null) {
+      schema = AvroExhibit.projectSchema(schema, requested);
+    }
     AvroType<GenericData.Record> ptype = Avros.generics(schema);
     Source<GenericData.Record> src;
     if (Formats.AVRO.equals(fmt)) {
       src = From.avroFile(path, ptype);
     } else if (Formats.PARQUET.equals(fmt)) {
       src = new AvroParquetFileSource<GenericData.Record>(path, ptype);
+      if (requested != null) {
+        src = src.inputConf(PARQUET_AVRO_PROJECTION, schema.toString());
+      }
     } else {
       throw new IllegalArgumentException("Cannot handle input format: " + fmt + " of uri: " + uri);
     }
     return p.read(src);
   }
 
+  /**
+   * Reads the input straight into columnar {@link Exhibit}s via {@link AvroExhibitInputFormat},
+   * rather than as records that are then wrapped by an {@code AvroExhibitFactory}. Only Avro
+   * inputs can be read this way.
+   */
+  public static PCollection<Exhibit> getExhibits(Pipeline p, String uri, String pathStr) {
+    return getExhibits(p, uri, pathStr, null);
+  }
+
+  /**
+   * Like {@link #getExhibits(Pipeline, String, String)}, but only decodes the parts of each record
+   * that are in the requested descriptor (or all of them, if it is null.)
+   */
+  public static PCollection<Exhibit> getExhibits(Pipeline p, String uri, String pathStr, ExhibitDescriptor requested) {
+    Path path = getAvroPath(uri, pathStr);
+    FormatBundle<AvroExhibitInputFormat> bundle = FormatBundle.forInput(AvroExhibitInputFormat.class);
+    try {
+      // Every file is read with the layout of this schema, so that it matches getAvroSchema
+      bundle.set(AvroExhibitInputFormat.READER_SCHEMA, getAvroSchema(p.getConfiguration(), uri, pathStr).toString());
+    } catch (IOException e) {
+      throw new CrunchRuntimeException(e);
+    }
+    if (requested != null) {
+      bundle.set(AvroExhibitInputFormat.REQUESTED_DESCRIPTOR, AvroExhibitInputFormat.encodeDescriptor(requested));
+    }
+    return p.read(From.formattedFile(path, bundle, exhibits(), Writables.nulls())).keys();
+  }
+
+  /**
+   * Returns the Avro schema of the input that is read by {@link #getExhibits(Pipeline, String, String)}.
+   */
+  public static Schema getAvroSchema(Configuration conf, String uri, String pathStr) throws IOException {
+    if (pathStr != null && !pathStr.isEmpty()) {
+      return AvroExhibitInputFormat.readSchema(new Path(pathStr), conf);
+    }
+    return Datasets.load(uri).getDescriptor().getSchema();
+  }
+
+  private static Path getAvroPath(String uri, String pathStr) {
+    if (pathStr != null && !pathStr.isEmpty()) {
+      return new Path(pathStr);
+    }
+    Dataset ds = Datasets.load(uri);
+    Format fmt = ds.getDescriptor().getFormat();
+    if (!Formats.AVRO.equals(fmt)) {
+      throw new IllegalArgumentException("Cannot read input format: " + fmt + " of uri: " + uri + " as columnar exhibits");
+    }
+    return new Path(ds.getDescriptor().getLocation());
+  }
+
+  private static PType<Exhibit> exhibits() {
+    return Writables.derived(Exhibit.class, new UnwrapFn(), new WrapFn(), Writables.writables(ExhibitWritable.class));
+  }
+
+  private static class UnwrapFn extends MapFn<ExhibitWritable, Exhibit> {
+    @Override
+    public Exhibit map(ExhibitWritable writable) {
+      return writable.get();
+    }
+  }
+
+  private static class WrapFn extends MapFn<Exhibit, ExhibitWritable> {
+    @Override
+    public ExhibitWritable map(Exhibit exhibit) {
+      return new ExhibitWritable(exhibit);
+    }
+  }
+
   public static BuildConfig parseBuildConfig(String configFile) throws Exception {
     YamlReader reader = new YamlReader(new FileReader(configFile));
     reader.getConfig().setPropertyElementType(BuildConfig.class, "sources", SourceConfig.class);
@@ -21,6 +21,7 @@ import com.cloudera.exhibit.core.calculators.PivotCalculator;
 import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
 import com.cloudera.exhibit.javascript.JSCalculator;
 import com.cloudera.exhibit.sql.SQLCalculator;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -51,6 +52,15 @@ public class FrameConfig implements Serializable {
   // frame format.
   public PivotConfig pivot = null;
 
+  // For scripting engines, the optional names of the attributes, frames, vectors, and frame columns (as
+  // "frame.column") that the code reads, so that the rest of each exhibit need not be read from the input.
+  // When this is empty, the code is assumed to read everything. For SQL, these are found from the queries.
+  public List<String> uses = Lists.newArrayList();
+
+  // For SQL, compiled Java functions that the code may call, as a map from the function names to the names
+  // of the classes that implement them (see SQLFunctions.)
+  public Map<String, String> functions = Maps.newLinkedHashMap();
+
   public Calculator getCalculator() {
     ObsDescriptor od = null;
     if (descriptor != null && !descriptor.isEmpty()) {
@@ -62,14 +72,15 @@ public class FrameConfig implements Serializable {
       od = new SimpleObsDescriptor(fields);
     }
     if ("sql".equalsIgnoreCase(engine)) {
-      SQLCalculator sql = SQLCalculator.create(od, code);
+      SQLCalculator sql = SQLCalculator.create(od, code,
+          functions == null ? ImmutableMap.<String, String>of() : functions);
       if (pivot == null) {
         return sql;
       } else {
         return new PivotCalculator(sql, pivot.by, toKeys(pivot.variables));
       }
     } else if ("js".equalsIgnoreCase(engine) || "javascript".equalsIgnoreCase(engine)) {
-      return new JSCalculator(od, code);
+      return new JSCalculator(od, code, uses == null || uses.isEmpty() ? null : uses);
     } else {
       throw new IllegalStateException("Unknown engine type: " + engine);
     }
@@ -16,7 +16,9 @@ package com.cloudera.exhibit.etl.fn;
 
 import com.cloudera.exhibit.core.Calculator;
 import com.cloudera.exhibit.core.Exhibit;
+import com.cloudera.exhibit.core.Exhibits;
 import com.cloudera.exhibit.core.Obs;
+import com.cloudera.exhibit.core.ObsCursor;
 import com.cloudera.exhibit.core.ObsDescriptor;
 import com.cloudera.exhibit.etl.config.FrameConfig;
 import org.apache.avro.Schema;
@@ -50,12 +52,18 @@ public class CollectFn extends DoFn<Exhibit, GenericData.Record> {
       calc.initialize(exhibit.descriptor());
       initialized = true;
     }
-    for (Obs obs : calc.apply(exhibit)) {
-      GenericData.Record out = new GenericData.Record(schema);
-      for (ObsDescriptor.Field f : obs.descriptor()) {
-        out.put(f.name, obs.get(f.name));
+    ObsCursor res = Exhibits.stream(calc, exhibit);
+    try {
+      while (res.hasNext()) {
+        Obs obs = res.next();
+        GenericData.Record out = new GenericData.Record(schema);
+        for (ObsDescriptor.Field f : obs.descriptor()) {
+          out.put(f.name, obs.get(f.name));
+        }
+        emitter.emit(out);
       }
-      emitter.emit(out);
+    } finally {
+      res.close();
     }
   }
 
@@ -36,6 +36,7 @@ public class SchemaMapFn extends
       Pair<GenericData.Record, Pair<Integer, GenericData.Record>> input) {
     int aggIdx = input.second().first();
     GenericData.Record outKey = new GenericData.Record(provider.get(0));
+    outKey.put("hash", input.first().hashCode());
     outKey.put("index", index);
     outKey.put("key", input.first());
     GenericData.Record outValue = new GenericData.Record(provider.get(1));
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.etl.tbl;
+
+import com.cloudera.exhibit.core.Obs;
+import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.core.sketch.HyperLogLog;
+import com.cloudera.exhibit.etl.SchemaProvider;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counts the distinct non-null values of a field. Small counts are exact: the table keeps the set
+ * of the 64-bit hashes of the values it has seen, until there are more than the 'exact' option
+ * (by default, as many as fit in the sketch's registers, 2^precision / 8), and switches to a
+ * {@link HyperLogLog} sketch with the given 'precision' option (default 12, for a standard error of
+ * about 1.6%) after that.
+ */
+public class CountDistinctTbl implements Tbl {
+
+  private static final String PRECISION_OPTION = "precision";
+  private static final String EXACT_OPTION = "exact";
+  private static final String HASHES = "hashes";
+  private static final String REGISTERS = "registers";
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+  private final String obsKey;
+  private final String outKey;
+  private final int precision;
+  private final int exactLimit;
+
+  private Schema intermediate;
+  private Schema output;
+  private Set<Long> hashes;
+  private HyperLogLog sketch;
+  private transient ObsDescriptor lastDescriptor;
+  private transient int obsIndex;
+
+  public CountDistinctTbl(Map<String, String> values, Map<String, Object> options) {
+    if (values.size() != 1) {
+      throw new IllegalArgumentException("COUNT_DISTINCT must have exactly one input value");
+    }
+    Map.Entry<String, String> e = Iterables.getOnlyElement(values.entrySet());
+    this.obsKey = e.getKey();
+    this.outKey = e.getValue();
+    this.precision = options.containsKey(PRECISION_OPTION) ?
+        Integer.valueOf(options.get(PRECISION_OPTION).toString()) : HyperLogLog.DEFAULT_PRECISION;
+    if (precision < 4 || precision > 18) {
+      throw new IllegalArgumentException("COUNT_DISTINCT precision must be between 4 and 18, found: " + precision);
+    }
+    this.exactLimit = options.containsKey(EXACT_OPTION) ?
+        Integer.valueOf(options.get(EXACT_OPTION).toString()) : (1 << precision) / 8;
+  }
+
+  @Override
+  public int arity() {
+    return 1;
+  }
+
+  @Override
+  public SchemaProvider getSchemas(ObsDescriptor od, int outputId, int aggIdx) {
+    if (od.indexOf(obsKey) < 0) {
+      throw new IllegalArgumentException("COUNT_DISTINCT field '" + obsKey + "' not found in query");
+    }
+    List<Schema.Field> interFields = Lists.newArrayList();
+    interFields.add(new Schema.Field(HASHES, Schema.createArray(Schema.create(Schema.Type.LONG)), "", null));
+    interFields.add(new Schema.Field(REGISTERS, Schema.create(Schema.Type.BYTES), "", null));
+    this.intermediate = Schema.createRecord("ExCountDistinctInter_" + outputId + "_" + aggIdx, "", "exhibit", false);
+    this.intermediate.setFields(interFields);
+
+    List<Schema.Field> outputFields = Lists.newArrayList();
+    outputFields.add(new Schema.Field(outKey, Schema.create(Schema.Type.LONG), "", null));
+    this.output = Schema.createRecord("ExCountDistinct_" + outputId + "_" + aggIdx, "", "exhibit", false);
+    this.output.setFields(outputFields);
+    return new SchemaProvider(ImmutableList.of(intermediate, output));
+  }
+
+  @Override
+  public void initialize(SchemaProvider provider) {
+    this.intermediate = provider.get(0);
+    this.output = provider.get(1);
+    this.hashes = Sets.newHashSet();
+    this.sketch = null;
+  }
+
+  @Override
+  public void add(Obs obs) {
+    if (obs.descriptor() != lastDescriptor) {
+      this.lastDescriptor = obs.descriptor();
+      this.obsIndex = lastDescriptor.indexOf(obsKey);
+    }
+    Object value = obs.get(obsIndex);
+    if (value == null) {
+      return;
+    }
+    long hash = HyperLogLog.hash(value);
+    if (sketch != null) {
+      sketch.addHash(hash);
+    } else if (hashes.add(hash) && hashes.size() > exactLimit) {
+      this.sketch = new HyperLogLog(precision);
+      for (Long h : hashes) {
+        sketch.addHash(h);
+      }
+      this.hashes = null;
+    }
+  }
+
+  @Override
+  public GenericData.Record getValue() {
+    GenericData.Record r = new GenericData.Record(intermediate);
+    if (sketch == null) {
+      r.put(HASHES, Lists.newArrayList(hashes));
+      r.put(REGISTERS, EMPTY.duplicate());
+    } else {
+      r.put(HASHES, ImmutableList.<Long>of());
+      r.put(REGISTERS, ByteBuffer.wrap(sketch.registers()));
+    }
+    return r;
+  }
+
+  @Override
+  public GenericData.Record merge(GenericData.Record current, GenericData.Record next) {
+    if (current == null) {
+      return next;
+    }
+    if (!hasSketch(current) && !hasSketch(next)) {
+      Set<Long> merged = Sets.newHashSet(hashes(current));
+      merged.addAll(hashes(next));
+      if (merged.size() <= exactLimit) {
+        current.put(HASHES, Lists.newArrayList(merged));
+        return current;
+      }
+    }
+    HyperLogLog merged = new HyperLogLog(precision);
+    addTo(merged, current);
+    addTo(merged, next);
+    current.put(HASHES, ImmutableList.<Long>of());
+    current.put(REGISTERS, ByteBuffer.wrap(merged.registers()));
+    return current;
+  }
+
+  @Override
+  public List<GenericData.Record> finalize(GenericData.Record value) {
+    long count;
+    if (hasSketch(value)) {
+      HyperLogLog hll = new HyperLogLog(precision);
+      addTo(hll, value);
+      count = hll.estimate();
+    } else {
+      count = Sets.newHashSet(hashes(value)).size();
+    }
+    GenericData.Record res = new GenericData.Record(output);
+    res.put(outKey, count);
+    return ImmutableList.of(res);
+  }
+
+  private static List<Long> hashes(GenericData.Record value) {
+    return (List<Long>) value.get(HASHES);
+  }
+
+  private static boolean hasSketch(GenericData.Record value) {
+    return ((ByteBuffer) value.get(REGISTERS)).remaining() > 0;
+  }
+
+  private static void addTo(HyperLogLog hll, GenericData.Record value) {
+    if (hasSketch(value)) {
+      ByteBuffer buf = ((ByteBuffer) value.get(REGISTERS)).duplicate();
+      byte[] registers = new byte[buf.remaining()];
+      buf.get(registers);
+      hll.merge(HyperLogLog.fromRegisters(registers));
+    }
+    for (Long h : hashes(value)) {
+      hll.addHash(h);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "CountDistinctTbl(" + outKey + " = " + obsKey + ")";
+  }
+}
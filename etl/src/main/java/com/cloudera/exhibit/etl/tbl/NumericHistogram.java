@@ -14,16 +14,11 @@
  */
 package com.cloudera.exhibit.etl.tbl;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Collections;
-import java.util.Random;
-
 import com.google.common.collect.Lists;
 import org.apache.avro.generic.GenericData;
-import org.apache.hadoop.hive.serde2.io.DoubleWritable;
-import org.apache.hadoop.hive.serde2.objectinspector.primitive.DoubleObjectInspector;
 
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * A generic, re-usable histogram class that supports partial aggregations.
@@ -33,40 +28,57 @@ import org.apache.hadoop.hive.serde2.objectinspector.primitive.DoubleObjectInspe
  * guarantees, it appears to work well with adequate data and a large (e.g., 20-80) number
  * of histogram bins.
  *
- * (This code is re-used from the Apache Hive project-- jwills)
+ * <p>The bins are kept in parallel, sorted arrays of their centers and heights. New values are
+ * buffered, and each full buffer is sorted and merged into the bins in one pass, after which the
+ * histogram is trimmed back to size by repeatedly merging the closest pair of adjacent bins, which
+ * are found with a heap. Ties between equally close pairs go to the leftmost pair. So adding a value
+ * costs O(log n) amortized, rather than O(n) for an insertion and a scan for the closest pair.
+ * The arrays start small and grow as the histogram fills up, so that the many histograms of a
+ * map-side cache that only see a few values each stay small.
+ *
+ * <p>The serialized form is an "nbins" count and a "binData" list of alternating bin centers and
+ * heights, as in the original version of this class, which was re-used from the Apache Hive project.
  */
 public class NumericHistogram {
-  /**
-   * The Coord class defines a histogram bin, which is just an (x,y) pair.
-   */
-  static class Coord implements Comparable {
-    double x;
-    double y;
 
-    public int compareTo(Object other) {
-      return Double.compare(x, ((Coord) other).x);
-    }
-  };
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int MAX_BUFFER_SIZE = 128;
 
-  // Class variables
   private int nbins;
   private int nusedbins;
-  private ArrayList<Coord> bins;
-  private Random prng;
+  private double[] xs;
+  private double[] ys;
+
+  // Values that have been added but not yet merged into the bins
+  private double[] buffer;
+  private int buffered;
+
+  // Scratch space for merging the bins with new ones: the sorted bins to merge in, and the arrays
+  // the merged bins are written to, which are swapped with xs and ys afterwards
+  private double[] mergeXs;
+  private double[] mergeYs;
+  private double[] outXs;
+  private double[] outYs;
+
+  // The heap of adjacent pairs of bins used by trim(): the gap between the bins, the index of the
+  // left bin, and the version of the left bin when the entry was added. Entries whose left bin has
+  // changed since then are stale and skipped.
+  private double[] heapGaps;
+  private int[] heapBins;
+  private int[] heapVersions;
+  private int heapSize;
+
+  // The linked list of the bins that remain during trim(), and the version of each bin
+  private int[] next;
+  private int[] prev;
+  private int[] versions;
 
   /**
    * Creates a new histogram object. Note that the allocate() or merge()
    * method must be called before the histogram can be used.
    */
   public NumericHistogram() {
-    nbins = 0;
-    nusedbins = 0;
-    bins = null;
-
-    // init the RNG for breaking ties in histogram merging. A fixed seed is specified here
-    // to aid testing, but can be eliminated to use a time-based seed (which would
-    // make the algorithm non-deterministic).
-    prng = new Random(31183);
+    reset();
   }
 
   /**
@@ -74,14 +86,14 @@ public class NumericHistogram {
    * called again before use.
    */
   public void reset() {
-    bins = null;
-    nbins = nusedbins = 0;
+    nbins = nusedbins = buffered = 0;
   }
 
   /**
    * Returns the number of bins currently being used by the histogram.
    */
   public int getUsedBins() {
+    flush();
     return nusedbins;
   }
 
@@ -94,21 +106,15 @@ public class NumericHistogram {
   }
 
   /**
-   * Returns a particular histogram bin.
-   */
-  public Coord getBin(int b) {
-    return bins.get(b);
-  }
-
-  /**
-   * Sets the number of histogram bins to use for approximating data.
+   * Sets the number of histogram bins to use for approximating data, and empties the histogram.
+   * Nothing is allocated up front, and the arrays of an earlier allocation are re-used.
    *
    * @param num_bins Number of non-uniform-width histogram bins to use
    */
   public void allocate(int num_bins) {
     nbins = num_bins;
-    bins = new ArrayList<Coord>();
     nusedbins = 0;
+    buffered = 0;
   }
 
   public void merge(GenericData.Record r) {
@@ -117,141 +123,235 @@ public class NumericHistogram {
 
   /**
    * Takes a serialized histogram created by the serialize() method and merges
-   * it with the current histogram object.
+   * it with the current histogram object. A histogram that has not been allocated
+   * takes its number of bins from the serialized one.
    */
   public void merge(int otherBins, List<Double> other) {
-    if(other == null) {
+    if (other == null) {
       return;
     }
-
-    if (nbins == 0 || nusedbins == 0)  {
-      // Our aggregation buffer has nothing in it, so just copy over 'other'
-      // by deserializing the ArrayList of (x,y) pairs into an array of Coord objects
-      nbins = otherBins;
-      nusedbins = (other.size()-1)/2;
-      bins = new ArrayList<Coord>(nusedbins);
-      for (int i = 0; i < other.size(); i+=2) {
-        Coord bin = new Coord();
-        bin.x = other.get(i);
-        bin.y = other.get(i+1);
-        bins.add(bin);
-      }
-    } else {
-      // The aggregation buffer already contains a partial histogram. Therefore, we need
-      // to merge histograms using Algorithm #2 from the Ben-Haim and Tom-Tov paper.
-
-      ArrayList<Coord> tmp_bins = new ArrayList<Coord>(nusedbins + (other.size()-1)/2);
-      // Copy all the histogram bins from us and 'other' into an overstuffed histogram
-      for (int i = 0; i < nusedbins; i++) {
-        Coord bin = new Coord();
-        bin.x = bins.get(i).x;
-        bin.y = bins.get(i).y;
-        tmp_bins.add(bin);
-      }
-      for (int j = 0; j < other.size(); j += 2) {
-        Coord bin = new Coord();
-        bin.x = other.get(j);
-        bin.y = other.get(j+1);
-        tmp_bins.add(bin);
-      }
-      Collections.sort(tmp_bins);
-
-      // Now trim the overstuffed histogram down to the correct number of bins
-      bins = tmp_bins;
-      nusedbins += (other.size()-1)/2;
-      trim();
+    if (nbins == 0) {
+      allocate(otherBins);
+    }
+    flush();
+    int n = other.size() / 2;
+    ensureMergeCapacity(n);
+    for (int i = 0; i < n; i++) {
+      mergeXs[i] = other.get(2 * i);
+      mergeYs[i] = other.get(2 * i + 1);
     }
+    mergeBins(n);
   }
 
-
   /**
    * Adds a new data point to the histogram approximation. Make sure you have
    * called either allocate() or merge() first. This method implements Algorithm #1
-   * from Ben-Haim and Tom-Tov, "A Streaming Parallel Decision Tree Algorithm", JMLR 2010.
+   * from Ben-Haim and Tom-Tov, "A Streaming Parallel Decision Tree Algorithm", JMLR 2010,
+   * for a batch of points at a time.
    *
    * @param v The data point to add to the histogram approximation.
    */
   public void add(double v) {
-    // Binary search to find the closest bucket that v should go into.
-    // 'bin' should be interpreted as the bin to shift right in order to accomodate
-    // v. As a result, bin is in the range [0,N], where N means that the value v is
-    // greater than all the N bins currently in the histogram. It is also possible that
-    // a bucket centered at 'v' already exists, so this must be checked in the next step.
-    int bin = 0;
-    for(int l=0, r=nusedbins; l < r; ) {
-      bin = (l+r)/2;
-      if (bins.get(bin).x > v) {
-        r = bin;
+    if (buffer == null) {
+      buffer = new double[INITIAL_CAPACITY];
+    } else if (buffered == buffer.length) {
+      if (buffer.length < MAX_BUFFER_SIZE) {
+        buffer = Arrays.copyOf(buffer, 2 * buffer.length);
       } else {
-        if (bins.get(bin).x < v) {
-          l = ++bin;
-        } else {
-          break; // break loop on equal comparator
-        }
+        flush();
       }
     }
+    buffer[buffered++] = v;
+  }
 
-    // If we found an exact bin match for value v, then just increment that bin's count.
-    // Otherwise, we need to insert a new bin and trim the resulting histogram back to size.
-    // A possible optimization here might be to set some threshold under which 'v' is just
-    // assumed to be equal to the closest bin -- if fabs(v-bins[bin].x) < THRESHOLD, then
-    // just increment 'bin'. This is not done now because we don't want to make any
-    // assumptions about the range of numeric data being analyzed.
-    if (bin < nusedbins && bins.get(bin).x == v) {
-      bins.get(bin).y++;
-    } else {
-      Coord newBin = new Coord();
-      newBin.x = v;
-      newBin.y = 1;
-      bins.add(bin, newBin);
-
-      // Trim the bins down to the correct number of bins.
-      if (++nusedbins > nbins) {
-        trim();
+  // Sorts the buffered values, collapses equal ones into single bins, and merges them into the
+  // histogram
+  private void flush() {
+    if (buffered == 0) {
+      return;
+    }
+    Arrays.sort(buffer, 0, buffered);
+    ensureMergeCapacity(buffered);
+    int n = 0;
+    for (int i = 0; i < buffered; i++) {
+      if (n > 0 && mergeXs[n - 1] == buffer[i]) {
+        mergeYs[n - 1]++;
+      } else {
+        mergeXs[n] = buffer[i];
+        mergeYs[n] = 1;
+        n++;
       }
     }
+    buffered = 0;
+    mergeBins(n);
+  }
 
+  // Merges the n sorted bins at the start of the merge arrays into the histogram, and trims it
+  private void mergeBins(int n) {
+    int total = nusedbins + n;
+    if (outXs == null || outXs.length < total) {
+      outXs = new double[capacity(outXs, total)];
+      outYs = new double[outXs.length];
+    }
+    int i = 0, j = 0, k = 0;
+    while (i < nusedbins || j < n) {
+      double x;
+      double y;
+      if (j == n || (i < nusedbins && xs[i] <= mergeXs[j])) {
+        x = xs[i];
+        y = ys[i++];
+      } else {
+        x = mergeXs[j];
+        y = mergeYs[j++];
+      }
+      if (k > 0 && outXs[k - 1] == x) {
+        outYs[k - 1] += y;
+      } else {
+        outXs[k] = x;
+        outYs[k] = y;
+        k++;
+      }
+    }
+    double[] tmp = xs;
+    xs = outXs;
+    outXs = tmp;
+    tmp = ys;
+    ys = outYs;
+    outYs = tmp;
+    nusedbins = k;
+    trim();
   }
 
   /**
-   * Trims a histogram down to 'nbins' bins by iteratively merging the closest bins.
-   * If two pairs of bins are equally close to each other, decide uniformly at random which
-   * pair to merge, based on a PRNG.
+   * Trims a histogram down to 'nbins' bins by iteratively merging the closest pair of adjacent bins
+   * into a bin at their average x location, weighted by their heights.
    */
   private void trim() {
-    while(nusedbins > nbins) {
-      // Find the closest pair of bins in terms of x coordinates. Break ties randomly.
-      double smallestdiff = bins.get(1).x - bins.get(0).x;
-      int smallestdiffloc = 0, smallestdiffcount = 1;
-      for(int i = 1; i < nusedbins-1; i++) {
-        double diff = bins.get(i+1).x - bins.get(i).x;
-        if(diff < smallestdiff)  {
-          smallestdiff = diff;
-          smallestdiffloc = i;
-          smallestdiffcount = 1;
-        } else {
-          if(diff == smallestdiff && prng.nextDouble() <= (1.0/++smallestdiffcount) ) {
-            smallestdiffloc = i;
-          }
-        }
+    if (nusedbins <= nbins) {
+      return;
+    }
+    int n = nusedbins;
+    ensureTrimCapacity(n, n + 2 * (n - nbins));
+    heapSize = 0;
+    for (int i = 0; i < n; i++) {
+      versions[i] = 0;
+      next[i] = i + 1 < n ? i + 1 : -1;
+      prev[i] = i - 1;
+      if (i + 1 < n) {
+        push(xs[i + 1] - xs[i], i, 0);
+      }
+    }
+    int remaining = n;
+    while (remaining > nbins) {
+      int left = heapBins[0];
+      int version = heapVersions[0];
+      pop();
+      if (version != versions[left] || next[left] < 0) {
+        continue; // stale
+      }
+      int right = next[left];
+      double d = ys[left] + ys[right];
+      xs[left] = xs[left] * (ys[left] / d) + xs[right] * (ys[right] / d);
+      ys[left] = d;
+      versions[right]++; // invalidates the pair that starts at the merged-away bin
+      next[left] = next[right];
+      if (next[right] >= 0) {
+        prev[next[right]] = left;
+      }
+      remaining--;
+      versions[left]++;
+      if (next[left] >= 0) {
+        push(xs[next[left]] - xs[left], left, versions[left]);
+      }
+      if (prev[left] >= 0) {
+        int p = prev[left];
+        versions[p]++;
+        push(xs[left] - xs[p], p, versions[p]);
+      }
+    }
+    // Compact the remaining bins, which are still in order
+    int k = 0;
+    for (int i = 0; i >= 0; i = next[i]) {
+      xs[k] = xs[i];
+      ys[k] = ys[i];
+      k++;
+    }
+    nusedbins = k;
+  }
+
+  private void push(double gap, int bin, int version) {
+    int i = heapSize++;
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (!less(gap, bin, heapGaps[parent], heapBins[parent])) {
+        break;
       }
+      heapGaps[i] = heapGaps[parent];
+      heapBins[i] = heapBins[parent];
+      heapVersions[i] = heapVersions[parent];
+      i = parent;
+    }
+    heapGaps[i] = gap;
+    heapBins[i] = bin;
+    heapVersions[i] = version;
+  }
 
-      // Merge the two closest bins into their average x location, weighted by their heights.
-      // The height of the new bin is the sum of the heights of the old bins.
-      // double d = bins[smallestdiffloc].y + bins[smallestdiffloc+1].y;
-      // bins[smallestdiffloc].x *= bins[smallestdiffloc].y / d;
-      // bins[smallestdiffloc].x += bins[smallestdiffloc+1].x / d *
-      //   bins[smallestdiffloc+1].y;
-      // bins[smallestdiffloc].y = d;
+  private void pop() {
+    heapSize--;
+    double gap = heapGaps[heapSize];
+    int bin = heapBins[heapSize];
+    int version = heapVersions[heapSize];
+    int i = 0;
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && less(heapGaps[child + 1], heapBins[child + 1], heapGaps[child], heapBins[child])) {
+        child++;
+      }
+      if (!less(heapGaps[child], heapBins[child], gap, bin)) {
+        break;
+      }
+      heapGaps[i] = heapGaps[child];
+      heapBins[i] = heapBins[child];
+      heapVersions[i] = heapVersions[child];
+      i = child;
+    }
+    heapGaps[i] = gap;
+    heapBins[i] = bin;
+    heapVersions[i] = version;
+  }
+
+  private static boolean less(double gap1, int bin1, double gap2, int bin2) {
+    return gap1 < gap2 || (gap1 == gap2 && bin1 < bin2);
+  }
 
-      double d = bins.get(smallestdiffloc).y + bins.get(smallestdiffloc+1).y;
-      Coord smallestdiffbin = bins.get(smallestdiffloc);
-      smallestdiffbin.x *= smallestdiffbin.y / d;
-      smallestdiffbin.x += bins.get(smallestdiffloc+1).x / d * bins.get(smallestdiffloc+1).y;
-      smallestdiffbin.y = d;
-      // Shift the remaining bins left one position
-      bins.remove(smallestdiffloc+1);
-      nusedbins--;
+  // Returns the size to grow an array to so that it holds at least n items: double its current
+  // size, but no more than the bins and a full buffer need
+  private int capacity(double[] current, int n) {
+    int doubled = current == null ? INITIAL_CAPACITY : 2 * current.length;
+    return Math.max(n, Math.min(doubled, nbins + MAX_BUFFER_SIZE));
+  }
+
+  private void ensureMergeCapacity(int n) {
+    if (mergeXs == null || mergeXs.length < n) {
+      mergeXs = new double[capacity(mergeXs, n)];
+      mergeYs = new double[mergeXs.length];
+    }
+  }
+
+  // Trimming n bins pushes at most heapCapacity pairs onto the heap
+  private void ensureTrimCapacity(int n, int heapCapacity) {
+    if (heapGaps == null || heapGaps.length < heapCapacity) {
+      heapGaps = new double[heapCapacity];
+      heapBins = new int[heapCapacity];
+      heapVersions = new int[heapCapacity];
+    }
+    if (next == null || next.length < n) {
+      next = new int[n];
+      prev = new int[n];
+      versions = new int[n];
     }
   }
 
@@ -263,41 +363,38 @@ public class NumericHistogram {
    * @return The quantile value.
    */
   public double quantile(double q) {
-    assert(bins != null && nusedbins > 0 && nbins > 0);
+    flush();
+    assert(nusedbins > 0 && nbins > 0);
     double sum = 0, csum = 0;
     int b;
-    for(b = 0; b < nusedbins; b++)  {
-      sum += bins.get(b).y;
+    for (b = 0; b < nusedbins; b++)  {
+      sum += ys[b];
     }
-    for(b = 0; b < nusedbins; b++) {
-      csum += bins.get(b).y;
-      if(csum / sum >= q) {
-        if(b == 0) {
-          return bins.get(b).x;
+    for (b = 0; b < nusedbins; b++) {
+      csum += ys[b];
+      if (csum / sum >= q) {
+        if (b == 0) {
+          return xs[b];
         }
-
-        csum -= bins.get(b).y;
-        double r = bins.get(b-1).x +
-                (q*sum - csum) * (bins.get(b).x - bins.get(b-1).x)/(bins.get(b).y);
-        return r;
+        csum -= ys[b];
+        return xs[b - 1] + (q * sum - csum) * (xs[b] - xs[b - 1]) / ys[b];
       }
     }
     return -1; // for Xlint, code will never reach here
   }
 
   public void serialize(GenericData.Record record) {
-    record.put("nbins", getNumBins());
-    List<Double> binValues = Lists.newArrayListWithExpectedSize(getNumBins() * 2);
-    if (bins != null) {
-      for (Coord c : bins) {
-        binValues.add(c.x);
-        binValues.add(c.y);
-      }
+    flush();
+    record.put("nbins", nbins);
+    List<Double> binValues = Lists.newArrayListWithExpectedSize(nusedbins * 2);
+    for (int i = 0; i < nusedbins; i++) {
+      binValues.add(xs[i]);
+      binValues.add(ys[i]);
     }
     record.put("binData", binValues);
   }
 
   public int getNumBins() {
-    return bins == null ? 0 : bins.size();
+    return getUsedBins();
   }
-}
\ No newline at end of file
+}
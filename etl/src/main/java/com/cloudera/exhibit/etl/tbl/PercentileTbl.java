@@ -39,6 +39,9 @@ public class PercentileTbl implements Tbl {
   private Schema intermediate;
   private Schema output;
   private NumericHistogram hist;
+  private transient NumericHistogram mergeHist;
+  private transient ObsDescriptor lastDescriptor;
+  private transient int obsIndex;
 
   public PercentileTbl(Map<String, String> values, Map<String, Object> options) {
     if (values.size() != 1) {
@@ -56,6 +59,7 @@ public class PercentileTbl implements Tbl {
       if (p < 0 || p > 100) {
         throw new IllegalArgumentException("percentiles must be integer values between 0 and 100, found: " + p);
       }
+      percentiles.add(p);
     }
     this.binCount = options.containsKey("bins") ? Integer.valueOf(options.get("bins").toString()) : 10000;
   }
@@ -93,9 +97,12 @@ public class PercentileTbl implements Tbl {
 
   @Override
   public void add(Obs obs) {
-    Object o = obs.get(obsKey);
-    if (o != null) {
-      hist.add(((Number) o).doubleValue());
+    if (obs.descriptor() != lastDescriptor) {
+      this.lastDescriptor = obs.descriptor();
+      this.obsIndex = lastDescriptor.indexOf(obsKey);
+    }
+    if (!obs.isNull(obsIndex)) {
+      hist.add(obs.getDouble(obsIndex));
     }
   }
 
@@ -111,11 +118,13 @@ public class PercentileTbl implements Tbl {
     if (current == null) {
       return next;
     }
-    NumericHistogram nh = new NumericHistogram();
-    nh.allocate(binCount);
-    nh.merge(current);
-    nh.merge(next);
-    nh.serialize(current);
+    if (mergeHist == null) {
+      mergeHist = new NumericHistogram();
+    }
+    mergeHist.allocate(binCount);
+    mergeHist.merge(current);
+    mergeHist.merge(next);
+    mergeHist.serialize(current);
     return current;
   }
 
@@ -41,6 +41,10 @@ public class RatioTbl implements Tbl {
   private double currentRatio;
   private double currentDenominator;
 
+  private transient ObsDescriptor lastDescriptor;
+  private transient int numeratorIndex;
+  private transient int denominatorIndex;
+
   public RatioTbl(Map<String, String> values, Map<String, Object> options) {
     if (values.size() > 1) {
       throw new IllegalArgumentException("RATIO table only has one output element");
@@ -101,8 +105,13 @@ public class RatioTbl implements Tbl {
 
   @Override
   public void add(Obs obs) {
-    double nextNum = ((Number) obs.get(numeratorField)).doubleValue();
-    double nextDen = ((Number) obs.get(denominatorField)).doubleValue();
+    if (obs.descriptor() != lastDescriptor) {
+      this.lastDescriptor = obs.descriptor();
+      this.numeratorIndex = lastDescriptor.indexOf(numeratorField);
+      this.denominatorIndex = lastDescriptor.indexOf(denominatorField);
+    }
+    double nextNum = obs.getDouble(numeratorIndex);
+    double nextDen = obs.getDouble(denominatorIndex);
     currentRatio = (currentRatio * currentDenominator + nextNum) / (currentDenominator + nextDen);
     currentDenominator += nextDen;
   }
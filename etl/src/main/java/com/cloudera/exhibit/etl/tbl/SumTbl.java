@@ -84,6 +84,8 @@ public class SumTbl implements Tbl {
   private String[] outputFields;
   private Sum[] sums;
   private Schema schema;
+  private transient ObsDescriptor lastDescriptor;
+  private transient int[] inputIndices;
 
   public SumTbl(Map<String, String> values) {
     this.inputFields = new String[values.size()];
@@ -153,9 +155,21 @@ public class SumTbl implements Tbl {
 
   @Override
   public void add(Obs obs) {
-    for (int i = 0; i < inputFields.length; i++) {
-      sums[i].add((Number) obs.get(inputFields[i]));
+    int[] indices = inputIndices(obs.descriptor());
+    for (int i = 0; i < indices.length; i++) {
+      sums[i].add(obs, indices[i]);
+    }
+  }
+
+  private int[] inputIndices(ObsDescriptor od) {
+    if (od != lastDescriptor) {
+      this.inputIndices = new int[inputFields.length];
+      for (int i = 0; i < inputFields.length; i++) {
+        inputIndices[i] = od.indexOf(inputFields[i]);
+      }
+      this.lastDescriptor = od;
     }
+    return inputIndices;
   }
 
   @Override
@@ -184,6 +198,7 @@ public class SumTbl implements Tbl {
 
   public static interface Sum extends Serializable {
     void add(Number value);
+    void add(Obs obs, int index);
     Number getValue();
   }
 
@@ -195,6 +210,11 @@ public class SumTbl implements Tbl {
       value += v == null ? 0 : v.intValue();
     }
 
+    @Override
+    public void add(Obs obs, int index) {
+      value += obs.getInt(index);
+    }
+
     @Override
     public Number getValue() {
       return value;
@@ -209,6 +229,11 @@ public class SumTbl implements Tbl {
       value += v == null ? 0 : v.longValue();
     }
 
+    @Override
+    public void add(Obs obs, int index) {
+      value += obs.getLong(index);
+    }
+
     @Override
     public Number getValue() {
       return value;
@@ -223,6 +248,11 @@ public class SumTbl implements Tbl {
       value += v == null ? 0 : v.floatValue();
     }
 
+    @Override
+    public void add(Obs obs, int index) {
+      value += (float) obs.getDouble(index);
+    }
+
     @Override
     public Number getValue() {
       return value;
@@ -237,6 +267,11 @@ public class SumTbl implements Tbl {
       value += v == null ? 0 : v.doubleValue();
     }
 
+    @Override
+    public void add(Obs obs, int index) {
+      value += obs.getDouble(index);
+    }
+
     @Override
     public Number getValue() {
       return value;
@@ -15,51 +15,197 @@
 package com.cloudera.exhibit.etl.tbl;
 
 import com.cloudera.exhibit.core.Obs;
+import com.cloudera.exhibit.etl.BinaryKey;
+import com.cloudera.exhibit.etl.KeyCodec;
 import com.cloudera.exhibit.etl.SchemaProvider;
 import com.cloudera.exhibit.etl.config.AggConfig;
-import com.google.common.collect.Maps;
 import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.util.Utf8;
 import org.apache.crunch.Emitter;
 import org.apache.crunch.Pair;
 
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * The map-side cache of the partial aggregates for one {@link AggConfig}, keyed by the
+ * {@link BinaryKey}s of the grouping keys, which are only decoded into records by the
+ * {@link KeyCodec} when their aggregates are emitted. When the cache is full, the keys that were
+ * least recently updated are emitted and removed one at a time, so that hot keys stay in memory.
+ *
+ * <p>The cache is bounded both by the number of keys ({@link AggConfig#cacheSize}) and by the
+ * estimated heap size of their {@link Tbl}s, which is capped at {@link AggConfig#cacheHeapFraction}
+ * of the maximum heap of the task. The budget is computed once, when the cache is created, since
+ * the free heap at any moment mostly depends on when the collector last ran. The size of a Tbl is
+ * estimated from its intermediate value, and re-estimated each time the number of updates to it
+ * doubles, so that growing tables (e.g., SUM_TOP) are tracked at a small, amortized cost.
+ */
 public class TblCache {
 
-  private final Map<GenericData.Record, Tbl> cache;
+  // The heap that is assumed when the JVM does not report a limit on it
+  private static final long DEFAULT_MAX_MEMORY = 256L * 1024 * 1024;
+
+  private static class Entry {
+    final Tbl tbl;
+    long updates;
+    long nextEstimate = 1;
+    long weight;
+
+    Entry(Tbl tbl) {
+      this.tbl = tbl;
+    }
+  }
+
+  private final LinkedHashMap<BinaryKey, Entry> cache;
   private final AggConfig config;
   private final int aggIdx;
   private final Emitter<Pair<GenericData.Record, Pair<Integer, GenericData.Record>>> emitter;
   private final SchemaProvider provider;
+  private final KeyCodec codec;
+
+  private long weight;
+  private final long budget;
+  private long hits;
+  private long misses;
+  private long evictions;
 
   public TblCache(final AggConfig config, final int aggIdx,
                   final Emitter<Pair<GenericData.Record, Pair<Integer, GenericData.Record>>> emitter,
-                  final SchemaProvider provider) {
-    this.cache = Maps.newHashMap();
+                  final SchemaProvider provider, final KeyCodec codec) {
+    this(config, aggIdx, emitter, provider, codec, Runtime.getRuntime().maxMemory());
+  }
+
+  TblCache(final AggConfig config, final int aggIdx,
+           final Emitter<Pair<GenericData.Record, Pair<Integer, GenericData.Record>>> emitter,
+           final SchemaProvider provider, final KeyCodec codec, final long maxMemory) {
+    this.cache = new LinkedHashMap<BinaryKey, Entry>(16, 0.75f, true);
     this.config = config;
     this.aggIdx = aggIdx;
     this.emitter = emitter;
     this.provider = provider;
+    this.codec = codec;
+    this.budget = computeBudget(maxMemory);
   }
 
-  public void update(GenericData.Record key, Obs obs) {
-    Tbl tbl = cache.get(key);
-    if (tbl == null) {
-      if (cache.size() > config.cacheSize) {
-        flush();
-      }
-      tbl = config.createTbl();
+  /**
+   * Adds the obs to the aggregate for the given key, which is copied if it is not already cached.
+   */
+  public void update(BinaryKey key, Obs obs) {
+    Entry entry = cache.get(key);
+    if (entry == null) {
+      misses++;
+      Tbl tbl = config.createTbl();
       tbl.initialize(provider);
-      cache.put(key, tbl);
+      entry = new Entry(tbl);
+      cache.put(key.copy(), entry);
+    } else {
+      hits++;
+    }
+    entry.tbl.add(obs);
+    entry.updates++;
+    if (entry.updates == entry.nextEstimate) {
+      long w = 48L + key.length() + estimateSize(entry.tbl.getValue());
+      weight += w - entry.weight;
+      entry.weight = w;
+      entry.nextEstimate *= 2;
+    }
+    evict();
+  }
+
+  // Emits the least recently updated keys until the cache is within its bounds, always keeping the
+  // key that was just updated
+  private void evict() {
+    Iterator<Map.Entry<BinaryKey, Entry>> it = cache.entrySet().iterator();
+    while ((cache.size() > config.cacheSize || weight > budget) && cache.size() > 1) {
+      Map.Entry<BinaryKey, Entry> e = it.next();
+      emit(e.getKey(), e.getValue());
+      it.remove();
+      evictions++;
     }
-    tbl.add(obs);
   }
 
   public void flush() {
-    for (Map.Entry<GenericData.Record, Tbl> e : cache.entrySet()) {
-      Tbl tbl = e.getValue();
-      emitter.emit(Pair.of(e.getKey(), Pair.of(aggIdx, tbl.getValue())));
+    for (Map.Entry<BinaryKey, Entry> e : cache.entrySet()) {
+      emit(e.getKey(), e.getValue());
     }
     cache.clear();
   }
+
+  private void emit(BinaryKey key, Entry entry) {
+    emitter.emit(Pair.of(codec.decode(key), Pair.of(aggIdx, entry.tbl.getValue())));
+    weight -= entry.weight;
+  }
+
+  /**
+   * Returns the number of updates to keys that were already in the cache.
+   */
+  public long hits() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of updates that added a new key to the cache.
+   */
+  public long misses() {
+    return misses;
+  }
+
+  /**
+   * Returns the number of keys that were emitted early to keep the cache within its bounds.
+   */
+  public long evictions() {
+    return evictions;
+  }
+
+  /**
+   * Returns the estimated heap size, in bytes, of the keys and tables in the cache.
+   */
+  public long weight() {
+    return weight;
+  }
+
+  private long computeBudget(long maxMemory) {
+    if (maxMemory <= 0L || maxMemory == Long.MAX_VALUE) {
+      maxMemory = DEFAULT_MAX_MEMORY;
+    }
+    return (long) (config.cacheHeapFraction * maxMemory);
+  }
+
+  // A rough estimate of the heap used by an Avro datum, assuming 64-bit references and headers
+  static long estimateSize(Object datum) {
+    if (datum == null) {
+      return 0L;
+    } else if (datum instanceof IndexedRecord) {
+      IndexedRecord r = (IndexedRecord) datum;
+      int n = r.getSchema().getFields().size();
+      long size = 32L + 8L * n;
+      for (int i = 0; i < n; i++) {
+        size += estimateSize(r.get(i));
+      }
+      return size;
+    } else if (datum instanceof Map) {
+      long size = 48L;
+      for (Map.Entry<?, ?> e : ((Map<?, ?>) datum).entrySet()) {
+        size += 40L + estimateSize(e.getKey()) + estimateSize(e.getValue());
+      }
+      return size;
+    } else if (datum instanceof Collection) {
+      long size = 24L;
+      for (Object o : (Collection<?>) datum) {
+        size += 8L + estimateSize(o);
+      }
+      return size;
+    } else if (datum instanceof Utf8) {
+      return 40L + ((Utf8) datum).getByteLength();
+    } else if (datum instanceof CharSequence) {
+      return 40L + 2L * ((CharSequence) datum).length();
+    } else if (datum instanceof ByteBuffer) {
+      return 48L + ((ByteBuffer) datum).remaining();
+    }
+    return 16L;
+  }
 }
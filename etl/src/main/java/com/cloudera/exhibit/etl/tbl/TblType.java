@@ -46,6 +46,12 @@ public enum TblType {
     public Tbl create(Map<String, String> values, Map<String, Object> options) {
       return new TopListTbl(values, options);
     }
+  },
+  COUNT_DISTINCT {
+    @Override
+    public Tbl create(Map<String, String> values, Map<String, Object> options) {
+      return new CountDistinctTbl(values, options);
+    }
   }
   ;
 
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.etl;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExhibitKeyComparatorTest {
+
+  private Schema first = SchemaBuilder.record("k1").fields()
+      .optionalString("name")
+      .optionalDouble("score")
+      .endRecord();
+  private Schema second = SchemaBuilder.record("k2").fields()
+      .requiredLong("id")
+      .endRecord();
+  private Schema keySchema = SchemaUtil.unionKeySchema("ExhibitKey", ImmutableList.of(first, second));
+  private Schema pairSchema = SchemaBuilder.record("pair").fields()
+      .name("first").type(keySchema).noDefault()
+      .requiredInt("second")
+      .endRecord();
+
+  private GenericData.Record key(int index, GenericData.Record inner) {
+    GenericData.Record key = new GenericData.Record(keySchema);
+    key.put("hash", inner.hashCode());
+    key.put("index", index);
+    key.put("key", inner);
+    return key;
+  }
+
+  private GenericData.Record named(String name, Double score) {
+    GenericData.Record r = new GenericData.Record(first);
+    r.put("name", name);
+    r.put("score", score);
+    return r;
+  }
+
+  private byte[] encode(GenericData.Record key, int aggIdx) throws Exception {
+    GenericData.Record pair = new GenericData.Record(pairSchema);
+    pair.put("first", key);
+    pair.put("second", aggIdx);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder enc = EncoderFactory.get().binaryEncoder(out, null);
+    new GenericDatumWriter<GenericData.Record>(pairSchema).write(pair, enc);
+    enc.flush();
+    return out.toByteArray();
+  }
+
+  private int compare(ExhibitKeyComparator<Object> cmp, byte[] a, byte[] b) {
+    // Compare at an offset, as the shuffle does
+    byte[] buf = new byte[a.length + b.length + 3];
+    System.arraycopy(a, 0, buf, 1, a.length);
+    System.arraycopy(b, 0, buf, a.length + 3, b.length);
+    return cmp.compare(buf, 1, a.length, buf, a.length + 3, b.length);
+  }
+
+  @Test
+  public void testGroupsByExhibitKey() throws Exception {
+    ExhibitKeyComparator<Object> cmp = new ExhibitKeyComparator<Object>(keySchema);
+    GenericData.Record a = key(0, named("a", 1.0));
+    GenericData.Record b = key(0, named("b", null));
+    GenericData.Record id = new GenericData.Record(second);
+    id.put("id", 1729L);
+    GenericData.Record c = key(1, id);
+
+    assertEquals(0, compare(cmp, encode(a, 0), encode(key(0, named("a", 1.0)), 3)));
+    assertEquals(0, compare(cmp, encode(c, 1), encode(c, 0)));
+    assertTrue(compare(cmp, encode(a, 0), encode(b, 0)) != 0);
+    assertEquals(-compare(cmp, encode(a, 0), encode(c, 0)), compare(cmp, encode(c, 0), encode(a, 0)));
+
+    // Keys with the same hash fall back to comparing the keys
+    GenericData.Record collision = key(0, named("b", null));
+    collision.put("hash", a.get("hash"));
+    assertEquals(Integer.signum(GenericData.get().compare(a, collision, keySchema)),
+        Integer.signum(compare(cmp, encode(a, 0), encode(collision, 0))));
+  }
+
+  @Test
+  public void testPartitionsByHash() throws Exception {
+    GenericData.Record pair = new GenericData.Record(pairSchema);
+    GenericData.Record a = key(0, named("a", 1.0));
+    a.put("hash", -7);
+    pair.put("first", a);
+    pair.put("second", 2);
+    assertEquals((-7 & Integer.MAX_VALUE) % 10, new ExhibitKeyPartitioner().getPartition(pair, null, 10));
+  }
+}
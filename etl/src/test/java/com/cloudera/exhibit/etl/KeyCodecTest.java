@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.etl;
+
+import com.cloudera.exhibit.core.Obs;
+import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.core.simple.SimpleObs;
+import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
+import com.google.common.collect.ImmutableList;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class KeyCodecTest {
+
+  private Schema keySchema = SchemaBuilder.record("key").fields()
+      .optionalString("region")
+      .optionalLong("id")
+      .optionalDouble("score")
+      .endRecord();
+  private ObsDescriptor attrs = SimpleObsDescriptor.builder().stringField("region").build();
+  private ObsDescriptor rows = SimpleObsDescriptor.builder()
+      .longField("user")
+      .doubleField("s")
+      .build();
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    KeyCodec codec = new KeyCodec(keySchema, ImmutableList.of("region"), ImmutableList.of("user", "s"));
+    codec.setAttributes(SimpleObs.of(attrs, "west"));
+    BinaryKey first = codec.encode(SimpleObs.of(rows, 17L, 0.5)).copy();
+    BinaryKey second = codec.encode(SimpleObs.of(rows, 17L, 0.5));
+    assertEquals(first, second);
+    assertEquals(first.hashCode(), second.hashCode());
+
+    GenericData.Record rec = codec.decode(first);
+    assertEquals("west", rec.get("region").toString());
+    assertEquals(17L, rec.get("id"));
+    assertEquals(0.5, (Double) rec.get("score"), 0.0);
+
+    Obs withNull = SimpleObs.of(rows, null, 0.5);
+    assertFalse(first.equals(codec.encode(withNull)));
+    rec = codec.decode(codec.encode(withNull));
+    assertNull(rec.get("id"));
+
+    codec.setAttributes(SimpleObs.of(attrs, "east"));
+    assertFalse(first.equals(codec.encode(SimpleObs.of(rows, 17L, 0.5))));
+  }
+
+  @Test
+  public void testMixedCaseColumns() throws Exception {
+    KeyCodec codec = new KeyCodec(keySchema, ImmutableList.of("region"), ImmutableList.of("User", "S"));
+    codec.setAttributes(SimpleObs.of(attrs, "west"));
+    GenericData.Record rec = codec.decode(codec.encode(SimpleObs.of(rows, 17L, 0.5)));
+    assertEquals(17L, rec.get("id"));
+    assertEquals(0.5, (Double) rec.get("score"), 0.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingColumn() throws Exception {
+    KeyCodec codec = new KeyCodec(keySchema, ImmutableList.of("region"), ImmutableList.of("user", "t"));
+    codec.setAttributes(SimpleObs.of(attrs, "west"));
+    codec.encode(SimpleObs.of(rows, 17L, 0.5));
+  }
+}
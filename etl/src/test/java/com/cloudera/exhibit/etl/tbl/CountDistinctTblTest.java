@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.etl.tbl;
+
+import com.cloudera.exhibit.avro.AvroObs;
+import com.cloudera.exhibit.avro.AvroObsDescriptor;
+import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.etl.SchemaProvider;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class CountDistinctTblTest {
+  private Schema schema = SchemaBuilder.record("test").fields()
+      .optionalString("a")
+      .endRecord();
+  private ObsDescriptor od = new AvroObsDescriptor(schema);
+
+  private CountDistinctTbl create(Map<String, Object> opts, int first, int last) {
+    CountDistinctTbl tbl = new CountDistinctTbl(ImmutableMap.of("a", "out"), opts);
+    SchemaProvider sp = tbl.getSchemas(od, 0, 0);
+    tbl.initialize(sp);
+    for (int i = first; i < last; i++) {
+      GenericData.Record r = new GenericData.Record(schema);
+      r.put("a", i % 10 == 0 ? null : "v" + i);
+      tbl.add(new AvroObs(od, r));
+      tbl.add(new AvroObs(od, r));
+    }
+    return tbl;
+  }
+
+  private long count(CountDistinctTbl tbl, GenericData.Record value) {
+    return (Long) tbl.finalize(value).get(0).get("out");
+  }
+
+  @Test
+  public void testExact() throws Exception {
+    Map<String, Object> opts = Maps.newHashMap();
+    CountDistinctTbl one = create(opts, 0, 100);
+    CountDistinctTbl two = create(opts, 50, 150);
+    assertEquals(90L, count(one, one.getValue()));
+    assertEquals(135L, count(one, one.merge(one.getValue(), two.getValue())));
+  }
+
+  @Test
+  public void testSketch() throws Exception {
+    Map<String, Object> opts = Maps.newHashMap();
+    opts.put("precision", 10);
+    opts.put("exact", 100);
+    CountDistinctTbl one = create(opts, 0, 5000);
+    CountDistinctTbl two = create(opts, 0, 50);
+    assertEquals(4500.0, count(one, one.getValue()), 4500 * 0.1);
+    assertEquals(45L, count(two, two.getValue()));
+
+    // Merging exact values past the limit switches to a sketch
+    CountDistinctTbl three = create(opts, 50, 130);
+    GenericData.Record merged = two.merge(two.getValue(), three.getValue());
+    assertEquals(117.0, count(two, merged), 117 * 0.1);
+    assertEquals(4500.0, count(one, one.merge(merged, one.getValue())), 4500 * 0.1);
+  }
+}
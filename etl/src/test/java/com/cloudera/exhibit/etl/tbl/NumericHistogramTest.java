@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.etl.tbl;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NumericHistogramTest {
+  private Schema schema = SchemaBuilder.record("hist").fields()
+      .requiredInt("nbins")
+      .name("binData").type().array().items().doubleType().noDefault()
+      .endRecord();
+
+  private GenericData.Record serialize(NumericHistogram h) {
+    GenericData.Record r = new GenericData.Record(schema);
+    h.serialize(r);
+    return r;
+  }
+
+  @Test
+  public void testQuantiles() throws Exception {
+    Random r = new Random(1729L);
+    double[] data = new double[100000];
+    NumericHistogram h = new NumericHistogram();
+    h.allocate(1000);
+    for (int i = 0; i < data.length; i++) {
+      data[i] = r.nextGaussian();
+      h.add(data[i]);
+    }
+    Arrays.sort(data);
+    assertEquals(1000, h.getUsedBins());
+    for (double q : new double[] { 0.01, 0.1, 0.5, 0.9, 0.99 }) {
+      assertEquals(data[(int) (q * data.length)], h.quantile(q), 0.01);
+    }
+  }
+
+  @Test
+  public void testExactWithFewValues() throws Exception {
+    NumericHistogram h = new NumericHistogram();
+    h.allocate(10);
+    for (int i = 0; i < 100; i++) {
+      h.add(i % 4);
+    }
+    assertEquals(4, h.getUsedBins());
+    GenericData.Record r = serialize(h);
+    assertEquals(10, r.get("nbins"));
+    assertEquals(Arrays.asList(0.0, 25.0, 1.0, 25.0, 2.0, 25.0, 3.0, 25.0), r.get("binData"));
+  }
+
+  @Test
+  public void testMerge() throws Exception {
+    NumericHistogram one = new NumericHistogram();
+    NumericHistogram two = new NumericHistogram();
+    one.allocate(20);
+    two.allocate(20);
+    for (int i = 0; i < 1000; i++) {
+      one.add(i);
+      two.add(1000 + i);
+    }
+    NumericHistogram merged = new NumericHistogram();
+    merged.merge(serialize(one));
+    merged.merge(serialize(two));
+    assertEquals(20, merged.getUsedBins());
+    assertEquals(1000.0, merged.quantile(0.5), 100.0);
+
+    List<Double> binData = (List<Double>) serialize(merged).get("binData");
+    double total = 0.0;
+    for (int i = 0; i < binData.size(); i += 2) {
+      if (i > 0) {
+        assertTrue(binData.get(i - 2) < binData.get(i));
+      }
+      total += binData.get(i + 1);
+    }
+    assertEquals(2000.0, total, 0.0);
+  }
+}
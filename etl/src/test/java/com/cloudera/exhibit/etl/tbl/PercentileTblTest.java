@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.etl.tbl;
+
+import com.cloudera.exhibit.avro.AvroObs;
+import com.cloudera.exhibit.avro.AvroObsDescriptor;
+import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.etl.SchemaProvider;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class PercentileTblTest {
+  private Schema schema = SchemaBuilder.record("test").fields()
+      .optionalDouble("a")
+      .endRecord();
+  private ObsDescriptor od = new AvroObsDescriptor(schema);
+
+  private PercentileTbl create(int offset) {
+    Map<String, Object> opts = Maps.newHashMap();
+    opts.put("percentiles", ImmutableList.of(50, 90));
+    opts.put("bins", 100);
+    PercentileTbl tbl = new PercentileTbl(ImmutableMap.of("a", "out"), opts);
+    SchemaProvider sp = tbl.getSchemas(od, 0, 0);
+    tbl.initialize(sp);
+    for (int i = 0; i < 1000; i++) {
+      GenericData.Record r = new GenericData.Record(schema);
+      r.put("a", i % 10 == 0 ? null : (double) (offset + i));
+      tbl.add(new AvroObs(od, r));
+    }
+    return tbl;
+  }
+
+  @Test
+  public void testPercentiles() throws Exception {
+    PercentileTbl tbl = create(0);
+    GenericData.Record res = tbl.finalize(tbl.getValue()).get(0);
+    assertEquals(2, res.getSchema().getFields().size());
+    assertEquals(500.0, (Double) res.get("out_p50"), 10.0);
+    assertEquals(900.0, (Double) res.get("out_p90"), 10.0);
+  }
+
+  @Test
+  public void testMerge() throws Exception {
+    PercentileTbl one = create(0);
+    PercentileTbl two = create(1000);
+    GenericData.Record merged = one.merge(one.getValue(), two.getValue());
+    assertEquals(100, merged.get("nbins"));
+    GenericData.Record res = one.finalize(merged).get(0);
+    assertEquals(1000.0, (Double) res.get("out_p50"), 20.0);
+    assertEquals(1800.0, (Double) res.get("out_p90"), 20.0);
+
+    // The merge histogram is re-used, and starts out empty each time
+    merged = one.merge(one.getValue(), one.getValue());
+    assertEquals(500.0, (Double) one.finalize(merged).get(0).get("out_p50"), 10.0);
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.etl.tbl;
+
+import com.cloudera.exhibit.avro.AvroObs;
+import com.cloudera.exhibit.avro.AvroObsDescriptor;
+import com.cloudera.exhibit.core.Obs;
+import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.etl.KeyCodec;
+import com.cloudera.exhibit.etl.SchemaProvider;
+import com.cloudera.exhibit.etl.config.AggConfig;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.crunch.Emitter;
+import org.apache.crunch.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TblCacheTest {
+
+  private Schema keySchema = SchemaBuilder.record("key").fields()
+      .requiredString("k")
+      .endRecord();
+  private Schema valueSchema = SchemaBuilder.record("value").fields()
+      .requiredString("k")
+      .optionalLong("v")
+      .endRecord();
+  private ObsDescriptor od = new AvroObsDescriptor(valueSchema);
+  private List<Pair<GenericData.Record, Pair<Integer, GenericData.Record>>> emitted = Lists.newArrayList();
+  private Emitter<Pair<GenericData.Record, Pair<Integer, GenericData.Record>>> emitter =
+      new Emitter<Pair<GenericData.Record, Pair<Integer, GenericData.Record>>>() {
+        @Override
+        public void emit(Pair<GenericData.Record, Pair<Integer, GenericData.Record>> p) {
+          emitted.add(p);
+        }
+
+        @Override
+        public void flush() {
+        }
+      };
+  private AggConfig config;
+  private SchemaProvider provider;
+  private KeyCodec codec;
+
+  @Before
+  public void setUp() throws Exception {
+    config = new AggConfig();
+    config.values.put("v", "v");
+    provider = config.createTbl().getSchemas(od, 0, 0);
+    codec = new KeyCodec(keySchema, ImmutableList.<String>of(), ImmutableList.of("k"));
+    codec.setAttributes(Obs.EMPTY);
+  }
+
+  private void update(TblCache cache, String k, long v) {
+    GenericData.Record value = new GenericData.Record(valueSchema);
+    value.put("k", k);
+    value.put("v", v);
+    Obs obs = new AvroObs(od, value);
+    cache.update(codec.encode(obs), obs);
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUpdated() throws Exception {
+    config.cacheSize = 2;
+    TblCache cache = new TblCache(config, 3, emitter, provider, codec);
+    update(cache, "a", 1L);
+    update(cache, "b", 2L);
+    update(cache, "a", 3L);
+    update(cache, "c", 4L);
+    assertEquals(1, emitted.size());
+    assertEquals("b", emitted.get(0).first().get("k").toString());
+    assertEquals(3, emitted.get(0).second().first().intValue());
+    assertEquals(2L, emitted.get(0).second().second().get("v"));
+    assertEquals(1L, cache.hits());
+    assertEquals(3L, cache.misses());
+    assertEquals(1L, cache.evictions());
+
+    cache.flush();
+    assertEquals(3, emitted.size());
+    assertEquals("a", emitted.get(1).first().get("k").toString());
+    assertEquals(4L, emitted.get(1).second().second().get("v"));
+    assertEquals(0L, cache.weight());
+  }
+
+  @Test
+  public void testHeapBudget() throws Exception {
+    config.cacheHeapFraction = 0.0;
+    TblCache cache = new TblCache(config, 0, emitter, provider, codec);
+    update(cache, "a", 1L);
+    assertTrue(cache.weight() > 0L);
+    update(cache, "b", 2L);
+    update(cache, "c", 3L);
+    // Only the key that was just updated is kept when nothing else fits
+    assertEquals(2, emitted.size());
+    assertEquals(2L, cache.evictions());
+  }
+
+  @Test
+  public void testHeapBudgetFromMaxMemory() throws Exception {
+    TblCache small = new TblCache(config, 0, emitter, provider, codec, 4L);
+    update(small, "a", 1L);
+    update(small, "b", 2L);
+    assertEquals(1L, small.evictions());
+
+    emitted.clear();
+    TblCache large = new TblCache(config, 0, emitter, provider, codec, 1L << 30);
+    for (int i = 0; i < 2048; i++) {
+      update(large, "k" + (i % 100), i);
+    }
+    // The budget does not depend on how much of the heap happens to be free
+    assertEquals(0, emitted.size());
+    assertEquals(0L, large.evictions());
+  }
+}
@@ -44,7 +44,7 @@ public class ExhibitUDF extends GenericUDF {
     }
     this.inspectors = args;
     this.functor = HiveUtils.getFunctor(args[0]);
-    this.exhibit = HiveUtils.getExhibit(args);
+    this.exhibit = HiveUtils.getExhibit(args, functor);
     ExhibitDescriptor ed = functor.initialize(exhibit.descriptor());
     this.resOI = HiveUtils.fromDescriptor(ed);
     this.values = new Object[resOI.getAllStructFieldRefs().size()];
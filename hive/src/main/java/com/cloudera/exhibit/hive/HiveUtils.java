@@ -17,6 +17,7 @@ package com.cloudera.exhibit.hive;
 import com.cloudera.exhibit.core.Calculator;
 import com.cloudera.exhibit.core.Exhibit;
 import com.cloudera.exhibit.core.ExhibitDescriptor;
+import com.cloudera.exhibit.core.Exhibits;
 import com.cloudera.exhibit.core.FieldType;
 import com.cloudera.exhibit.core.Frame;
 import com.cloudera.exhibit.core.Functor;
@@ -27,13 +28,16 @@ import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
 import com.cloudera.exhibit.javascript.JSCalculator;
 import com.cloudera.exhibit.javascript.JSFunctor;
 import com.cloudera.exhibit.sql.SQLCalculator;
+import com.cloudera.exhibit.sql.SQLFunctions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.hadoop.hive.common.type.HiveDecimal;
 import org.apache.hadoop.hive.common.type.HiveVarchar;
+import org.apache.hadoop.hive.ql.exec.MapredContext;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.session.SessionState;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
 import org.apache.hadoop.hive.serde2.objectinspector.ListObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
@@ -68,6 +72,22 @@ public final class HiveUtils {
       .build();
 
   public static Exhibit getExhibit(ObjectInspector[] args) throws UDFArgumentException {
+    return getExhibit(args, (ExhibitDescriptor) null);
+  }
+
+  /**
+   * Returns an exhibit over the given arguments that only includes the attributes, frames, and
+   * vectors that the given {@link Calculator} or {@link Functor} references, so that the values of
+   * the other arguments are never read by {@link #update(Exhibit, ObjectInspector[], GenericUDF.DeferredObject[])}.
+   */
+  public static Exhibit getExhibit(ObjectInspector[] args, Object computation) throws UDFArgumentException {
+    Exhibit all = getExhibit(args);
+    return getExhibit(args, Exhibits.references(computation, all.descriptor()));
+  }
+
+  // A null requested descriptor includes everything
+  private static Exhibit getExhibit(ObjectInspector[] args, ExhibitDescriptor requested)
+      throws UDFArgumentException {
     Map<String, Frame> frames = Maps.newHashMap();
     Map<String, Vec> vectors = Maps.newHashMap();
     List<ObsDescriptor.Field> fields = Lists.newArrayList();
@@ -79,8 +99,10 @@ public final class HiveUtils {
         ObjectInspector inner = loi.getListElementObjectInspector();
         String label = "t" + i;
         if (inner.getCategory() == ObjectInspector.Category.STRUCT) {
-          frames.put(label, new HiveFrame(loi));
-        } else {
+          if (requested == null || requested.frames().containsKey(label)) {
+            frames.put(label, new HiveFrame(loi));
+          }
+        } else if (requested == null || requested.vectors().containsKey(label)) {
           vectors.put(label, new HiveVector(getFieldType(inner), loi));
         }
       } else if (oi.getCategory() == ObjectInspector.Category.STRUCT) {
@@ -90,14 +112,16 @@ public final class HiveUtils {
             ListObjectInspector loi = (ListObjectInspector) sf.getFieldObjectInspector();
             ObjectInspector inner = loi.getListElementObjectInspector();
             if (inner.getCategory() == ObjectInspector.Category.STRUCT) {
-              frames.put(sf.getFieldName(), new HiveFrame(loi));
-            } else {
+              if (requested == null || requested.frames().containsKey(sf.getFieldName())) {
+                frames.put(sf.getFieldName(), new HiveFrame(loi));
+              }
+            } else if (requested == null || requested.vectors().containsKey(sf.getFieldName())) {
               vectors.put(sf.getFieldName(), new HiveVector(getFieldType(inner), loi));
             }
           } else if (sf.getFieldObjectInspector().getCategory() == ObjectInspector.Category.PRIMITIVE) {
             PrimitiveObjectInspector poi = (PrimitiveObjectInspector) sf.getFieldObjectInspector();
             FieldType ft = getFieldType(poi);
-            if (ft != null) {
+            if (ft != null && (requested == null || requested.attributes().indexOf(sf.getFieldName()) >= 0)) {
               fields.add(new ObsDescriptor.Field(sf.getFieldName(), ft));
               pois.add(poi);
             }
@@ -113,12 +137,16 @@ public final class HiveUtils {
       throws HiveException {
     for (int i = 1; i < args.length; i++) {
       if (inspectors[i].getCategory() == ObjectInspector.Category.LIST) {
-        update(exhibit, "t" + i, args[i].get());
+        if (isReferenced(exhibit, "t" + i)) {
+          update(exhibit, "t" + i, args[i].get());
+        }
       } else if (inspectors[i].getCategory() == ObjectInspector.Category.STRUCT) {
         StructObjectInspector soi = (StructObjectInspector) inspectors[i];
         Object base = args[i].get();
         for (StructField sf : soi.getAllStructFieldRefs()) {
-          update(exhibit, sf.getFieldName(), soi.getStructFieldData(base, sf));
+          if (isReferenced(exhibit, sf.getFieldName())) {
+            update(exhibit, sf.getFieldName(), soi.getStructFieldData(base, sf));
+          }
         }
       }
     }
@@ -127,17 +155,26 @@ public final class HiveUtils {
   public static void update(Exhibit exhibit, ObjectInspector[] inspectors, Object[] args) {
     for (int i = 1; i < args.length; i++) {
       if (inspectors[i] instanceof ListObjectInspector) {
-        update(exhibit, "t" + i, args[i]);
+        if (isReferenced(exhibit, "t" + i)) {
+          update(exhibit, "t" + i, args[i]);
+        }
       } else if (inspectors[i] instanceof StructObjectInspector) {
         StructObjectInspector soi = (StructObjectInspector) inspectors[i];
         Object base = args[i];
         for (StructField sf : soi.getAllStructFieldRefs()) {
-          update(exhibit, sf.getFieldName(), soi.getStructFieldData(base, sf));
+          if (isReferenced(exhibit, sf.getFieldName())) {
+            update(exhibit, sf.getFieldName(), soi.getStructFieldData(base, sf));
+          }
         }
       }
     }
   }
 
+  private static boolean isReferenced(Exhibit exhibit, String label) {
+    return exhibit.frames().containsKey(label) || exhibit.vectors().containsKey(label) ||
+        exhibit.attributes().descriptor().indexOf(label) >= 0;
+  }
+
   public static void update(Exhibit exhibit, String label, Object newValues) {
     if (exhibit.frames().containsKey(label)) {
       ((HiveFrame) exhibit.frames().get(label)).updateValues(newValues);
@@ -163,7 +200,19 @@ public final class HiveUtils {
       }
     }
     String[] queries = getCode(first);
-    return new SQLCalculator(queries);
+    return new SQLCalculator(queries, getSQLFunctions());
+  }
+
+  // The SQLFunctions declared by the exhibit.sql.functions setting, which is read from the session
+  // when a query is compiled and from the job configuration when it runs
+  private static Map<String, String> getSQLFunctions() {
+    String spec = null;
+    if (SessionState.get() != null) {
+      spec = SessionState.get().getConf().get(SQLFunctions.FUNCTIONS_PROPERTY);
+    } else if (MapredContext.get() != null) {
+      spec = MapredContext.get().getJobConf().get(SQLFunctions.FUNCTIONS_PROPERTY);
+    }
+    return SQLFunctions.parse(spec);
   }
 
   private static String[] getCode(ObjectInspector first) throws UDFArgumentException {
@@ -15,30 +15,25 @@
 package com.cloudera.exhibit.hive;
 
 import com.cloudera.exhibit.core.FieldType;
-import com.cloudera.exhibit.core.Vec;
+import com.cloudera.exhibit.core.vector.Vector;
 import org.apache.hadoop.hive.serde2.objectinspector.ListObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 
-import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
-public class HiveVector extends AbstractList<Object> implements Vec {
+public class HiveVector extends Vector {
 
-  private final FieldType fieldType;
   private final ListObjectInspector listOI;
   private final PrimitiveObjectInspector pOI;
   private Object values;
 
   public HiveVector(FieldType fieldType, ListObjectInspector listOI) {
-    this.fieldType = fieldType;
+    super(fieldType);
     this.listOI = listOI;
     this.pOI = (PrimitiveObjectInspector) listOI.getListElementObjectInspector();
   }
 
-  @Override
-  public FieldType getType() {
-    return fieldType;
-  }
-
   @Override
   public Object get(int index) {
     Object v = listOI.getListElement(values, index);
@@ -50,6 +45,37 @@ public class HiveVector extends AbstractList<Object> implements Vec {
     return listOI.getListLength(values);
   }
 
+  @Override
+  public boolean isNull(int index) {
+    return listOI.getListElement(values, index) == null;
+  }
+
+  @Override
+  public Iterator<Object> iterator() {
+    return new Iterator<Object>() {
+      private final int size = size();
+      private int offset = 0;
+
+      @Override
+      public boolean hasNext() {
+        return offset < size;
+      }
+
+      @Override
+      public Object next() {
+        if (offset >= size) {
+          throw new NoSuchElementException();
+        }
+        return get(offset++);
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
   public HiveVector updateValues(Object values) {
     this.values = values;
     return this;
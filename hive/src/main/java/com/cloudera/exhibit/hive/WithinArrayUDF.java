@@ -27,6 +27,7 @@ import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
 
+import java.io.IOException;
 import java.util.List;
 
 public class WithinArrayUDF extends GenericUDF {
@@ -45,7 +46,7 @@ public class WithinArrayUDF extends GenericUDF {
 
     this.inspectors = args;
     this.calculator = HiveUtils.getCalculator(args[0]);
-    this.exhibit = HiveUtils.getExhibit(args);
+    this.exhibit = HiveUtils.getExhibit(args, calculator);
     ObsDescriptor od = calculator.initialize(exhibit.descriptor());
     return ObjectInspectorFactory.getStandardListObjectInspector(HiveUtils.fromDescriptor(od, false));
   }
@@ -77,4 +78,11 @@ public class WithinArrayUDF extends GenericUDF {
     assert (args.length > 1);
     return "within_array(" + Joiner.on(',').join(args) + ")";
   }
+
+  @Override
+  public void close() throws IOException {
+    if (calculator != null) {
+      calculator.cleanup();
+    }
+  }
 }
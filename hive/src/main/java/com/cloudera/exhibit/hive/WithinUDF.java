@@ -27,6 +27,7 @@ import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 
+import java.io.IOException;
 import java.util.List;
 
 public class WithinUDF extends GenericUDF {
@@ -46,7 +47,7 @@ public class WithinUDF extends GenericUDF {
     }
     this.inspectors = args;
     this.calculator = HiveUtils.getCalculator(args[0]);
-    this.exhibit = HiveUtils.getExhibit(args);
+    this.exhibit = HiveUtils.getExhibit(args, calculator);
     ObsDescriptor od = calculator.initialize(exhibit.descriptor());
     return HiveUtils.fromDescriptor(od, false);
   }
@@ -74,4 +75,11 @@ public class WithinUDF extends GenericUDF {
     assert (args.length > 1);
     return "within(" + Joiner.on(',').join(args) + ")";
   }
+
+  @Override
+  public void close() throws IOException {
+    if (calculator != null) {
+      calculator.cleanup();
+    }
+  }
 }
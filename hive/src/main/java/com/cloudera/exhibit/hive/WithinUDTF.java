@@ -16,7 +16,9 @@ package com.cloudera.exhibit.hive;
 
 import com.cloudera.exhibit.core.Calculator;
 import com.cloudera.exhibit.core.Exhibit;
+import com.cloudera.exhibit.core.Exhibits;
 import com.cloudera.exhibit.core.Obs;
+import com.cloudera.exhibit.core.ObsCursor;
 import com.cloudera.exhibit.core.ObsDescriptor;
 import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
@@ -48,7 +50,7 @@ public class WithinUDTF extends GenericUDTF {
 
     this.inspectors = args;
     this.calculator = HiveUtils.getCalculator(args[0]);
-    this.exhibit = HiveUtils.getExhibit(args);
+    this.exhibit = HiveUtils.getExhibit(args, calculator);
     ObsDescriptor od = calculator.initialize(exhibit.descriptor());
 
     this.results = new Object[od.size()];
@@ -58,12 +60,17 @@ public class WithinUDTF extends GenericUDTF {
   @Override
   public void process(Object[] args) throws HiveException {
     HiveUtils.update(exhibit, inspectors, args);
-    Iterable<Obs> res = calculator.apply(exhibit);
-    for (Obs obs : res) {
-      for (int i = 0; i < results.length; i++) {
-        results[i] = HiveUtils.asHiveType(obs.get(i));
+    ObsCursor res = Exhibits.stream(calculator, exhibit);
+    try {
+      while (res.hasNext()) {
+        Obs obs = res.next();
+        for (int i = 0; i < results.length; i++) {
+          results[i] = HiveUtils.asHiveType(obs.get(i));
+        }
+        forward(results);
       }
-      forward(results);
+    } finally {
+      res.close();
     }
   }
 
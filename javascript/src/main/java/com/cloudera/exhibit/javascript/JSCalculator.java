@@ -22,8 +22,9 @@ import com.cloudera.exhibit.core.FieldType;
 import com.cloudera.exhibit.core.Frame;
 import com.cloudera.exhibit.core.Obs;
 import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.core.ReferenceAware;
 import com.cloudera.exhibit.core.Vec;
-import com.cloudera.exhibit.core.simple.SimpleFrame;
+import com.cloudera.exhibit.core.columnar.ColumnarFrame;
 import com.cloudera.exhibit.core.simple.SimpleObs;
 import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
 import com.google.common.collect.ImmutableList;
@@ -37,13 +38,15 @@ import org.mozilla.javascript.Scriptable;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
-public class JSCalculator implements Serializable, Calculator {
+public class JSCalculator implements Serializable, Calculator, ReferenceAware {
 
   private String src;
   private boolean hasReturn;
+  private List<String> references;
 
   private transient ObsDescriptor descriptor;
   private transient Context ctx = null;
@@ -56,9 +59,24 @@ public class JSCalculator implements Serializable, Calculator {
   }
 
   public JSCalculator(ObsDescriptor descriptor, String src) {
+    this(descriptor, src, null);
+  }
+
+  /**
+   * Creates a calculator that only reads the named attributes, frames, vectors, and
+   * {@code frame.column}s of its input exhibits. Without a set of names, the calculator
+   * is assumed to read all of them, since they cannot be inferred from the script.
+   */
+  public JSCalculator(ObsDescriptor descriptor, String src, Collection<String> references) {
     this.src = src;
     this.hasReturn = src.contains("return");
     this.descriptor = descriptor;
+    this.references = references == null ? null : Lists.newArrayList(references);
+  }
+
+  @Override
+  public ExhibitDescriptor references(ExhibitDescriptor ed) {
+    return references == null ? ed : Exhibits.project(ed, references);
   }
 
   @Override
@@ -85,17 +103,18 @@ public class JSCalculator implements Serializable, Calculator {
   @Override
   public Iterable<Obs> apply(Exhibit exhibit) {
     Object res = eval(exhibit, false);
-    List<Obs> ret = Lists.newArrayList();
     if (res instanceof ScriptableFrame) {
       return ((ScriptableFrame) res).frame();
-    } else if (res instanceof List) {
+    }
+    ColumnarFrame.Builder ret = ColumnarFrame.builder(descriptor);
+    if (res instanceof List) {
       for (Object obj : (List) res) {
         ret.add(toObs(obj, exhibit));
       }
     } else {
       ret.add(toObs(res, exhibit));
     }
-    return new SimpleFrame(descriptor, ret);
+    return ret.build();
   }
 
   Obs toObs(Object obj, Exhibit exhibit) {
@@ -15,11 +15,18 @@
 package com.cloudera.exhibit.javascript;
 
 import com.cloudera.exhibit.core.Vec;
+import com.cloudera.exhibit.core.vector.VectorOps;
+import com.google.common.collect.ImmutableSet;
+import org.mozilla.javascript.BaseFunction;
+import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 
 public class ScriptableVec extends ScriptableObject {
 
+  // Aggregates that scripts can call on a vector, e.g. vec.sum(), without boxing each element
+  private static final ImmutableSet<String> KERNELS = ImmutableSet.of("sum", "mean", "min", "max", "count");
+
   private final Vec vec;
 
   public ScriptableVec(Vec vec) {
@@ -42,6 +49,8 @@ public class ScriptableVec extends ScriptableObject {
   public Object get(String property, Scriptable scriptable) {
     if ("length".equals(property)) {
       return vec.size();
+    } else if (KERNELS.contains(property)) {
+      return new KernelFunction(property);
     }
     return super.get(property, scriptable);
   }
@@ -53,11 +62,33 @@ public class ScriptableVec extends ScriptableObject {
 
   @Override
   public boolean has(String name, Scriptable scriptable) {
-    return "length".equals(name);
+    return "length".equals(name) || KERNELS.contains(name);
   }
 
   @Override
   public Object getDefaultValue(Class<?> typeHint) {
     return vec.toString();
   }
+
+  private class KernelFunction extends BaseFunction {
+    private final String name;
+
+    KernelFunction(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+      if ("sum".equals(name)) {
+        return VectorOps.sum(vec);
+      } else if ("mean".equals(name)) {
+        return VectorOps.mean(vec);
+      } else if ("min".equals(name)) {
+        return VectorOps.min(vec);
+      } else if ("max".equals(name)) {
+        return VectorOps.max(vec);
+      }
+      return VectorOps.countNonNull(vec);
+    }
+  }
 }
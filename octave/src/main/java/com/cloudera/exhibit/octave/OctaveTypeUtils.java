@@ -158,15 +158,37 @@ public class OctaveTypeUtils {
         return new OctaveBoolean(((BooleanVector)v).getData(), v.size(), 1);
       case SHORT:
       case INTEGER:
-        return new OctaveInt(((IntVector)v).getData(), v.size(), 1);
+        return new OctaveInt(convertVecToInt(v), v.size(), 1);
       case LONG:
       case FLOAT:
       case DOUBLE:
-        return new OctaveDouble(((DoubleVector)v).getData(), v.size(), 1);
+        return new OctaveDouble(convertVecToDouble(v), v.size(), 1);
     }
     throw new UnsupportedOperationException("Unsupported Type: " + originalType);
   }
 
+  private static int[] convertVecToInt(Vec v) {
+    if (v instanceof IntVector) {
+      return ((IntVector) v).getData();
+    }
+    int[] b = new int[v.size()];
+    for (int i = 0; i < b.length; i++) {
+      b[i] = v.getInt(i);
+    }
+    return b;
+  }
+
+  private static double[] convertVecToDouble(Vec v) {
+    if (v instanceof DoubleVector) {
+      return ((DoubleVector) v).getData();
+    }
+    double[] b = new double[v.size()];
+    for (int i = 0; i < b.length; i++) {
+      b[i] = v.getDouble(i);
+    }
+    return b;
+  }
+
   public static OctaveObject convertToOctaveObject(FieldType originalType, Frame f) {
     ObsDescriptor od = f.descriptor();
     switch(originalType){
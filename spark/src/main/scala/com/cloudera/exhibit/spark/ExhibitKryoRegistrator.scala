@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.spark
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, DataInputStream, DataOutputStream}
+
+import com.cloudera.exhibit.core.Exhibit
+import com.cloudera.exhibit.core.columnar.ExhibitCodec
+import com.cloudera.exhibit.core.composite.UpdatableExhibit
+import com.cloudera.exhibit.core.simple.SimpleExhibit
+
+import com.esotericsoftware.kryo.{Kryo, Serializer}
+import com.esotericsoftware.kryo.io.{Input, Output}
+import org.apache.spark.SparkConf
+import org.apache.spark.serializer.KryoRegistrator
+
+/**
+ * Writes every [[Exhibit]] with the [[ExhibitCodec]] binary encoding. The descriptor
+ * travels with each record, but is only parsed once per JVM. Exhibits are not marked as
+ * immutable, since an [[UpdatableExhibit]] can change after it is copied.
+ */
+class ExhibitKryoSerializer extends Serializer[Exhibit] {
+
+  override def write(kryo: Kryo, output: Output, exhibit: Exhibit): Unit = {
+    val out = new DataOutputStream(output)
+    ExhibitCodec.writeExhibit(exhibit, out)
+    out.flush()
+  }
+
+  override def read(kryo: Kryo, input: Input, clazz: Class[Exhibit]): Exhibit = {
+    ExhibitCodec.readExhibit(new DataInputStream(input))
+  }
+
+  override def copy(kryo: Kryo, exhibit: Exhibit): Exhibit = {
+    val bytes = new ByteArrayOutputStream()
+    ExhibitCodec.writeExhibit(exhibit, new DataOutputStream(bytes))
+    ExhibitCodec.readExhibit(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray)))
+  }
+}
+
+class ExhibitKryoRegistrator extends KryoRegistrator {
+  override def registerClasses(kryo: Kryo): Unit = {
+    kryo.addDefaultSerializer(classOf[Exhibit], new ExhibitKryoSerializer())
+    kryo.register(classOf[SimpleExhibit])
+    kryo.register(classOf[UpdatableExhibit])
+  }
+}
+
+object ExhibitKryoRegistrator {
+  /**
+   * Configures Spark to use Kryo, with the exhibit serializer registered.
+   */
+  def register(conf: SparkConf): SparkConf = {
+    conf.set("spark.serializer", "org.apache.spark.serializer.KryoSerializer")
+      .set("spark.kryo.registrator", classOf[ExhibitKryoRegistrator].getName)
+  }
+}
@@ -16,7 +16,7 @@ package com.cloudera.exhibit.spark
 
 import java.io.FileNotFoundException
 
-import com.cloudera.exhibit.avro.AvroExhibit
+import com.cloudera.exhibit.avro.{AvroExhibit, AvroExhibitFactory, AvroExhibitInputFormat, ColumnarDatumReader, ExhibitWritable}
 import com.cloudera.exhibit.core._
 import com.cloudera.exhibit.javascript.JSCalculator
 import com.cloudera.exhibit.sql.SQLCalculator
@@ -24,7 +24,9 @@ import com.cloudera.exhibit.sql.SQLCalculator
 import org.apache.avro.file.DataFileReader
 import org.apache.avro.generic.{GenericRecord, GenericDatumReader}
 import org.apache.avro.mapred.FsInput
+import org.apache.hadoop.conf.Configuration
 import org.apache.hadoop.fs.{AvroFSInput, FileSystem, Path}
+import org.apache.hadoop.io.NullWritable
 import org.apache.spark.sql.types._
 import org.apache.spark.{TaskContext, Partition}
 import org.apache.spark.annotation.DeveloperApi
@@ -89,7 +91,7 @@ class ExhibitRDD private[spark](
 }
 
 object ExhibitRDD {
-  import scala.collection.JavaConversions.{asScalaIterator, mapAsScalaMap}
+  import scala.collection.JavaConversions.{asScalaIterator, mapAsScalaMap, seqAsJavaList}
 
   def avroFile(path: String, sc: SQLContext): ExhibitRDD = avroFile(new Path(path), sc)
 
@@ -97,11 +99,45 @@ object ExhibitRDD {
     val reader = newAvroReader(path, sc)
     val schema = reader.getSchema
     reader.close()
-    val descriptor = AvroExhibit.createDescriptor(schema)
+    val descriptor = AvroExhibitFactory.forSchema(schema).descriptor()
     val parent = avroRDD(path, sc).map(record => AvroExhibit.create(record._1.datum()))
     return new ExhibitRDD(sc, descriptor, parent)
   }
 
+  /**
+   * Like avroFile, but decodes the Avro records straight into columnar frames and primitive
+   * vectors with a ColumnarDatumReader instead of creating a GenericRecord for each of them.
+   */
+  def avroColumnarFile(path: String, sc: SQLContext): ExhibitRDD = avroColumnarFile(new Path(path), sc)
+
+  def avroColumnarFile(path: Path, sc: SQLContext): ExhibitRDD = avroColumnarFile(path, sc, null)
+
+  /**
+   * Reads only the parts of each record that are referenced by any of the given calculators.
+   */
+  def avroColumnarFile(path: String, sc: SQLContext, calcs: Seq[Calculator]): ExhibitRDD = {
+    val schema = AvroExhibitInputFormat.readSchema(new Path(path), sc.sparkContext.hadoopConfiguration)
+    val requested = Exhibits.references(AvroExhibit.createDescriptor(schema), seqAsJavaList(calcs))
+    avroColumnarFile(new Path(path), sc, requested)
+  }
+
+  def avroColumnarFile(path: Path, sc: SQLContext, requested: ExhibitDescriptor): ExhibitRDD = {
+    val schema = AvroExhibitInputFormat.readSchema(path, sc.sparkContext.hadoopConfiguration)
+    val descriptor = new ColumnarDatumReader(schema, requested).descriptor()
+    val conf = new Configuration(sc.sparkContext.hadoopConfiguration)
+    AvroExhibitInputFormat.setReaderSchema(conf, schema)
+    if (requested != null) {
+      AvroExhibitInputFormat.setRequestedDescriptor(conf, requested)
+    }
+    val parent = sc.sparkContext.newAPIHadoopFile(
+        path.toString,
+        classOf[AvroExhibitInputFormat],
+        classOf[ExhibitWritable],
+        classOf[NullWritable],
+        conf).map(e => e._1.get())
+    return new ExhibitRDD(sc, descriptor, parent)
+  }
+
   private val typeMap = Map[FieldType, Serializable](
     FieldType.BOOLEAN -> BooleanType,
     FieldType.DATE -> DateType,
@@ -124,8 +160,19 @@ object ExhibitRDD {
       }
       calc.apply(e).iterator()
     }).map(obs => obs2row(obs))
-    calc.cleanup()
-    ret
+    // Clean up once the partition has been consumed, so that the calculator's resources (e.g., its
+    // cached SQL plan) can be reused by the next partition
+    new Iterator[Row] {
+      override def hasNext: Boolean = {
+        val more = ret.hasNext
+        if (!more && init) {
+          calc.cleanup()
+          init = false
+        }
+        more
+      }
+      override def next(): Row = ret.next()
+    }
   }
 
   private def exhibitDescriptor2schemas(ed: ExhibitDescriptor): (StructType, Map[String, StructType]) = {
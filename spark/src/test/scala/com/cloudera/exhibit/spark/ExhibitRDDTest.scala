@@ -47,9 +47,9 @@ class ExhibitRDDTest {
   }
 
   @Before def setUp: Unit = {
-    conf = new SparkConf()
+    conf = ExhibitKryoRegistrator.register(new SparkConf()
            .setMaster("local")
-           .setAppName(getClass.getName)
+           .setAppName(getClass.getName))
 
     sc = new SQLContext(new SparkContext(conf))
 
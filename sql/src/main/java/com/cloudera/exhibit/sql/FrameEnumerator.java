@@ -14,45 +14,176 @@
  */
 package com.cloudera.exhibit.sql;
 
+import com.cloudera.exhibit.core.FieldType;
 import com.cloudera.exhibit.core.Frame;
 import com.cloudera.exhibit.core.Obs;
+import com.cloudera.exhibit.core.Vec;
+import com.cloudera.exhibit.core.columnar.ColumnarFrame;
 import org.apache.calcite.linq4j.Enumerator;
 
-public class FrameEnumerator implements Enumerator<Object> {
+import java.util.List;
 
-  private final Frame frame;
-  private Object current;
+/**
+ * Scans the rows of a set of columns, skipping the rows that fail any of the pushed-down
+ * {@link ScanFilter}s and building an array of only the projected columns for the rows that pass.
+ * The projected and filtered columns of a {@link ColumnarFrame} and primitive vectors are read
+ * straight from their arrays; other frames, and full scans of columnar ones, are read one
+ * {@link Obs} per row rather than one per cell. DATE and TIMESTAMP values are handed to Calcite in
+ * its internal form (see {@link TypeUtils#toInternal}).
+ *
+ * <p>Each row is a new array: Calcite's enumerable operators (sorts, joins, and the like) keep
+ * references to the rows they are handed, so a row buffer cannot be reused across calls to
+ * {@link #moveNext()}.
+ */
+public class FrameEnumerator implements Enumerator<Object[]> {
+
+  private final int size;
+  private final Frame rows;
+  private final int width;
+  private final int[] projects;
+  private final Vec[] projected;
+  private final Vec[] filterColumns;
+  private final ScanFilter[] filters;
+  // The types of the returned columns that must be converted to Calcite's internal form, or null
+  // if there are none
+  private final FieldType[] temporal;
+  private Object[] current;
   private int currentIndex = -1;
 
-  public FrameEnumerator(Frame frame) {
-    this.frame = frame;
-    this.current = new Object[frame.descriptor().size()];
+  public static FrameEnumerator create(Frame frame, int[] projects, List<ScanFilter> filters) {
+    Vec[] columns = new Vec[frame.descriptor().size()];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = frame.$(i);
+    }
+    // A scan of every column with no filters reads a whole Obs at a time, as scans did before
+    // pushdown; for columnar frames that is faster than a call through each column's Vec
+    if (frame instanceof ColumnarFrame && (projects != null || !filters.isEmpty())) {
+      return new FrameEnumerator(frame.size(), columns, projects, filters);
+    }
+    return new FrameEnumerator(frame, columns, projects, filters);
+  }
+
+  /**
+   * @param size the number of rows in the scan
+   * @param columns the columns of the table, all of the same size
+   * @param projects the indices of the columns to return, or null for all of them
+   * @param filters the filters that a row must pass to be returned
+   */
+  public FrameEnumerator(int size, Vec[] columns, int[] projects, List<ScanFilter> filters) {
+    this.size = size;
+    this.rows = null;
+    this.projects = null;
+    if (projects == null) {
+      this.projected = columns;
+    } else {
+      this.projected = new Vec[projects.length];
+      for (int i = 0; i < projects.length; i++) {
+        projected[i] = columns[projects[i]];
+      }
+    }
+    this.width = projected.length;
+    this.filters = filters.toArray(new ScanFilter[filters.size()]);
+    this.filterColumns = filterColumns(columns, this.filters);
+    this.temporal = temporalTypes(columns, projects);
+  }
+
+  // Reads the projected values (or all of the values, if projects is null) of a row-oriented
+  // frame from its observations
+  private FrameEnumerator(Frame rows, Vec[] columns, int[] projects, List<ScanFilter> filters) {
+    this.size = rows.size();
+    this.rows = rows;
+    this.width = projects == null ? columns.length : projects.length;
+    this.projects = projects;
+    this.projected = null;
+    this.filters = filters.toArray(new ScanFilter[filters.size()]);
+    this.filterColumns = filterColumns(columns, this.filters);
+    this.temporal = temporalTypes(columns, projects);
+  }
+
+  private static Vec[] filterColumns(Vec[] columns, ScanFilter[] filters) {
+    Vec[] ret = new Vec[filters.length];
+    for (int i = 0; i < filters.length; i++) {
+      ret[i] = columns[filters[i].column()];
+    }
+    return ret;
+  }
+
+  private static FieldType[] temporalTypes(Vec[] columns, int[] projects) {
+    int width = projects == null ? columns.length : projects.length;
+    FieldType[] ret = new FieldType[width];
+    boolean any = false;
+    for (int i = 0; i < width; i++) {
+      FieldType type = columns[projects == null ? i : projects[i]].getType();
+      if (TypeUtils.hasInternalForm(type)) {
+        ret[i] = type;
+        any = true;
+      }
+    }
+    return any ? ret : null;
   }
 
   @Override
-  public Object current() {
+  public Object[] current() {
     return current;
   }
 
   @Override
   public boolean moveNext() {
-    currentIndex++;
-    boolean hasNext = currentIndex < frame.size();
-    if (hasNext) {
-      Obs obs = frame.get(currentIndex);
-      if (frame.descriptor().size() > 1) {
-        Object[] values = new Object[frame.descriptor().size()];
-        for (int i = 0; i < values.length; i++) {
-          values[i] = obs.get(i);
-        }
-        this.current = values;
-      } else {
-        this.current = obs.get(0);
+    if (filters.length == 0) {
+      if (++currentIndex < size) {
+        this.current = rows == null ? fromColumns(currentIndex) : fromObs(currentIndex);
+        return true;
+      }
+      return false;
+    }
+    while (++currentIndex < size) {
+      if (accept(currentIndex)) {
+        this.current = rows == null ? fromColumns(currentIndex) : fromObs(currentIndex);
+        return true;
       }
+    }
+    return false;
+  }
 
+  private Object[] fromColumns(int row) {
+    Object[] values = new Object[width];
+    for (int i = 0; i < width; i++) {
+      values[i] = projected[i].get(row);
     }
-    return hasNext;
+    return temporal == null ? values : toInternal(values);
+  }
 
+  private Object[] fromObs(int row) {
+    Obs obs = rows.get(row);
+    Object[] values = new Object[width];
+    if (projects == null) {
+      for (int i = 0; i < width; i++) {
+        values[i] = obs.get(i);
+      }
+    } else {
+      for (int i = 0; i < width; i++) {
+        values[i] = obs.get(projects[i]);
+      }
+    }
+    return temporal == null ? values : toInternal(values);
+  }
+
+  private Object[] toInternal(Object[] values) {
+    for (int i = 0; i < width; i++) {
+      if (temporal[i] != null) {
+        values[i] = TypeUtils.toInternal(temporal[i], values[i]);
+      }
+    }
+    return values;
+  }
+
+  private boolean accept(int row) {
+    for (int i = 0; i < filters.length; i++) {
+      if (!filters[i].test(filterColumns[i], row)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
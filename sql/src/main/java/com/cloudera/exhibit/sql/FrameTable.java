@@ -16,41 +16,56 @@ package com.cloudera.exhibit.sql;
 
 import com.cloudera.exhibit.core.ObsDescriptor;
 import com.cloudera.exhibit.core.Frame;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.Linq4j;
-import org.apache.calcite.linq4j.QueryProvider;
-import org.apache.calcite.linq4j.Queryable;
-import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
-import org.apache.calcite.schema.QueryableTable;
-import org.apache.calcite.schema.SchemaPlus;
-import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.schema.ProjectableFilterableTable;
 import org.apache.calcite.schema.Statistic;
 import org.apache.calcite.schema.Statistics;
 import org.apache.calcite.schema.impl.AbstractTable;
-import org.apache.calcite.schema.impl.AbstractTableQueryable;
 import org.apache.calcite.util.ImmutableBitSet;
 
-import java.lang.reflect.Type;
 import java.util.List;
 
-public class FrameTable extends AbstractTable implements QueryableTable {
+public class FrameTable extends AbstractTable implements ProjectableFilterableTable {
 
-  private final ObsDescriptor descriptor;
+  private ObsDescriptor descriptor;
   private Frame frame;
 
+  /**
+   * Creates a table whose columns are not known until it is first updated, e.g., one that holds
+   * the result of an earlier query. It can be registered with a schema before that query runs.
+   */
+  public FrameTable() {
+  }
+
   public FrameTable(ObsDescriptor descriptor) {
     this.descriptor = descriptor;
   }
 
   public FrameTable updateFrame(Frame frame) {
+    if (descriptor == null) {
+      this.descriptor = frame.descriptor();
+    }
     this.frame = frame;
     return this;
   }
 
+  /**
+   * Drops the table's reference to its current frame, leaving it empty but with the same columns.
+   */
+  public void clear() {
+    this.frame = null;
+  }
+
   @Override
   public Statistic getStatistic() {
     if (frame == null) {
@@ -61,6 +76,7 @@ public class FrameTable extends AbstractTable implements QueryableTable {
 
   @Override
   public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+    Preconditions.checkState(descriptor != null, "Table has not been bound to a frame");
     List<String> names = Lists.newArrayListWithExpectedSize(descriptor.size());
     List<RelDataType> relTypes = Lists.newArrayListWithExpectedSize(descriptor.size());
     for (int i = 0; i < descriptor.size(); i++) {
@@ -76,26 +92,22 @@ public class FrameTable extends AbstractTable implements QueryableTable {
     return typeFactory.createStructType(relTypes, names);
   }
 
+  /**
+   * Reads only the projected columns of the current frame, and skips the rows that fail the simple
+   * comparisons in the filters before building a row array for them.
+   */
   @Override
-  public <T> Queryable<T> asQueryable(QueryProvider queryProvider, SchemaPlus schemaPlus, String tableName) {
-    return new AbstractTableQueryable<T>(queryProvider, schemaPlus, this, tableName) {
-      public Enumerator<T> enumerator() {
-        if (frame == null) {
-          return Linq4j.<T>emptyEnumerator();
-        } else {
-          return (Enumerator<T>) new FrameEnumerator(frame);
+  public Enumerable<Object[]> scan(DataContext root, List<RexNode> filters, final int[] projects) {
+    final Frame current = frame;
+    final List<ScanFilter> scanFilters = ScanFilter.extract(filters);
+    return new AbstractEnumerable<Object[]>() {
+      @Override
+      public Enumerator<Object[]> enumerator() {
+        if (current == null) {
+          return Linq4j.<Object[]>emptyEnumerator();
         }
+        return FrameEnumerator.create(current, projects, scanFilters);
       }
     };
   }
-
-  @Override
-  public Type getElementType() {
-    return Object[].class;
-  }
-
-  @Override
-  public Expression getExpression(SchemaPlus schemaPlus, String tableName, Class clazz) {
-    return Schemas.tableExpression(schemaPlus, getElementType(), tableName, clazz);
-  }
 }
@@ -20,6 +20,12 @@ import org.apache.calcite.schema.impl.AbstractSchema;
 
 import java.util.Map;
 
+/**
+ * The schema that a {@link SQLCalculator} runs its queries against. Its tables are all registered
+ * before the first query is prepared and are never replaced afterwards; only the rows they are
+ * bound to change from one exhibit to the next. That lets Calcite cache its snapshot of the schema
+ * for the life of the connection.
+ */
 public class ModifiableSchema extends AbstractSchema {
 
   private final Map<String, Table> tableMap;
@@ -48,6 +54,6 @@ public class ModifiableSchema extends AbstractSchema {
 
   @Override
   public boolean contentsHaveChangedSince(long lastCheck, long now) {
-    return true; // disable caching for now
+    return false;
   }
 }
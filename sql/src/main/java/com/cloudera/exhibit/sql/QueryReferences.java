@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.sql;
+
+import com.cloudera.exhibit.core.ExhibitDescriptor;
+import com.cloudera.exhibit.core.Exhibits;
+import com.cloudera.exhibit.core.FieldType;
+import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlJoin;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.util.SqlBasicVisitor;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the parts of an {@link ExhibitDescriptor} that a set of SQL queries refer to by parsing
+ * each query and matching the identifiers it contains against the names of the attributes, frames,
+ * vectors, and frame columns. The identifiers are not resolved against the query's scopes, so the
+ * result may include fields that the query does not actually use, but never leaves out one that it
+ * does. Queries that cannot be parsed refer to the whole descriptor.
+ */
+class QueryReferences extends SqlBasicVisitor<Void> {
+
+  private final Set<String> names = Sets.newHashSet();
+  private boolean star = false;
+
+  static ExhibitDescriptor references(String[] queries, ExhibitDescriptor descriptor) {
+    List<ExhibitDescriptor> refs = Lists.newArrayList();
+    for (String query : queries) {
+      QueryReferences qr = new QueryReferences();
+      try {
+        SqlParser.create(query).parseQuery().accept(qr);
+      } catch (SqlParseException e) {
+        return descriptor;
+      }
+      refs.add(qr.select(descriptor));
+    }
+    return Exhibits.union(descriptor, refs);
+  }
+
+  private ExhibitDescriptor select(ExhibitDescriptor descriptor) {
+    ObsDescriptor attrs = new SimpleObsDescriptor(ImmutableList.<ObsDescriptor.Field>of());
+    if (names.contains("ATTRS")) {
+      attrs = star ? descriptor.attributes() : select(descriptor.attributes());
+    }
+    Map<String, ObsDescriptor> frames = Maps.newHashMap();
+    for (Map.Entry<String, ObsDescriptor> e : descriptor.frames().entrySet()) {
+      if (names.contains(upper(e.getKey()))) {
+        frames.put(e.getKey(), star ? e.getValue() : select(e.getValue()));
+      }
+    }
+    Map<String, FieldType> vectors = Maps.newHashMap();
+    for (Map.Entry<String, FieldType> e : descriptor.vectors().entrySet()) {
+      if (names.contains(upper(e.getKey()))) {
+        vectors.put(e.getKey(), e.getValue());
+      }
+    }
+    return new ExhibitDescriptor(attrs, frames, vectors);
+  }
+
+  private ObsDescriptor select(ObsDescriptor od) {
+    List<ObsDescriptor.Field> fields = Lists.newArrayList();
+    for (ObsDescriptor.Field f : od) {
+      if (names.contains(upper(f.name))) {
+        fields.add(f);
+      }
+    }
+    return fields.size() == od.size() ? od : new SimpleObsDescriptor(fields);
+  }
+
+  private static String upper(String name) {
+    return name.toUpperCase(Locale.ENGLISH);
+  }
+
+  @Override
+  public Void visit(SqlIdentifier id) {
+    if (id.isStar()) {
+      star = true;
+    }
+    for (String name : id.names) {
+      names.add(upper(name));
+    }
+    return null;
+  }
+
+  @Override
+  public Void visit(SqlCall call) {
+    if (call instanceof SqlJoin && ((SqlJoin) call).isNatural()) {
+      star = true;
+    }
+    boolean count = "COUNT".equalsIgnoreCase(call.getOperator().getName());
+    for (SqlNode operand : call.getOperandList()) {
+      if (operand == null || (count && operand instanceof SqlIdentifier && ((SqlIdentifier) operand).isStar())) {
+        continue;
+      }
+      operand.accept(this);
+    }
+    return null;
+  }
+}
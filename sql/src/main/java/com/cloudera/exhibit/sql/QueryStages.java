@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.sql;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlJoin;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.parser.SqlParserPos;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The statements that a multi-query {@link SQLCalculator} actually runs for each exhibit. Query
+ * {@code n} (counting from one) of a calculator can read the results of the queries before it as
+ * TEMP1 ... TEMP(n-1), and the result of query {@code n-1} as LAST. Here the queries are parsed,
+ * references to LAST are replaced by the TEMP table they stand for, and then:
+ * <ul>
+ *   <li>queries whose results the final query does not depend on are dropped;</li>
+ *   <li>a plain SELECT whose result is read only once is inlined into the query that reads it as a
+ *   subquery, so that Calcite can optimize across the two; and</li>
+ *   <li>the rest are kept as stages whose results are materialized into their TEMP tables.</li>
+ * </ul>
+ * If any of the queries cannot be parsed, they are all run as written.
+ */
+final class QueryStages {
+
+  static final class Stage {
+    final String table;
+    final String sql;
+
+    Stage(String table, String sql) {
+      this.table = table;
+      this.sql = sql;
+    }
+  }
+
+  private final List<Stage> temps;
+  private final String result;
+
+  private QueryStages(List<Stage> temps, String result) {
+    this.temps = temps;
+    this.result = result;
+  }
+
+  /**
+   * The queries whose results are materialized, in the order they must run.
+   */
+  List<Stage> temps() {
+    return temps;
+  }
+
+  /**
+   * The final query, whose result is the result of the calculator.
+   */
+  String result() {
+    return result;
+  }
+
+  /**
+   * All of the statements to run, with the final query last.
+   */
+  String[] queries() {
+    String[] ret = new String[temps.size() + 1];
+    for (int i = 0; i < temps.size(); i++) {
+      ret[i] = temps.get(i).sql;
+    }
+    ret[temps.size()] = result;
+    return ret;
+  }
+
+  static String tempName(int index) {
+    return "TEMP" + (index + 1);
+  }
+
+  static QueryStages create(String[] queries) {
+    int n = queries.length;
+    SqlNode[] nodes = new SqlNode[n];
+    for (int i = 0; i < n; i++) {
+      try {
+        nodes[i] = SqlParser.create(queries[i]).parseQuery();
+      } catch (SqlParseException e) {
+        return asWritten(queries);
+      }
+    }
+
+    boolean[] rewritten = new boolean[n];
+    List<List<String>> tables = Lists.newArrayListWithExpectedSize(n);
+    for (int i = 0; i < n; i++) {
+      Map<String, SqlNode> last = i == 0 ? ImmutableMap.<String, SqlNode>of()
+          : ImmutableMap.<String, SqlNode>of("LAST", new SqlIdentifier(tempName(i - 1), SqlParserPos.ZERO));
+      TableRewriter tr = new TableRewriter(last);
+      tr.walk(nodes[i]);
+      rewritten[i] = tr.count > 0;
+      tables.add(tr.tables);
+    }
+
+    // Work back from the final query to find the temps it depends on, and how often each is read
+    boolean[] needed = new boolean[n];
+    int[] uses = new int[n];
+    int[] reader = new int[n];
+    needed[n - 1] = true;
+    for (int i = n - 1; i >= 0; i--) {
+      if (needed[i]) {
+        for (String table : tables.get(i)) {
+          int j = tempIndex(table, i);
+          if (j >= 0) {
+            needed[j] = true;
+            uses[j]++;
+            reader[j] = i;
+          }
+        }
+      }
+    }
+
+    boolean[] inlined = new boolean[n];
+    for (int j = 0; j < n - 1; j++) {
+      if (needed[j] && uses[j] == 1 && nodes[j].getKind() == SqlKind.SELECT) {
+        new TableRewriter(ImmutableMap.of(tempName(j), nodes[j])).walk(nodes[reader[j]]);
+        rewritten[reader[j]] = true;
+        inlined[j] = true;
+      }
+    }
+
+    List<Stage> temps = Lists.newArrayList();
+    for (int j = 0; j < n - 1; j++) {
+      if (needed[j] && !inlined[j]) {
+        temps.add(new Stage(tempName(j), rewritten[j] ? unparse(nodes[j]) : queries[j]));
+      }
+    }
+    return new QueryStages(temps, rewritten[n - 1] ? unparse(nodes[n - 1]) : queries[n - 1]);
+  }
+
+  private static QueryStages asWritten(String[] queries) {
+    List<Stage> temps = Lists.newArrayList();
+    for (int i = 0; i < queries.length - 1; i++) {
+      temps.add(new Stage(tempName(i), queries[i]));
+    }
+    return new QueryStages(ImmutableList.copyOf(temps), queries[queries.length - 1]);
+  }
+
+  // Returns the index of the query whose result the given table name refers to, if it is a TEMP
+  // table that is visible to the query at the given index, and -1 otherwise
+  private static int tempIndex(String table, int query) {
+    if (!table.startsWith("TEMP")) {
+      return -1;
+    }
+    try {
+      int j = Integer.parseInt(table.substring(4)) - 1;
+      return j >= 0 && j < query ? j : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static String unparse(SqlNode node) {
+    return node.toSqlString(SqlDialect.CALCITE).getSql();
+  }
+
+  /**
+   * Records the names of the tables that a query reads in its FROM clauses (including those of its
+   * subqueries), and replaces the ones in the given map, in place. A replaced table keeps its name
+   * as an alias, so that qualified column references to it still resolve.
+   */
+  private static class TableRewriter {
+    private final Map<String, SqlNode> replacements;
+    private final List<String> tables = Lists.newArrayList();
+    private int count = 0;
+
+    TableRewriter(Map<String, SqlNode> replacements) {
+      this.replacements = replacements;
+    }
+
+    void walk(SqlNode node) {
+      if (node instanceof SqlSelect) {
+        SqlSelect select = (SqlSelect) node;
+        if (select.getFrom() != null) {
+          select.setFrom(from(select.getFrom()));
+        }
+      }
+      if (node instanceof SqlNodeList) {
+        for (SqlNode child : (SqlNodeList) node) {
+          walk(child);
+        }
+      } else if (node instanceof SqlCall) {
+        for (SqlNode child : ((SqlCall) node).getOperandList()) {
+          walk(child);
+        }
+      }
+    }
+
+    private SqlNode from(SqlNode node) {
+      if (node instanceof SqlIdentifier && ((SqlIdentifier) node).isSimple()) {
+        String name = ((SqlIdentifier) node).getSimple();
+        record(name);
+        if (replacements.containsKey(name)) {
+          count++;
+          return SqlStdOperatorTable.AS.createCall(SqlParserPos.ZERO, replacements.get(name),
+              new SqlIdentifier(name, SqlParserPos.ZERO));
+        }
+      } else if (node instanceof SqlJoin) {
+        SqlJoin join = (SqlJoin) node;
+        join.setOperand(0, from(join.getLeft()));
+        join.setOperand(3, from(join.getRight()));
+      } else if (node.getKind() == SqlKind.AS) {
+        SqlCall as = (SqlCall) node;
+        SqlNode table = as.getOperandList().get(0);
+        if (table instanceof SqlIdentifier && ((SqlIdentifier) table).isSimple()) {
+          String name = ((SqlIdentifier) table).getSimple();
+          record(name);
+          if (replacements.containsKey(name)) {
+            count++;
+            as.setOperand(0, replacements.get(name));
+          }
+        }
+      }
+      return node;
+    }
+
+    // A table that is replaced by another table (e.g., LAST by a TEMP table) is recorded as the
+    // table that is actually read
+    private void record(String name) {
+      SqlNode replacement = replacements.get(name);
+      if (replacement instanceof SqlIdentifier && ((SqlIdentifier) replacement).isSimple()) {
+        tables.add(((SqlIdentifier) replacement).getSimple());
+      } else {
+        tables.add(name);
+      }
+    }
+  }
+}
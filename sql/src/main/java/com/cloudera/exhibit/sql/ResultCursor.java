@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.sql;
+
+import com.cloudera.exhibit.core.Obs;
+import com.cloudera.exhibit.core.ObsCursor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+
+/**
+ * An {@link ObsCursor} over the live result set of a {@link SQLCalculator}'s final query, which
+ * reads one row at a time and closes the result set once it is exhausted or closed.
+ */
+class ResultCursor implements ObsCursor {
+
+  private final ResultReader reader;
+  private ResultSet rs;
+  private Obs next;
+
+  ResultCursor(ResultReader reader, ResultSet rs) {
+    this.reader = reader;
+    this.rs = rs;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null && rs != null) {
+      try {
+        if (rs.next()) {
+          next = reader.readRow(rs);
+        } else {
+          close();
+        }
+      } catch (SQLException e) {
+        close();
+        throw new RuntimeException(e);
+      }
+    }
+    return next != null;
+  }
+
+  @Override
+  public Obs next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Obs ret = next;
+    next = null;
+    return ret;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void close() {
+    next = null;
+    if (rs != null) {
+      try {
+        rs.close();
+      } catch (SQLException e) {
+        throw new RuntimeException(e);
+      } finally {
+        rs = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.sql;
+
+import com.cloudera.exhibit.core.FieldType;
+import com.cloudera.exhibit.core.Obs;
+import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.core.columnar.ColumnData;
+import com.cloudera.exhibit.core.columnar.ColumnarFrame;
+import com.cloudera.exhibit.core.simple.SimpleObs;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Copies the results of one prepared statement into a {@link ColumnarFrame}. The descriptor of
+ * the results is worked out once, when the statement is planned, so that reading the results for
+ * an exhibit only moves values from the typed getters of the {@link ResultSet} into the primitive
+ * arrays of the frame's columns, without any per-cell boxing for numeric and boolean columns.
+ */
+class ResultReader {
+
+  private final ObsDescriptor descriptor;
+  private final FieldType[] types;
+  private int expectedSize = 16;
+
+  ResultReader(ObsDescriptor descriptor) {
+    this.descriptor = descriptor;
+    this.types = new FieldType[descriptor.size()];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = descriptor.get(i).type;
+    }
+  }
+
+  /**
+   * Reads all of the rows of the given result set, which must have this reader's columns, and
+   * closes it.
+   */
+  ColumnarFrame read(ResultSet rs) throws SQLException {
+    ColumnData.Builder[] builders = new ColumnData.Builder[types.length];
+    for (int i = 0; i < builders.length; i++) {
+      builders[i] = ColumnData.builder(types[i], expectedSize);
+    }
+    try {
+      while (rs.next()) {
+        for (int i = 0; i < builders.length; i++) {
+          read(rs, i, builders[i]);
+        }
+      }
+    } finally {
+      rs.close();
+    }
+    ColumnData[] columns = new ColumnData[builders.length];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = builders[i].build();
+    }
+    ColumnarFrame frame = ColumnarFrame.of(descriptor, columns);
+    expectedSize = Math.max(frame.size(), 1);
+    return frame;
+  }
+
+  /**
+   * Returns the values of the current row of the given result set, boxed as the types of this
+   * reader's descriptor.
+   */
+  Obs readRow(ResultSet rs) throws SQLException {
+    Object[] values = new Object[types.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = get(rs, i);
+    }
+    return new SimpleObs(descriptor, Arrays.asList(values));
+  }
+
+  private Object get(ResultSet rs, int i) throws SQLException {
+    Object v;
+    switch (types[i]) {
+      case DOUBLE:
+        v = rs.getDouble(i + 1);
+        break;
+      case FLOAT:
+        v = rs.getFloat(i + 1);
+        break;
+      case LONG:
+        v = rs.getLong(i + 1);
+        break;
+      case INTEGER:
+        v = rs.getInt(i + 1);
+        break;
+      case SHORT:
+        v = rs.getShort(i + 1);
+        break;
+      case BOOLEAN:
+        v = rs.getBoolean(i + 1);
+        break;
+      case STRING:
+        return rs.getString(i + 1);
+      default:
+        return rs.getObject(i + 1);
+    }
+    return rs.wasNull() ? null : v;
+  }
+
+  private void read(ResultSet rs, int i, ColumnData.Builder column) throws SQLException {
+    switch (types[i]) {
+      case DOUBLE:
+      case FLOAT:
+        double d = rs.getDouble(i + 1);
+        if (rs.wasNull()) {
+          column.appendNull();
+        } else {
+          column.appendDouble(d);
+        }
+        break;
+      case LONG:
+        long l = rs.getLong(i + 1);
+        if (rs.wasNull()) {
+          column.appendNull();
+        } else {
+          column.appendLong(l);
+        }
+        break;
+      case INTEGER:
+      case SHORT:
+        int n = rs.getInt(i + 1);
+        if (rs.wasNull()) {
+          column.appendNull();
+        } else {
+          column.appendInt(n);
+        }
+        break;
+      case BOOLEAN:
+        boolean b = rs.getBoolean(i + 1);
+        if (rs.wasNull()) {
+          column.appendNull();
+        } else {
+          column.appendBoolean(b);
+        }
+        break;
+      case STRING:
+        column.appendString(rs.getString(i + 1));
+        break;
+      default:
+        column.append(rs.getObject(i + 1));
+    }
+  }
+}
@@ -16,13 +16,15 @@ package com.cloudera.exhibit.sql;
 
 import com.cloudera.exhibit.core.*;
 import com.cloudera.exhibit.core.simple.SimpleFrame;
-import com.cloudera.exhibit.core.simple.SimpleObs;
 import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
 import com.cloudera.exhibit.core.vector.Vector;
+import com.cloudera.exhibit.core.vector.VectorBuilder;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.calcite.jdbc.CalciteConnection;
 import org.apache.calcite.jdbc.Driver;
 import org.apache.calcite.schema.Table;
@@ -33,18 +35,30 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class SQLCalculator implements Serializable, Calculator {
+public class SQLCalculator implements Serializable, StreamingCalculator, ReferenceAware {
 
-  private transient ModifiableSchema rootSchema;
-  private transient CalciteConnection conn;
-  private transient List<PreparedStatement> stmts;
+  private static final AtomicLong REPREPARED = new AtomicLong();
+
+  private transient Plan plan;
+  private transient ResultCursor cursor;
   private final String[] queries;
+  private final Map<String, String> functions;
 
   public static SQLCalculator create(ObsDescriptor res, String sqlCode) {
+    return create(res, sqlCode, ImmutableMap.<String, String>of());
+  }
+
+  /**
+   * Creates a calculator for the semicolon-separated queries in {@code sqlCode}, which may call the
+   * given {@link SQLFunctions} (from names to class names).
+   */
+  public static SQLCalculator create(ObsDescriptor res, String sqlCode, Map<String, String> functions) {
     if (sqlCode == null) {
       return null;
     }
@@ -53,108 +67,284 @@ public class SQLCalculator implements Serializable, Calculator {
     for (String q : Splitter.on(';').trimResults().omitEmptyStrings().split(sqlCode)) {
       ret.add(q);
     }
-    SQLCalculator sc = new SQLCalculator(ret.toArray(new String[0]));
+    SQLCalculator sc = new SQLCalculator(ret.toArray(new String[0]), functions);
     return sc;
   }
 
   public SQLCalculator(String[] queries) {
+    this(queries, ImmutableMap.<String, String>of());
+  }
+
+  public SQLCalculator(String[] queries, Map<String, String> functions) {
     this.queries = Preconditions.checkNotNull(queries);
+    this.functions = ImmutableMap.copyOf(functions);
   }
 
+  @Override
+  public ExhibitDescriptor references(ExhibitDescriptor descriptor) {
+    return QueryReferences.references(QueryStages.create(queries).queries(), descriptor);
+  }
+
+  /**
+   * Takes a prepared plan for the queries from the {@link SQLPlanCache} if one is available for
+   * this descriptor, and plans them from scratch otherwise. The plan goes back to the cache on
+   * {@link #cleanup()}.
+   */
   @Override
   public ObsDescriptor initialize(ExhibitDescriptor descriptor) {
-    this.rootSchema = new ModifiableSchema();
-    rootSchema.getTableMap().put("ATTRS", new FrameTable(descriptor.attributes()));
-    for (Map.Entry<String, ObsDescriptor> e : descriptor.frames().entrySet()) {
-      rootSchema.getTableMap().put(e.getKey().toUpperCase(), new FrameTable(e.getValue()));
+    closeCursor();
+    if (plan != null) {
+      SQLPlanCache.release(plan);
     }
-    for (Map.Entry<String, FieldType> e : descriptor.vectors().entrySet()) {
-      rootSchema.getTableMap().put(e.getKey().toUpperCase(), new VectorTable(e.getValue()));
+    SQLPlanCache.Key key = new SQLPlanCache.Key(queries, functions, descriptor);
+    this.plan = SQLPlanCache.borrow(key);
+    if (plan == null) {
+      this.plan = new Plan(key, descriptor);
     }
+    return plan.result;
+  }
+
+  @Override
+  public void cleanup() {
+    closeCursor();
+    if (plan != null) {
+      SQLPlanCache.release(plan);
+      plan = null;
+    }
+  }
+
+  @Override
+  public Frame apply(Exhibit exhibit) {
     try {
-      this.conn = newConnection();
-      this.stmts = Lists.newArrayList();
-      for (int i = 0; i < queries.length - 1; i++) {
-        PreparedStatement ps = conn.prepareStatement(queries[i]);
-        Table tbl = ResultSetTable.create(ps.executeQuery());
-        rootSchema.getTableMap().put("TEMP" + (i + 1), tbl);
-        rootSchema.getTableMap().put("LAST", tbl);
-        stmts.add(ps);
-      }
-      PreparedStatement result = conn.prepareStatement(queries[queries.length - 1]);
-      stmts.add(result);
-      return fromResultSet(result.executeQuery()).descriptor();
+      return plan.run(bind(exhibit));
     } catch (SQLException e) {
+      e.printStackTrace();
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * Runs the queries over the given exhibit, but leaves the rows of the final query in its open
+   * result set, so that they are read one at a time as the cursor is iterated. Any cursor that is
+   * still open from an earlier call is closed first.
+   */
   @Override
-  public void cleanup() {
+  public ObsCursor stream(Exhibit exhibit) {
     try {
-      rootSchema = null;
-      if (stmts != null) {
-        for (PreparedStatement stmt : stmts) {
-          stmt.close();
-        }
-        this.stmts = null;
-      }
-      if (conn != null) {
-        conn.close();
-        conn = null;
-      }
+      int last = bind(exhibit);
+      this.cursor = new ResultCursor(plan.readers.get(last), plan.statement(last).executeQuery());
+      return cursor;
     } catch (SQLException e) {
       throw new RuntimeException(e);
     }
   }
 
-  private CalciteConnection newConnection() throws SQLException {
-    Driver driver = new Driver();
-    Connection connection = driver.connect("jdbc:calcite:", null);
-    CalciteConnection oconn = connection.unwrap(CalciteConnection.class);
-    oconn.getRootSchema().add("X", rootSchema);
-    oconn.setSchema("X");
-    return oconn;
+  // Binds the tables of the plan to the exhibit and runs the materialized stages, returning the
+  // index of the final statement
+  private int bind(Exhibit exhibit) throws SQLException {
+    closeCursor();
+    ModifiableSchema rootSchema = plan.rootSchema;
+    rootSchema.getFrame("ATTRS").updateFrame(new SimpleFrame(ImmutableList.of(exhibit.attributes())));
+    // Only the frames and vectors that the queries use are looked up, so that the others are
+    // never decoded when the exhibit is lazy. The ones the exhibit lacks are bound to empty ones,
+    // rather than left with the rows of the previous exhibit.
+    for (Map.Entry<String, Frame> e : plan.emptyFrames.entrySet()) {
+      Frame frame = exhibit.frames().get(e.getKey());
+      rootSchema.getFrame(e.getKey().toUpperCase()).updateFrame(frame == null ? e.getValue() : frame);
+    }
+    for (Map.Entry<String, Vec> e : plan.emptyVectors.entrySet()) {
+      Vec vec = exhibit.vectors().get(e.getKey());
+      rootSchema.getVector(e.getKey().toUpperCase()).updateVector(vec == null ? e.getValue() : vec);
+    }
+    int temps = plan.stages.temps().size();
+    for (int i = 0; i < temps; i++) {
+      plan.execute(i);
+    }
+    return temps;
   }
 
-  @Override
-  public Frame apply(Exhibit exhibit) {
-    rootSchema.getFrame("ATTRS").updateFrame(new SimpleFrame(ImmutableList.of(exhibit.attributes())));
-    for (Map.Entry<String, Frame> e : exhibit.frames().entrySet()) {
-      rootSchema.getFrame(e.getKey().toUpperCase()).updateFrame(e.getValue());
+  private void closeCursor() {
+    if (cursor != null) {
+      cursor.close();
+      cursor = null;
     }
-    for (Map.Entry<String, Vec> e : exhibit.vectors().entrySet()) {
-      rootSchema.getVector(e.getKey().toUpperCase()).updateVector(e.getValue());
+  }
+
+  /**
+   * The connection, schema, and prepared (parsed, validated, optimized, and compiled) statements
+   * for a set of queries over exhibits with a given descriptor. The queries are first reduced to
+   * the {@link QueryStages} that the final query depends on. Every table the statements can see,
+   * including the TEMPn results of the materialized stages, is registered before the first
+   * statement is prepared, so Calcite's cached view of the schema stays valid. The tables are
+   * rebound to new rows in place for each exhibit, so a plan is only ever used by one calculator
+   * at a time.
+   *
+   * <p>The statements are first prepared while the referenced frames and vectors are bound to
+   * empty ones, which is when Calcite reads their {@link org.apache.calcite.schema.Statistic}s. So
+   * each one is prepared again the first time it runs over an exhibit whose referenced frames and
+   * vectors have other row counts than the ones it was prepared with, so that its join order and
+   * join algorithms are chosen from the row counts of real frames rather than from empty ones. An
+   * exhibit with the same row counts would give the same plan, so it does not trigger this. Those
+   * are the row counts of one exhibit only: the plan is not prepared again for later exhibits,
+   * including those of other calculators that borrow it from the {@link SQLPlanCache}. So it is
+   * tuned to exhibits whose frames have sizes like that one's; for others the plan may be slower,
+   * but its results are the same.
+   */
+  static class Plan {
+    final SQLPlanCache.Key key;
+    final ModifiableSchema rootSchema;
+    final QueryStages stages;
+    final ExhibitDescriptor referenced;
+    // What the referenced frames and vectors are bound to when an exhibit does not have them
+    final Map<String, Frame> emptyFrames;
+    final Map<String, Vec> emptyVectors;
+    final CalciteConnection conn;
+    final List<PreparedStatement> stmts;
+    final List<String> sqls;
+    final List<ResultReader> readers;
+    final ObsDescriptor result;
+    // The tables of the referenced frames and vectors, whose row counts the statements are planned with
+    private final List<Table> inputs;
+    // The row counts of the inputs when each statement was prepared, and whether it has been
+    // prepared again with those of a real exhibit
+    private final double[][] preparedWith;
+    private final boolean[] replanned;
+
+    Plan(SQLPlanCache.Key key, ExhibitDescriptor descriptor) {
+      this.key = key;
+      this.rootSchema = new ModifiableSchema();
+      this.stages = QueryStages.create(key.queries);
+      this.referenced = QueryReferences.references(stages.queries(), descriptor);
+      this.preparedWith = new double[stages.temps().size() + 1][];
+      this.replanned = new boolean[stages.temps().size() + 1];
+      this.emptyFrames = Maps.newHashMap();
+      for (Map.Entry<String, ObsDescriptor> e : referenced.frames().entrySet()) {
+        emptyFrames.put(e.getKey(), new SimpleFrame(e.getValue()));
+      }
+      this.emptyVectors = Maps.newHashMap();
+      for (Map.Entry<String, FieldType> e : referenced.vectors().entrySet()) {
+        emptyVectors.put(e.getKey(), VectorBuilder.build(e.getValue(), ImmutableList.<Object>of()));
+      }
+      rootSchema.getTableMap().put("ATTRS", new FrameTable(descriptor.attributes()));
+      for (Map.Entry<String, ObsDescriptor> e : descriptor.frames().entrySet()) {
+        rootSchema.getTableMap().put(e.getKey().toUpperCase(), new FrameTable(e.getValue()));
+      }
+      for (Map.Entry<String, FieldType> e : descriptor.vectors().entrySet()) {
+        rootSchema.getTableMap().put(e.getKey().toUpperCase(), new VectorTable(e.getValue()));
+      }
+      for (QueryStages.Stage stage : stages.temps()) {
+        rootSchema.getTableMap().put(stage.table, new FrameTable());
+      }
+      this.inputs = Lists.newArrayList();
+      for (Map.Entry<String, Frame> e : emptyFrames.entrySet()) {
+        inputs.add(rootSchema.getFrame(e.getKey().toUpperCase()).updateFrame(e.getValue()));
+      }
+      for (Map.Entry<String, Vec> e : emptyVectors.entrySet()) {
+        inputs.add(rootSchema.getVector(e.getKey().toUpperCase()).updateVector(e.getValue()));
+      }
+      try {
+        this.conn = newConnection(rootSchema, key.functions);
+        this.stmts = Lists.newArrayList();
+        this.sqls = Lists.newArrayList();
+        this.readers = Lists.newArrayList();
+        for (QueryStages.Stage stage : stages.temps()) {
+          rootSchema.getFrame(stage.table).updateFrame(prepare(stage.sql));
+        }
+        this.result = prepare(stages.result()).descriptor();
+      } catch (SQLException e) {
+        throw new RuntimeException(e);
+      }
     }
-    conn.getRootSchema().add("X", rootSchema);
-    try {
-      conn.setSchema("X");
-      for (int i = 0; i < queries.length - 1; i++) {
-        Table tbl = ResultSetTable.create(stmts.get(i).executeQuery());
-        rootSchema.getTableMap().put("TEMP" + (i + 1), tbl);
-        rootSchema.getTableMap().put("LAST", tbl);
+
+    // Prepares and runs the next statement, fixing the descriptor of its results from this run
+    private Frame prepare(String sql) throws SQLException {
+      PreparedStatement ps = conn.prepareStatement(sql);
+      preparedWith[stmts.size()] = rowCounts();
+      stmts.add(ps);
+      sqls.add(sql);
+      ResultSet rs = ps.executeQuery();
+      ResultReader reader = new ResultReader(fromMetadata(rs.getMetaData()));
+      readers.add(reader);
+      return reader.read(rs);
+    }
+
+    // Runs the i-th statement and copies its results into a columnar frame
+    Frame run(int i) throws SQLException {
+      return readers.get(i).read(statement(i).executeQuery());
+    }
+
+    // Returns the i-th statement, preparing it again against the bound tables if it has only been
+    // prepared against empty ones, and they now have other row counts
+    PreparedStatement statement(int i) throws SQLException {
+      if (!replanned[i]) {
+        double[] rowCounts = rowCounts();
+        if (!Arrays.equals(rowCounts, preparedWith[i])) {
+          stmts.get(i).close();
+          stmts.set(i, conn.prepareStatement(sqls.get(i)));
+          preparedWith[i] = rowCounts;
+          replanned[i] = true;
+          REPREPARED.incrementAndGet();
+        }
       }
-      return fromResultSet(stmts.get(queries.length - 1).executeQuery());
-    } catch (SQLException e) {
-      e.printStackTrace();
-      throw new RuntimeException(e);
+      return stmts.get(i);
     }
-  }
 
-  private Frame fromResultSet(ResultSet rs) throws SQLException {
-    ObsDescriptor desc = fromMetadata(rs.getMetaData());
-    List<Obs> obs = Lists.newArrayList();
-    while (rs.next()) {
-      List<Object> values = Lists.newArrayListWithExpectedSize(desc.size());
-      for (int i = 1; i <= desc.size(); i++) {
-        values.add(rs.getObject(i));
+    // The row counts of the inputs, with -1 for the ones that are not known
+    private double[] rowCounts() {
+      double[] ret = new double[inputs.size()];
+      for (int i = 0; i < ret.length; i++) {
+        Double rowCount = inputs.get(i).getStatistic().getRowCount();
+        ret[i] = rowCount == null ? -1.0 : rowCount;
       }
-      obs.add(new SimpleObs(desc, values));
+      return ret;
+    }
+
+    // Runs the i-th materialized stage and binds its TEMP table to the result
+    void execute(int i) throws SQLException {
+      rootSchema.getFrame(stages.temps().get(i).table).updateFrame(run(i));
     }
-    return new SimpleFrame(desc, obs);
+
+    // Empties every table, including the TEMPn results, so that the plan holds no rows while idle
+    void unbind() {
+      for (Table table : rootSchema.getTableMap().values()) {
+        if (table instanceof FrameTable) {
+          ((FrameTable) table).clear();
+        } else if (table instanceof VectorTable) {
+          ((VectorTable) table).clear();
+        }
+      }
+    }
+
+    void close() {
+      try {
+        for (PreparedStatement stmt : stmts) {
+          stmt.close();
+        }
+        conn.close();
+      } catch (SQLException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of statements that have been prepared again with the row counts of an exhibit.
+   */
+  static long reprepared() {
+    return REPREPARED.get();
+  }
+
+  private static CalciteConnection newConnection(ModifiableSchema rootSchema, Map<String, String> functions)
+      throws SQLException {
+    Driver driver = new Driver();
+    Connection connection = driver.connect("jdbc:calcite:", null);
+    CalciteConnection oconn = connection.unwrap(CalciteConnection.class);
+    SQLFunctions.register(oconn.getRootSchema().add("X", rootSchema), functions);
+    oconn.setSchema("X");
+    return oconn;
   }
 
-  private ObsDescriptor fromMetadata(ResultSetMetaData md) throws SQLException {
+  private static ObsDescriptor fromMetadata(ResultSetMetaData md) throws SQLException {
     List<ObsDescriptor.Field> fields = Lists.newArrayListWithExpectedSize(md.getColumnCount());
     for (int i = 0; i < md.getColumnCount(); i++) {
       String name = md.getColumnLabel(i + 1).toLowerCase(Locale.ENGLISH);
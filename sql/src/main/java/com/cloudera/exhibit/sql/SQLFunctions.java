@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.sql;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Maps;
+import org.apache.calcite.schema.AggregateFunction;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.impl.AggregateFunctionImpl;
+import org.apache.calcite.schema.impl.ScalarFunctionImpl;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * The registry of the compiled Java functions that the queries of a {@link SQLCalculator} may call,
+ * in addition to Calcite's built-in functions and the {@link SketchFunctions}. A function is named
+ * by a class, which is either:
+ * <ul>
+ *   <li>a scalar function, with one or more public {@code eval} methods; or</li>
+ *   <li>an aggregate function, with public {@code init}, {@code add}, {@code result}, and
+ *   (optionally) {@code merge} methods, where the accumulator is the type returned by
+ *   {@code init}.</li>
+ * </ul>
+ * The methods may be static, or instance methods of a class with a public no-arg constructor. Calcite
+ * calls them directly from the code that it generates for a query, so a Java function costs about
+ * as much as a built-in one.
+ *
+ * <p>Functions come from the {@link Provider}s listed in the
+ * {@code META-INF/services/com.cloudera.exhibit.sql.SQLFunctions$Provider} files on the classpath,
+ * and from the name-to-class-name map that a calculator is created with, which is how the ETL
+ * configs and the {@value #FUNCTIONS_PROPERTY} Hive setting declare them.
+ */
+public final class SQLFunctions {
+
+  /**
+   * The configuration property that declares functions as a comma-separated list of
+   * {@code name=class} pairs.
+   */
+  public static final String FUNCTIONS_PROPERTY = "exhibit.sql.functions";
+
+  /**
+   * A set of functions that is found by the {@link ServiceLoader}.
+   */
+  public interface Provider {
+    /**
+     * Returns the classes of the functions to register, keyed by their names in SQL.
+     */
+    Map<String, Class<?>> functions();
+  }
+
+  private SQLFunctions() {
+  }
+
+  /**
+   * Parses a comma-separated list of {@code name=class} pairs, such as the value of the
+   * {@value #FUNCTIONS_PROPERTY} property, into a map from function names to class names.
+   */
+  public static Map<String, String> parse(String spec) {
+    Map<String, String> functions = Maps.newLinkedHashMap();
+    if (spec != null) {
+      for (String pair : Splitter.on(',').trimResults().omitEmptyStrings().split(spec)) {
+        int eq = pair.indexOf('=');
+        if (eq <= 0 || eq == pair.length() - 1) {
+          throw new IllegalArgumentException("Invalid function declaration (expected name=class): " + pair);
+        }
+        functions.put(pair.substring(0, eq).trim(), pair.substring(eq + 1).trim());
+      }
+    }
+    return functions;
+  }
+
+  /**
+   * Adds the sketch functions, the functions of every {@link Provider} on the classpath, and the
+   * given functions (from names to class names) to the schema.
+   */
+  static void register(SchemaPlus schema, Map<String, String> functions) {
+    SketchFunctions.register(schema);
+    for (Provider provider : ServiceLoader.load(Provider.class, classLoader())) {
+      for (Map.Entry<String, Class<?>> e : provider.functions().entrySet()) {
+        register(schema, e.getKey(), e.getValue());
+      }
+    }
+    for (Map.Entry<String, String> e : functions.entrySet()) {
+      try {
+        register(schema, e.getKey(), Class.forName(e.getValue(), true, classLoader()));
+      } catch (ClassNotFoundException ex) {
+        throw new IllegalArgumentException("Could not find the class of function " + e.getKey(), ex);
+      }
+    }
+  }
+
+  static void register(SchemaPlus schema, String name, Class<?> clazz) {
+    String sqlName = name.toUpperCase(Locale.ENGLISH);
+    AggregateFunction agg = AggregateFunctionImpl.create(clazz);
+    if (agg != null) {
+      schema.add(sqlName, agg);
+      return;
+    }
+    boolean found = false;
+    for (Method m : clazz.getMethods()) {
+      if ("eval".equals(m.getName()) && Modifier.isPublic(m.getModifiers())) {
+        schema.add(sqlName, ScalarFunctionImpl.create(m));
+        found = true;
+      }
+    }
+    if (!found) {
+      throw new IllegalArgumentException("Class " + clazz.getName() + " of function " + name +
+          " has neither eval methods nor init/add/result methods");
+    }
+  }
+
+  // Prefers the context class loader, which sees the jars that Hive adds to a session
+  private static ClassLoader classLoader() {
+    ClassLoader cl = Thread.currentThread().getContextClassLoader();
+    return cl != null ? cl : SQLFunctions.class.getClassLoader();
+  }
+}
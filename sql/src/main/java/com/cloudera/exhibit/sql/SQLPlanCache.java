@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.sql;
+
+import com.cloudera.exhibit.core.ExhibitDescriptor;
+import com.cloudera.exhibit.core.columnar.ExhibitCodec;
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A JVM-wide cache of the prepared plans of {@link SQLCalculator}s, keyed by their queries, their
+ * {@link SQLFunctions}, and the fingerprint of the {@link ExhibitDescriptor} they were planned
+ * against, so that Hive UDFs, Crunch functions, and Spark partitions that run the same queries over
+ * the same kind of exhibits only pay for parsing, validating, optimizing, and compiling them once.
+ *
+ * <p>A plan is checked out of the cache by {@link SQLCalculator#initialize} and returned to it by
+ * {@link SQLCalculator#cleanup}. At most {@code exhibit.sql.plan.cache.size} (default 64) idle
+ * plans are kept; the least recently used ones are closed when there are more.
+ *
+ * <p>A cached plan keeps the join order that was chosen from the row counts of the first exhibit it
+ * ran over, whichever calculator that was; the key does not
+ * include any statistics.
+ */
+public final class SQLPlanCache {
+
+  public static final String MAX_SIZE_PROPERTY = "exhibit.sql.plan.cache.size";
+
+  private static final int MAX_SIZE = Integer.getInteger(MAX_SIZE_PROPERTY, 64);
+  private static final AtomicLong HITS = new AtomicLong();
+  private static final AtomicLong MISSES = new AtomicLong();
+
+  // The idle plans for each key, with the most recently used keys last
+  private static final Map<Key, LinkedList<SQLCalculator.Plan>> IDLE =
+      new LinkedHashMap<Key, LinkedList<SQLCalculator.Plan>>(16, 0.75f, true);
+  private static int idleCount = 0;
+
+  private SQLPlanCache() {
+  }
+
+  static SQLCalculator.Plan borrow(Key key) {
+    synchronized (IDLE) {
+      LinkedList<SQLCalculator.Plan> plans = IDLE.get(key);
+      if (plans != null) {
+        SQLCalculator.Plan plan = plans.removeLast();
+        if (plans.isEmpty()) {
+          IDLE.remove(key);
+        }
+        idleCount--;
+        HITS.incrementAndGet();
+        return plan;
+      }
+    }
+    MISSES.incrementAndGet();
+    return null;
+  }
+
+  static void release(SQLCalculator.Plan plan) {
+    // An idle plan must not keep the last exhibit's rows alive, or show them to its next borrower
+    plan.unbind();
+    List<SQLCalculator.Plan> evicted = Lists.newArrayList();
+    synchronized (IDLE) {
+      LinkedList<SQLCalculator.Plan> plans = IDLE.get(plan.key);
+      if (plans == null) {
+        plans = Lists.newLinkedList();
+        IDLE.put(plan.key, plans);
+      }
+      plans.addLast(plan);
+      idleCount++;
+      Iterator<LinkedList<SQLCalculator.Plan>> it = IDLE.values().iterator();
+      while (idleCount > MAX_SIZE && it.hasNext()) {
+        LinkedList<SQLCalculator.Plan> eldest = it.next();
+        while (idleCount > MAX_SIZE && !eldest.isEmpty()) {
+          evicted.add(eldest.removeFirst());
+          idleCount--;
+        }
+        if (eldest.isEmpty()) {
+          it.remove();
+        }
+      }
+    }
+    for (SQLCalculator.Plan p : evicted) {
+      p.close();
+    }
+  }
+
+  /**
+   * Returns the number of times that {@link SQLCalculator#initialize} found a prepared plan here.
+   */
+  public static long hits() {
+    return HITS.get();
+  }
+
+  /**
+   * Returns the number of times that {@link SQLCalculator#initialize} had to plan its queries.
+   */
+  public static long misses() {
+    return MISSES.get();
+  }
+
+  /**
+   * Returns the number of idle plans in the cache.
+   */
+  public static int size() {
+    synchronized (IDLE) {
+      return idleCount;
+    }
+  }
+
+  /**
+   * Closes and removes all of the idle plans in the cache.
+   */
+  public static void clear() {
+    List<SQLCalculator.Plan> evicted = Lists.newArrayList();
+    synchronized (IDLE) {
+      for (LinkedList<SQLCalculator.Plan> plans : IDLE.values()) {
+        evicted.addAll(plans);
+      }
+      IDLE.clear();
+      idleCount = 0;
+    }
+    for (SQLCalculator.Plan p : evicted) {
+      p.close();
+    }
+  }
+
+  static class Key {
+    final String[] queries;
+    final Map<String, String> functions;
+    final long fingerprint;
+
+    Key(String[] queries, Map<String, String> functions, ExhibitDescriptor descriptor) {
+      this.queries = queries.clone();
+      this.functions = functions;
+      this.fingerprint = ExhibitCodec.of(descriptor).fingerprint();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return fingerprint == other.fingerprint && Arrays.equals(queries, other.queries) &&
+          functions.equals(other.functions);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * Arrays.hashCode(queries) + functions.hashCode()) +
+          (int) (fingerprint ^ (fingerprint >>> 32));
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.sql;
+
+import com.cloudera.exhibit.core.FieldType;
+import com.cloudera.exhibit.core.Vec;
+import com.google.common.collect.Lists;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.util.NlsString;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A simple predicate on a single column of a {@link FrameTable} or {@link VectorTable} that is
+ * evaluated inside the scan: a comparison of the column with a numeric, string, or boolean literal,
+ * or a null test. Numeric columns are tested through the unboxed accessors of their {@link Vec}.
+ */
+final class ScanFilter {
+
+  // The result of comparing with NaN, which fails every comparison but <>, as in Java and Calcite
+  private static final int UNORDERED = Integer.MIN_VALUE;
+
+  private static final BigDecimal MIN_LONG = BigDecimal.valueOf(Long.MIN_VALUE);
+  private static final BigDecimal MAX_LONG = BigDecimal.valueOf(Long.MAX_VALUE);
+
+  private final int column;
+  private final SqlKind kind;
+  private final Object value;
+
+  // For an integral literal: its value, and whether it is below (-1) or above (1) the range of a long
+  private final long longValue;
+  private final int longRange;
+
+  private ScanFilter(int column, SqlKind kind, Object value) {
+    this.column = column;
+    this.kind = kind;
+    this.value = value;
+    if (value instanceof BigDecimal && ((BigDecimal) value).scale() <= 0) {
+      BigDecimal bd = (BigDecimal) value;
+      this.longRange = bd.compareTo(MIN_LONG) < 0 ? -1 : bd.compareTo(MAX_LONG) > 0 ? 1 : 0;
+      this.longValue = longRange == 0 ? bd.longValue() : 0L;
+    } else {
+      this.longRange = 0;
+      this.longValue = 0L;
+    }
+  }
+
+  /**
+   * Removes the filters that can be evaluated in the scan from the given list, as Calcite expects
+   * of a {@link org.apache.calcite.schema.ProjectableFilterableTable}, and returns them.
+   */
+  static List<ScanFilter> extract(List<RexNode> filters) {
+    List<ScanFilter> ret = Lists.newArrayList();
+    if (filters == null) {
+      return ret;
+    }
+    Iterator<RexNode> iter = filters.iterator();
+    while (iter.hasNext()) {
+      ScanFilter sf = create(iter.next());
+      if (sf != null) {
+        ret.add(sf);
+        iter.remove();
+      }
+    }
+    return ret;
+  }
+
+  static ScanFilter create(RexNode node) {
+    if (!(node instanceof RexCall)) {
+      return null;
+    }
+    RexCall call = (RexCall) node;
+    SqlKind kind = call.getKind();
+    List<RexNode> ops = call.getOperands();
+    if (kind == SqlKind.IS_NULL || kind == SqlKind.IS_NOT_NULL) {
+      if (ops.get(0) instanceof RexInputRef) {
+        return new ScanFilter(((RexInputRef) ops.get(0)).getIndex(), kind, null);
+      }
+      return null;
+    }
+    if (!SqlKind.COMPARISON.contains(kind) || ops.size() != 2) {
+      return null;
+    }
+    RexNode left = ops.get(0), right = ops.get(1);
+    if (left instanceof RexLiteral && right instanceof RexInputRef) {
+      RexNode tmp = left;
+      left = right;
+      right = tmp;
+      kind = reverse(kind);
+    }
+    if (!(left instanceof RexInputRef) || !(right instanceof RexLiteral)) {
+      return null;
+    }
+    Object value = ((RexLiteral) right).getValue();
+    if (value instanceof NlsString) {
+      value = ((NlsString) value).getValue();
+    } else if (!(value instanceof BigDecimal || value instanceof Boolean)) {
+      return null;
+    }
+    if (value instanceof Boolean && kind != SqlKind.EQUALS && kind != SqlKind.NOT_EQUALS) {
+      return null;
+    }
+    return new ScanFilter(((RexInputRef) left).getIndex(), kind, value);
+  }
+
+  private static SqlKind reverse(SqlKind kind) {
+    switch (kind) {
+      case LESS_THAN:
+        return SqlKind.GREATER_THAN;
+      case LESS_THAN_OR_EQUAL:
+        return SqlKind.GREATER_THAN_OR_EQUAL;
+      case GREATER_THAN:
+        return SqlKind.LESS_THAN;
+      case GREATER_THAN_OR_EQUAL:
+        return SqlKind.LESS_THAN_OR_EQUAL;
+      default:
+        return kind;
+    }
+  }
+
+  int column() {
+    return column;
+  }
+
+  boolean test(Vec vec, int row) {
+    if (kind == SqlKind.IS_NULL) {
+      return vec.isNull(row);
+    } else if (kind == SqlKind.IS_NOT_NULL) {
+      return !vec.isNull(row);
+    } else if (vec.isNull(row)) {
+      return false;
+    }
+    return matches(compare(vec, row));
+  }
+
+  private int compare(Vec vec, int row) {
+    FieldType type = vec.getType();
+    if (value instanceof BigDecimal) {
+      BigDecimal bd = (BigDecimal) value;
+      if ((type == FieldType.LONG || type == FieldType.INTEGER) && bd.scale() <= 0) {
+        if (longRange != 0) {
+          return -longRange;
+        }
+        long v = type == FieldType.LONG ? vec.getLong(row) : vec.getInt(row);
+        return v < longValue ? -1 : (v == longValue ? 0 : 1);
+      } else if (type == FieldType.LONG || type == FieldType.INTEGER
+          || type == FieldType.DOUBLE || type == FieldType.FLOAT) {
+        return compare(vec.getDouble(row), bd.doubleValue());
+      }
+      Object v = vec.get(row);
+      if (v instanceof BigDecimal) {
+        return ((BigDecimal) v).compareTo(bd);
+      }
+      return compare(((Number) v).doubleValue(), bd.doubleValue());
+    } else if (value instanceof Boolean) {
+      return vec.getBoolean(row) == (Boolean) value ? 0 : 1;
+    }
+    return vec.get(row).toString().compareTo((String) value);
+  }
+
+  // Unlike Double.compare, treats -0.0 and 0.0 as equal and NaN as unordered with everything
+  private static int compare(double a, double b) {
+    if (a < b) {
+      return -1;
+    } else if (a > b) {
+      return 1;
+    }
+    return a == b ? 0 : UNORDERED;
+  }
+
+  private boolean matches(int cmp) {
+    if (cmp == UNORDERED) {
+      return kind == SqlKind.NOT_EQUALS;
+    }
+    switch (kind) {
+      case EQUALS:
+        return cmp == 0;
+      case NOT_EQUALS:
+        return cmp != 0;
+      case LESS_THAN:
+        return cmp < 0;
+      case LESS_THAN_OR_EQUAL:
+        return cmp <= 0;
+      case GREATER_THAN:
+        return cmp > 0;
+      case GREATER_THAN_OR_EQUAL:
+        return cmp >= 0;
+      default:
+        throw new IllegalStateException("Unsupported comparison: " + kind);
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.sql;
+
+import com.cloudera.exhibit.core.sketch.HyperLogLog;
+import com.cloudera.exhibit.core.sketch.QuantileSketch;
+import com.cloudera.exhibit.core.sketch.SpaceSaving;
+import com.cloudera.exhibit.core.sketch.Sketches;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.impl.AggregateFunctionImpl;
+
+/**
+ * Approximate aggregate functions, backed by the sketches in {@link com.cloudera.exhibit.core.sketch},
+ * that are available to the queries of a {@link SQLCalculator}:
+ * <ul>
+ *   <li>{@code APPROX_COUNT_DISTINCT(x)}: the number of distinct non-null values of x
+ *   (HyperLogLog);</li>
+ *   <li>{@code APPROX_PERCENTILE(x, p)}: the value at quantile p (between 0 and 1) of the numeric
+ *   values of x (a KLL-style quantile sketch);</li>
+ *   <li>{@code APPROX_TOP_K(x, k)}: the k most frequent values of x, most frequent first, as a
+ *   comma-separated string in which any commas and backslashes within the values are escaped with
+ *   a backslash (SpaceSaving); and</li>
+ *   <li>{@code HLL_SKETCH(x)}, {@code QUANTILE_SKETCH(x)} and {@code TOP_K_SKETCH(x)}: the sketches
+ *   themselves, encoded with {@link Sketches#toString}, so that the results for different exhibits
+ *   can be decoded and merged later on.</li>
+ * </ul>
+ */
+public final class SketchFunctions {
+
+  private SketchFunctions() {
+  }
+
+  public static void register(SchemaPlus schema) {
+    schema.add("APPROX_COUNT_DISTINCT", AggregateFunctionImpl.create(ApproxCountDistinct.class));
+    schema.add("APPROX_PERCENTILE", AggregateFunctionImpl.create(ApproxPercentile.class));
+    schema.add("APPROX_TOP_K", AggregateFunctionImpl.create(ApproxTopK.class));
+    schema.add("HLL_SKETCH", AggregateFunctionImpl.create(HllSketch.class));
+    schema.add("QUANTILE_SKETCH", AggregateFunctionImpl.create(QuantileSketchFunction.class));
+    schema.add("TOP_K_SKETCH", AggregateFunctionImpl.create(TopKSketch.class));
+  }
+
+  private static double toDouble(Object value) {
+    return ((Number) value).doubleValue();
+  }
+
+  public static class ApproxCountDistinct {
+    public static HyperLogLog init() {
+      return new HyperLogLog();
+    }
+
+    public static HyperLogLog add(HyperLogLog acc, Object value) {
+      return acc.add(value);
+    }
+
+    public static HyperLogLog merge(HyperLogLog a, HyperLogLog b) {
+      return a.merge(b);
+    }
+
+    public static long result(HyperLogLog acc) {
+      return acc.estimate();
+    }
+  }
+
+  public static class HllSketch {
+    public static HyperLogLog init() {
+      return new HyperLogLog();
+    }
+
+    public static HyperLogLog add(HyperLogLog acc, Object value) {
+      return acc.add(value);
+    }
+
+    public static HyperLogLog merge(HyperLogLog a, HyperLogLog b) {
+      return a.merge(b);
+    }
+
+    public static String result(HyperLogLog acc) {
+      return Sketches.toString(acc);
+    }
+  }
+
+  /**
+   * The accumulator of APPROX_PERCENTILE, which remembers the quantile it was asked for.
+   */
+  public static class Percentile {
+    final QuantileSketch sketch = new QuantileSketch();
+    double quantile = 0.5;
+  }
+
+  public static class ApproxPercentile {
+    public static Percentile init() {
+      return new Percentile();
+    }
+
+    public static Percentile add(Percentile acc, Object value, Object quantile) {
+      if (value != null) {
+        acc.sketch.add(toDouble(value));
+      }
+      if (quantile != null) {
+        acc.quantile = toDouble(quantile);
+      }
+      return acc;
+    }
+
+    public static Percentile merge(Percentile a, Percentile b) {
+      a.sketch.merge(b.sketch);
+      return a;
+    }
+
+    public static Double result(Percentile acc) {
+      return acc.sketch.count() == 0 ? null : acc.sketch.quantile(acc.quantile);
+    }
+  }
+
+  public static class QuantileSketchFunction {
+    public static QuantileSketch init() {
+      return new QuantileSketch();
+    }
+
+    public static QuantileSketch add(QuantileSketch acc, Object value) {
+      return value == null ? acc : acc.add(toDouble(value));
+    }
+
+    public static QuantileSketch merge(QuantileSketch a, QuantileSketch b) {
+      return a.merge(b);
+    }
+
+    public static String result(QuantileSketch acc) {
+      return Sketches.toString(acc);
+    }
+  }
+
+  /**
+   * The accumulator of APPROX_TOP_K, whose sketch is sized from the k it is asked for.
+   */
+  public static class TopK {
+    SpaceSaving sketch;
+    int k;
+  }
+
+  public static class ApproxTopK {
+    public static TopK init() {
+      return new TopK();
+    }
+
+    public static TopK add(TopK acc, Object value, Object k) {
+      if (acc.sketch == null) {
+        acc.k = ((Number) k).intValue();
+        acc.sketch = new SpaceSaving(Math.max(SpaceSaving.DEFAULT_CAPACITY, 10 * acc.k));
+      }
+      acc.sketch.add(value);
+      return acc;
+    }
+
+    public static TopK merge(TopK a, TopK b) {
+      if (a.sketch == null) {
+        return b;
+      } else if (b.sketch != null) {
+        a.sketch.merge(b.sketch);
+      }
+      return a;
+    }
+
+    public static String result(TopK acc) {
+      if (acc.sketch == null) {
+        return null;
+      }
+      StringBuilder sb = new StringBuilder();
+      boolean first = true;
+      for (Object value : acc.sketch.top(acc.k)) {
+        if (!first) {
+          sb.append(',');
+        }
+        first = false;
+        String str = value.toString();
+        for (int i = 0; i < str.length(); i++) {
+          char c = str.charAt(i);
+          if (c == ',' || c == '\\') {
+            sb.append('\\');
+          }
+          sb.append(c);
+        }
+      }
+      return sb.toString();
+    }
+  }
+
+  public static class TopKSketch {
+    public static SpaceSaving init() {
+      return new SpaceSaving();
+    }
+
+    public static SpaceSaving add(SpaceSaving acc, Object value) {
+      return acc.add(value);
+    }
+
+    public static SpaceSaving merge(SpaceSaving a, SpaceSaving b) {
+      return a.merge(b);
+    }
+
+    public static String result(SpaceSaving acc) {
+      return Sketches.toString(acc);
+    }
+  }
+}
@@ -16,6 +16,7 @@ package com.cloudera.exhibit.sql;
 
 import com.cloudera.exhibit.core.FieldType;
 import com.google.common.collect.ImmutableMap;
+import org.apache.calcite.runtime.SqlFunctions;
 import org.apache.calcite.sql.type.SqlTypeName;
 
 import java.math.BigDecimal;
@@ -71,7 +72,7 @@ public class TypeUtils {
       .put(FieldType.TIMESTAMP, SqlTypeName.TIMESTAMP)
       .put(FieldType.BOOLEAN, SqlTypeName.BOOLEAN)
       .put(FieldType.DOUBLE, SqlTypeName.DOUBLE)
-      .put(FieldType.FLOAT, SqlTypeName.FLOAT)
+      .put(FieldType.FLOAT, SqlTypeName.REAL) // Calcite's FLOAT is a double; REAL is a float
       .put(FieldType.INTEGER, SqlTypeName.INTEGER)
       .put(FieldType.LONG, SqlTypeName.BIGINT)
       .build();
@@ -79,6 +80,7 @@ public class TypeUtils {
   public static Map<FieldType, Class> FIELD_TYPES_TO_JAVA_TYPES = ImmutableMap.<FieldType, Class>builder()
       .put(FieldType.DATE, Date.class)
       .put(FieldType.TIMESTAMP, Timestamp.class)
+      .put(FieldType.TIME, Time.class)
       .put(FieldType.DECIMAL, BigDecimal.class)
       .put(FieldType.SHORT, Short.class)
       .put(FieldType.BOOLEAN, Boolean.class)
@@ -89,6 +91,30 @@ public class TypeUtils {
       .put(FieldType.STRING, String.class)
       .build();
 
+  /**
+   * Returns true if the values of the given type are declared to Calcite as a SQL type (see
+   * {@link #FIELD_TYPES_TO_SQL_TYPES}) whose internal form is not the Java object that exhibits hold.
+   */
+  static boolean hasInternalForm(FieldType type) {
+    return type == FieldType.DATE || type == FieldType.TIMESTAMP;
+  }
+
+  /**
+   * Converts a value of the given type to the form that Calcite's generated code works with: the
+   * days since the epoch for a DATE, and the milliseconds since the epoch for a TIMESTAMP. Values
+   * that are already numbers (or null) are returned as they are.
+   */
+  static Object toInternal(FieldType type, Object value) {
+    if (value instanceof java.util.Date) {
+      if (type == FieldType.DATE) {
+        return SqlFunctions.toInt((java.util.Date) value);
+      } else if (type == FieldType.TIMESTAMP) {
+        return SqlFunctions.toLong((java.util.Date) value);
+      }
+    }
+    return value;
+  }
+
   public static Class getJavaClassForSQLType(int sqlType) {
     Class clazz = SQL_TYPES_TO_JAVA.get(sqlType);
     if (clazz == null) {
@@ -14,17 +14,21 @@
  */
 package com.cloudera.exhibit.sql;
 
+import com.cloudera.exhibit.core.FieldType;
 import com.cloudera.exhibit.core.Vec;
 import org.apache.calcite.linq4j.Enumerator;
 
 public class VectorEnumerator implements Enumerator<Object> {
 
   private final Vec vector;
+  // The vector's type if its values must be converted to Calcite's internal form, or null
+  private final FieldType temporal;
   private Object current;
   private int currentIndex;
 
   public VectorEnumerator(Vec vector) {
     this.vector = vector;
+    this.temporal = TypeUtils.hasInternalForm(vector.getType()) ? vector.getType() : null;
     this.current = null;
     this.currentIndex = -1;
   }
@@ -39,7 +43,8 @@ public class VectorEnumerator implements Enumerator<Object> {
     currentIndex++;
     boolean hasNext = currentIndex < vector.size();
     if (hasNext) {
-      this.current = vector.get(currentIndex);
+      Object value = vector.get(currentIndex);
+      this.current = temporal == null ? value : TypeUtils.toInternal(temporal, value);
     }
     return hasNext;
   }
@@ -18,6 +18,9 @@ import com.cloudera.exhibit.core.FieldType;
 import com.cloudera.exhibit.core.Vec;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.Linq4j;
 import org.apache.calcite.linq4j.QueryProvider;
@@ -25,6 +28,7 @@ import org.apache.calcite.linq4j.Queryable;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.schema.*;
 import org.apache.calcite.schema.impl.AbstractTable;
 import org.apache.calcite.schema.impl.AbstractTableQueryable;
@@ -33,9 +37,14 @@ import org.apache.calcite.util.ImmutableBitSet;
 import java.lang.reflect.Type;
 import java.util.List;
 
-public class VectorTable extends AbstractTable implements QueryableTable {
+/**
+ * A single-column table over a {@link Vec}. Plain scans go through {@link #asQueryable} and return
+ * the boxed values of the vector as scalar rows; scans with filters that Calcite pushes down go
+ * through {@link #scan}, which has to wrap each row that passes in an array.
+ */
+public class VectorTable extends AbstractTable implements QueryableTable, ProjectableFilterableTable {
 
-  private FieldType type;
+  private final FieldType type;
   private Vec vector;
 
   public VectorTable(FieldType type) {
@@ -44,10 +53,16 @@ public class VectorTable extends AbstractTable implements QueryableTable {
 
   public VectorTable updateVector(Vec vector) {
     this.vector = vector;
-    this.type   = vector.getType();
     return this;
   }
 
+  /**
+   * Drops the table's reference to its current vector, leaving it empty.
+   */
+  public void clear() {
+    this.vector = null;
+  }
+
   @Override
   public Statistic getStatistic() {
     if (vector == null) {
@@ -71,6 +86,21 @@ public class VectorTable extends AbstractTable implements QueryableTable {
     return typeFactory.createStructType(relTypes, names);
   }
 
+  @Override
+  public Enumerable<Object[]> scan(DataContext root, List<RexNode> filters, final int[] projects) {
+    final Vec current = vector;
+    final List<ScanFilter> scanFilters = ScanFilter.extract(filters);
+    return new AbstractEnumerable<Object[]>() {
+      @Override
+      public Enumerator<Object[]> enumerator() {
+        if (current == null) {
+          return Linq4j.<Object[]>emptyEnumerator();
+        }
+        return new FrameEnumerator(current.size(), new Vec[] { current }, projects, scanFilters);
+      }
+    };
+  }
+
   @Override
   public <T> Queryable<T> asQueryable(QueryProvider queryProvider, SchemaPlus schemaPlus, String tableName) {
     return new AbstractTableQueryable<T>(queryProvider, schemaPlus, this, tableName) {
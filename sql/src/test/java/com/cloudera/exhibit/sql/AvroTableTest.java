@@ -17,23 +17,46 @@ package com.cloudera.exhibit.sql;
 import com.cloudera.exhibit.avro.AvroFrame;
 import com.cloudera.exhibit.avro.AvroObsDescriptor;
 import com.cloudera.exhibit.core.Exhibit;
+import com.cloudera.exhibit.core.ExhibitDescriptor;
 import com.cloudera.exhibit.core.Frame;
 import com.cloudera.exhibit.core.Obs;
+import com.cloudera.exhibit.core.ObsCursor;
+import com.cloudera.exhibit.core.ObsDescriptor;
 import com.cloudera.exhibit.core.Vec;
 import com.cloudera.exhibit.core.simple.SimpleExhibit;
+import com.cloudera.exhibit.core.simple.SimpleFrame;
+import com.cloudera.exhibit.core.simple.SimpleObs;
+import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
+import com.cloudera.exhibit.core.sketch.HyperLogLog;
+import com.cloudera.exhibit.core.sketch.Sketches;
+import com.cloudera.exhibit.core.vector.DoubleVector;
+import com.cloudera.exhibit.core.vector.LongVector;
 import com.cloudera.exhibit.core.vector.Vector;
 import com.cloudera.exhibit.core.vector.VectorBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import org.apache.avro.Schema;
 import org.apache.avro.SchemaBuilder;
 import org.apache.avro.generic.GenericData;
+import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.type.SqlTypeName;
 import org.junit.Test;
 
+import java.math.BigDecimal;
+import java.sql.Date;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class AvroTableTest {
@@ -149,4 +172,370 @@ public class AvroTableTest {
     assertEquals(null, res.get(0).get(0));
     assertEquals(1729L, res.get(0).get(1));
   }
+
+  @Test
+  public void testReferences() throws Exception {
+    Schema other = SchemaBuilder.record("bar").fields()
+        .requiredLong("g1")
+        .endRecord();
+    SimpleExhibit se = new SimpleExhibit(Obs.EMPTY,
+        ImmutableMap.<String, Frame>of("t1", new AvroFrame(new AvroObsDescriptor(schema)),
+            "t2", new AvroFrame(new AvroObsDescriptor(other))),
+        ImmutableMap.<String, Vec>of("v1", VectorBuilder.doubles(Collections.emptyList())));
+    ExhibitDescriptor desc = se.descriptor();
+
+    ExhibitDescriptor refs = new SQLCalculator(new String[] {
+        "select f2, sum(f3) as sumf3 from t1 group by f2",
+        "select count(*) as ct from last"
+    }).references(desc);
+    assertEquals(ImmutableSet.of("t1"), refs.frames().keySet());
+    assertEquals(2, refs.frames().get("t1").size());
+    assertEquals(-1, refs.frames().get("t1").indexOf("f1"));
+    assertTrue(refs.vectors().isEmpty());
+
+    refs = new SQLCalculator(new String[] { "select * from t1, v1 where t1.f3=v1.c0" }).references(desc);
+    assertEquals(3, refs.frames().get("t1").size());
+    assertEquals(ImmutableSet.of("v1"), refs.vectors().keySet());
+
+    refs = new SQLCalculator(new String[] { "select count(*) as ct from t2" }).references(desc);
+    assertEquals(ImmutableSet.of("t2"), refs.frames().keySet());
+    assertEquals(1, refs.frames().get("t2").size());
+  }
+
+  @Test
+  public void testPlanCache() throws Exception {
+    String[] queries = new String[] {
+        "select f3 from t1 where f2",
+        "select sum(f3) as s from last"
+    };
+    GenericData.Record r1 = new GenericData.Record(schema);
+    r1.put("f2", true);
+    r1.put("f3", 1729L);
+    Exhibit e = SimpleExhibit.of("t1", new AvroFrame(ImmutableList.of(r1)));
+
+    long hits = SQLPlanCache.hits();
+    long misses = SQLPlanCache.misses();
+    assertEquals(1729L, eval(new SQLCalculator(queries), e).get(0).get("s"));
+    assertEquals(misses + 1, SQLPlanCache.misses());
+
+    GenericData.Record r2 = new GenericData.Record(schema);
+    r2.put("f2", true);
+    r2.put("f3", 17L);
+    Exhibit e2 = SimpleExhibit.of("t1", new AvroFrame(ImmutableList.of(r1, r2)));
+    assertEquals(1746L, eval(new SQLCalculator(queries.clone()), e2).get(0).get("s"));
+    assertEquals(hits + 1, SQLPlanCache.hits());
+    assertEquals(misses + 1, SQLPlanCache.misses());
+  }
+
+  @Test
+  public void testPlanCacheWithMissingFrame() throws Exception {
+    String[] queries = new String[] { "select count(*) as ct from t2" };
+    GenericData.Record r1 = new GenericData.Record(schema);
+    r1.put("f3", 1729L);
+    AvroFrame frame = new AvroFrame(ImmutableList.of(r1, r1, r1));
+    Exhibit e = SimpleExhibit.of("t1", frame, "t2", frame);
+    assertEquals(3L, eval(new SQLCalculator(queries), e).get(0).get("ct"));
+
+    // The second calculator borrows the first one's plan, but its exhibit has no t2
+    long hits = SQLPlanCache.hits();
+    SQLCalculator calc = new SQLCalculator(queries.clone());
+    calc.initialize(e.descriptor());
+    assertEquals(hits + 1, SQLPlanCache.hits());
+    Frame res = calc.apply(SimpleExhibit.of("t1", frame));
+    calc.cleanup();
+    assertEquals(0L, res.get(0).get("ct"));
+  }
+
+  @Test
+  public void testScanFilters() throws Exception {
+    GenericData.Record r1 = new GenericData.Record(schema);
+    r1.put("f1", "foo");
+    r1.put("f2", true);
+    r1.put("f3", 1729L);
+    GenericData.Record r2 = new GenericData.Record(schema);
+    r2.put("f1", "bar");
+    r2.put("f3", 17L);
+    GenericData.Record r3 = new GenericData.Record(schema);
+    r3.put("f1", "foo");
+    r3.put("f2", false);
+    r3.put("f3", 3L);
+    AvroFrame frame = new AvroFrame(ImmutableList.of(r1, r2, r3));
+
+    RexBuilder rb = new RexBuilder(new JavaTypeFactoryImpl());
+    RelDataType longType = rb.getTypeFactory().createSqlType(SqlTypeName.BIGINT);
+    List<RexNode> filters = Lists.newArrayList(
+        rb.makeCall(SqlStdOperatorTable.GREATER_THAN, rb.makeExactLiteral(BigDecimal.TEN),
+            rb.makeInputRef(longType, 2)),
+        rb.makeCall(SqlStdOperatorTable.IS_NOT_NULL, rb.makeInputRef(longType, 1)),
+        rb.makeCall(SqlStdOperatorTable.PLUS, rb.makeInputRef(longType, 2), rb.makeExactLiteral(BigDecimal.ONE)));
+    List<ScanFilter> scanFilters = ScanFilter.extract(filters);
+    assertEquals(2, scanFilters.size());
+    assertEquals(1, filters.size());
+
+    FrameEnumerator fe = FrameEnumerator.create(frame, new int[] { 0 }, scanFilters);
+    assertTrue(fe.moveNext());
+    assertEquals(1, fe.current().length);
+    assertEquals("foo", fe.current()[0].toString());
+    assertFalse(fe.moveNext());
+
+    String[] queries = new String[] {
+        "select sum(f3) as s from t1 where f3 > 10 and f1 = 'foo'"
+    };
+    assertEquals(1729L, eval(new SQLCalculator(queries), SimpleExhibit.of("t1", frame)).get(0).get("s"));
+  }
+
+  @Test
+  public void testScanFilterComparisons() throws Exception {
+    RexBuilder rb = new RexBuilder(new JavaTypeFactoryImpl());
+    RelDataType doubleType = rb.getTypeFactory().createSqlType(SqlTypeName.DOUBLE);
+    RelDataType longType = rb.getTypeFactory().createSqlType(SqlTypeName.BIGINT);
+    Vec doubles = new DoubleVector(new double[] { -0.0, Double.NaN, 1.0 });
+    ScanFilter eq = ScanFilter.create(rb.makeCall(SqlStdOperatorTable.EQUALS,
+        rb.makeInputRef(doubleType, 0), rb.makeExactLiteral(BigDecimal.ZERO)));
+    ScanFilter ne = ScanFilter.create(rb.makeCall(SqlStdOperatorTable.NOT_EQUALS,
+        rb.makeInputRef(doubleType, 0), rb.makeExactLiteral(BigDecimal.ZERO)));
+    ScanFilter ge = ScanFilter.create(rb.makeCall(SqlStdOperatorTable.GREATER_THAN_OR_EQUAL,
+        rb.makeInputRef(doubleType, 0), rb.makeExactLiteral(BigDecimal.ZERO)));
+    assertTrue(eq.test(doubles, 0));
+    assertFalse(ne.test(doubles, 0));
+    assertFalse(eq.test(doubles, 1));
+    assertTrue(ne.test(doubles, 1));
+    assertFalse(ge.test(doubles, 1));
+    assertTrue(ge.test(doubles, 2));
+
+    Vec longs = new LongVector(new long[] { Long.MAX_VALUE, Long.MIN_VALUE });
+    BigDecimal huge = new BigDecimal("100000000000000000000");
+    ScanFilter gt = ScanFilter.create(rb.makeCall(SqlStdOperatorTable.GREATER_THAN,
+        rb.makeInputRef(longType, 0), rb.makeExactLiteral(huge)));
+    ScanFilter gtNeg = ScanFilter.create(rb.makeCall(SqlStdOperatorTable.GREATER_THAN,
+        rb.makeInputRef(longType, 0), rb.makeExactLiteral(huge.negate())));
+    assertFalse(gt.test(longs, 0));
+    assertFalse(gt.test(longs, 1));
+    assertTrue(gtNeg.test(longs, 0));
+    assertTrue(gtNeg.test(longs, 1));
+  }
+
+  @Test
+  public void testQueryStages() throws Exception {
+    QueryStages stages = QueryStages.create(new String[] {
+        "select f3 from t1",
+        "select f1, f3 from t1",
+        "select f3 from last where f1 = 'foo'",
+        "select sum(a.f3) as s, count(*) as ct from temp3 a, temp3 b"
+    });
+    assertEquals(1, stages.temps().size());
+    assertEquals("TEMP3", stages.temps().get(0).table);
+    assertFalse(stages.temps().get(0).sql.toUpperCase().contains("TEMP2"));
+    assertTrue(stages.temps().get(0).sql.toUpperCase().contains("T1"));
+    assertEquals("select sum(a.f3) as s, count(*) as ct from temp3 a, temp3 b", stages.result());
+
+    GenericData.Record r1 = new GenericData.Record(schema);
+    r1.put("f1", "foo");
+    r1.put("f3", 1729L);
+    GenericData.Record r2 = new GenericData.Record(schema);
+    r2.put("f1", "bar");
+    r2.put("f3", 17L);
+    Exhibit e = SimpleExhibit.of("t1", new AvroFrame(ImmutableList.of(r1, r2)));
+    Frame res = eval(new SQLCalculator(new String[] {
+        "select f3 from t1",
+        "select f1, f3 from t1",
+        "select f3 from last where f1 = 'foo'",
+        "select sum(a.f3) as s, count(*) as ct from temp3 a, temp3 b"
+    }), e);
+    assertEquals(1729L, res.get(0).get("s"));
+    assertEquals(1L, res.get(0).get("ct"));
+  }
+
+  @Test
+  public void testTempDates() throws Exception {
+    ObsDescriptor desc = SimpleObsDescriptor.builder().dateField("d").longField("x").build();
+    Date early = Date.valueOf("2015-03-14");
+    Date late = Date.valueOf("2015-07-04");
+    Frame frame = SimpleFrame.of(SimpleObs.of(desc, early, 1L), SimpleObs.of(desc, late, 2L));
+    // The TEMP is used twice, so it is materialized and read back through a DATE column
+    Frame res = eval(new SQLCalculator(new String[] {
+        "select d, x from t1 where d > date '2015-01-01'",
+        "select max(a.d) as md, count(*) as ct from temp1 a, temp1 b where a.x = b.x and a.d < date '2015-06-01'"
+    }), SimpleExhibit.of("t1", frame));
+    assertEquals(early, res.get(0).get("md"));
+    assertEquals(1L, res.get(0).get("ct"));
+  }
+
+  @Test
+  public void testQueryStagesThroughLast() throws Exception {
+    String[] queries = new String[] {
+        "select f1, f3 from t1 where f3 > 10",
+        "select a.f3 as x, b.f3 as y from last a, last b where a.f1 = b.f1"
+    };
+    QueryStages stages = QueryStages.create(queries);
+    assertEquals(1, stages.temps().size());
+    assertEquals("TEMP1", stages.temps().get(0).table);
+    assertTrue(stages.result().toUpperCase().contains("TEMP1"));
+
+    QueryStages inlined = QueryStages.create(new String[] {
+        "select f1, f3 from t1 where f3 > 10",
+        "select sum(f3) as s from last"
+    });
+    assertEquals(0, inlined.temps().size());
+    assertTrue(inlined.result().toUpperCase().contains("T1"));
+
+    GenericData.Record r1 = new GenericData.Record(schema);
+    r1.put("f1", "foo");
+    r1.put("f3", 1729L);
+    GenericData.Record r2 = new GenericData.Record(schema);
+    r2.put("f1", "bar");
+    r2.put("f3", 3L);
+    Exhibit e = SimpleExhibit.of("t1", new AvroFrame(ImmutableList.of(r1, r2)));
+    Frame res = eval(new SQLCalculator(queries), e);
+    assertEquals(1, res.size());
+    assertEquals(1729L, res.get(0).get("x"));
+    assertEquals(1746L, eval(new SQLCalculator(new String[] {
+        "select f1, f3 from t1",
+        "select sum(f3) as s from last"
+    }), e).get(0).get("s"));
+  }
+
+  @Test
+  public void testStream() throws Exception {
+    List<GenericData.Record> records = Lists.newArrayList();
+    for (long i = 0; i < 10; i++) {
+      GenericData.Record r = new GenericData.Record(schema);
+      r.put("f1", "foo");
+      r.put("f3", i);
+      records.add(r);
+    }
+    Exhibit e = SimpleExhibit.of("t1", new AvroFrame(records));
+    SQLCalculator calc = new SQLCalculator(new String[] {
+        "select a.f3 as x, b.f3 as y from t1 a, t1 b where a.f1 = b.f1"
+    });
+    calc.initialize(e.descriptor());
+    ObsCursor cursor = calc.stream(e);
+    long sum = 0L;
+    int count = 0;
+    try {
+      while (cursor.hasNext()) {
+        Obs obs = cursor.next();
+        sum += (Long) obs.get("x") * (Long) obs.get("y");
+        count++;
+      }
+      assertFalse(cursor.hasNext());
+    } finally {
+      cursor.close();
+    }
+    assertEquals(100, count);
+    assertEquals(45L * 45L, sum);
+
+    // An open cursor is closed by the next call
+    ObsCursor open = calc.stream(e);
+    assertTrue(open.hasNext());
+    assertEquals(100, calc.apply(e).size());
+    assertFalse(open.hasNext());
+    calc.cleanup();
+  }
+
+  @Test
+  public void testSketchFunctions() throws Exception {
+    List<GenericData.Record> records = Lists.newArrayList();
+    for (long i = 0; i < 1000; i++) {
+      GenericData.Record r = new GenericData.Record(schema);
+      r.put("f1", i % 10 == 0 ? "foo" : i % 20 == 5 ? "a,b\\c" : "bar" + (i % 50));
+      r.put("f3", i);
+      records.add(r);
+    }
+    Exhibit e = SimpleExhibit.of("t1", new AvroFrame(records));
+    SQLCalculator calc = new SQLCalculator(new String[] {
+        "select approx_count_distinct(f1) as c, approx_percentile(f3, 0.5) as p, " +
+            "approx_top_k(f1, 2) as t, hll_sketch(f3) as h from t1"
+    });
+    calc.initialize(e.descriptor());
+    Obs obs = eval(calc, e).get(0);
+    assertEquals(47.0, ((Number) obs.get("c")).doubleValue(), 2.0);
+    assertEquals(500.0, ((Number) obs.get("p")).doubleValue(), 1000 * 0.02);
+    assertEquals("foo,a\\,b\\\\c", obs.get("t"));
+    HyperLogLog hll = Sketches.fromString((String) obs.get("h"), HyperLogLog.class);
+    assertEquals(1000.0, hll.estimate(), 1000 * 0.05);
+  }
+
+  @Test
+  public void testJavaFunctions() throws Exception {
+    List<GenericData.Record> records = Lists.newArrayList();
+    for (long i = 1; i <= 4; i++) {
+      GenericData.Record r = new GenericData.Record(schema);
+      r.put("f1", "foo");
+      r.put("f3", i);
+      records.add(r);
+    }
+    Exhibit e = SimpleExhibit.of("t1", new AvroFrame(records));
+    Map<String, String> functions = SQLFunctions.parse(
+        "twice=" + Twice.class.getName() + ", sum_sq=" + SumOfSquares.class.getName());
+    SQLCalculator calc = new SQLCalculator(new String[] {
+        "select sum(twice(f3)) as t, sum_sq(f3) as s from t1"
+    }, functions);
+    calc.initialize(e.descriptor());
+    Obs obs = eval(calc, e).get(0);
+    assertEquals(20L, ((Number) obs.get("t")).longValue());
+    assertEquals(30L, ((Number) obs.get("s")).longValue());
+    calc.cleanup();
+  }
+
+  @Test
+  public void testStatisticsAfterReplanning() throws Exception {
+    List<GenericData.Record> small = Lists.newArrayList();
+    List<GenericData.Record> large = Lists.newArrayList();
+    for (long i = 0; i < 100; i++) {
+      GenericData.Record r = new GenericData.Record(schema);
+      r.put("f1", "foo" + (i % 5));
+      r.put("f3", i);
+      large.add(r);
+      if (i < 5) {
+        small.add(r);
+      }
+    }
+    Exhibit e = SimpleExhibit.of("t1", new AvroFrame(large), "t2", new AvroFrame(small));
+    SQLCalculator calc = new SQLCalculator(new String[] {
+        "select f1, count(*) as n from t1 group by f1",
+        "select sum(a.n) as n from last a, t2 b where a.f1 = b.f1"
+    });
+    calc.initialize(e.descriptor());
+    long reprepared = SQLCalculator.reprepared();
+    // Frames with the row counts that the statements were prepared with do not change the plan
+    AvroObsDescriptor at = new AvroObsDescriptor(schema);
+    Exhibit empty = SimpleExhibit.of("t1", new AvroFrame(at), "t2", new AvroFrame(at));
+    assertNull(calc.apply(empty).get(0).get("n"));
+    assertEquals(reprepared, SQLCalculator.reprepared());
+    // The statements are prepared again with real row counts, and give the same answer
+    assertEquals(100L, ((Number) calc.apply(e).get(0).get("n")).longValue());
+    assertTrue(SQLCalculator.reprepared() > reprepared);
+    reprepared = SQLCalculator.reprepared();
+    // Only once
+    assertEquals(100L, ((Number) calc.apply(e).get(0).get("n")).longValue());
+    assertEquals(reprepared, SQLCalculator.reprepared());
+    calc.cleanup();
+
+    FrameTable table = new FrameTable(new AvroObsDescriptor(schema));
+    assertNull(table.getStatistic().getRowCount());
+    table.updateFrame(new AvroFrame(small));
+    assertEquals(5.0, table.getStatistic().getRowCount(), 0.0);
+  }
+
+  public static class Twice {
+    public static long eval(long x) {
+      return 2 * x;
+    }
+  }
+
+  public static class SumOfSquares {
+    public long[] init() {
+      return new long[1];
+    }
+
+    public long[] add(long[] acc, long x) {
+      acc[0] += x * x;
+      return acc;
+    }
+
+    public long result(long[] acc) {
+      return acc[0];
+    }
+  }
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2015, Cloudera, Inc. All Rights Reserved.
+ *
+ * Cloudera, Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"). You may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the
+ * License.
+ */
+package com.cloudera.exhibit.sql;
+
+import com.cloudera.exhibit.core.Frame;
+import com.cloudera.exhibit.core.Obs;
+import com.cloudera.exhibit.core.ObsDescriptor;
+import com.cloudera.exhibit.core.Vec;
+import com.cloudera.exhibit.core.columnar.ColumnarFrame;
+import com.cloudera.exhibit.core.simple.SimpleFrame;
+import com.cloudera.exhibit.core.simple.SimpleObs;
+import com.cloudera.exhibit.core.simple.SimpleObsDescriptor;
+import com.cloudera.exhibit.core.vector.DoubleVector;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the rows per second that the scans of {@link FrameTable} and {@link VectorTable} hand to
+ * Calcite, over a 100k-row frame, against the enumerators from before projection and filter
+ * pushdown. It is not run as part of the build; run its {@code main} method with the sql test
+ * classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(FrameEnumeratorBenchmark.ROWS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FrameEnumeratorBenchmark {
+
+  static final int ROWS = 100000;
+  private static final int COLUMNS = 10;
+
+  private Frame simple;
+  private ColumnarFrame columnar;
+  private DoubleVector vector;
+  private List<RexNode> filter;
+  private List<RexNode> vectorFilter;
+
+  @Setup
+  public void setup() {
+    SimpleObsDescriptor.Builder db = SimpleObsDescriptor.builder();
+    for (int i = 0; i < COLUMNS; i++) {
+      if (i % 2 == 0) {
+        db.doubleField("d" + i);
+      } else {
+        db.longField("l" + i);
+      }
+    }
+    ObsDescriptor desc = db.build();
+    Random r = new Random(1729L);
+    List<Obs> rows = Lists.newArrayListWithExpectedSize(ROWS);
+    double[] doubles = new double[ROWS];
+    for (int i = 0; i < ROWS; i++) {
+      Object[] values = new Object[COLUMNS];
+      for (int j = 0; j < COLUMNS; j++) {
+        values[j] = j % 2 == 0 ? (Object) r.nextGaussian() : (Object) (long) r.nextInt(100);
+      }
+      rows.add(SimpleObs.of(desc, values));
+      doubles[i] = (Double) values[0];
+    }
+    simple = new SimpleFrame(rows);
+    columnar = ColumnarFrame.copyOf(simple);
+    vector = new DoubleVector(doubles);
+
+    // l1 > 50, which about half of the rows pass
+    RexBuilder rb = new RexBuilder(new JavaTypeFactoryImpl());
+    filter = ImmutableList.of(rb.makeCall(SqlStdOperatorTable.GREATER_THAN,
+        rb.makeInputRef(rb.getTypeFactory().createSqlType(SqlTypeName.BIGINT), 1),
+        rb.makeExactLiteral(BigDecimal.valueOf(50L))));
+    // c0 > 0, which about half of the vector's values pass
+    vectorFilter = ImmutableList.of(rb.makeCall(SqlStdOperatorTable.GREATER_THAN,
+        rb.makeInputRef(rb.getTypeFactory().createSqlType(SqlTypeName.DOUBLE), 0),
+        rb.makeExactLiteral(BigDecimal.ZERO)));
+  }
+
+  @Benchmark
+  public void baselineColumnar(Blackhole bh) {
+    drain(new BaselineFrameEnumerator(columnar), bh);
+  }
+
+  @Benchmark
+  public void baselineRows(Blackhole bh) {
+    drain(new BaselineFrameEnumerator(simple), bh);
+  }
+
+  @Benchmark
+  public void scanColumnarAll(Blackhole bh) {
+    drain(FrameEnumerator.create(columnar, null, ImmutableList.<ScanFilter>of()), bh);
+  }
+
+  @Benchmark
+  public void scanColumnarProjected(Blackhole bh) {
+    drain(FrameEnumerator.create(columnar, new int[] { 0, 1 }, ImmutableList.<ScanFilter>of()), bh);
+  }
+
+  @Benchmark
+  public void scanColumnarFiltered(Blackhole bh) {
+    drain(FrameEnumerator.create(columnar, new int[] { 0 }, filters()), bh);
+  }
+
+  @Benchmark
+  public void scanRowsAll(Blackhole bh) {
+    drain(FrameEnumerator.create(simple, null, ImmutableList.<ScanFilter>of()), bh);
+  }
+
+  @Benchmark
+  public void scanRowsProjected(Blackhole bh) {
+    drain(FrameEnumerator.create(simple, new int[] { 0, 1 }, ImmutableList.<ScanFilter>of()), bh);
+  }
+
+  @Benchmark
+  public void baselineVector(Blackhole bh) {
+    // Still the enumerator of plain vector scans
+    drain(new VectorEnumerator(vector), bh);
+  }
+
+  @Benchmark
+  public void scanVectorFiltered(Blackhole bh) {
+    // Only scans with a pushed-down filter go through FrameEnumerator
+    drain(new FrameEnumerator(vector.size(), new Vec[] { vector }, null,
+        ScanFilter.extract(Lists.newArrayList(vectorFilter))), bh);
+  }
+
+  private List<ScanFilter> filters() {
+    return ScanFilter.extract(Lists.newArrayList(filter));
+  }
+
+  private static void drain(Enumerator<?> e, Blackhole bh) {
+    while (e.moveNext()) {
+      bh.consume(e.current());
+    }
+  }
+
+  // The FrameEnumerator from before projection and filter pushdown: every column of every row,
+  // read through an Obs
+  private static class BaselineFrameEnumerator implements Enumerator<Object> {
+    private final Frame frame;
+    private Object current;
+    private int currentIndex = -1;
+
+    BaselineFrameEnumerator(Frame frame) {
+      this.frame = frame;
+    }
+
+    @Override
+    public Object current() {
+      return current;
+    }
+
+    @Override
+    public boolean moveNext() {
+      currentIndex++;
+      boolean hasNext = currentIndex < frame.size();
+      if (hasNext) {
+        Obs obs = frame.get(currentIndex);
+        if (frame.descriptor().size() > 1) {
+          Object[] values = new Object[frame.descriptor().size()];
+          for (int i = 0; i < values.length; i++) {
+            values[i] = obs.get(i);
+          }
+          this.current = values;
+        } else {
+          this.current = obs.get(0);
+        }
+      }
+      return hasNext;
+    }
+
+    @Override
+    public void reset() {
+      currentIndex = -1;
+      current = null;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(FrameEnumeratorBenchmark.class.getSimpleName()).build()).run();
+  }
+}